@@ -1,14 +1,21 @@
 package org.example.ragtest.config;
 
-import jakarta.annotation.PostConstruct;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.embedding.EmbeddingWarmup;
 import org.example.ragtest.service.DocumentService;
+import org.example.ragtest.store.ManagedEmbeddingStore;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
 /**
  * 数据初始化器
- * 在应用启动时向向量数据库中加载示例知识
+ * 在应用启动完成后向向量数据库中加载示例知识
+ * 持久化存储中已有数据（快照 + WAL 恢复或内存映射文件）时跳过，避免重启后重复向量化
+ * 加载完成或跳过后通知 {@link EmbeddingWarmup}，就绪状态以初始数据加载完成为前提
  */
 @Slf4j
 @Component
@@ -16,9 +23,20 @@ import org.springframework.stereotype.Component;
 public class DataInitializer {
 
     private final DocumentService documentService;
+    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final EmbeddingWarmup embeddingWarmup;
 
-    @PostConstruct
+    @EventListener(ApplicationReadyEvent.class)
     public void initializeData() {
+        if (embeddingStore instanceof ManagedEmbeddingStore managedStore && managedStore.size() > 0) {
+            log.info("向量数据库已有 {} 条数据，跳过初始化", managedStore.size());
+        } else {
+            loadSampleKnowledge();
+        }
+        embeddingWarmup.initialDataLoaded();
+    }
+
+    private void loadSampleKnowledge() {
         log.info("开始初始化向量数据库...");
 
         // 添加关于 Java 的知识
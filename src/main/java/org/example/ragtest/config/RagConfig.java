@@ -4,32 +4,159 @@ import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.embedding.onnx.allminilml6v2q.AllMiniLmL6V2QuantizedEmbeddingModel;
 import dev.langchain4j.store.embedding.EmbeddingStore;
-import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.embedding.CachingEmbeddingModel;
+import org.example.ragtest.embedding.EmbeddingDiskCache;
+import org.example.ragtest.embedding.EmbeddingInferencePool;
+import org.example.ragtest.store.EmbeddingStoreFactory;
+import org.example.ragtest.store.EmbeddingStoreStrategy;
+import org.example.ragtest.store.EmbeddingStoreType;
+import org.example.ragtest.store.ManagedEmbeddingStore;
+import org.example.ragtest.store.engine.CompactingEmbeddingStore;
+import org.example.ragtest.store.engine.DurableEmbeddingStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * RAG 系统配置类
  * 配置 Embedding 模型和向量存储
  */
+@Slf4j
 @Configuration
 public class RagConfig {
 
+    @Value("${rag.embedding.inference.workers:0}")
+    private int inferenceWorkers;
+
+    @Value("${rag.embedding.inference.reserved-query-workers:1}")
+    private int reservedQueryWorkers;
+
+    @Value("${rag.embedding.inference.queue-capacity:256}")
+    private int inferenceQueueCapacity;
+
+    @Value("${rag.embedding.inference.intra-op-threads:2}")
+    private int intraOpThreads;
+
+    @Value("${rag.embedding.cache.enabled:true}")
+    private boolean embeddingCacheEnabled;
+
+    @Value("${rag.embedding.cache.max-entries:10000}")
+    private int embeddingCacheMaxEntries;
+
+    @Value("${rag.embedding.cache.disk.enabled:false}")
+    private boolean embeddingDiskCacheEnabled;
+
+    @Value("${rag.embedding.cache.disk.directory:data/embedding-cache}")
+    private String embeddingDiskCacheDirectory;
+
+    @Value("${rag.embedding.cache.disk.max-entries:200000}")
+    private int embeddingDiskCacheMaxEntries;
+
+    @Value("${rag.store.durable.enabled:false}")
+    private boolean durableEnabled;
+
+    @Value("${rag.store.durable.directory:data/durable-store}")
+    private String durableDirectory;
+
+    @Value("${rag.store.durable.fsync:true}")
+    private boolean durableFsync;
+
+    @Value("${rag.store.durable.snapshot-interval-seconds:300}")
+    private long snapshotIntervalSeconds;
+
+    @Value("${rag.store.compaction.enabled:true}")
+    private boolean compactionEnabled;
+
+    @Value("${rag.store.compaction.deleted-ratio:0.2}")
+    private double compactionDeletedRatio;
+
+    @Value("${rag.store.compaction.interval-seconds:60}")
+    private long compactionIntervalSeconds;
+
     /**
-     * 配置本地 Embedding 模型
-     * 使用 all-MiniLM-L6-v2 量化模型，无需 GPU
+     * 配置本地 Embedding 模型的推理线程池
+     * 使用 all-MiniLM-L6-v2 量化模型，无需 GPU；查询和摄取分通道排队，由固定数量的推理线程执行
      */
     @Bean
-    public EmbeddingModel embeddingModel() {
-        return new AllMiniLmL6V2QuantizedEmbeddingModel();
+    public EmbeddingInferencePool embeddingInferencePool() {
+        int workers = inferenceWorkers > 0 ? inferenceWorkers : Runtime.getRuntime().availableProcessors();
+        int reserved = Math.min(reservedQueryWorkers, workers - 1);
+        AllMiniLmL6V2QuantizedEmbeddingModel model = new AllMiniLmL6V2QuantizedEmbeddingModel(intraOpExecutor());
+        log.info("Embedding 推理线程池: 线程数={}, 查询保留线程数={}, 队列容量={}, 单次调用并行线程数={}",
+                workers, reserved, inferenceQueueCapacity, intraOpThreads);
+        return new EmbeddingInferencePool(model, workers, reserved, inferenceQueueCapacity);
+    }
+
+    /**
+     * 配置对外使用的 Embedding 模型
+     * 启用 rag.embedding.cache.enabled 时在推理线程池外层包装按文本内容哈希的向量缓存，相同文本不重复推理
+     */
+    @Bean
+    @Primary
+    public EmbeddingModel embeddingModel(EmbeddingInferencePool embeddingInferencePool) {
+        if (!embeddingCacheEnabled) {
+            return embeddingInferencePool;
+        }
+        EmbeddingDiskCache diskCache = embeddingDiskCacheEnabled
+                ? new EmbeddingDiskCache(Path.of(embeddingDiskCacheDirectory),
+                        AllMiniLmL6V2QuantizedEmbeddingModel.class.getSimpleName(),
+                        embeddingInferencePool.dimension(), embeddingDiskCacheMaxEntries)
+                : null;
+        log.info("启用向量缓存: 内存条目上限={}, 磁盘层={}", embeddingCacheMaxEntries,
+                embeddingDiskCacheEnabled ? embeddingDiskCacheDirectory : "关闭");
+        return new CachingEmbeddingModel(embeddingInferencePool, embeddingCacheMaxEntries, diskCache);
+    }
+
+    /**
+     * 单次 embedAll 内按文本段并行推理使用的线程池
+     * 内置模型的 ONNX 会话是进程内共享的单例，会话本身的算子线程数无法通过模型类配置，这里限制的是一次调用内的并行度
+     */
+    private ExecutorService intraOpExecutor() {
+        AtomicInteger index = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, intraOpThreads), runnable -> {
+            Thread thread = new Thread(runnable, "embedding-intra-op-" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     /**
-     * 配置内存向量存储
-     * 用于存储文档的向量表示
+     * 配置向量存储
+     * 用于存储文档的向量表示，具体实现由 rag.store.type 选择
+     * 启用 rag.store.durable.enabled 时外层包装 WAL + 快照持久化，重启后从磁盘恢复；REDIS 存储不做包装
      */
     @Bean
-    public EmbeddingStore<TextSegment> embeddingStore() {
-        return new InMemoryEmbeddingStore<>();
+    public EmbeddingStore<TextSegment> embeddingStore(
+            EmbeddingStoreFactory embeddingStoreFactory,
+            @Value("${rag.store.type:IN_MEMORY}") EmbeddingStoreType storeType) {
+        EmbeddingStoreStrategy strategy = embeddingStoreFactory.getStrategy(storeType);
+        log.info("使用向量存储: {}", strategy.getDescription());
+        EmbeddingStore<TextSegment> store = strategy.createStore();
+        if (storeType == EmbeddingStoreType.REDIS) {
+            // 数据由 Redis 持久化并在实例间共享，本地副本的压缩由存储自身负责
+            return store;
+        }
+        if (compactionEnabled && storeType != EmbeddingStoreType.MAPPED_FILE
+                && store instanceof ManagedEmbeddingStore managedStore) {
+            log.info("启用向量存储后台压缩: 墓碑比例阈值={}, 检查间隔={}s", compactionDeletedRatio, compactionIntervalSeconds);
+            store = new CompactingEmbeddingStore(managedStore, () -> (ManagedEmbeddingStore) strategy.createStore(),
+                    compactionDeletedRatio, compactionIntervalSeconds);
+        }
+        if (!durableEnabled) {
+            return store;
+        }
+        if (!(store instanceof ManagedEmbeddingStore managedStore)) {
+            throw new IllegalStateException("向量存储类型 " + storeType + " 不支持 WAL 持久化，请选择其他存储类型");
+        }
+        log.info("启用向量存储持久化: 目录={}, fsync={}, 快照间隔={}s",
+                durableDirectory, durableFsync, snapshotIntervalSeconds);
+        return new DurableEmbeddingStore(managedStore, Path.of(durableDirectory), durableFsync, snapshotIntervalSeconds);
     }
 }
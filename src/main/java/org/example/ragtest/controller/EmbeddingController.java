@@ -0,0 +1,64 @@
+package org.example.ragtest.controller;
+
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.embedding.CachingEmbeddingModel;
+import org.example.ragtest.embedding.EmbeddingInferencePool;
+import org.example.ragtest.embedding.IngestionEmbedder;
+import org.example.ragtest.embedding.QueryEmbeddingBatcher;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 向量模型控制器
+ * 提供向量模型运行状态的查询 REST API
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/rag/embedding")
+@RequiredArgsConstructor
+public class EmbeddingController {
+
+    private final EmbeddingModel embeddingModel;
+    private final QueryEmbeddingBatcher queryEmbeddingBatcher;
+    private final EmbeddingInferencePool embeddingInferencePool;
+    private final IngestionEmbedder ingestionEmbedder;
+
+    /**
+     * 获取向量缓存的条目数和按调用方（查询 / 摄取）统计的命中率
+     * @return 缓存统计，未启用缓存时返回 null
+     */
+    @GetMapping("/cache")
+    public CachingEmbeddingModel.CacheStats getCacheStats() {
+        return embeddingModel instanceof CachingEmbeddingModel cachingModel ? cachingModel.stats() : null;
+    }
+
+    /**
+     * 获取查询向量化微批的请求数、批次数和平均批大小
+     * @return 微批统计
+     */
+    @GetMapping("/batcher")
+    public QueryEmbeddingBatcher.BatcherStats getBatcherStats() {
+        return queryEmbeddingBatcher.stats();
+    }
+
+    /**
+     * 获取推理线程池各通道（查询 / 摄取）的排队数、完成数和平均排队时间
+     * @return 推理线程池统计
+     */
+    @GetMapping("/inference")
+    public EmbeddingInferencePool.PoolStats getInferenceStats() {
+        return embeddingInferencePool.stats();
+    }
+
+    /**
+     * 获取最近一次摄取向量化的文本段数、批次数和吞吐（段/秒）
+     * @return 摄取向量化统计，还没有摄取时返回 null
+     */
+    @GetMapping("/ingestion")
+    public IngestionEmbedder.IngestionStats getIngestionStats() {
+        return ingestionEmbedder.lastRun();
+    }
+}
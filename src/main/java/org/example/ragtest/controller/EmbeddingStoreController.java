@@ -0,0 +1,123 @@
+package org.example.ragtest.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.service.EmbeddingStoreBenchmarkService;
+import org.example.ragtest.service.EmbeddingStoreTransferService;
+import org.example.ragtest.store.EmbeddingStoreFactory;
+import org.example.ragtest.store.EmbeddingStoreType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.util.Map;
+
+/**
+ * 向量存储控制器
+ * 提供向量存储的查询、基准测试和导出 / 导入 REST API
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/rag/store")
+@RequiredArgsConstructor
+public class EmbeddingStoreController {
+
+    private final EmbeddingStoreFactory storeFactory;
+    private final EmbeddingStoreBenchmarkService benchmarkService;
+    private final EmbeddingStoreTransferService transferService;
+
+    /**
+     * 获取所有可用的向量存储列表
+     * @return 存储类型和描述的映射
+     */
+    @GetMapping("/types")
+    public Map<EmbeddingStoreType, String> getAvailableStores() {
+        log.info("查询可用的向量存储列表");
+        return storeFactory.listAvailableStores();
+    }
+
+    /**
+     * 对比指定存储与精确检索的召回率和延迟
+     * @param request 基准测试请求
+     * @return 基准测试报告
+     */
+    @PostMapping("/benchmark")
+    public EmbeddingStoreBenchmarkService.BenchmarkReport benchmark(@RequestBody BenchmarkRequest request) {
+        log.info("收到向量存储基准测试请求: {}", request);
+        return benchmarkService.run(
+                request.storeType(),
+                request.vectorCount() > 0 ? request.vectorCount() : 10000,
+                request.queryCount() > 0 ? request.queryCount() : 200,
+                request.maxResults() > 0 ? request.maxResults() : 10);
+    }
+
+    /**
+     * 以分块列式二进制格式下载存储内容
+     * 导出需要可遍历的存储类型，IN_MEMORY 等不支持时在开始下载前返回 400
+     * @param namespace 命名空间，为空时导出默认存储
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(required = false) String namespace) {
+        log.info("收到向量存储导出请求: 命名空间={}", namespace);
+        transferService.checkExportable(namespace);
+        String fileName = (namespace == null || namespace.isBlank() ? "default" : namespace) + ".ragx";
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(out -> transferService.exportTo(namespace, out));
+    }
+
+    /**
+     * 将存储导出到服务端导出目录下的文件
+     * 存储类型不支持导出时返回 400
+     * @param request 文件请求
+     * @return 导出结果
+     */
+    @PostMapping("/export-file")
+    public EmbeddingStoreTransferService.TransferReport exportToFile(@RequestBody TransferFileRequest request) {
+        log.info("收到向量存储导出到文件请求: {}", request);
+        return transferService.exportToFile(request.namespace(), request.fileName());
+    }
+
+    /**
+     * 从请求体导入 {@link #export} 下载的数据
+     * @param namespace 命名空间，为空时导入默认存储
+     * @param body 导出文件内容
+     * @return 导入结果
+     */
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public EmbeddingStoreTransferService.TransferReport importStore(@RequestParam(required = false) String namespace,
+                                                                    InputStream body) {
+        log.info("收到向量存储导入请求: 命名空间={}", namespace);
+        return transferService.importFrom(namespace, Channels.newChannel(body));
+    }
+
+    /**
+     * 从服务端导出目录下的文件导入
+     * @param request 文件请求
+     * @return 导入结果
+     */
+    @PostMapping("/import-file")
+    public EmbeddingStoreTransferService.TransferReport importFromFile(@RequestBody TransferFileRequest request) {
+        log.info("收到向量存储从文件导入请求: {}", request);
+        return transferService.importFromFile(request.namespace(), request.fileName());
+    }
+
+    /**
+     * 文件名非法、存储不支持导出、导入数据损坏等请求错误返回 400 和错误信息
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleBadRequest(IllegalArgumentException e) {
+        log.warn("向量存储请求被拒绝: {}", e.getMessage());
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+
+    // 请求对象
+    public record BenchmarkRequest(EmbeddingStoreType storeType, int vectorCount, int queryCount, int maxResults) {}
+
+    public record TransferFileRequest(String namespace, String fileName) {}
+}
@@ -2,11 +2,14 @@ package org.example.ragtest.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.embedding.EmbeddingWarmup;
 import org.example.ragtest.loader.DocumentLoaderType;
 import org.example.ragtest.service.DocumentService;
 import org.example.ragtest.service.NaiveRagService;
 import org.example.ragtest.splitter.DocumentSplitterType;
 import org.example.ragtest.documentTransformer.DocumentTransformerType;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -24,6 +27,7 @@ public class RagController {
 
     private final DocumentService documentService;
     private final NaiveRagService naiveRagService;
+    private final EmbeddingWarmup embeddingWarmup;
 
     /**
      * 摄取文档
@@ -33,10 +37,22 @@ public class RagController {
     @PostMapping("/ingest")
     public String ingestDocument(@RequestBody IngestRequest request) {
         log.info("收到文档摄取请求");
-        documentService.ingestDocument(request.text());
+        documentService.ingestDocument(request.text(), request.documentId(), request.namespace());
         return "文档摄取成功";
     }
 
+    /**
+     * 删除文档的全部文本段
+     * @param request 文档 id 请求
+     * @return 成功消息
+     */
+    @PostMapping("/documents/delete")
+    public String deleteDocument(@RequestBody DocumentIdRequest request) {
+        log.info("收到文档删除请求: {}", request.documentId());
+        documentService.deleteDocument(request.documentId(), request.namespace());
+        return "文档删除成功";
+    }
+
     /**
      * 执行 RAG 查询
      * @param request 查询请求
@@ -45,7 +61,7 @@ public class RagController {
     @PostMapping("/query")
     public String query(@RequestBody QueryRequest request) {
         log.info("收到查询请求: {}", request.question());
-        return naiveRagService.query(request.question());
+        return naiveRagService.query(request.question(), request.namespace());
     }
 
     /**
@@ -56,7 +72,7 @@ public class RagController {
     @PostMapping("/query-with-sources")
     public NaiveRagService.RagResponse queryWithSources(@RequestBody QueryRequest request) {
         log.info("收到带来源的查询请求: {}", request.question());
-        return naiveRagService.queryWithSources(request.question());
+        return naiveRagService.queryWithSources(request.question(), request.namespace());
     }
 
     /**
@@ -67,6 +83,15 @@ public class RagController {
         return "RAG 服务运行正常";
     }
 
+    /**
+     * 就绪检查，向量模型预热和初始数据加载完成前返回 503，供负载均衡器判断是否转发流量
+     */
+    @GetMapping("/ready")
+    public ResponseEntity<EmbeddingWarmup.WarmupStatus> ready() {
+        EmbeddingWarmup.WarmupStatus status = embeddingWarmup.status();
+        return ResponseEntity.status(status.ready() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).body(status);
+    }
+
     // ==================== 使用文档加载器的新接口 ====================
 
     /**
@@ -77,7 +102,7 @@ public class RagController {
     @PostMapping("/ingest-from-file")
     public String ingestFromFile(@RequestBody FilePathRequest request) {
         log.info("收到从文件加载文档请求: {}", request.filePath());
-        documentService.ingestDocumentFromFile(request.filePath());
+        documentService.ingestDocumentFromFile(request.filePath(), request.namespace());
         return "文件文档摄取成功: " + request.filePath();
     }
 
@@ -101,7 +126,7 @@ public class RagController {
     @PostMapping("/ingest-from-directory")
     public String ingestFromDirectory(@RequestBody DirectoryPathRequest request) {
         log.info("收到从文件夹批量加载文档请求: {}", request.directoryPath());
-        documentService.ingestDocumentsFromDirectory(request.directoryPath());
+        documentService.ingestDocumentsFromDirectory(request.directoryPath(), request.namespace());
         return "文件夹文档批量摄取成功: " + request.directoryPath();
     }
 
@@ -193,11 +218,15 @@ public class RagController {
     }
 
     // 请求对象
-    public record IngestRequest(String text) {}
-    public record QueryRequest(String question) {}
-    public record FilePathRequest(String filePath) {}
+    /**
+     * @param documentId 文档 id，可选；相同 id 的再次摄取会替换旧的文本段
+     */
+    public record IngestRequest(String text, String documentId, String namespace) {}
+    public record DocumentIdRequest(String documentId, String namespace) {}
+    public record QueryRequest(String question, String namespace) {}
+    public record FilePathRequest(String filePath, String namespace) {}
     public record UrlRequest(String url) {}
-    public record DirectoryPathRequest(String directoryPath) {}
+    public record DirectoryPathRequest(String directoryPath, String namespace) {}
     public record ClasspathRequest(String resourcePath) {}
     public record DynamicLoaderRequest(DocumentLoaderType loaderType, String sourcePath) {}
     public record CustomSplitterRequest(
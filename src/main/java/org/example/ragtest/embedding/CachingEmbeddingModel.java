@@ -0,0 +1,179 @@
+package org.example.ragtest.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 带内容哈希缓存的向量模型
+ * 以规范化文本的 128 位哈希（{@link ContentHash}）为键缓存向量，
+ * 重复摄取同一文件、启动时重复加载示例知识和重复的用户问题不再重新执行 ONNX 推理
+ *
+ * 实现要点：
+ * - 内存层是按访问顺序淘汰的 LRU，条目数有上限
+ * - 磁盘层（可选）是内存映射的定长向量行，重启后仍然有效；磁盘层命中的向量会提升到内存层
+ * - 同一批次中未命中的文本去重后只调用一次被包装模型的 embedAll，批次内重复的文本只推理一次
+ * - 返回的向量是缓存内容的副本，调用方就地归一化不会污染缓存
+ * - 命中和未命中按 {@link EmbeddingCaller} 分别统计
+ * - 磁盘层写入失败只记录日志，不影响向量化结果
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel, AutoCloseable {
+
+    private final EmbeddingModel delegate;
+    private final int maxEntries;
+    private final EmbeddingDiskCache diskCache;
+    private final Map<ContentHash, float[]> memoryCache;
+    private final Map<EmbeddingCaller, Counters> counters = new EnumMap<>(EmbeddingCaller.class);
+
+    /**
+     * @param delegate 被包装的模型
+     * @param maxEntries 内存层最多缓存的向量数
+     * @param diskCache 磁盘层，为 null 时只使用内存层
+     */
+    public CachingEmbeddingModel(EmbeddingModel delegate, int maxEntries, EmbeddingDiskCache diskCache) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("向量缓存条目数必须为正数: " + maxEntries);
+        }
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.diskCache = diskCache;
+        this.memoryCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ContentHash, float[]> eldest) {
+                return size() > CachingEmbeddingModel.this.maxEntries;
+            }
+        };
+        for (EmbeddingCaller caller : EmbeddingCaller.values()) {
+            counters.put(caller, new Counters());
+        }
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        Counters callerCounters = counters.get(EmbeddingCaller.current());
+        Embedding[] embeddings = new Embedding[textSegments.size()];
+        Map<ContentHash, List<Integer>> misses = new LinkedHashMap<>();
+        List<TextSegment> missSegments = new ArrayList<>();
+        for (int i = 0; i < embeddings.length; i++) {
+            TextSegment segment = textSegments.get(i);
+            ContentHash key = ContentHash.of(segment.text());
+            float[] vector = lookup(key, callerCounters);
+            if (vector != null) {
+                embeddings[i] = Embedding.from(vector.clone());
+                continue;
+            }
+            callerCounters.misses.increment();
+            misses.computeIfAbsent(key, k -> {
+                missSegments.add(segment);
+                return new ArrayList<>();
+            }).add(i);
+        }
+        if (misses.isEmpty()) {
+            return Response.from(Arrays.asList(embeddings));
+        }
+
+        Response<List<Embedding>> response = delegate.embedAll(missSegments);
+        List<Embedding> computed = response.content();
+        int index = 0;
+        for (Map.Entry<ContentHash, List<Integer>> miss : misses.entrySet()) {
+            float[] vector = computed.get(index++).vector();
+            store(miss.getKey(), vector);
+            for (int position : miss.getValue()) {
+                embeddings[position] = Embedding.from(vector.clone());
+            }
+        }
+        return Response.from(Arrays.asList(embeddings), response.tokenUsage());
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    private float[] lookup(ContentHash key, Counters callerCounters) {
+        float[] vector;
+        synchronized (memoryCache) {
+            vector = memoryCache.get(key);
+        }
+        if (vector != null) {
+            callerCounters.memoryHits.increment();
+            return vector;
+        }
+        if (diskCache == null) {
+            return null;
+        }
+        vector = diskCache.get(key);
+        if (vector != null) {
+            callerCounters.diskHits.increment();
+            synchronized (memoryCache) {
+                memoryCache.put(key, vector);
+            }
+        }
+        return vector;
+    }
+
+    private void store(ContentHash key, float[] vector) {
+        float[] copy = vector.clone();
+        synchronized (memoryCache) {
+            memoryCache.put(key, copy);
+        }
+        if (diskCache != null) {
+            try {
+                diskCache.put(key, copy);
+            } catch (IOException e) {
+                log.warn("写入向量缓存磁盘层失败", e);
+            }
+        }
+    }
+
+    /**
+     * 缓存统计
+     */
+    public CacheStats stats() {
+        int memoryEntries;
+        synchronized (memoryCache) {
+            memoryEntries = memoryCache.size();
+        }
+        Map<EmbeddingCaller, CallerStats> callers = new EnumMap<>(EmbeddingCaller.class);
+        counters.forEach((caller, callerCounters) -> callers.put(caller, callerCounters.snapshot()));
+        return new CacheStats(memoryEntries, diskCache == null ? 0 : diskCache.size(),
+                diskCache == null ? 0 : diskCache.mappedBytes(), callers);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (diskCache != null) {
+            diskCache.close();
+        }
+    }
+
+    private static final class Counters {
+        private final LongAdder memoryHits = new LongAdder();
+        private final LongAdder diskHits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        CallerStats snapshot() {
+            long memory = memoryHits.sum();
+            long disk = diskHits.sum();
+            long miss = misses.sum();
+            long total = memory + disk + miss;
+            return new CallerStats(memory, disk, miss, total == 0 ? 0.0 : (double) (memory + disk) / total);
+        }
+    }
+
+    public record CallerStats(long memoryHits, long diskHits, long misses, double hitRate) {}
+
+    public record CacheStats(int memoryEntries, int diskEntries, long diskMappedBytes, Map<EmbeddingCaller, CallerStats> callers) {}
+}
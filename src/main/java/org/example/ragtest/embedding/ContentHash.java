@@ -0,0 +1,36 @@
+package org.example.ragtest.embedding;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.regex.Pattern;
+
+/**
+ * 文本内容的 128 位哈希，作为向量缓存的键
+ * 哈希前先做规范化：Unicode NFC、去掉首尾空白、连续空白合并为一个空格；
+ * 分词器按空白切分，规范化前后的文本得到相同的向量
+ */
+public record ContentHash(long high, long low) {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    public static ContentHash of(String text) {
+        byte[] digest = md5().digest(normalize(text).getBytes(StandardCharsets.UTF_8));
+        ByteBuffer buffer = ByteBuffer.wrap(digest);
+        return new ContentHash(buffer.getLong(), buffer.getLong());
+    }
+
+    static String normalize(String text) {
+        return WHITESPACE.matcher(Normalizer.normalize(text, Normalizer.Form.NFC).strip()).replaceAll(" ");
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前 JVM 不支持 MD5", e);
+        }
+    }
+}
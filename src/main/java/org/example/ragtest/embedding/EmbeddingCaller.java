@@ -0,0 +1,43 @@
+package org.example.ragtest.embedding;
+
+import java.util.function.Supplier;
+
+/**
+ * 向量化调用方
+ * 通过线程局部变量标记当前线程上的向量化调用来自摄取还是查询，用于分别统计缓存命中率；
+ * 未标记的调用（检索器、查询服务等）视为查询
+ */
+public enum EmbeddingCaller {
+
+    /**
+     * 用户查询
+     */
+    QUERY,
+
+    /**
+     * 文档摄取
+     */
+    INGESTION;
+
+    private static final ThreadLocal<EmbeddingCaller> CURRENT = ThreadLocal.withInitial(() -> QUERY);
+
+    /**
+     * 当前线程的调用方
+     */
+    public static EmbeddingCaller current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 以当前调用方身份执行，结束后恢复原来的调用方
+     */
+    public <T> T call(Supplier<T> action) {
+        EmbeddingCaller previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return action.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.example.ragtest.embedding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.support.MappedRowFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 向量缓存的磁盘层
+ * 定长行内存映射文件（{@link MappedRowFile}），每行是内容哈希（两个 long）加原始向量，
+ * 写满 capacity 行后从第 0 行开始循环覆盖最早写入的行
+ *
+ * 实现要点：
+ * - 文件头记录魔数、版本、维度、容量和累计写入行数，打开时按累计写入行数扫描行首的哈希重建索引
+ * - 文件头与当前模型维度或容量不一致时丢弃原有内容重新开始，不会返回其他模型的向量
+ * - 覆盖一行时先清零哈希、再写向量、最后写哈希和累计行数，异常退出时未写完的行在重建索引时被跳过
+ * - 不主动刷盘，由操作系统回写，关闭时刷写；缓存丢失只导致重新推理
+ */
+@Slf4j
+public final class EmbeddingDiskCache implements Closeable {
+
+    private static final int MAGIC = 0x52414745;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_DIMENSION = 8;
+    private static final int HEADER_CAPACITY = 12;
+    private static final int HEADER_WRITTEN = 16;
+    private static final int KEY_BYTES = 2 * Long.BYTES;
+    private static final int ROWS_PER_CHUNK = 4096;
+
+    private final Path path;
+    private final int dimension;
+    private final int capacity;
+    private final MappedRowFile file;
+    private final Map<ContentHash, Integer> rows = new HashMap<>();
+    private long written;
+
+    /**
+     * @param directory 缓存目录，不存在时创建
+     * @param modelName 模型名，与维度一起组成文件名
+     * @param dimension 向量维度
+     * @param capacity 最多缓存的向量数
+     */
+    public EmbeddingDiskCache(Path directory, String modelName, int dimension, int capacity) {
+        if (dimension <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("向量缓存维度和容量必须为正数: " + dimension + "/" + capacity);
+        }
+        this.path = directory.resolve(modelName + "-" + dimension + ".cache");
+        this.dimension = dimension;
+        this.capacity = capacity;
+        try {
+            Files.createDirectories(directory);
+            this.file = new MappedRowFile(path, HEADER_BYTES, KEY_BYTES + dimension * Float.BYTES, ROWS_PER_CHUNK);
+            load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("打开向量缓存文件失败: " + path, e);
+        }
+        log.info("向量缓存磁盘层已打开: 文件={}, 已缓存={}, 容量={}", path, rows.size(), capacity);
+    }
+
+    private void load() throws IOException {
+        ByteBuffer header = file.header();
+        if (header.getInt(HEADER_MAGIC) != MAGIC || header.getInt(HEADER_VERSION) != VERSION
+                || header.getInt(HEADER_DIMENSION) != dimension || header.getInt(HEADER_CAPACITY) != capacity) {
+            if (header.getInt(HEADER_MAGIC) != 0) {
+                log.warn("向量缓存文件与当前配置不一致，丢弃原有内容: {}", path);
+            }
+            header.putInt(HEADER_MAGIC, MAGIC);
+            header.putInt(HEADER_VERSION, VERSION);
+            header.putInt(HEADER_DIMENSION, dimension);
+            header.putInt(HEADER_CAPACITY, capacity);
+            header.putLong(HEADER_WRITTEN, 0);
+        }
+        written = header.getLong(HEADER_WRITTEN);
+        int rowCount = (int) Math.min(written, capacity);
+        file.ensureMapped(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            ContentHash key = key(row);
+            if (key.high() != 0 || key.low() != 0) {
+                rows.put(key, row);
+            }
+        }
+    }
+
+    /**
+     * @return 未缓存时返回 null
+     */
+    public synchronized float[] get(ContentHash key) {
+        Integer row = rows.get(key);
+        if (row == null) {
+            return null;
+        }
+        ByteBuffer chunk = file.chunk(row);
+        int offset = file.offset(row) + KEY_BYTES;
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = chunk.getFloat(offset + i * Float.BYTES);
+        }
+        return vector;
+    }
+
+    /**
+     * 写入一个向量，已缓存或维度不一致时忽略
+     */
+    public synchronized void put(ContentHash key, float[] vector) throws IOException {
+        if (vector.length != dimension || rows.containsKey(key)) {
+            return;
+        }
+        int row = (int) (written % capacity);
+        file.ensureMapped(row + 1);
+        ByteBuffer chunk = file.chunk(row);
+        int offset = file.offset(row);
+        if (written >= capacity) {
+            rows.remove(key(row));
+            chunk.putLong(offset, 0);
+            chunk.putLong(offset + Long.BYTES, 0);
+        }
+        for (int i = 0; i < dimension; i++) {
+            chunk.putFloat(offset + KEY_BYTES + i * Float.BYTES, vector[i]);
+        }
+        chunk.putLong(offset, key.high());
+        chunk.putLong(offset + Long.BYTES, key.low());
+        rows.put(key, row);
+        written++;
+        file.header().putLong(HEADER_WRITTEN, written);
+    }
+
+    public synchronized int size() {
+        return rows.size();
+    }
+
+    public long mappedBytes() {
+        return file.mappedBytes();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        file.close();
+    }
+
+    private ContentHash key(int row) {
+        ByteBuffer chunk = file.chunk(row);
+        int offset = file.offset(row);
+        return new ContentHash(chunk.getLong(offset), chunk.getLong(offset + Long.BYTES));
+    }
+}
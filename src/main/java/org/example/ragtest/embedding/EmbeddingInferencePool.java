@@ -0,0 +1,209 @@
+package org.example.ragtest.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 带优先级通道的有界推理线程池
+ * 向量化调用不再在 Tomcat 或摄取线程上直接执行，而是按 {@link EmbeddingCaller} 放入查询或摄取通道，
+ * 由固定数量的推理线程执行，大批量摄取不会占满推理资源而拖慢查询
+ *
+ * 实现要点：
+ * - 空闲的推理线程总是先取查询通道的任务
+ * - 摄取任务最多同时占用 workers - reservedQueryWorkers 个线程，其余线程只留给查询
+ * - 两个通道的队列都有上限：查询通道满时立即失败，摄取通道满时调用方阻塞等待，形成背压
+ * - 调用方线程阻塞到任务完成，对外仍是同步的 EmbeddingModel
+ */
+@Slf4j
+public class EmbeddingInferencePool implements EmbeddingModel, AutoCloseable {
+
+    private final EmbeddingModel delegate;
+    private final int ingestionWorkers;
+    private final int queueCapacity;
+    private final Map<EmbeddingCaller, Deque<Task>> lanes = new EnumMap<>(EmbeddingCaller.class);
+    private final Map<EmbeddingCaller, LongAdder> completed = new EnumMap<>(EmbeddingCaller.class);
+    private final Map<EmbeddingCaller, LongAdder> waitNanos = new EnumMap<>(EmbeddingCaller.class);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition taskAvailable = lock.newCondition();
+    private final Condition ingestionNotFull = lock.newCondition();
+    private final List<Thread> workers = new ArrayList<>();
+    private int runningIngestion;
+    private boolean closed;
+
+    /**
+     * @param delegate 被包装的模型，必须支持并发调用
+     * @param workers 推理线程数
+     * @param reservedQueryWorkers 只执行查询的线程数，小于 workers
+     * @param queueCapacity 每个通道最多排队的任务数
+     */
+    public EmbeddingInferencePool(EmbeddingModel delegate, int workers, int reservedQueryWorkers, int queueCapacity) {
+        if (workers <= 0 || reservedQueryWorkers < 0 || reservedQueryWorkers >= workers || queueCapacity <= 0) {
+            throw new IllegalArgumentException("推理线程池参数无效: 线程数=" + workers
+                    + ", 查询保留线程数=" + reservedQueryWorkers + ", 队列容量=" + queueCapacity);
+        }
+        this.delegate = delegate;
+        this.ingestionWorkers = workers - reservedQueryWorkers;
+        this.queueCapacity = queueCapacity;
+        for (EmbeddingCaller caller : EmbeddingCaller.values()) {
+            lanes.put(caller, new ArrayDeque<>());
+            completed.put(caller, new LongAdder());
+            waitNanos.put(caller, new LongAdder());
+        }
+        for (int i = 0; i < workers; i++) {
+            Thread thread = new Thread(this::workLoop, "embedding-inference-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            this.workers.add(thread);
+        }
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        EmbeddingCaller caller = EmbeddingCaller.current();
+        Task task = new Task(caller, textSegments, System.nanoTime(), new CompletableFuture<>());
+        lock.lock();
+        try {
+            Deque<Task> lane = lanes.get(caller);
+            while (!closed && lane.size() >= queueCapacity) {
+                if (caller == EmbeddingCaller.QUERY) {
+                    throw new IllegalStateException("查询推理队列已满: " + queueCapacity);
+                }
+                ingestionNotFull.awaitUninterruptibly();
+            }
+            if (closed) {
+                throw new IllegalStateException("推理线程池已关闭");
+            }
+            lane.addLast(task);
+            taskAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            return task.future().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待向量化推理被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("向量化推理失败", e.getCause());
+        }
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    private void workLoop() {
+        while (true) {
+            Task task;
+            lock.lock();
+            try {
+                while ((task = next()) == null) {
+                    if (closed) {
+                        return;
+                    }
+                    taskAvailable.awaitUninterruptibly();
+                }
+            } finally {
+                lock.unlock();
+            }
+            waitNanos.get(task.caller()).add(System.nanoTime() - task.submittedNanos());
+            try {
+                task.future().complete(delegate.embedAll(task.segments()));
+            } catch (RuntimeException e) {
+                task.future().completeExceptionally(e);
+            } finally {
+                completed.get(task.caller()).increment();
+                if (task.caller() == EmbeddingCaller.INGESTION) {
+                    lock.lock();
+                    try {
+                        runningIngestion--;
+                        taskAvailable.signal();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 取出下一个可执行的任务，调用方持有锁
+     */
+    private Task next() {
+        Task task = lanes.get(EmbeddingCaller.QUERY).pollFirst();
+        if (task != null) {
+            return task;
+        }
+        if (runningIngestion < ingestionWorkers) {
+            task = lanes.get(EmbeddingCaller.INGESTION).pollFirst();
+            if (task != null) {
+                runningIngestion++;
+                ingestionNotFull.signal();
+            }
+        }
+        return task;
+    }
+
+    /**
+     * 推理线程池统计
+     */
+    public PoolStats stats() {
+        Map<EmbeddingCaller, LaneStats> laneStats = new EnumMap<>(EmbeddingCaller.class);
+        lock.lock();
+        try {
+            for (EmbeddingCaller caller : EmbeddingCaller.values()) {
+                long count = completed.get(caller).sum();
+                laneStats.put(caller, new LaneStats(lanes.get(caller).size(), count,
+                        count == 0 ? 0.0 : waitNanos.get(caller).sum() / 1_000_000.0 / count));
+            }
+            return new PoolStats(workers.size(), ingestionWorkers, runningIngestion, laneStats);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            for (Deque<Task> lane : lanes.values()) {
+                lane.forEach(task -> task.future().completeExceptionally(new IllegalStateException("推理线程池已关闭")));
+                lane.clear();
+            }
+            taskAvailable.signalAll();
+            ingestionNotFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Task(EmbeddingCaller caller, List<TextSegment> segments, long submittedNanos,
+                        CompletableFuture<Response<List<Embedding>>> future) {}
+
+    /**
+     * @param averageWaitMillis 任务从提交到开始执行的平均排队时间
+     */
+    public record LaneStats(int queued, long completed, double averageWaitMillis) {}
+
+    public record PoolStats(int workers, int ingestionWorkers, int runningIngestion, Map<EmbeddingCaller, LaneStats> lanes) {}
+}
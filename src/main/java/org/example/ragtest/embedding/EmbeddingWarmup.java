@@ -0,0 +1,159 @@
+package org.example.ragtest.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 向量模型预热与就绪门控
+ * 启动后的第一批查询要承担 ONNX 会话初始化和 JIT 编译的开销；
+ * 这里在上下文刷新完成后用有代表性的中英文输入执行推理和查询微批，初始知识摄取完成后再预热向量检索，
+ * 两步都完成前就绪状态为拒绝流量，负载均衡器不会把请求转发到冷实例或还没有数据的实例
+ *
+ * 实现要点：
+ * - 直接调用推理线程池，不经过向量缓存，磁盘缓存中已有预热文本时也会真正执行推理
+ * - 单条和批量输入各执行若干轮，覆盖批大小为 1 的查询路径和批量摄取路径
+ * - 检索预热放在初始摄取之后，首次启动时存储中已有数据，检索路径不会因为空存储直接返回而跳过
+ * - 就绪状态同时以 Spring Boot 的 {@link ReadinessState} 事件发布；Boot 在应用就绪时会发布接受流量，
+ *   门控未通过时立即重新发布拒绝流量
+ * - 预热失败时保持未就绪并记录原因，由就绪检查暴露
+ */
+@Slf4j
+@Component
+public class EmbeddingWarmup {
+
+    private static final List<String> SAMPLE_TEXTS = List.of(
+            "什么是 RAG？检索增强生成如何结合向量检索和大语言模型？",
+            "Spring Boot 的自动配置是如何工作的？",
+            "How does the garbage collector manage memory in the Java virtual machine?",
+            "Explain the difference between HNSW and IVF approximate nearest neighbour indexes.",
+            """
+            Java 是一种广泛使用的面向对象编程语言，主要特点包括平台无关性、自动内存管理和丰富的标准库。
+            Spring Boot 简化了 Spring 应用的配置和部署，提供自动配置、起步依赖和嵌入式服务器。
+            Retrieval-augmented generation retrieves relevant passages from a vector store and passes them
+            to a language model as context, so answers stay grounded in the indexed documents.
+            """);
+
+    private final EmbeddingInferencePool inferencePool;
+    private final QueryEmbeddingBatcher queryEmbeddingBatcher;
+    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final int iterations;
+    private volatile Embedding queryEmbedding;
+    private volatile WarmupStatus status = new WarmupStatus(false, false, 0, null);
+
+    public EmbeddingWarmup(
+            EmbeddingInferencePool inferencePool,
+            QueryEmbeddingBatcher queryEmbeddingBatcher,
+            EmbeddingStore<TextSegment> embeddingStore,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${rag.embedding.warmup.enabled:true}") boolean enabled,
+            @Value("${rag.embedding.warmup.iterations:3}") int iterations) {
+        this.inferencePool = inferencePool;
+        this.queryEmbeddingBatcher = queryEmbeddingBatcher;
+        this.embeddingStore = embeddingStore;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.iterations = Math.max(1, iterations);
+    }
+
+    /**
+     * 在应用就绪前同步预热模型推理和查询微批
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void warmUp() {
+        AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+        if (!enabled) {
+            return;
+        }
+        log.info("开始预热向量模型，轮数: {}", iterations);
+        long start = System.currentTimeMillis();
+        try {
+            List<TextSegment> batch = SAMPLE_TEXTS.stream().map(TextSegment::from).toList();
+            for (int i = 0; i < iterations; i++) {
+                for (TextSegment segment : batch) {
+                    inferencePool.embedAll(List.of(segment));
+                }
+                EmbeddingCaller.INGESTION.call(() -> inferencePool.embedAll(batch));
+            }
+            queryEmbedding = queryEmbeddingBatcher.embed(SAMPLE_TEXTS.get(0));
+        } catch (RuntimeException e) {
+            fail(System.currentTimeMillis() - start, false, e);
+            return;
+        }
+        status = new WarmupStatus(false, false, System.currentTimeMillis() - start, null);
+        log.info("向量模型预热完成，耗时: {}ms", status.warmupMillis());
+    }
+
+    /**
+     * 初始知识摄取完成（或因存储中已有数据而跳过）后调用：预热向量检索，通过后发布就绪
+     */
+    public void initialDataLoaded() {
+        WarmupStatus current = status;
+        if (current.error() != null) {
+            status = new WarmupStatus(false, true, current.warmupMillis(), current.error());
+            return;
+        }
+        long start = System.currentTimeMillis();
+        if (enabled) {
+            try {
+                Embedding query = queryEmbedding != null ? queryEmbedding : queryEmbeddingBatcher.embed(SAMPLE_TEXTS.get(0));
+                for (int i = 0; i < iterations; i++) {
+                    embeddingStore.search(EmbeddingSearchRequest.builder()
+                            .queryEmbedding(query)
+                            .maxResults(5)
+                            .build());
+                }
+            } catch (RuntimeException e) {
+                fail(current.warmupMillis() + System.currentTimeMillis() - start, true, e);
+                return;
+            }
+        }
+        status = new WarmupStatus(true, true, current.warmupMillis() + System.currentTimeMillis() - start, null);
+        AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.ACCEPTING_TRAFFIC);
+        log.info("初始数据加载和检索预热完成，实例就绪，预热总耗时: {}ms", status.warmupMillis());
+    }
+
+    /**
+     * Boot 在应用就绪时无条件发布接受流量，门控未通过时改回拒绝流量
+     */
+    @EventListener
+    public void onReadinessChange(AvailabilityChangeEvent<ReadinessState> event) {
+        if (event.getState() == ReadinessState.ACCEPTING_TRAFFIC && !status.ready()) {
+            log.info("预热或初始数据加载尚未完成，保持拒绝流量");
+            AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+        }
+    }
+
+    /**
+     * 当前预热状态
+     */
+    public WarmupStatus status() {
+        return status;
+    }
+
+    private void fail(long warmupMillis, boolean initialDataLoaded, RuntimeException e) {
+        status = new WarmupStatus(false, initialDataLoaded, warmupMillis, e.getMessage());
+        log.error("向量模型预热失败，实例保持未就绪", e);
+    }
+
+    /**
+     * @param ready 是否已完成预热和初始数据加载
+     * @param initialDataLoaded 初始知识摄取是否已完成
+     * @param warmupMillis 预热耗时
+     * @param error 预热失败原因，成功时为 null
+     */
+    public record WarmupStatus(boolean ready, boolean initialDataLoaded, long warmupMillis, String error) {}
+}
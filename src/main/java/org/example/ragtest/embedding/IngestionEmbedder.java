@@ -0,0 +1,107 @@
+package org.example.ragtest.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 摄取阶段的批量并行向量化
+ * 将文本段按固定大小分批，各批次以摄取身份并行提交给向量模型，结果按原顺序拼接，
+ * 调用方再按文档用 addAll 批量写入存储
+ *
+ * 实现要点：
+ * - 提交线程数只决定同时在途的批次数，实际推理并发由推理线程池的摄取通道限制，查询不受影响
+ * - 每个批次单独经过向量缓存，已缓存的文本段不会重复推理
+ * - 任一批次失败时整个调用失败，不写入部分结果
+ * - 记录最近一次的文本段数、批次数和吞吐（段/秒），用于调整批大小
+ */
+@Slf4j
+@Service
+public class IngestionEmbedder {
+
+    private final EmbeddingModel embeddingModel;
+    private final int batchSize;
+    private final ExecutorService executor;
+    private volatile IngestionStats lastRun;
+
+    public IngestionEmbedder(
+            EmbeddingModel embeddingModel,
+            @Value("${rag.embedding.ingestion.batch-size:32}") int batchSize,
+            @Value("${rag.embedding.ingestion.parallelism:0}") int parallelism) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("摄取向量化批大小必须为正数: " + batchSize);
+        }
+        this.embeddingModel = embeddingModel;
+        this.batchSize = batchSize;
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger index = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ingestion-embedder-" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("摄取向量化: 批大小={}, 并行批次数={}", batchSize, threads);
+    }
+
+    /**
+     * 向量化全部文本段
+     * @return 与输入顺序一致的向量
+     */
+    public List<Embedding> embedAll(List<TextSegment> segments) {
+        if (segments.isEmpty()) {
+            return List.of();
+        }
+        long start = System.nanoTime();
+        List<CompletableFuture<List<Embedding>>> batches = new ArrayList<>();
+        for (int from = 0; from < segments.size(); from += batchSize) {
+            List<TextSegment> batch = segments.subList(from, Math.min(from + batchSize, segments.size()));
+            batches.add(CompletableFuture.supplyAsync(
+                    () -> EmbeddingCaller.INGESTION.call(() -> embeddingModel.embedAll(batch).content()), executor));
+        }
+        List<Embedding> embeddings = new ArrayList<>(segments.size());
+        try {
+            for (CompletableFuture<List<Embedding>> batch : batches) {
+                embeddings.addAll(batch.join());
+            }
+        } catch (CompletionException e) {
+            batches.forEach(batch -> batch.cancel(false));
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+        long elapsedNanos = Math.max(1, System.nanoTime() - start);
+        IngestionStats stats = new IngestionStats(segments.size(), batches.size(), batchSize,
+                elapsedNanos / 1_000_000, segments.size() * 1_000_000_000.0 / elapsedNanos);
+        lastRun = stats;
+        log.info("摄取向量化完成: 文本段数={}, 批次数={}, 耗时={}ms, 吞吐={} 段/秒",
+                stats.segments(), stats.batches(), stats.elapsedMillis(), String.format("%.1f", stats.segmentsPerSecond()));
+        return embeddings;
+    }
+
+    /**
+     * 最近一次摄取向量化的统计，还没有摄取时返回 null
+     */
+    public IngestionStats lastRun() {
+        return lastRun;
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    public record IngestionStats(int segments, int batches, int batchSize, long elapsedMillis, double segmentsPerSecond) {}
+}
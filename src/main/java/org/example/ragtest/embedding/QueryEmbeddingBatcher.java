@@ -0,0 +1,165 @@
+package org.example.ragtest.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 查询向量化微批处理
+ * 并发到达的查询各自只有一条文本，逐条推理时 ONNX 运行时执行的都是批大小为 1 的推理；
+ * 这里把一个短时间窗口内到达的查询合并为一次 embedAll，再分别完成每个请求的 Future
+ *
+ * 实现要点：
+ * - 单个调度线程从队列取出第一个请求后，最多再等待 max-wait 毫秒或凑满 max-batch 条即执行
+ * - 推理期间新到达的请求在队列中积累，下一批直接取走，负载越高批次越大，单个请求增加的延迟不超过 max-wait
+ * - 推理失败时同一批次的请求都以该异常结束；关闭时排队中和关闭过程中到达的请求都以异常结束，不会一直等待
+ * - 未启用时直接调用模型，行为与逐条推理相同
+ */
+@Slf4j
+@Service
+public class QueryEmbeddingBatcher {
+
+    private final EmbeddingModel embeddingModel;
+    private final boolean enabled;
+    private final long maxWaitNanos;
+    private final int maxBatch;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService dispatcher;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private volatile boolean closed;
+
+    public QueryEmbeddingBatcher(
+            EmbeddingModel embeddingModel,
+            @Value("${rag.embedding.batching.enabled:true}") boolean enabled,
+            @Value("${rag.embedding.batching.max-wait-ms:2}") long maxWaitMs,
+            @Value("${rag.embedding.batching.max-batch:32}") int maxBatch) {
+        if (maxWaitMs < 0 || maxBatch <= 0) {
+            throw new IllegalArgumentException("微批等待时间不能为负数，批大小必须为正数: " + maxWaitMs + "/" + maxBatch);
+        }
+        this.embeddingModel = embeddingModel;
+        this.enabled = enabled;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.maxBatch = maxBatch;
+        this.dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "query-embedding-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (enabled) {
+            dispatcher.execute(this::dispatchLoop);
+            log.info("启用查询向量化微批: 最长等待={}ms, 最大批大小={}", maxWaitMs, maxBatch);
+        }
+    }
+
+    /**
+     * 向量化一条查询，阻塞到所在批次推理完成
+     */
+    public Embedding embed(String text) {
+        requests.increment();
+        if (!enabled) {
+            batches.increment();
+            return embeddingModel.embed(text).content();
+        }
+        if (closed) {
+            throw new IllegalStateException("查询向量化微批已关闭");
+        }
+        Pending pending = new Pending(TextSegment.from(text), new CompletableFuture<>());
+        queue.add(pending);
+        // close() 先置位再清空队列：在检查之后、清空之后才入队的请求不会再被取走，由这里自行结束
+        if (closed && queue.remove(pending)) {
+            pending.future().completeExceptionally(new IllegalStateException("查询向量化微批已关闭"));
+        }
+        try {
+            return pending.future().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待查询向量化被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("查询向量化失败", e.getCause());
+        }
+    }
+
+    private void dispatchLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (!closed) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatch) {
+                    queue.drainTo(batch, maxBatch - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatch || remaining <= 0) {
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(pending -> pending.future().completeExceptionally(new IllegalStateException("查询向量化微批已关闭")));
+                return;
+            }
+            execute(batch);
+            batch.clear();
+        }
+    }
+
+    private void execute(List<Pending> batch) {
+        batches.increment();
+        try {
+            List<Embedding> embeddings = embeddingModel.embedAll(batch.stream().map(Pending::segment).toList()).content();
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future().complete(embeddings.get(i));
+            }
+        } catch (RuntimeException e) {
+            log.warn("查询向量化批次失败，批大小: {}", batch.size(), e);
+            batch.forEach(pending -> pending.future().completeExceptionally(e));
+        }
+    }
+
+    /**
+     * 微批统计
+     */
+    public BatcherStats stats() {
+        long requestCount = requests.sum();
+        long batchCount = batches.sum();
+        return new BatcherStats(enabled, requestCount, batchCount,
+                batchCount == 0 ? 0.0 : (double) requestCount / batchCount, queue.size());
+    }
+
+    @PreDestroy
+    public void close() {
+        closed = true;
+        dispatcher.shutdownNow();
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future().completeExceptionally(new IllegalStateException("查询向量化微批已关闭"));
+        }
+    }
+
+    private record Pending(TextSegment segment, CompletableFuture<Embedding> future) {}
+
+    public record BatcherStats(boolean enabled, long requests, long batches, double averageBatchSize, int queued) {}
+}
@@ -13,6 +13,7 @@ import org.example.ragtest.retrieval.RetrievalAugmentorStrategy;
 import org.example.ragtest.retrieval.RetrievalAugmentorType;
 import org.example.ragtest.retrieval.query.QueryTransformerFactory;
 import org.example.ragtest.retrieval.query.QueryTransformerStrategy;
+import org.example.ragtest.store.DiversifiedSearchEmbeddingStore;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -48,6 +49,12 @@ public class AdvancedRetrievalAugmentorStrategy implements RetrievalAugmentorStr
     @Value("${rag.query.transformer.enabled:false}")
     private boolean queryTransformerEnabled;
     
+    @Value("${rag.retrieval.mmr.lambda:1.0}")
+    private double mmrLambda;
+    
+    @Value("${rag.retrieval.mmr.fetch-factor:4}")
+    private int mmrFetchFactor;
+    
     @Override
     public RetrievalAugmentor getAugmentor() {
         log.info("创建高级检索增强器，最大结果数: {}, 最小分数: {}, 查询转换器: {}", 
@@ -55,7 +62,7 @@ public class AdvancedRetrievalAugmentorStrategy implements RetrievalAugmentorStr
         
         // 创建内容检索器（检索更多结果）
         EmbeddingStoreContentRetriever contentRetriever = EmbeddingStoreContentRetriever.builder()
-                .embeddingStore(embeddingStore)
+                .embeddingStore(DiversifiedSearchEmbeddingStore.wrap(embeddingStore, mmrLambda, mmrFetchFactor))
                 .embeddingModel(embeddingModel)
                 .maxResults(maxResults)
                 .minScore(minScore)
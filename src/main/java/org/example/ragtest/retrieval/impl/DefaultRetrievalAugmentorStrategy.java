@@ -10,6 +10,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.ragtest.retrieval.RetrievalAugmentorStrategy;
 import org.example.ragtest.retrieval.RetrievalAugmentorType;
+import org.example.ragtest.store.DiversifiedSearchEmbeddingStore;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -36,13 +37,19 @@ public class DefaultRetrievalAugmentorStrategy implements RetrievalAugmentorStra
     @Value("${rag.retrieval.min-score:0.6}")
     private double minScore;
     
+    @Value("${rag.retrieval.mmr.lambda:1.0}")
+    private double mmrLambda;
+    
+    @Value("${rag.retrieval.mmr.fetch-factor:4}")
+    private int mmrFetchFactor;
+    
     @Override
     public RetrievalAugmentor getAugmentor() {
         log.info("创建默认检索增强器，最大结果数: {}, 最小分数: {}", maxResults, minScore);
         
         // 创建内容检索器
         EmbeddingStoreContentRetriever contentRetriever = EmbeddingStoreContentRetriever.builder()
-                .embeddingStore(embeddingStore)
+                .embeddingStore(DiversifiedSearchEmbeddingStore.wrap(embeddingStore, mmrLambda, mmrFetchFactor))
                 .embeddingModel(embeddingModel)
                 .maxResults(maxResults)
                 .minScore(minScore)
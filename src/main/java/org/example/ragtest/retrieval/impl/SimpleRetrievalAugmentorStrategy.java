@@ -10,6 +10,9 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.ragtest.retrieval.RetrievalAugmentorStrategy;
 import org.example.ragtest.retrieval.RetrievalAugmentorType;
+import org.example.ragtest.store.DiversifiedSearchEmbeddingStore;
+import org.example.ragtest.store.TruncatedSearchEmbeddingStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 /**
@@ -32,12 +35,29 @@ public class SimpleRetrievalAugmentorStrategy implements RetrievalAugmentorStrat
     private static final int MAX_RESULTS = 3;
     private static final double MIN_SCORE = 0.7;
     
+    /**
+     * 快速响应：先按向量前缀维度粗排，再对候选按完整维度重打分
+     */
+    @Value("${rag.retrieval.simple.coarse-dimension:128}")
+    private int coarseDimension;
+    
+    @Value("${rag.retrieval.simple.coarse-oversample:8}")
+    private int coarseOversample;
+    
+    @Value("${rag.retrieval.mmr.lambda:1.0}")
+    private double mmrLambda;
+    
+    @Value("${rag.retrieval.mmr.fetch-factor:4}")
+    private int mmrFetchFactor;
+    
     @Override
     public RetrievalAugmentor getAugmentor() {
-        log.info("创建简单检索增强器，最大结果数: {}, 最小分数: {}", MAX_RESULTS, MIN_SCORE);
+        log.info("创建简单检索增强器，最大结果数: {}, 最小分数: {}, 粗排维度: {}", MAX_RESULTS, MIN_SCORE, coarseDimension);
         
         EmbeddingStoreContentRetriever contentRetriever = EmbeddingStoreContentRetriever.builder()
-                .embeddingStore(embeddingStore)
+                .embeddingStore(DiversifiedSearchEmbeddingStore.wrap(
+                        TruncatedSearchEmbeddingStore.wrap(embeddingStore, coarseDimension, coarseOversample),
+                        mmrLambda, mmrFetchFactor))
                 .embeddingModel(embeddingModel)
                 .maxResults(MAX_RESULTS)
                 .minScore(MIN_SCORE)
@@ -55,8 +75,8 @@ public class SimpleRetrievalAugmentorStrategy implements RetrievalAugmentorStrat
     
     @Override
     public String getDescription() {
-        return String.format("简单检索增强器 (最大结果: %d, 最小分数: %.2f, 快速响应)", 
-                MAX_RESULTS, MIN_SCORE);
+        return String.format("简单检索增强器 (最大结果: %d, 最小分数: %.2f, 粗排维度: %d, 快速响应)", 
+                MAX_RESULTS, MIN_SCORE, coarseDimension);
     }
     
     @Override
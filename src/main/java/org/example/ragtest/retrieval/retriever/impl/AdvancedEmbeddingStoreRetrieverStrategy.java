@@ -9,6 +9,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.ragtest.retrieval.retriever.ContentRetrieverStrategy;
 import org.example.ragtest.retrieval.retriever.ContentRetrieverType;
+import org.example.ragtest.store.DiversifiedSearchEmbeddingStore;
+import org.example.ragtest.store.TruncatedSearchEmbeddingStore;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Component;
@@ -46,6 +48,18 @@ public class AdvancedEmbeddingStoreRetrieverStrategy implements ContentRetriever
     @Value("${rag.retrieval.dynamic.enabled:false}")
     private boolean dynamicEnabled;
     
+    @Value("${rag.retrieval.advanced.coarse-dimension:0}")
+    private int coarseDimension;
+    
+    @Value("${rag.retrieval.advanced.coarse-oversample:4}")
+    private int coarseOversample;
+    
+    @Value("${rag.retrieval.mmr.lambda:1.0}")
+    private double mmrLambda;
+    
+    @Value("${rag.retrieval.mmr.fetch-factor:4}")
+    private int mmrFetchFactor;
+    
     @Override
     public ContentRetriever getRetriever() {
         log.info("创建高级嵌入式存储内容检索器，最大结果数: {}, 最小分数: {}, 动态配置: {}", 
@@ -53,7 +67,9 @@ public class AdvancedEmbeddingStoreRetrieverStrategy implements ContentRetriever
         
         EmbeddingStoreContentRetriever.EmbeddingStoreContentRetrieverBuilder builder = 
                 EmbeddingStoreContentRetriever.builder()
-                        .embeddingStore(embeddingStore)
+                        .embeddingStore(DiversifiedSearchEmbeddingStore.wrap(
+                                TruncatedSearchEmbeddingStore.wrap(embeddingStore, coarseDimension, coarseOversample),
+                                mmrLambda, mmrFetchFactor))
                         .embeddingModel(embeddingModel)
                         .maxResults(maxResults)
                         .minScore(minScore);
@@ -9,6 +9,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.ragtest.retrieval.retriever.ContentRetrieverStrategy;
 import org.example.ragtest.retrieval.retriever.ContentRetrieverType;
+import org.example.ragtest.store.DiversifiedSearchEmbeddingStore;
+import org.example.ragtest.store.TruncatedSearchEmbeddingStore;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -40,12 +42,26 @@ public class EmbeddingStoreContentRetrieverStrategy implements ContentRetrieverS
     @Value("${rag.retrieval.min-score:0.6}")
     private double minScore;
     
+    @Value("${rag.retrieval.coarse-dimension:0}")
+    private int coarseDimension;
+    
+    @Value("${rag.retrieval.coarse-oversample:4}")
+    private int coarseOversample;
+    
+    @Value("${rag.retrieval.mmr.lambda:1.0}")
+    private double mmrLambda;
+    
+    @Value("${rag.retrieval.mmr.fetch-factor:4}")
+    private int mmrFetchFactor;
+    
     @Override
     public ContentRetriever getRetriever() {
-        log.info("创建嵌入式存储内容检索器，最大结果数: {}, 最小分数: {}", maxResults, minScore);
+        log.info("创建嵌入式存储内容检索器，最大结果数: {}, 最小分数: {}, 粗排维度: {}", maxResults, minScore, coarseDimension);
         
         return EmbeddingStoreContentRetriever.builder()
-                .embeddingStore(embeddingStore)
+                .embeddingStore(DiversifiedSearchEmbeddingStore.wrap(
+                        TruncatedSearchEmbeddingStore.wrap(embeddingStore, coarseDimension, coarseOversample),
+                        mmrLambda, mmrFetchFactor))
                 .embeddingModel(embeddingModel)
                 .maxResults(maxResults)
                 .minScore(minScore)
@@ -1,56 +1,115 @@
 package org.example.ragtest.service;
 
+import cn.hutool.crypto.digest.DigestUtil;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.store.embedding.EmbeddingStore;
-import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.ragtest.loader.DocumentLoaderFactory;
 import org.example.ragtest.loader.DocumentLoaderStrategy;
 import org.example.ragtest.loader.DocumentLoaderType;
+import org.example.ragtest.store.EmbeddingStoreNamespaces;
+import org.example.ragtest.store.ManagedEmbeddingStore;
 import org.example.ragtest.splitter.DocumentSplitterFactory;
 import org.example.ragtest.splitter.DocumentSplitterStrategy;
 import org.example.ragtest.splitter.DocumentSplitterType;
 import org.example.ragtest.documentTransformer.DocumentTransformerFactory;
 import org.example.ragtest.documentTransformer.DocumentTransformerStrategy;
 import org.example.ragtest.documentTransformer.DocumentTransformerType;
+import org.example.ragtest.embedding.IngestionEmbedder;
 import org.example.ragtest.textSegmentTransformer.TextSegmentTransformerFactory;
 import org.example.ragtest.textSegmentTransformer.TextSegmentTransformerStrategy;
 import org.springframework.stereotype.Service;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.example.ragtest.store.ManagedEmbeddingStore.DOCUMENT_ID_KEY;
 
 /**
  * 文档处理服务
  * 负责文档的加载、转换、分割和向量化存储
  * 使用策略模式和工厂模式管理不同类型的文档加载器、转换器、分割器和文本段转换器
+ *
+ * 每个文档以 document_id 元数据标识（来源路径、URL 或调用方指定的 id，都没有时取文本的 SHA-256），
+ * 摄取按文档整体替换已有的文本段，重复摄取同一来源不会产生重复数据
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class DocumentService {
 
-    private final EmbeddingModel embeddingModel;
+    private final IngestionEmbedder ingestionEmbedder;
     private final EmbeddingStore<TextSegment> embeddingStore;
     private final DocumentLoaderFactory loaderFactory;
     private final DocumentSplitterFactory splitterFactory;
     private final DocumentTransformerFactory transformerFactory;
     private final TextSegmentTransformerFactory textSegmentTransformerFactory;
+    private final EmbeddingStoreNamespaces namespaces;
 
     /**
      * 摄取文本到向量存储（使用默认分割器）
      * @param text 文本内容
      */
     public void ingestDocument(String text) {
-        log.info("开始摄取文档，文本长度: {}", text.length());
+        ingestDocument(text, null);
+    }
+
+    /**
+     * 摄取文本到向量存储，替换同一文档 id 下已有的文本段
+     * @param text 文本内容
+     * @param documentId 文档 id，为空时使用文本的 SHA-256
+     */
+    public void ingestDocument(String text, String documentId) {
+        ingestDocument(text, documentId, null);
+    }
+
+    /**
+     * 摄取文本到指定命名空间，替换该命名空间内同一文档 id 下已有的文本段
+     * @param text 文本内容
+     * @param documentId 文档 id，为空时使用文本的 SHA-256
+     * @param namespace 命名空间，为空时使用默认存储
+     */
+    public void ingestDocument(String text, String documentId, String namespace) {
+        log.info("开始摄取文档，文本长度: {}, 文档 id: {}, 命名空间: {}", text.length(), documentId, namespace);
         Document document = Document.from(text);
-        ingestDocuments(List.of(document));
+        if (documentId != null && !documentId.isBlank()) {
+            document.metadata().put(DOCUMENT_ID_KEY, documentId);
+        }
+        ingestDocuments(List.of(document), DocumentSplitterType.RECURSIVE, false, true, namespaces.store(namespace));
         log.info("文档摄取完成");
     }
 
+    /**
+     * 删除指定文档的全部文本段
+     * @param documentId 文档 id（文件绝对路径、URL、classpath:资源路径或摄取时指定的 id）
+     */
+    public void deleteDocument(String documentId) {
+        deleteDocument(documentId, null);
+    }
+
+    /**
+     * 删除指定命名空间中文档的全部文本段
+     * @param documentId 文档 id
+     * @param namespace 命名空间，为空时使用默认存储
+     */
+    public void deleteDocument(String documentId, String namespace) {
+        log.info("删除文档: {}, 命名空间: {}", documentId, namespace);
+        EmbeddingStore<TextSegment> store = namespaces.store(namespace);
+        if (store instanceof ManagedEmbeddingStore managedStore) {
+            managedStore.removeDocument(documentId);
+        } else {
+            store.removeAll(metadataKey(DOCUMENT_ID_KEY).isEqualTo(documentId));
+        }
+    }
+
     /**
      * 批量摄取多个文档（使用默认分割器）
      * @param documents 文档列表
@@ -87,14 +146,22 @@ public class DocumentService {
      */
     public void ingestDocuments(List<Document> documents, DocumentSplitterType splitterType, 
                                 boolean applyDocTransformation, boolean applySegmentEnhancement) {
+        ingestDocuments(documents, splitterType, applyDocTransformation, applySegmentEnhancement, embeddingStore);
+    }
+
+    private void ingestDocuments(List<Document> documents, DocumentSplitterType splitterType,
+                                 boolean applyDocTransformation, boolean applySegmentEnhancement,
+                                 EmbeddingStore<TextSegment> store) {
         log.info("开始批量摄取文档，数量: {}, 分割器: {}, 文档转换: {}, 文本段增强: {}", 
                 documents.size(), splitterType, applyDocTransformation, applySegmentEnhancement);
         
-        // 1. 如果需要，先应用文档转换器
+        // 1. 确定文档 id，如果需要，再应用文档转换器
+        documents.forEach(DocumentService::assignDocumentId);
         List<Document> processedDocuments = documents;
         if (applyDocTransformation) {
             DocumentTransformerStrategy transformer = transformerFactory.createDefaultPipeline();
             processedDocuments = transformer.transformAll(documents);
+            processedDocuments.forEach(DocumentService::assignDocumentId);
             log.info("文档转换后数量: {}", processedDocuments.size());
         }
         
@@ -103,36 +170,107 @@ public class DocumentService {
         DocumentSplitter splitter = splitterStrategy.getSplitterInstance();
         log.debug("分割器配置: {}", splitterStrategy.getDescription());
         
-        // 3. 创建嵌入存储摄取器（配置文本段转换器）
-        var builder = EmbeddingStoreIngestor.builder()
-                .documentSplitter(splitter)
-                .embeddingModel(embeddingModel)
-                .embeddingStore(embeddingStore);
-        
-        // 4. 如果需要，添加文本段转换器
+        // 3. 如果需要，准备文本段转换器
+        List<TextSegmentTransformerStrategy> segmentTransformers = applySegmentEnhancement
+                ? textSegmentTransformerFactory.createDefaultPipeline()
+                : List.of();
         if (applySegmentEnhancement) {
-            List<TextSegmentTransformerStrategy> segmentTransformers = 
-                    textSegmentTransformerFactory.createDefaultPipeline();
-            
-            // 将文本段转换器应用到摄取过程（逐个应用）
-            builder.textSegmentTransformer(segment -> {
-                TextSegment result = segment;
-                for (TextSegmentTransformerStrategy transformer : segmentTransformers) {
-                    result = transformer.transform(result);
-                    if (result == null) {
-                        break;  // 如果被过滤，停止处理
+            log.info("已配置 {} 个文本段转换器", segmentTransformers.size());
+        }
+        
+        // 4. 按文档分割并转换文本段，同一文档 id 的文本段归为一组
+        Map<String, List<TextSegment>> segmentsByDocument = new LinkedHashMap<>();
+        for (Document document : processedDocuments) {
+            String documentId = document.metadata().getString(DOCUMENT_ID_KEY);
+            List<TextSegment> segments = segmentsByDocument.computeIfAbsent(documentId, key -> new ArrayList<>());
+            for (TextSegment segment : splitter.split(document)) {
+                TextSegment transformed = transformSegment(segment, segmentTransformers);
+                if (transformed != null) {
+                    // 分割器和转换器未保留文档元数据时补上文档 id，保证能按文档替换
+                    if (!transformed.metadata().containsKey(DOCUMENT_ID_KEY)) {
+                        transformed.metadata().put(DOCUMENT_ID_KEY, documentId);
                     }
+                    segments.add(transformed);
                 }
-                return result;
-            });
-            
-            log.info("已配置 {} 个文本段转换器", segmentTransformers.size());
+            }
         }
         
-        EmbeddingStoreIngestor ingestor = builder.build();
-        ingestor.ingest(processedDocuments);
+        // 5. 分批并行向量化全部文本段，再按文档原子替换
+        List<TextSegment> allSegments = segmentsByDocument.values().stream().flatMap(List::stream).toList();
+        List<Embedding> allEmbeddings = ingestionEmbedder.embedAll(allSegments);
+        int offset = 0;
+        for (Map.Entry<String, List<TextSegment>> entry : segmentsByDocument.entrySet()) {
+            int count = entry.getValue().size();
+            upsertDocument(store, entry.getKey(), allEmbeddings.subList(offset, offset + count), entry.getValue());
+            offset += count;
+        }
         
-        log.info("批量文档摄取完成");
+        log.info("批量文档摄取完成，文档数: {}, 文本段数: {}", segmentsByDocument.size(), allSegments.size());
+    }
+
+    /**
+     * 用新的文本段替换文档在向量存储中的全部文本段
+     */
+    private static void upsertDocument(EmbeddingStore<TextSegment> store, String documentId,
+                                       List<Embedding> embeddings, List<TextSegment> segments) {
+        List<String> ids = store.generateIds(segments.size());
+        if (store instanceof ManagedEmbeddingStore managedStore) {
+            managedStore.upsertDocument(documentId, ids, embeddings, segments);
+            return;
+        }
+        store.removeAll(metadataKey(DOCUMENT_ID_KEY).isEqualTo(documentId));
+        if (!ids.isEmpty()) {
+            store.addAll(ids, embeddings, segments);
+        }
+    }
+
+    /**
+     * 依次应用文本段转换器
+     * @return 转换后的文本段，被过滤时返回 null
+     */
+    private static TextSegment transformSegment(TextSegment segment, List<TextSegmentTransformerStrategy> transformers) {
+        TextSegment result = segment;
+        for (TextSegmentTransformerStrategy transformer : transformers) {
+            result = transformer.transform(result);
+            if (result == null) {
+                break;  // 如果被过滤，停止处理
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 为没有文档 id 的文档确定文档 id：
+     * 文件系统加载器取绝对路径，没有来源信息时取文本的 SHA-256
+     */
+    private static void assignDocumentId(Document document) {
+        if (document.metadata().containsKey(DOCUMENT_ID_KEY)) {
+            return;
+        }
+        String fileName = document.metadata().getString(Document.FILE_NAME);
+        String directory = document.metadata().getString(Document.ABSOLUTE_DIRECTORY_PATH);
+        String documentId;
+        if (fileName != null && directory != null) {
+            documentId = Path.of(directory, fileName).toString();
+        } else {
+            documentId = "sha256:" + DigestUtil.sha256Hex(document.text());
+        }
+        document.metadata().put(DOCUMENT_ID_KEY, documentId);
+    }
+
+    /**
+     * 以来源作为文档 id：文件取绝对路径，URL 取原文，类路径资源加 classpath: 前缀
+     */
+    private static Document withSourceId(Document document, DocumentLoaderType loaderType, String sourcePath) {
+        if (!document.metadata().containsKey(DOCUMENT_ID_KEY)) {
+            String documentId = switch (loaderType) {
+                case FILE_SYSTEM -> Path.of(sourcePath).toAbsolutePath().normalize().toString();
+                case URL -> sourcePath;
+                case CLASSPATH -> "classpath:" + sourcePath;
+            };
+            document.metadata().put(DOCUMENT_ID_KEY, documentId);
+        }
+        return document;
     }
 
     // ==================== 使用策略模式的文档加载方法 ====================
@@ -142,9 +280,18 @@ public class DocumentService {
      * @param filePath 文件路径
      */
     public void ingestDocumentFromFile(String filePath) {
+        ingestDocumentFromFile(filePath, null);
+    }
+
+    /**
+     * 从文件系统加载单个文档并摄取到指定命名空间
+     * @param filePath 文件路径
+     * @param namespace 命名空间，为空时使用默认存储
+     */
+    public void ingestDocumentFromFile(String filePath, String namespace) {
         DocumentLoaderStrategy loader = loaderFactory.getLoader(DocumentLoaderType.FILE_SYSTEM);
-        Document document = loader.loadDocument(filePath);
-        ingestDocuments(List.of(document));
+        Document document = withSourceId(loader.loadDocument(filePath), DocumentLoaderType.FILE_SYSTEM, filePath);
+        ingestDocuments(List.of(document), DocumentSplitterType.RECURSIVE, false, true, namespaces.store(namespace));
     }
 
     /**
@@ -152,9 +299,18 @@ public class DocumentService {
      * @param directoryPath 目录路径
      */
     public void ingestDocumentsFromDirectory(String directoryPath) {
+        ingestDocumentsFromDirectory(directoryPath, null);
+    }
+
+    /**
+     * 从目录批量加载文档并摄取到指定命名空间
+     * @param directoryPath 目录路径
+     * @param namespace 命名空间，为空时使用默认存储
+     */
+    public void ingestDocumentsFromDirectory(String directoryPath, String namespace) {
         DocumentLoaderStrategy loader = loaderFactory.getLoader(DocumentLoaderType.FILE_SYSTEM);
         List<Document> documents = loader.loadDocuments(directoryPath);
-        ingestDocuments(documents);
+        ingestDocuments(documents, DocumentSplitterType.RECURSIVE, false, true, namespaces.store(namespace));
     }
 
     /**
@@ -163,7 +319,7 @@ public class DocumentService {
      */
     public void ingestDocumentFromUrl(String urlString) {
         DocumentLoaderStrategy loader = loaderFactory.getLoader(DocumentLoaderType.URL);
-        Document document = loader.loadDocument(urlString);
+        Document document = withSourceId(loader.loadDocument(urlString), DocumentLoaderType.URL, urlString);
         ingestDocuments(List.of(document));
     }
 
@@ -173,7 +329,7 @@ public class DocumentService {
      */
     public void ingestDocumentFromClasspath(String resourcePath) {
         DocumentLoaderStrategy loader = loaderFactory.getLoader(DocumentLoaderType.CLASSPATH);
-        Document document = loader.loadDocument(resourcePath);
+        Document document = withSourceId(loader.loadDocument(resourcePath), DocumentLoaderType.CLASSPATH, resourcePath);
         ingestDocuments(List.of(document));
     }
 
@@ -186,7 +342,7 @@ public class DocumentService {
         log.info("使用 {} 加载器加载文档: {}", loaderType, sourcePath);
         
         DocumentLoaderStrategy loader = loaderFactory.getLoader(loaderType);
-        Document document = loader.loadDocument(sourcePath);
+        Document document = withSourceId(loader.loadDocument(sourcePath), loaderType, sourcePath);
         ingestDocuments(List.of(document));
     }
 
@@ -218,7 +374,7 @@ public class DocumentService {
         log.info("使用 {} 加载器和 {} 分割器处理文档: {}", loaderType, splitterType, sourcePath);
         
         DocumentLoaderStrategy loader = loaderFactory.getLoader(loaderType);
-        Document document = loader.loadDocument(sourcePath);
+        Document document = withSourceId(loader.loadDocument(sourcePath), loaderType, sourcePath);
         ingestDocuments(List.of(document), splitterType);
     }
     
@@ -249,7 +405,7 @@ public class DocumentService {
         
         // 加载文档
         DocumentLoaderStrategy loader = loaderFactory.getLoader(loaderType);
-        Document document = loader.loadDocument(sourcePath);
+        Document document = withSourceId(loader.loadDocument(sourcePath), loaderType, sourcePath);
         
         // 应用转换器
         DocumentTransformerStrategy transformer = transformerFactory.createCompositeTransformer(transformerTypes);
@@ -0,0 +1,253 @@
+package org.example.ragtest.service;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.retrieval.retriever.ContentRetrieverStrategy;
+import org.example.ragtest.store.EmbeddingStoreFactory;
+import org.example.ragtest.store.EmbeddingStoreType;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 向量存储基准测试服务
+ * 使用合成的聚类向量数据，对比指定存储与精确检索（IN_MEMORY）的召回率和查询延迟，
+ * 并按各内容检索器实际使用的 maxResults / minScore 分别统计召回率
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EmbeddingStoreBenchmarkService {
+
+    /**
+     * 合成数据的聚类中心数量
+     */
+    private static final int CLUSTER_COUNT = 32;
+
+    /**
+     * 聚类内的噪声幅度（相对于单位向量）
+     */
+    private static final float CLUSTER_NOISE = 0.35f;
+
+    private final EmbeddingStoreFactory storeFactory;
+    private final EmbeddingModel embeddingModel;
+    private final List<ContentRetrieverStrategy> retrieverStrategies;
+
+    /**
+     * 执行基准测试
+     * @param storeType 待测存储类型
+     * @param vectorCount 写入的向量数量
+     * @param queryCount 查询次数
+     * @param maxResults 每次查询返回的结果数
+     * @return 基准测试报告
+     */
+    public BenchmarkReport run(EmbeddingStoreType storeType, int vectorCount, int queryCount, int maxResults) {
+        int dimension = embeddingModel.dimension();
+        log.info("开始向量存储基准测试: 存储={}, 向量数={}, 查询数={}, maxResults={}, 维度={}",
+                storeType, vectorCount, queryCount, maxResults, dimension);
+
+        Random random = new Random(42);
+        float[][] centroids = randomVectors(random, CLUSTER_COUNT, dimension, null);
+        List<Embedding> embeddings = toEmbeddings(randomVectors(random, vectorCount, dimension, centroids));
+        List<Embedding> queries = toEmbeddings(randomVectors(random, queryCount, dimension, centroids));
+        List<TextSegment> segments = new ArrayList<>(vectorCount);
+        for (int i = 0; i < vectorCount; i++) {
+            segments.add(TextSegment.from("benchmark-segment-" + i));
+        }
+
+        EmbeddingStore<TextSegment> baseline = storeFactory.getStrategy(EmbeddingStoreType.IN_MEMORY).createTemporaryStore();
+        EmbeddingStore<TextSegment> candidate = storeFactory.getStrategy(storeType).createTemporaryStore();
+        try {
+            return run(storeType, baseline, candidate, embeddings, queries, segments, maxResults);
+        } finally {
+            closeQuietly(candidate);
+        }
+    }
+
+    private BenchmarkReport run(EmbeddingStoreType storeType,
+                                EmbeddingStore<TextSegment> baseline,
+                                EmbeddingStore<TextSegment> candidate,
+                                List<Embedding> embeddings,
+                                List<Embedding> queries,
+                                List<TextSegment> segments,
+                                int maxResults) {
+        int vectorCount = embeddings.size();
+        int queryCount = queries.size();
+
+        long baselineBuildMillis = timeInsert(baseline, embeddings, segments);
+        long candidateBuildMillis = timeInsert(candidate, embeddings, segments);
+
+        long[] baselineNanos = new long[queryCount];
+        long[] candidateNanos = new long[queryCount];
+        double recallSum = 0;
+        for (int i = 0; i < queryCount; i++) {
+            EmbeddingSearchRequest request = searchRequest(queries.get(i), maxResults, 0.0);
+
+            long start = System.nanoTime();
+            Set<String> expected = ids(baseline.search(request).matches());
+            baselineNanos[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Set<String> actual = ids(candidate.search(request).matches());
+            candidateNanos[i] = System.nanoTime() - start;
+
+            recallSum += recall(expected, actual);
+        }
+
+        List<RetrieverRecall> retrieverRecalls = new ArrayList<>();
+        for (ContentRetrieverStrategy retriever : retrieverStrategies) {
+            double retrieverRecallSum = 0;
+            for (Embedding query : queries) {
+                EmbeddingSearchRequest request = searchRequest(query, retriever.getMaxResults(), retriever.getMinScore());
+                retrieverRecallSum += recall(
+                        ids(baseline.search(request).matches()),
+                        ids(candidate.search(request).matches()));
+            }
+            retrieverRecalls.add(new RetrieverRecall(
+                    retriever.getClass().getSimpleName(),
+                    retriever.getMaxResults(),
+                    retriever.getMinScore(),
+                    queryCount == 0 ? 0 : retrieverRecallSum / queryCount));
+        }
+
+        BenchmarkReport report = new BenchmarkReport(
+                storeType,
+                vectorCount,
+                queryCount,
+                maxResults,
+                queryCount == 0 ? 0 : recallSum / queryCount,
+                baselineBuildMillis,
+                candidateBuildMillis,
+                LatencyStats.of(baselineNanos),
+                LatencyStats.of(candidateNanos),
+                retrieverRecalls);
+        log.info("基准测试完成: {}", report);
+        return report;
+    }
+
+    private static void closeQuietly(EmbeddingStore<TextSegment> store) {
+        if (store instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.warn("关闭基准测试存储失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static EmbeddingSearchRequest searchRequest(Embedding query, int maxResults, double minScore) {
+        return EmbeddingSearchRequest.builder()
+                .queryEmbedding(query)
+                .maxResults(maxResults)
+                .minScore(minScore)
+                .build();
+    }
+
+    private long timeInsert(EmbeddingStore<TextSegment> store, List<Embedding> embeddings, List<TextSegment> segments) {
+        long start = System.nanoTime();
+        store.addAll(embeddings, segments);
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * 生成随机单位向量；指定聚类中心时，向量围绕随机选取的中心分布
+     */
+    private float[][] randomVectors(Random random, int count, int dimension, float[][] centroids) {
+        float[][] vectors = new float[count][dimension];
+        for (int i = 0; i < count; i++) {
+            float[] centroid = centroids == null ? null : centroids[random.nextInt(centroids.length)];
+            float norm = 0f;
+            for (int d = 0; d < dimension; d++) {
+                float value = (float) random.nextGaussian();
+                if (centroid != null) {
+                    value = centroid[d] + value * CLUSTER_NOISE / (float) Math.sqrt(dimension);
+                }
+                vectors[i][d] = value;
+                norm += value * value;
+            }
+            float inverse = (float) (1.0 / Math.sqrt(norm));
+            for (int d = 0; d < dimension; d++) {
+                vectors[i][d] *= inverse;
+            }
+        }
+        return vectors;
+    }
+
+    private static List<Embedding> toEmbeddings(float[][] vectors) {
+        return Arrays.stream(vectors).map(Embedding::from).collect(Collectors.toList());
+    }
+
+    private static Set<String> ids(List<EmbeddingMatch<TextSegment>> matches) {
+        return matches.stream().map(match -> match.embedded().text()).collect(Collectors.toSet());
+    }
+
+    private static double recall(Set<String> expected, Set<String> actual) {
+        if (expected.isEmpty()) {
+            return 1.0;
+        }
+        Set<String> hits = new HashSet<>(actual);
+        hits.retainAll(expected);
+        return (double) hits.size() / expected.size();
+    }
+
+    /**
+     * 基准测试报告
+     * @param recall 相对精确检索的平均召回率 (0.0-1.0)
+     * @param baselineBuildMillis 精确存储写入耗时（毫秒）
+     * @param candidateBuildMillis 待测存储写入耗时（毫秒）
+     * @param baselineLatency 精确存储查询延迟
+     * @param candidateLatency 待测存储查询延迟
+     * @param retrieverRecalls 按各内容检索器配置统计的召回率
+     */
+    public record BenchmarkReport(
+            EmbeddingStoreType storeType,
+            int vectorCount,
+            int queryCount,
+            int maxResults,
+            double recall,
+            long baselineBuildMillis,
+            long candidateBuildMillis,
+            LatencyStats baselineLatency,
+            LatencyStats candidateLatency,
+            List<RetrieverRecall> retrieverRecalls) {}
+
+    /**
+     * 单个内容检索器配置下的召回率
+     * @param retriever 检索器策略类名
+     * @param recall 相对精确检索的平均召回率，即召回损失为 1 - recall
+     */
+    public record RetrieverRecall(String retriever, int maxResults, double minScore, double recall) {}
+
+    /**
+     * 查询延迟统计（微秒）
+     */
+    public record LatencyStats(double averageMicros, double p50Micros, double p99Micros) {
+
+        static LatencyStats of(long[] nanos) {
+            if (nanos.length == 0) {
+                return new LatencyStats(0, 0, 0);
+            }
+            long[] sorted = nanos.clone();
+            Arrays.sort(sorted);
+            double average = Arrays.stream(sorted).average().orElse(0) / 1000.0;
+            return new LatencyStats(average, percentile(sorted, 0.50), percentile(sorted, 0.99));
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package org.example.ragtest.service;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.EmbeddingStoreNamespaces;
+import org.example.ragtest.store.ManagedEmbeddingStore;
+import org.example.ragtest.store.ManagedEmbeddingStore.Entry;
+import org.example.ragtest.store.support.ColumnarChunkCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 向量存储导出 / 导入服务
+ * 以 {@link ColumnarChunkCodec} 的分块列式格式流式导出向量、id、文本和元数据，
+ * 导入时逐块直接写入存储，不经过 EmbeddingStoreIngestor，也不重新向量化
+ *
+ * 实现要点：
+ * - 导出先写入导出目录下的文件：遍历存储的时间只取决于磁盘写入速度，不会因为下载方读得慢而长时间占用存储的读锁
+ * - 文件再通过 {@link FileChannel#transferTo} 发送，目标是文件时由内核完成零拷贝；
+ *   下载用的临时文件在响应体开始写出时才生成，发送结束或失败后删除，响应体没有被执行时不会留下文件
+ * - 导入时单个数据块的块体不能超过 max-chunk-mb，损坏或恶意构造的块头不会导致按任意长度分配内存
+ * - 导入按块先删除同 id 的旧数据再写入，同一份文件重复导入结果不变
+ * - 文件名只能指向导出目录内的文件
+ * - 导出需要遍历存储，只支持本项目实现的存储类型（{@link ManagedEmbeddingStore}）；
+ *   IN_MEMORY 是 langchain4j 自带的实现，不支持导出，请求在开始写出前就被拒绝
+ */
+@Slf4j
+@Service
+public class EmbeddingStoreTransferService {
+
+    private final EmbeddingStoreNamespaces namespaces;
+    private final int rowsPerChunk;
+    private final int maxChunkBytes;
+    private final Path directory;
+
+    public EmbeddingStoreTransferService(
+            EmbeddingStoreNamespaces namespaces,
+            @Value("${rag.store.transfer.rows-per-chunk:4096}") int rowsPerChunk,
+            @Value("${rag.store.transfer.max-chunk-mb:64}") int maxChunkMb,
+            @Value("${rag.store.transfer.directory:data/exports}") String directory) {
+        if (rowsPerChunk <= 0) {
+            throw new IllegalArgumentException("导出数据块行数必须为正数: " + rowsPerChunk);
+        }
+        if (maxChunkMb <= 0 || maxChunkMb > 1024) {
+            throw new IllegalArgumentException("数据块大小上限必须在 1-1024 MB 之间: " + maxChunkMb);
+        }
+        this.namespaces = namespaces;
+        this.rowsPerChunk = rowsPerChunk;
+        this.maxChunkBytes = maxChunkMb * 1024 * 1024;
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+    }
+
+    /**
+     * 检查存储能否导出，下载接口在提交响应前调用，不支持时直接返回错误而不是中断已开始的下载
+     * @param namespace 命名空间，为空时检查默认存储
+     * @throws IllegalArgumentException 存储类型不支持遍历导出
+     */
+    public void checkExportable(String namespace) {
+        managedStore(namespace);
+    }
+
+    /**
+     * 将存储导出到导出目录下的文件，先写临时文件再原子替换，导出中途失败不会留下不完整的文件
+     * @param namespace 命名空间，为空时导出默认存储
+     * @param fileName 导出目录下的文件名
+     */
+    public TransferReport exportToFile(String namespace, String fileName) {
+        Path target = resolve(fileName);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        long start = System.currentTimeMillis();
+        try {
+            Files.createDirectories(directory);
+            long[] counts;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                counts = export(namespace, channel);
+                channel.force(false);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            TransferReport report = new TransferReport(namespace, target.getFileName().toString(),
+                    counts[0], counts[1], Files.size(target), System.currentTimeMillis() - start);
+            log.info("向量存储导出完成: {}", report);
+            return report;
+        } catch (IOException e) {
+            throw new UncheckedIOException("导出向量存储失败: " + target, e);
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * 将存储导出到输出流，用于下载
+     * 先导出到导出目录下的临时文件再发送，临时文件在发送结束或任一步失败后删除
+     */
+    public void exportTo(String namespace, OutputStream out) throws IOException {
+        transfer(exportToTempFile(namespace), out);
+    }
+
+    private Path exportToTempFile(String namespace) {
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "export-", ".ragx");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                long[] counts = export(namespace, channel);
+                log.info("向量存储导出到临时文件: 命名空间={}, 行数={}, 数据块={}, 字节数={}",
+                        namespace, counts[0], counts[1], channel.size());
+            } catch (IOException | RuntimeException e) {
+                deleteQuietly(temp);
+                throw e;
+            }
+            return temp;
+        } catch (IOException e) {
+            throw new UncheckedIOException("导出向量存储失败", e);
+        }
+    }
+
+    /**
+     * 将文件内容发送到输出流，发送完毕后删除文件
+     */
+    private void transfer(Path file, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+            out.flush();
+        } finally {
+            deleteQuietly(file);
+        }
+    }
+
+    /**
+     * 从导出目录下的文件导入
+     */
+    public TransferReport importFromFile(String namespace, String fileName) {
+        Path source = resolve(fileName);
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            return importFrom(namespace, source.getFileName().toString(), channel, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("导入向量存储失败: " + source, e);
+        }
+    }
+
+    /**
+     * 从请求体等字节流导入
+     */
+    public TransferReport importFrom(String namespace, ReadableByteChannel channel) {
+        try {
+            return importFrom(namespace, null, channel, -1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("导入向量存储失败", e);
+        }
+    }
+
+    private TransferReport importFrom(String namespace, String fileName, ReadableByteChannel channel, long bytes) throws IOException {
+        EmbeddingStore<TextSegment> store = namespaces.store(namespace);
+        long start = System.currentTimeMillis();
+        ColumnarChunkCodec.readHeader(channel);
+        long rows = 0;
+        long chunks = 0;
+        List<Entry> chunk;
+        while ((chunk = ColumnarChunkCodec.readChunk(channel, maxChunkBytes)) != null) {
+            List<String> ids = new ArrayList<>(chunk.size());
+            List<Embedding> embeddings = new ArrayList<>(chunk.size());
+            List<TextSegment> segments = new ArrayList<>(chunk.size());
+            for (Entry entry : chunk) {
+                ids.add(entry.id());
+                embeddings.add(entry.embedding());
+                segments.add(entry.segment());
+            }
+            store.removeAll(ids);
+            store.addAll(ids, embeddings, segments);
+            rows += chunk.size();
+            chunks++;
+        }
+        TransferReport report = new TransferReport(namespace, fileName, rows, chunks, bytes, System.currentTimeMillis() - start);
+        log.info("向量存储导入完成: {}", report);
+        return report;
+    }
+
+    /**
+     * 遍历存储，按维度和块大小切分后写出
+     * @return 行数和数据块数
+     */
+    private long[] export(String namespace, WritableByteChannel channel) throws IOException {
+        ManagedEmbeddingStore managedStore = managedStore(namespace);
+        long[] counts = new long[2];
+        List<Entry> chunk = new ArrayList<>(rowsPerChunk);
+        ColumnarChunkCodec.writeHeader(channel);
+        try {
+            managedStore.forEach(entry -> {
+                if (!chunk.isEmpty() && (chunk.size() == rowsPerChunk
+                        || chunk.get(0).embedding().dimension() != entry.embedding().dimension())) {
+                    writeChunk(channel, chunk, counts);
+                }
+                chunk.add(entry);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(channel, chunk, counts);
+        }
+        ColumnarChunkCodec.writeEnd(channel);
+        return counts;
+    }
+
+    private ManagedEmbeddingStore managedStore(String namespace) {
+        EmbeddingStore<TextSegment> store = namespaces.store(namespace);
+        if (!(store instanceof ManagedEmbeddingStore managedStore)) {
+            throw new IllegalArgumentException("当前向量存储不支持遍历导出: " + store.getClass().getSimpleName()
+                    + "，导出需要 SIMD_EXACT、HNSW 等本项目实现的存储类型，IN_MEMORY 不支持");
+        }
+        return managedStore;
+    }
+
+    private static void writeChunk(WritableByteChannel channel, List<Entry> chunk, long[] counts) {
+        try {
+            ColumnarChunkCodec.writeChunk(channel, chunk);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        counts[0] += chunk.size();
+        counts[1]++;
+        chunk.clear();
+    }
+
+    private Path resolve(String fileName) {
+        if (fileName == null || fileName.isBlank()) {
+            throw new IllegalArgumentException("导出文件名不能为空");
+        }
+        Path path = directory.resolve(fileName).normalize();
+        if (!path.startsWith(directory) || path.equals(directory)) {
+            throw new IllegalArgumentException("导出文件必须位于导出目录内: " + fileName);
+        }
+        return path;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除临时导出文件失败: {}", path, e);
+        }
+    }
+
+    /**
+     * 导出 / 导入结果
+     * @param fileName 请求体导入时为 null
+     * @param bytes 文件字节数，请求体导入时为 -1
+     */
+    public record TransferReport(String namespace, String fileName, long rows, long chunks, long bytes, long elapsedMillis) {}
+}
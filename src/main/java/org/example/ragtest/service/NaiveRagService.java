@@ -4,7 +4,6 @@ import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.chat.ChatModel;
-import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.input.Prompt;
 import dev.langchain4j.model.input.PromptTemplate;
 import dev.langchain4j.store.embedding.EmbeddingMatch;
@@ -12,6 +11,10 @@ import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.embedding.QueryEmbeddingBatcher;
+import org.example.ragtest.store.DiversifiedSearchEmbeddingStore;
+import org.example.ragtest.store.EmbeddingStoreNamespaces;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
@@ -32,8 +35,14 @@ import java.util.stream.Collectors;
 public class NaiveRagService {
 
     private final ChatModel chatLanguageModel;
-    private final EmbeddingModel embeddingModel;
-    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final QueryEmbeddingBatcher queryEmbeddingBatcher;
+    private final EmbeddingStoreNamespaces namespaces;
+
+    @Value("${rag.retrieval.mmr.lambda:1.0}")
+    private double mmrLambda;
+
+    @Value("${rag.retrieval.mmr.fetch-factor:4}")
+    private int mmrFetchFactor;
 
     // 提示词模板
     private static final PromptTemplate PROMPT_TEMPLATE = PromptTemplate.from(
@@ -55,10 +64,20 @@ public class NaiveRagService {
      * @return AI 生成的回答
      */
     public String query(String question) {
-        log.info("收到 RAG 查询: {}", question);
+        return query(question, null);
+    }
+
+    /**
+     * 在指定命名空间中执行 RAG 查询
+     * @param question 用户问题
+     * @param namespace 命名空间，为空时使用默认存储
+     * @return AI 生成的回答
+     */
+    public String query(String question, String namespace) {
+        log.info("收到 RAG 查询: {}, 命名空间: {}", question, namespace);
         
         // 步骤 1: 检索相关文档
-        List<TextSegment> relevantSegments = retrieveRelevantDocuments(question, 3);
+        List<TextSegment> relevantSegments = retrieveRelevantDocuments(namespaces.store(namespace), question, 3);
         
         if (relevantSegments.isEmpty()) {
             log.warn("未找到相关文档片段");
@@ -86,15 +105,16 @@ public class NaiveRagService {
 
     /**
      * 检索相关文档片段
+     * @param embeddingStore 检索的向量存储
      * @param query 查询文本
      * @param maxResults 最大返回结果数
      * @return 相关文档片段列表
      */
-    private List<TextSegment> retrieveRelevantDocuments(String query, int maxResults) {
+    private List<TextSegment> retrieveRelevantDocuments(EmbeddingStore<TextSegment> embeddingStore, String query, int maxResults) {
         log.info("检索相关文档，查询: {}, 最大结果数: {}", query, maxResults);
         
-        // 将查询转换为向量
-        Embedding queryEmbedding = embeddingModel.embed(query).content();
+        // 将查询转换为向量，并发到达的查询合并为一次批量推理
+        Embedding queryEmbedding = queryEmbeddingBatcher.embed(query);
         
         // 构建搜索请求
         EmbeddingSearchRequest searchRequest = EmbeddingSearchRequest.builder()
@@ -103,8 +123,11 @@ public class NaiveRagService {
                 .minScore(0.5)  // 最小相似度阈值
                 .build();
         
-        // 在向量存储中搜索最相关的片段
-        List<EmbeddingMatch<TextSegment>> matches = embeddingStore.search(searchRequest).matches();
+        // 在向量存储中搜索最相关的片段，并用 MMR 去掉重叠的近似片段
+        List<EmbeddingMatch<TextSegment>> matches = DiversifiedSearchEmbeddingStore
+                .wrap(embeddingStore, mmrLambda, mmrFetchFactor)
+                .search(searchRequest)
+                .matches();
         
         log.info("找到 {} 个相关片段", matches.size());
         
@@ -132,10 +155,20 @@ public class NaiveRagService {
      * @return 包含回答和来源文档的响应
      */
     public RagResponse queryWithSources(String question) {
-        log.info("收到带来源的 RAG 查询: {}", question);
+        return queryWithSources(question, null);
+    }
+
+    /**
+     * 在指定命名空间中执行带来源的 RAG 查询
+     * @param question 用户问题
+     * @param namespace 命名空间，为空时使用默认存储
+     * @return 包含回答和来源文档的响应
+     */
+    public RagResponse queryWithSources(String question, String namespace) {
+        log.info("收到带来源的 RAG 查询: {}, 命名空间: {}", question, namespace);
         
         // 检索相关文档
-        List<TextSegment> relevantSegments = retrieveRelevantDocuments(question, 3);
+        List<TextSegment> relevantSegments = retrieveRelevantDocuments(namespaces.store(namespace), question, 3);
         
         if (relevantSegments.isEmpty()) {
             return new RagResponse(
@@ -0,0 +1,169 @@
+package org.example.ragtest.store;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import org.example.ragtest.store.support.MaximalMarginalRelevance;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 以最大边际相关性（MMR）重选检索结果的存储视图
+ * {@link #search(EmbeddingSearchRequest)} 先按相关性取 maxResults × fetchFactor 个候选，
+ * 再用候选自带的向量做 MMR 重选出 maxResults 个，其余操作原样转发；
+ * 用于让 EmbeddingStoreContentRetriever 等只调用标准接口的组件返回差异更大的片段
+ *
+ * 只依赖标准的 search 接口和检索结果中的向量，IN_MEMORY 等 langchain4j 自带的存储同样生效；
+ * 包装 {@link ManagedEmbeddingStore} 时返回的视图也实现该接口，截断维度检索、文档替换和遍历照常转发
+ */
+public class DiversifiedSearchEmbeddingStore implements EmbeddingStore<TextSegment> {
+
+    private final EmbeddingStore<TextSegment> delegate;
+    private final double lambda;
+    private final int fetchFactor;
+
+    private DiversifiedSearchEmbeddingStore(EmbeddingStore<TextSegment> delegate, double lambda, int fetchFactor) {
+        this.delegate = delegate;
+        this.lambda = lambda;
+        this.fetchFactor = fetchFactor;
+    }
+
+    /**
+     * 包装存储
+     * @param lambda MMR 相关性权重 (0.0-1.0)，1.0 时不包装
+     * @param fetchFactor 候选数相对 maxResults 的倍数，不大于 1 时不包装
+     * @return 未启用 MMR 时返回原存储；原存储是 {@link ManagedEmbeddingStore} 时返回的视图也是
+     */
+    public static EmbeddingStore<TextSegment> wrap(EmbeddingStore<TextSegment> store, double lambda, int fetchFactor) {
+        if (lambda >= 1.0 || fetchFactor <= 1) {
+            return store;
+        }
+        if (store instanceof ManagedEmbeddingStore managedStore) {
+            return new Managed(managedStore, lambda, fetchFactor);
+        }
+        return new DiversifiedSearchEmbeddingStore(store, lambda, fetchFactor);
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        return diversify(request, delegate.search(candidateRequest(request)));
+    }
+
+    EmbeddingSearchRequest candidateRequest(EmbeddingSearchRequest request) {
+        return EmbeddingSearchRequest.builder()
+                .queryEmbedding(request.queryEmbedding())
+                .maxResults(request.maxResults() * fetchFactor)
+                .minScore(request.minScore())
+                .filter(request.filter())
+                .build();
+    }
+
+    EmbeddingSearchResult<TextSegment> diversify(EmbeddingSearchRequest request,
+                                                 EmbeddingSearchResult<TextSegment> candidates) {
+        return new EmbeddingSearchResult<>(
+                MaximalMarginalRelevance.select(candidates.matches(), request.maxResults(), lambda));
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        return delegate.add(embedding);
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        delegate.add(id, embedding);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        return delegate.add(embedding, textSegment);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        return delegate.addAll(embeddings);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+        return delegate.addAll(embeddings, embedded);
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        delegate.addAll(ids, embeddings, embedded);
+    }
+
+    @Override
+    public void remove(String id) {
+        delegate.remove(id);
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        delegate.removeAll(ids);
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        delegate.removeAll(filter);
+    }
+
+    @Override
+    public void removeAll() {
+        delegate.removeAll();
+    }
+
+    /**
+     * 包装 {@link ManagedEmbeddingStore} 的视图，额外转发本项目存储的接口
+     */
+    private static final class Managed extends DiversifiedSearchEmbeddingStore implements ManagedEmbeddingStore {
+
+        private final ManagedEmbeddingStore delegate;
+
+        private Managed(ManagedEmbeddingStore delegate, double lambda, int fetchFactor) {
+            super(delegate, lambda, fetchFactor);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request, int coarseDimension, int oversample) {
+            return diversify(request, delegate.search(candidateRequest(request), coarseDimension, oversample));
+        }
+
+        @Override
+        public boolean supportsTruncatedSearch() {
+            return delegate.supportsTruncatedSearch();
+        }
+
+        @Override
+        public void upsertDocument(String documentId, List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+            delegate.upsertDocument(documentId, ids, embeddings, embedded);
+        }
+
+        @Override
+        public void removeDocument(String documentId) {
+            delegate.removeDocument(documentId);
+        }
+
+        @Override
+        public int size() {
+            return delegate.size();
+        }
+
+        @Override
+        public int deletedCount() {
+            return delegate.deletedCount();
+        }
+
+        @Override
+        public void forEach(Consumer<Entry> consumer) {
+            delegate.forEach(consumer);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.ragtest.store;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 向量存储工厂
+ * 使用工厂模式管理和创建不同类型的向量存储
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmbeddingStoreFactory {
+    
+    /**
+     * 向量存储策略列表
+     * Spring 自动注入所有 EmbeddingStoreStrategy 实现
+     */
+    private final List<EmbeddingStoreStrategy> storeStrategies;
+    
+    /**
+     * 根据存储类型获取对应的存储策略
+     * @param storeType 存储类型
+     * @return 对应的存储策略
+     */
+    public EmbeddingStoreStrategy getStrategy(EmbeddingStoreType storeType) {
+        return storeStrategies.stream()
+                .filter(strategy -> strategy.getStoreType() == storeType)
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "不支持的向量存储类型: " + storeType));
+    }
+    
+    /**
+     * 列出所有可用的向量存储及其描述
+     * @return 存储类型和描述的映射
+     */
+    public Map<EmbeddingStoreType, String> listAvailableStores() {
+        return storeStrategies.stream()
+                .collect(Collectors.toMap(
+                        EmbeddingStoreStrategy::getStoreType,
+                        EmbeddingStoreStrategy::getDescription
+                ));
+    }
+    
+    /**
+     * 检查是否支持某个存储类型
+     * @param storeType 存储类型
+     * @return 是否支持
+     */
+    public boolean isSupported(EmbeddingStoreType storeType) {
+        return storeStrategies.stream()
+                .anyMatch(strategy -> strategy.getStoreType() == storeType);
+    }
+}
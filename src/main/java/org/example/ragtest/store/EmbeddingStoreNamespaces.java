@@ -0,0 +1,352 @@
+package org.example.ragtest.store;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.engine.CompactingEmbeddingStore;
+import org.example.ragtest.store.engine.DurableEmbeddingStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * 命名空间（租户）向量存储管理器
+ *
+ * 实现要点：
+ * - 每个命名空间拥有独立的索引，类型由 rag.store.namespace.store-type 指定，
+ *   外层包装后台压缩和 WAL + 快照持久化，数据保存在 rag.store.namespace.directory/{命名空间} 下
+ * - 命名空间在首次访问时从磁盘恢复；空闲超过 idle-unload-seconds 的命名空间在生成快照后关闭并释放内存，
+ *   下次访问时重新加载
+ * - 每个命名空间的内存配额按向量和文本段的估算行大小换算为行数上限，超出配额的写入被拒绝；
+ *   写入前在命名空间锁内预留行数，并发写入不会一起通过检查后超出配额
+ * - 未指定命名空间时使用应用默认的全局存储，与原有接口行为一致
+ */
+@Slf4j
+@Component
+public class EmbeddingStoreNamespaces {
+
+    /**
+     * 每行除向量外的估算开销：文本段（按 300 字 UTF-16 计）、元数据、id 和索引结构
+     */
+    private static final int ROW_OVERHEAD_BYTES = 1024;
+
+    private static final Pattern NAMESPACE_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final EmbeddingStoreFactory storeFactory;
+    private final EmbeddingStore<TextSegment> defaultStore;
+    private final Map<String, Tenant> tenants = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService unloadExecutor;
+
+    @Value("${rag.store.namespace.store-type:SIMD_EXACT}")
+    private EmbeddingStoreType storeType;
+
+    @Value("${rag.store.namespace.directory:data/namespaces}")
+    private String directory;
+
+    @Value("${rag.store.namespace.quota-mb:256}")
+    private long quotaMb;
+
+    @Value("${rag.store.namespace.idle-unload-seconds:600}")
+    private long idleUnloadSeconds;
+
+    @Value("${rag.store.durable.fsync:true}")
+    private boolean fsync;
+
+    @Value("${rag.store.durable.snapshot-interval-seconds:300}")
+    private long snapshotIntervalSeconds;
+
+    @Value("${rag.store.compaction.deleted-ratio:0.2}")
+    private double compactionDeletedRatio;
+
+    @Value("${rag.store.compaction.interval-seconds:60}")
+    private long compactionIntervalSeconds;
+
+    public EmbeddingStoreNamespaces(EmbeddingStoreFactory storeFactory, EmbeddingStore<TextSegment> embeddingStore) {
+        this.storeFactory = storeFactory;
+        this.defaultStore = embeddingStore;
+        this.unloadExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "embedding-store-namespace-unload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        unloadExecutor.scheduleWithFixedDelay(this::unloadIdleQuietly, 60, 60, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 获取命名空间对应的存储
+     * 返回的存储是一个轻量视图，每次调用时按需加载命名空间，可以长期持有
+     * @param namespace 命名空间，为空时返回默认的全局存储
+     */
+    public EmbeddingStore<TextSegment> store(String namespace) {
+        if (namespace == null || namespace.isBlank()) {
+            return defaultStore;
+        }
+        if (!NAMESPACE_PATTERN.matcher(namespace).matches()) {
+            throw new IllegalArgumentException("命名空间只能包含字母、数字、下划线和连字符，长度 1-64: " + namespace);
+        }
+        return new NamespaceView(namespace);
+    }
+
+    /**
+     * 当前已加载到内存中的命名空间及其向量数量
+     */
+    public Map<String, Integer> loadedNamespaces() {
+        Map<String, Integer> sizes = new ConcurrentHashMap<>();
+        tenants.forEach((namespace, tenant) -> sizes.put(namespace, tenant.store.size()));
+        return sizes;
+    }
+
+    /**
+     * 卸载空闲超过阈值的命名空间；正在被访问的命名空间跳过
+     */
+    public void unloadIdle() {
+        long idleNanos = TimeUnit.SECONDS.toNanos(idleUnloadSeconds);
+        for (Tenant tenant : tenants.values()) {
+            if (System.nanoTime() - tenant.lastAccessNanos >= idleNanos) {
+                unload(tenant, false);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        unloadExecutor.shutdownNow();
+        for (Tenant tenant : tenants.values()) {
+            unload(tenant, true);
+        }
+    }
+
+    // ==================== 加载与卸载 ====================
+
+    private <T> T withStore(String namespace, Function<ManagedEmbeddingStore, T> operation) {
+        return withTenant(namespace, tenant -> operation.apply(tenant.store));
+    }
+
+    private <T> T withTenant(String namespace, Function<Tenant, T> operation) {
+        while (true) {
+            Tenant tenant = tenants.computeIfAbsent(namespace, this::open);
+            tenant.lock.readLock().lock();
+            try {
+                if (!tenant.closed) {
+                    tenant.lastAccessNanos = System.nanoTime();
+                    return operation.apply(tenant);
+                }
+            } finally {
+                tenant.lock.readLock().unlock();
+            }
+            // 命名空间刚好被卸载，重新加载
+        }
+    }
+
+    private Tenant open(String namespace) {
+        // 这两种存储的数据位置是全局配置，多个命名空间会写到同一份数据上
+        if (storeType == EmbeddingStoreType.REDIS || storeType == EmbeddingStoreType.MAPPED_FILE) {
+            throw new IllegalArgumentException("命名空间不支持的存储类型: " + storeType);
+        }
+        long start = System.nanoTime();
+        EmbeddingStore<TextSegment> store = storeFactory.getStrategy(storeType).createStore();
+        if (!(store instanceof ManagedEmbeddingStore managedStore)) {
+            throw new IllegalArgumentException("命名空间不支持的存储类型: " + storeType);
+        }
+        CompactingEmbeddingStore compacting = new CompactingEmbeddingStore(managedStore,
+                () -> (ManagedEmbeddingStore) storeFactory.getStrategy(storeType).createStore(),
+                compactionDeletedRatio, compactionIntervalSeconds);
+        DurableEmbeddingStore durable;
+        try {
+            durable = new DurableEmbeddingStore(compacting, Path.of(directory, namespace), fsync, snapshotIntervalSeconds);
+        } catch (RuntimeException e) {
+            // 恢复失败时压缩线程已经启动，关闭后再抛出，避免每次重试都泄漏一个线程
+            compacting.close();
+            throw e;
+        }
+        log.info("命名空间已加载: {}, 存储类型={}, 向量数={}, 耗时={}ms",
+                namespace, storeType, durable.size(), (System.nanoTime() - start) / 1_000_000);
+        return new Tenant(namespace, durable);
+    }
+
+    /**
+     * @param force 为 true 时等待正在进行的访问结束，否则有访问时跳过
+     */
+    private void unload(Tenant tenant, boolean force) {
+        if (force) {
+            tenant.lock.writeLock().lock();
+        } else if (!tenant.lock.writeLock().tryLock()) {
+            return;
+        }
+        try {
+            if (tenant.closed) {
+                return;
+            }
+            tenant.closed = true;
+            tenants.remove(tenant.namespace, tenant);
+            tenant.store.close();
+            log.info("命名空间已卸载: {}", tenant.namespace);
+        } finally {
+            tenant.lock.writeLock().unlock();
+        }
+    }
+
+    private void unloadIdleQuietly() {
+        try {
+            unloadIdle();
+        } catch (Exception e) {
+            log.error("卸载空闲命名空间失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 按配额预留行数后执行写入，写入结束后释放预留
+     * 检查和预留在命名空间锁内完成，计入其他写入已预留但尚未落盘的行；
+     * 替换文档时旧的文本段仍计入，配额边缘的替换可能被拒绝
+     */
+    private void writeWithinQuota(String namespace, List<Embedding> embeddings, Consumer<ManagedEmbeddingStore> write) {
+        withTenant(namespace, tenant -> {
+            int rows = embeddings.size();
+            if (rows > 0) {
+                long rowBytes = (long) embeddings.get(0).dimension() * Float.BYTES + ROW_OVERHEAD_BYTES;
+                long maxRows = (quotaMb << 20) / rowBytes;
+                synchronized (tenant) {
+                    long existing = tenant.store.size() + tenant.reservedRows;
+                    if (existing + rows > maxRows) {
+                        throw new IllegalStateException(String.format(
+                                "命名空间 %s 超出内存配额 %dMB: 现有 %d 条，新增 %d 条，上限约 %d 条",
+                                namespace, quotaMb, existing, rows, maxRows));
+                    }
+                    tenant.reservedRows += rows;
+                }
+            }
+            try {
+                write.accept(tenant.store);
+            } finally {
+                synchronized (tenant) {
+                    tenant.reservedRows -= rows;
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 已加载的命名空间
+     * 访问持有读锁，卸载持有写锁，卸载后的实例标记为关闭，后续访问会重新加载；
+     * 配额预留以实例自身为锁
+     */
+    private static final class Tenant {
+        private final String namespace;
+        private final DurableEmbeddingStore store;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private volatile long lastAccessNanos = System.nanoTime();
+        private boolean closed;
+        private long reservedRows;
+
+        private Tenant(String namespace, DurableEmbeddingStore store) {
+            this.namespace = namespace;
+            this.store = store;
+        }
+    }
+
+    /**
+     * 命名空间存储视图，每个操作在命名空间加载后执行
+     */
+    private final class NamespaceView implements ManagedEmbeddingStore {
+
+        private final String namespace;
+
+        private NamespaceView(String namespace) {
+            this.namespace = namespace;
+        }
+
+        @Override
+        public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+            writeWithinQuota(namespace, embeddings, store -> store.addAll(ids, embeddings, embedded));
+        }
+
+        @Override
+        public void upsertDocument(String documentId, List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+            writeWithinQuota(namespace, embeddings, store -> store.upsertDocument(documentId, ids, embeddings, embedded));
+        }
+
+        @Override
+        public void removeDocument(String documentId) {
+            withStore(namespace, store -> {
+                store.removeDocument(documentId);
+                return null;
+            });
+        }
+
+        @Override
+        public void removeAll(Collection<String> ids) {
+            withStore(namespace, store -> {
+                store.removeAll(ids);
+                return null;
+            });
+        }
+
+        @Override
+        public void removeAll(Filter filter) {
+            withStore(namespace, store -> {
+                store.removeAll(filter);
+                return null;
+            });
+        }
+
+        @Override
+        public void removeAll() {
+            withStore(namespace, store -> {
+                store.removeAll();
+                return null;
+            });
+        }
+
+        @Override
+        public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+            return withStore(namespace, store -> store.search(request));
+        }
+
+        @Override
+        public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request, int coarseDimension, int oversample) {
+            return withStore(namespace, store -> store.search(request, coarseDimension, oversample));
+        }
+
+        @Override
+        public boolean supportsTruncatedSearch() {
+            return withStore(namespace, ManagedEmbeddingStore::supportsTruncatedSearch);
+        }
+
+        @Override
+        public int size() {
+            return withStore(namespace, ManagedEmbeddingStore::size);
+        }
+
+        @Override
+        public int deletedCount() {
+            return withStore(namespace, ManagedEmbeddingStore::deletedCount);
+        }
+
+        @Override
+        public void forEach(Consumer<Entry> consumer) {
+            withStore(namespace, store -> {
+                store.forEach(consumer);
+                return null;
+            });
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.example.ragtest.store;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+
+/**
+ * 向量存储策略接口
+ * 定义向量存储的统一创建行为
+ */
+public interface EmbeddingStoreStrategy {
+    
+    /**
+     * 创建应用使用的向量存储实例
+     * 内存存储每次调用都返回一个独立的空存储；持久化存储会打开配置位置中已有的数据
+     * @return EmbeddingStore 实例
+     */
+    EmbeddingStore<TextSegment> createStore();
+    
+    /**
+     * 创建一个独立的空存储，用于基准测试等临时场景
+     * 返回的存储如果实现了 AutoCloseable，使用完毕后由调用方关闭
+     * @return EmbeddingStore 实例
+     */
+    default EmbeddingStore<TextSegment> createTemporaryStore() {
+        return createStore();
+    }
+    
+    /**
+     * 获取向量存储类型
+     * @return 向量存储类型
+     */
+    EmbeddingStoreType getStoreType();
+    
+    /**
+     * 获取向量存储描述
+     * @return 描述信息
+     */
+    String getDescription();
+}
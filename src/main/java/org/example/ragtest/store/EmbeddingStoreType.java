@@ -0,0 +1,61 @@
+package org.example.ragtest.store;
+
+/**
+ * 向量存储类型枚举
+ */
+public enum EmbeddingStoreType {
+    /**
+     * 内存向量存储 - langchain4j 自带的 InMemoryEmbeddingStore，线性扫描全部向量
+     */
+    IN_MEMORY,
+    
+    /**
+     * HNSW 向量存储 - 基于分层可导航小世界图的近似最近邻检索
+     */
+    HNSW,
+    
+    /**
+     * 堆外向量存储 - 向量保存在直接内存中，降低堆占用和 GC 压力
+     */
+    OFF_HEAP,
+    
+    /**
+     * SIMD 精确检索存储 - 归一化向量连续存放，使用 Vector API 计算点积
+     */
+    SIMD_EXACT,
+    
+    /**
+     * Int8 量化存储 - 8 位标量量化编码近似打分，原始向量精确重打分
+     */
+    INT8_QUANTIZED,
+    
+    /**
+     * 二值量化存储 - 1 位编码汉明距离预筛，原始向量余弦重排
+     */
+    BINARY_QUANTIZED,
+    
+    /**
+     * 内存映射文件存储 - 向量和文本段持久化到磁盘，重启时直接映射已有文件，最近命中的行缓存在堆内热层
+     */
+    MAPPED_FILE,
+    
+    /**
+     * 分片存储 - 按 id 哈希分片，多核并行写入和分散-聚合检索
+     */
+    SHARDED,
+    
+    /**
+     * IVF 聚类存储 - k-means 倒排列表，检索只扫描最近的 nprobe 个列表
+     */
+    IVF,
+    
+    /**
+     * 乘积量化存储 - 子空间码本编码 + 非对称距离表近似打分，原始向量堆外保存用于精确重打分
+     */
+    PRODUCT_QUANTIZED,
+    
+    /**
+     * Redis 共享存储 - 数据保存在 Redis 中供多个实例共享，各实例在本地副本上打分
+     */
+    REDIS
+}
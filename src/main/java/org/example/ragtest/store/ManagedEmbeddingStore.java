@@ -0,0 +1,124 @@
+package org.example.ragtest.store;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+
+/**
+ * 本项目自行实现的向量存储接口
+ * 在 langchain4j EmbeddingStore 的基础上暴露存储的运行状态和数据遍历，
+ * 并将单条写入和不带 id 的批量写入统一转发到 {@link #addAll(List, List, List)}
+ */
+public interface ManagedEmbeddingStore extends EmbeddingStore<TextSegment> {
+    
+    /**
+     * 标识文本段所属文档的元数据键，值为文档来源路径或调用方指定的文档 id
+     */
+    String DOCUMENT_ID_KEY = "document_id";
+    
+    /**
+     * 读取文本段所属的文档 id
+     * @return 文本段为 null 或没有文档 id 时返回 null
+     */
+    static String documentIdOf(TextSegment segment) {
+        Object value = segment == null ? null : segment.metadata().toMap().get(DOCUMENT_ID_KEY);
+        return value == null ? null : value.toString();
+    }
+    
+    @Override
+    default String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+    
+    @Override
+    default void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+    
+    @Override
+    default String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), Collections.singletonList(textSegment));
+        return id;
+    }
+    
+    @Override
+    default List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+    
+    /**
+     * 用一批新的文本段替换指定文档的全部文本段
+     * 默认实现先删除再写入，检索可能短暂看到文档缺失；存储引擎应覆盖为原子替换
+     * @param documentId 文档 id，新文本段的 {@link #DOCUMENT_ID_KEY} 元数据应与之一致
+     */
+    default void upsertDocument(String documentId, List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        removeAll(metadataKey(DOCUMENT_ID_KEY).isEqualTo(documentId));
+        addAll(ids, embeddings, embedded);
+    }
+    
+    /**
+     * 删除指定文档的全部文本段
+     */
+    default void removeDocument(String documentId) {
+        removeAll(metadataKey(DOCUMENT_ID_KEY).isEqualTo(documentId));
+    }
+    
+    /**
+     * 两阶段截断维度检索（Matryoshka）
+     * 先只用向量的前 coarseDimension 维（重新归一化后）粗排出 maxResults × oversample 个候选，
+     * 再对候选按完整维度重打分；适用于前缀维度本身即可表达语义的嵌入模型，以少量召回换取更低的延迟
+     * 默认实现忽略截断参数按完整维度检索，只有支持的存储引擎和转发给它们的包装层会覆盖
+     * @param coarseDimension 粗排使用的前缀维度，不小于完整维度或不为正数时直接按完整维度检索
+     * @param oversample 粗排候选数相对 maxResults 的倍数
+     */
+    default EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request, int coarseDimension, int oversample) {
+        return search(request);
+    }
+    
+    /**
+     * 是否真正执行截断维度检索；为 false 时 {@link #search(EmbeddingSearchRequest, int, int)} 按完整维度检索
+     */
+    default boolean supportsTruncatedSearch() {
+        return false;
+    }
+    
+    /**
+     * 已删除但尚未被压缩回收的向量数量
+     */
+    default int deletedCount() {
+        return 0;
+    }
+    
+    /**
+     * 获取当前存储的向量数量，不含已删除的向量
+     * @return 向量数量
+     */
+    int size();
+    
+    /**
+     * 按写入顺序遍历存储中的全部数据
+     * 遍历分批持有读锁，不阻塞检索；遍历期间新写入的数据可能被包含也可能不被包含
+     * @param consumer 数据消费者
+     */
+    void forEach(Consumer<Entry> consumer);
+    
+    /**
+     * 存储中的一条数据
+     * @param segment 文本段，写入时未提供则为 null
+     */
+    record Entry(String id, Embedding embedding, TextSegment segment) {}
+}
@@ -0,0 +1,113 @@
+package org.example.ragtest.store;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 以截断维度两阶段检索的存储视图
+ * 将 {@link #search(EmbeddingSearchRequest)} 转为
+ * {@link ManagedEmbeddingStore#search(EmbeddingSearchRequest, int, int)}，其余操作原样转发，
+ * 用于让 EmbeddingStoreContentRetriever 等只调用标准接口的组件使用粗排检索
+ *
+ * 目前只有 SIMD_EXACT 存储真正执行截断维度检索；其他存储配置了前缀维度时记录警告并返回原存储
+ */
+@Slf4j
+public final class TruncatedSearchEmbeddingStore implements ManagedEmbeddingStore {
+
+    private final ManagedEmbeddingStore delegate;
+    private final int coarseDimension;
+    private final int oversample;
+
+    private TruncatedSearchEmbeddingStore(ManagedEmbeddingStore delegate, int coarseDimension, int oversample) {
+        this.delegate = delegate;
+        this.coarseDimension = coarseDimension;
+        this.oversample = oversample;
+    }
+
+    /**
+     * 包装存储
+     * @param coarseDimension 粗排前缀维度，不为正数时不包装
+     * @param oversample 粗排候选数相对 maxResults 的倍数
+     * @return 未启用截断或存储不支持截断维度检索时返回原存储
+     */
+    public static EmbeddingStore<TextSegment> wrap(EmbeddingStore<TextSegment> store, int coarseDimension, int oversample) {
+        if (coarseDimension <= 0) {
+            return store;
+        }
+        if (!(store instanceof ManagedEmbeddingStore managedStore) || !managedStore.supportsTruncatedSearch()) {
+            log.warn("当前向量存储 {} 不支持截断维度检索，粗排维度 {} 不生效，按完整维度检索",
+                    store.getClass().getSimpleName(), coarseDimension);
+            return store;
+        }
+        return new TruncatedSearchEmbeddingStore(managedStore, coarseDimension, oversample);
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        return delegate.search(request, coarseDimension, oversample);
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request, int coarseDimension, int oversample) {
+        return delegate.search(request, coarseDimension, oversample);
+    }
+
+    @Override
+    public boolean supportsTruncatedSearch() {
+        return delegate.supportsTruncatedSearch();
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        delegate.addAll(ids, embeddings, embedded);
+    }
+
+    @Override
+    public void upsertDocument(String documentId, List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        delegate.upsertDocument(documentId, ids, embeddings, embedded);
+    }
+
+    @Override
+    public void removeDocument(String documentId) {
+        delegate.removeDocument(documentId);
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        delegate.removeAll(ids);
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        delegate.removeAll(filter);
+    }
+
+    @Override
+    public void removeAll() {
+        delegate.removeAll();
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public int deletedCount() {
+        return delegate.deletedCount();
+    }
+
+    @Override
+    public void forEach(Consumer<Entry> consumer) {
+        delegate.forEach(consumer);
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import org.example.ragtest.store.ManagedEmbeddingStore;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 向量存储基类
+ * 提供分批遍历和批量写入参数校验，子类只需实现批量写入、检索和按行读取
+ */
+public abstract class AbstractEmbeddingStore implements ManagedEmbeddingStore {
+
+    /**
+     * 遍历时每批读取的行数
+     */
+    private static final int ITERATION_BATCH = 1024;
+
+    @Override
+    public void forEach(Consumer<Entry> consumer) {
+        int total = rowCount();
+        for (int from = 0; from < total; from += ITERATION_BATCH) {
+            readEntries(from, Math.min(total, from + ITERATION_BATCH)).forEach(consumer);
+        }
+    }
+
+    /**
+     * 已分配的行数，包含已删除的行
+     */
+    protected abstract int rowCount();
+
+    /**
+     * 读取行号在 [from, to) 范围内未删除的数据，由子类在自己的读锁内完成
+     */
+    protected abstract List<Entry> readEntries(int from, int to);
+
+    /**
+     * 校验批量写入参数的数量一致性
+     */
+    protected static void validateBatch(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        if (ids.size() != embeddings.size() || (embedded != null && embedded.size() != embeddings.size())) {
+            throw new IllegalArgumentException("ids、embeddings 和 embedded 的数量必须一致");
+        }
+    }
+
+    /**
+     * 校验批量写入中全部向量的维度一致，且与存储已有的维度一致
+     * @param dimension 存储当前的向量维度，尚未写入时为 0
+     */
+    protected static void validateDimensions(List<Embedding> embeddings, int dimension) {
+        int expected = dimension;
+        for (Embedding embedding : embeddings) {
+            int actual = embedding.vector().length;
+            if (expected == 0) {
+                expected = actual;
+            } else if (actual != expected) {
+                throw new IllegalArgumentException("向量维度不匹配，期望 " + expected + "，实际 " + actual);
+            }
+        }
+    }
+
+    /**
+     * 取批量写入中第 i 个文本段，embedded 为 null 时返回 null
+     */
+    protected static TextSegment segmentAt(List<TextSegment> embedded, int index) {
+        return embedded == null ? null : embedded.get(index);
+    }
+}
@@ -0,0 +1,180 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.filter.Filter;
+import org.example.ragtest.store.support.SegmentTable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 按行号寻址的向量存储基类
+ * 文本段保存在 {@link SegmentTable} 中，读写由一把读写锁保护
+ *
+ * 删除只在段表中打墓碑，检索时跳过；文档替换在同一次写锁内完成删除和写入，
+ * 检索要么看到旧版本要么看到新版本
+ *
+ * 写入前先校验整批向量的维度，维度不一致的批次整体拒绝，不会只写入其中一部分
+ */
+public abstract class AbstractTableEmbeddingStore extends AbstractEmbeddingStore {
+
+    protected final ReadWriteLock lock = new ReentrantReadWriteLock();
+    protected final SegmentTable segments;
+
+    protected AbstractTableEmbeddingStore() {
+        this(false);
+    }
+
+    /**
+     * @param compressText 是否压缩段表中的文本字节块
+     */
+    protected AbstractTableEmbeddingStore(boolean compressText) {
+        this.segments = new SegmentTable(compressText);
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        validateBatch(ids, embeddings, embedded);
+        lock.writeLock().lock();
+        try {
+            validateDimensions(embeddings, dimension());
+            appendRows(ids, embeddings, embedded);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void upsertDocument(String documentId, List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        validateBatch(ids, embeddings, embedded);
+        lock.writeLock().lock();
+        try {
+            validateDimensions(embeddings, dimension());
+            deleteRows(segments.rowsWithMetadata(DOCUMENT_ID_KEY, documentId));
+            appendRows(ids, embeddings, embedded);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeDocument(String documentId) {
+        lock.writeLock().lock();
+        try {
+            deleteRows(segments.rowsWithMetadata(DOCUMENT_ID_KEY, documentId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                int row = segments.row(id);
+                if (row >= 0) {
+                    segments.delete(row);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("删除过滤条件不能为空");
+        }
+        lock.writeLock().lock();
+        try {
+            deleteRows(segments.rowsMatching(filter));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            for (int row = 0; row < segments.size(); row++) {
+                segments.delete(row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return segments.liveCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int deletedCount() {
+        lock.readLock().lock();
+        try {
+            return segments.deletedCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected int rowCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected List<Entry> readEntries(int from, int to) {
+        lock.readLock().lock();
+        try {
+            List<Entry> entries = new ArrayList<>(to - from);
+            for (int row = from; row < to; row++) {
+                if (segments.isLive(row)) {
+                    entries.add(new Entry(segments.id(row), embedding(row), segments.segment(row)));
+                }
+            }
+            return entries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 追加一批向量，调用方已持有写锁并完成参数和维度校验
+     */
+    protected abstract void appendRows(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded);
+
+    /**
+     * 已写入向量的维度，尚未写入时为 0，调用方已持有锁
+     */
+    protected abstract int dimension();
+
+    /**
+     * 还原指定行的原始向量，调用方已持有读锁
+     */
+    protected abstract Embedding embedding(int row);
+
+    private void deleteRows(int[] rows) {
+        for (int row : rows) {
+            segments.delete(row);
+        }
+    }
+}
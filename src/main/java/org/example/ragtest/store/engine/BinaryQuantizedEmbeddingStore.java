@@ -0,0 +1,175 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.support.BinaryCodes;
+import org.example.ragtest.store.support.OffHeapVectorArena;
+import org.example.ragtest.store.support.TopKCollector;
+import org.example.ragtest.store.support.VectorOps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * 二值量化向量存储
+ *
+ * 实现要点：
+ * - 每个向量减去各维度均值后按符号压缩为 1 位编码（384 维为 6 个 long，48 字节），作为检索的第一阶段
+ * - 均值在向量数达到校准样本数时用这批样本计算一次，样本行重新编码，之后写入的行按同一中心直接编码；
+ *   校准持锁时间以样本数为上限，与存储规模无关
+ * - 第一阶段按汉明距离选出 maxResults × oversample 个候选，只做异或和 bitCount
+ * - 第二阶段用堆外保存的原始归一化向量对候选做精确余弦重排
+ * - 候选数随请求的 maxResults 变化，动态调大 maxResults 时第一阶段自动扩大
+ * - 全精度层没有拆成独立的存储：重排需要按行号读取候选的原始向量，通用的 EmbeddingStore 接口只能整体检索，
+ *   因此原始向量放在本存储的堆外区中，与二值编码共用行号和段表，作为二值预筛后面的全精度层
+ */
+@Slf4j
+public class BinaryQuantizedEmbeddingStore extends AbstractTableEmbeddingStore {
+
+    private static final int INITIAL_ROWS = 1024;
+
+    private final int oversample;
+    private final int calibrationSize;
+    private final int rowsPerChunk;
+
+    private OffHeapVectorArena originals;
+    private float[] norms = new float[INITIAL_ROWS];
+    private long[] codes = new long[0];
+    private int words;
+    private int rows;
+
+    /**
+     * 每个维度的编码中心；为 null 表示尚未校准，以 0 为中心
+     */
+    private float[] center;
+
+    /**
+     * @param oversample 汉明距离阶段候选数相对 maxResults 的倍数
+     * @param calibrationSize 首次计算编码中心所需的向量数
+     * @param rowsPerChunk 堆外原始向量分块行数
+     * @param compressText 是否压缩段表中的文本字节块
+     */
+    public BinaryQuantizedEmbeddingStore(int oversample, int calibrationSize, int rowsPerChunk, boolean compressText) {
+        super(compressText);
+        this.oversample = Math.max(1, oversample);
+        this.calibrationSize = Math.max(1, calibrationSize);
+        this.rowsPerChunk = rowsPerChunk;
+    }
+
+    @Override
+    protected void appendRows(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        for (int i = 0; i < ids.size(); i++) {
+            float[] vector = embeddings.get(i).vector();
+            if (originals == null) {
+                originals = new OffHeapVectorArena(vector.length, rowsPerChunk);
+                words = BinaryCodes.words(vector.length);
+            }
+            float[] normalized = VectorOps.normalize(vector);
+            originals.append(normalized);
+            if (rows == norms.length) {
+                norms = Arrays.copyOf(norms, rows * 2);
+            }
+            norms[rows] = VectorOps.norm(vector);
+            if ((rows + 1) * words > codes.length) {
+                codes = Arrays.copyOf(codes, Math.max(INITIAL_ROWS, rows * 2) * words);
+            }
+            BinaryCodes.encode(normalized, center, codes, rows * words);
+            segments.add(ids.get(i), segmentAt(embedded, i));
+            rows++;
+            if (center == null && rows >= calibrationSize) {
+                calibrate();
+            }
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        float[] query = VectorOps.normalize(request.queryEmbedding().vector());
+        lock.readLock().lock();
+        try {
+            if (rows == 0) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+            if (query.length != originals.dimension()) {
+                throw new IllegalArgumentException(
+                        "查询向量维度不匹配，期望 " + originals.dimension() + "，实际 " + query.length);
+            }
+            long[] queryCode = new long[words];
+            BinaryCodes.encode(query, center, queryCode, 0);
+
+            // 第一阶段：汉明距离预筛，分数取负距离以复用最小堆
+            TopKCollector candidates = new TopKCollector(request.maxResults() * oversample);
+            IntPredicate filter = segments.filter(request.filter());
+            for (int row = 0, offset = 0; row < rows; row++, offset += words) {
+                float score = -BinaryCodes.hammingDistance(queryCode, codes, offset);
+                if (score > candidates.threshold() && filter.test(row)) {
+                    candidates.offer(row, score);
+                }
+            }
+
+            // 第二阶段：原始向量精确重排
+            TopKCollector topK = new TopKCollector(request.maxResults());
+            for (int i = 0; i < candidates.size(); i++) {
+                int row = candidates.row(i);
+                topK.offer(row, originals.dot(row, query));
+            }
+            topK.sortDescending();
+
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(topK.size());
+            for (int i = 0; i < topK.size(); i++) {
+                double score = VectorOps.toRelevanceScore(topK.score(i));
+                if (score < request.minScore()) {
+                    break;
+                }
+                int row = topK.row(i);
+                matches.add(new EmbeddingMatch<>(score, segments.id(row), embedding(row), segments.segment(row)));
+            }
+            return new EmbeddingSearchResult<>(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 以已写入的样本行的各维度均值作为编码中心，并重新编码这些行；每个存储只执行一次
+     */
+    private void calibrate() {
+        int dimension = originals.dimension();
+        float[] mean = new float[dimension];
+        for (int row = 0; row < rows; row++) {
+            float[] vector = originals.read(row);
+            for (int d = 0; d < dimension; d++) {
+                mean[d] += vector[d];
+            }
+        }
+        for (int d = 0; d < dimension; d++) {
+            mean[d] /= rows;
+        }
+        center = mean;
+        for (int row = 0; row < rows; row++) {
+            BinaryCodes.encode(originals.read(row), center, codes, row * words);
+        }
+        log.info("二值编码中心校准完成: 行数={}, 维度={}", rows, dimension);
+    }
+
+    @Override
+    protected int dimension() {
+        return originals == null ? 0 : originals.dimension();
+    }
+
+    @Override
+    protected Embedding embedding(int row) {
+        float[] vector = originals.read(row);
+        float norm = norms[row];
+        for (int d = 0; d < vector.length; d++) {
+            vector[d] *= norm;
+        }
+        return Embedding.from(vector);
+    }
+}
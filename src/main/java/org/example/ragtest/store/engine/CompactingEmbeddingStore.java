@@ -0,0 +1,224 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.filter.Filter;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.ManagedEmbeddingStore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 后台压缩向量存储装饰器
+ *
+ * 实现要点：
+ * - 删除在被装饰的存储中只打墓碑，墓碑行仍占用向量槽位并参与扫描或图遍历
+ * - 后台线程定期检查墓碑占比，超过阈值时新建一个空存储，分批复制存活数据后原子替换引用
+ * - 压缩期间检索继续访问旧存储，不被暂停；写入和删除等待压缩完成后作用于新存储
+ * - 旧存储延迟一段时间再关闭，让替换前开始的检索自然结束
+ */
+@Slf4j
+public class CompactingEmbeddingStore implements ManagedEmbeddingStore, AutoCloseable {
+
+    /**
+     * 墓碑数少于该值时不压缩
+     */
+    private static final int MIN_DELETED = 1000;
+
+    private static final int COPY_BATCH = 512;
+
+    private static final long RETIRE_DELAY_SECONDS = 30;
+
+    private final Supplier<ManagedEmbeddingStore> storeFactory;
+    private final double deletedRatio;
+    private final ReadWriteLock mutationLock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService compactionExecutor;
+    private volatile ManagedEmbeddingStore current;
+
+    /**
+     * @param initial 初始存储
+     * @param storeFactory 空存储工厂，压缩时用于创建替换存储
+     * @param deletedRatio 墓碑数占总行数的比例超过该值时压缩
+     * @param checkIntervalSeconds 后台检查间隔（秒）
+     */
+    public CompactingEmbeddingStore(ManagedEmbeddingStore initial, Supplier<ManagedEmbeddingStore> storeFactory,
+                                    double deletedRatio, long checkIntervalSeconds) {
+        this.current = initial;
+        this.storeFactory = storeFactory;
+        this.deletedRatio = deletedRatio;
+        this.compactionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "embedding-store-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactionExecutor.scheduleWithFixedDelay(
+                this::compactQuietly, checkIntervalSeconds, checkIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        mutate(store -> store.addAll(ids, embeddings, embedded));
+    }
+
+    @Override
+    public void upsertDocument(String documentId, List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        mutate(store -> store.upsertDocument(documentId, ids, embeddings, embedded));
+    }
+
+    @Override
+    public void removeDocument(String documentId) {
+        mutate(store -> store.removeDocument(documentId));
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        mutate(store -> store.removeAll(ids));
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        mutate(store -> store.removeAll(filter));
+    }
+
+    @Override
+    public void removeAll() {
+        mutate(ManagedEmbeddingStore::removeAll);
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        return current.search(request);
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request, int coarseDimension, int oversample) {
+        return current.search(request, coarseDimension, oversample);
+    }
+
+    @Override
+    public boolean supportsTruncatedSearch() {
+        return current.supportsTruncatedSearch();
+    }
+
+    @Override
+    public int size() {
+        return current.size();
+    }
+
+    @Override
+    public int deletedCount() {
+        return current.deletedCount();
+    }
+
+    @Override
+    public void forEach(Consumer<Entry> consumer) {
+        current.forEach(consumer);
+    }
+
+    /**
+     * 墓碑数达到阈值时立即压缩
+     * @return 是否执行了压缩
+     */
+    public boolean compactIfNeeded() {
+        ManagedEmbeddingStore store = current;
+        int deleted = store.deletedCount();
+        if (deleted < MIN_DELETED || deleted <= deletedRatio * (store.size() + deleted)) {
+            return false;
+        }
+        compact();
+        return true;
+    }
+
+    /**
+     * 立即压缩：复制存活数据到新存储并替换，期间阻塞写入但不阻塞检索
+     */
+    public void compact() {
+        mutationLock.writeLock().lock();
+        try {
+            long start = System.nanoTime();
+            ManagedEmbeddingStore old = current;
+            int deleted = old.deletedCount();
+            ManagedEmbeddingStore fresh = storeFactory.get();
+            List<String> ids = new ArrayList<>(COPY_BATCH);
+            List<Embedding> embeddings = new ArrayList<>(COPY_BATCH);
+            List<TextSegment> segments = new ArrayList<>(COPY_BATCH);
+            old.forEach(entry -> {
+                ids.add(entry.id());
+                embeddings.add(entry.embedding());
+                segments.add(entry.segment());
+                if (ids.size() == COPY_BATCH) {
+                    copyBatch(fresh, ids, embeddings, segments);
+                }
+            });
+            if (!ids.isEmpty()) {
+                copyBatch(fresh, ids, embeddings, segments);
+            }
+            current = fresh;
+            compactionExecutor.schedule(() -> closeQuietly(old), RETIRE_DELAY_SECONDS, TimeUnit.SECONDS);
+            log.info("向量存储压缩完成: 存活={}, 回收墓碑={}, 耗时={}ms",
+                    fresh.size(), deleted, (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            mutationLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        compactionExecutor.shutdownNow();
+        mutationLock.writeLock().lock();
+        try {
+            closeQuietly(current);
+        } finally {
+            mutationLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 写入类操作共享读锁，彼此并发，只与压缩互斥
+     */
+    private void mutate(Consumer<ManagedEmbeddingStore> operation) {
+        mutationLock.readLock().lock();
+        try {
+            operation.accept(current);
+        } finally {
+            mutationLock.readLock().unlock();
+        }
+    }
+
+    private static void copyBatch(ManagedEmbeddingStore target, List<String> ids,
+                                  List<Embedding> embeddings, List<TextSegment> segments) {
+        target.addAll(new ArrayList<>(ids), new ArrayList<>(embeddings), new ArrayList<>(segments));
+        ids.clear();
+        embeddings.clear();
+        segments.clear();
+    }
+
+    private void compactQuietly() {
+        try {
+            compactIfNeeded();
+        } catch (Exception e) {
+            log.error("向量存储压缩失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private static void closeQuietly(ManagedEmbeddingStore store) {
+        if (store instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.warn("关闭已替换的向量存储失败: {}", e.getMessage());
+            }
+        }
+    }
+}
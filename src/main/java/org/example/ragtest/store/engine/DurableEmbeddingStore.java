@@ -0,0 +1,562 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.filter.Filter;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.ManagedEmbeddingStore;
+import org.example.ragtest.store.support.SegmentCodec;
+import org.example.ragtest.store.support.WriteAheadLog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 带预写日志的持久化向量存储装饰器
+ *
+ * 实现要点：
+ * - 每次写入、文档替换和删除先以带 CRC32 校验的记录追加到 WAL，再作用于被装饰的存储；
+ *   按过滤条件删除时先解析出匹配的 id，以 id 列表记录
+ * - 后台线程定期生成压缩快照：先切换 WAL 段，再分批遍历存储写入临时文件，完成后原子重命名，
+ *   最后删除快照之前的 WAL 段；快照期间检索不受影响
+ * - 写入前先校验整批向量的维度与存储一致，维度不一致的批次不写 WAL 直接拒绝
+ * - 启动时加载快照并回放之后的 WAL 段；回放按 id 去重，快照与 WAL 段边界重叠的数据不会重复写入；
+ *   去重时跟踪每个文档的 id，文档被删除或替换后，复用这些 id 的写入照常回放
+ * - 回放时被存储拒绝的记录记录日志后跳过，不会阻止存储启动
+ * - 崩溃时写到一半的 WAL 记录校验失败，回放时被截断丢弃
+ */
+@Slf4j
+public class DurableEmbeddingStore implements ManagedEmbeddingStore, AutoCloseable {
+
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String SNAPSHOT_TEMP_FILE = "snapshot.bin.tmp";
+    private static final String WAL_DIRECTORY = "wal";
+
+    private static final int SNAPSHOT_MAGIC = 0x52414753;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER_BYTES = 2 * Integer.BYTES + Long.BYTES;
+    private static final int SNAPSHOT_BATCH = 512;
+
+    private static final byte OP_END = 0;
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE_IDS = 2;
+    private static final byte OP_UPSERT_DOCUMENT = 3;
+    private static final byte OP_REMOVE_DOCUMENT = 4;
+    private static final byte OP_REMOVE_ALL = 5;
+
+    private final ManagedEmbeddingStore delegate;
+    private final Path directory;
+    private final WriteAheadLog wal;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+    private final ScheduledExecutorService snapshotExecutor;
+    private long recordsSinceSnapshot;
+
+    /**
+     * 已写入向量的维度，尚未写入时为 0，由追加锁保护
+     */
+    private int dimension;
+
+    /**
+     * 打开（或创建）持久化目录，恢复数据后开始定期快照
+     * @param delegate 被装饰的存储
+     * @param directory 持久化目录
+     * @param fsync 每次写入 WAL 后是否强制刷盘
+     * @param snapshotIntervalSeconds 快照检查间隔（秒），期间没有新写入则跳过
+     */
+    public DurableEmbeddingStore(ManagedEmbeddingStore delegate, Path directory,
+                                 boolean fsync, long snapshotIntervalSeconds) {
+        this.delegate = delegate;
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+            this.wal = new WriteAheadLog(directory.resolve(WAL_DIRECTORY), fsync);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("打开持久化向量存储失败: " + directory, e);
+        }
+        this.snapshotExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "embedding-store-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotExecutor.scheduleWithFixedDelay(
+                this::snapshotQuietly, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        byte[] record = encode(OP_ADD, null, ids, embeddings, embedded);
+        logged(record, embeddings, () -> delegate.addAll(ids, embeddings, embedded));
+    }
+
+    @Override
+    public void upsertDocument(String documentId, List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        byte[] record = encode(OP_UPSERT_DOCUMENT, documentId, ids, embeddings, embedded);
+        logged(record, embeddings, () -> delegate.upsertDocument(documentId, ids, embeddings, embedded));
+    }
+
+    @Override
+    public void removeDocument(String documentId) {
+        logged(encodeRemove(OP_REMOVE_DOCUMENT, documentId, null), List.of(), () -> delegate.removeDocument(documentId));
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        logged(encodeRemove(OP_REMOVE_IDS, null, ids), List.of(), () -> delegate.removeAll(ids));
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("删除过滤条件不能为空");
+        }
+        appendLock.lock();
+        try {
+            List<String> ids = new ArrayList<>();
+            delegate.forEach(entry -> {
+                if (entry.segment() != null && filter.test(entry.segment().metadata())) {
+                    ids.add(entry.id());
+                }
+            });
+            removeAll(ids);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        logged(new byte[]{OP_REMOVE_ALL}, List.of(), delegate::removeAll);
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        return delegate.search(request);
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request, int coarseDimension, int oversample) {
+        return delegate.search(request, coarseDimension, oversample);
+    }
+
+    @Override
+    public boolean supportsTruncatedSearch() {
+        return delegate.supportsTruncatedSearch();
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public int deletedCount() {
+        return delegate.deletedCount();
+    }
+
+    @Override
+    public void forEach(Consumer<Entry> consumer) {
+        delegate.forEach(consumer);
+    }
+
+    /**
+     * 立即生成一次快照；已有快照正在生成或自上次快照以来没有写入时直接返回
+     */
+    public void snapshot() throws IOException {
+        if (!snapshotRunning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long sequence;
+            appendLock.lock();
+            try {
+                if (recordsSinceSnapshot == 0) {
+                    return;
+                }
+                sequence = wal.rotate();
+                recordsSinceSnapshot = 0;
+            } finally {
+                appendLock.unlock();
+            }
+            long start = System.nanoTime();
+            int count = writeSnapshot(sequence);
+            wal.deleteBefore(sequence);
+            log.info("向量存储快照完成: 条数={}, WAL 起始段={}, 耗时={}ms",
+                    count, sequence, (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            snapshotRunning.set(false);
+        }
+    }
+
+    @Override
+    public void close() {
+        snapshotExecutor.shutdown();
+        try {
+            snapshotExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            snapshot();
+            wal.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("关闭持久化向量存储失败: " + directory, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (delegate instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.warn("关闭被装饰的向量存储失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 追加 WAL 记录后在同一把锁内执行对应的存储操作，保证 WAL 顺序与存储中的生效顺序一致
+     * 写入的向量维度先于 WAL 校验，被拒绝的批次不会留在日志中
+     * @param embeddings 记录中写入的向量，删除类记录为空
+     */
+    private void logged(byte[] record, List<Embedding> embeddings, Runnable operation) {
+        appendLock.lock();
+        try {
+            AbstractEmbeddingStore.validateDimensions(embeddings, dimension);
+            wal.append(record);
+            operation.run();
+            if (dimension == 0 && !embeddings.isEmpty()) {
+                dimension = embeddings.get(0).vector().length;
+            }
+            recordsSinceSnapshot++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入 WAL 失败: " + directory, e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // ==================== 恢复 ====================
+
+    private void recover() throws IOException {
+        long start = System.nanoTime();
+        ReplayState state = new ReplayState();
+        if (delegate.size() > 0) {
+            delegate.forEach(entry -> {
+                state.add(entry.id(), entry.segment());
+                dimension = entry.embedding().vector().length;
+            });
+        }
+        long fromSequence = 0;
+        Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshotFile)) {
+            fromSequence = loadSnapshot(snapshotFile, state);
+        }
+        long records = wal.replay(fromSequence, payload -> apply(payload, state));
+        recordsSinceSnapshot = records;
+        log.info("持久化向量存储恢复完成: 目录={}, 条数={}, 回放 WAL 记录={}, 耗时={}ms",
+                directory, delegate.size(), records, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 加载快照
+     * @return 快照之后的第一个 WAL 段序号
+     */
+    private long loadSnapshot(Path snapshotFile, ReplayState state) throws IOException {
+        long remaining = Files.size(snapshotFile) - SNAPSHOT_HEADER_BYTES;
+        try (InputStream input = Files.newInputStream(snapshotFile);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(input, 1 << 16))) {
+            if (remaining < 0 || in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("不是有效的快照文件: " + snapshotFile);
+            }
+            long sequence = in.readLong();
+            byte[] payload;
+            while ((payload = WriteAheadLog.readFrame(in, remaining)) != null) {
+                if (payload.length > 0 && payload[0] == OP_END) {
+                    return sequence;
+                }
+                apply(payload, state);
+                remaining -= WriteAheadLog.frameSize(payload);
+            }
+            throw new IOException("快照文件不完整: " + snapshotFile);
+        }
+    }
+
+    /**
+     * 将一条 WAL / 快照记录作用于被装饰的存储
+     * 写入跳过已存在的 id；文档替换和删除本身是幂等的，直接重放。
+     * 存储拒绝的记录（例如维度与已有数据不一致）记录日志后跳过
+     */
+    private void apply(byte[] payload, ReplayState state) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        try {
+            switch (op) {
+                case OP_ADD -> {
+                    List<String> ids = new ArrayList<>();
+                    List<Embedding> embeddings = new ArrayList<>();
+                    List<TextSegment> segments = new ArrayList<>();
+                    Set<String> batchIds = new HashSet<>();
+                    readEntries(in, ids, embeddings, segments, id -> !state.contains(id) && batchIds.add(id));
+                    if (!ids.isEmpty()) {
+                        delegate.addAll(ids, embeddings, segments);
+                        added(state, ids, embeddings, segments);
+                    }
+                }
+                case OP_UPSERT_DOCUMENT -> {
+                    String documentId = SegmentCodec.readString(in);
+                    List<String> ids = new ArrayList<>();
+                    List<Embedding> embeddings = new ArrayList<>();
+                    List<TextSegment> segments = new ArrayList<>();
+                    readEntries(in, ids, embeddings, segments, id -> true);
+                    delegate.upsertDocument(documentId, ids, embeddings, segments);
+                    state.removeDocument(documentId);
+                    added(state, ids, embeddings, segments);
+                }
+                case OP_REMOVE_DOCUMENT -> {
+                    String documentId = SegmentCodec.readString(in);
+                    delegate.removeDocument(documentId);
+                    state.removeDocument(documentId);
+                }
+                case OP_REMOVE_IDS -> {
+                    int count = in.readInt();
+                    List<String> ids = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        ids.add(SegmentCodec.readString(in));
+                    }
+                    delegate.removeAll(ids);
+                    ids.forEach(state::remove);
+                }
+                case OP_REMOVE_ALL -> {
+                    delegate.removeAll();
+                    state.clear();
+                }
+                default -> throw new IOException("未知的 WAL 操作类型: " + op);
+            }
+        } catch (RuntimeException e) {
+            log.warn("回放记录被存储拒绝，已跳过: 目录={}, 操作类型={}, 原因={}", directory, op, e.getMessage());
+        }
+    }
+
+    private void added(ReplayState state, List<String> ids, List<Embedding> embeddings, List<TextSegment> segments) {
+        for (int i = 0; i < ids.size(); i++) {
+            state.add(ids.get(i), segments.get(i));
+        }
+        if (dimension == 0 && !embeddings.isEmpty()) {
+            dimension = embeddings.get(0).vector().length;
+        }
+    }
+
+    /**
+     * 读取一组 (文本段, 向量) 记录，只保留 accept 返回 true 的 id
+     */
+    private static void readEntries(DataInputStream in, List<String> ids, List<Embedding> embeddings,
+                                    List<TextSegment> segments, Predicate<String> accept)
+            throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            SegmentCodec.Entry entry = SegmentCodec.read(in);
+            float[] vector = new float[in.readInt()];
+            for (int d = 0; d < vector.length; d++) {
+                vector[d] = in.readFloat();
+            }
+            if (accept.test(entry.id())) {
+                ids.add(entry.id());
+                embeddings.add(Embedding.from(vector));
+                segments.add(entry.segment());
+            }
+        }
+    }
+
+    // ==================== 快照 ====================
+
+    private int writeSnapshot(long sequence) throws IOException {
+        Path temp = directory.resolve(SNAPSHOT_TEMP_FILE);
+        int[] count = new int[1];
+        try (OutputStream output = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output, 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(sequence);
+
+            List<String> ids = new ArrayList<>(SNAPSHOT_BATCH);
+            List<Embedding> embeddings = new ArrayList<>(SNAPSHOT_BATCH);
+            List<TextSegment> segments = new ArrayList<>(SNAPSHOT_BATCH);
+            Consumer<Entry> writer = entry -> {
+                ids.add(entry.id());
+                embeddings.add(entry.embedding());
+                segments.add(entry.segment());
+                count[0]++;
+                if (ids.size() == SNAPSHOT_BATCH) {
+                    writeBatch(out, ids, embeddings, segments);
+                }
+            };
+            delegate.forEach(writer);
+            if (!ids.isEmpty()) {
+                writeBatch(out, ids, embeddings, segments);
+            }
+            WriteAheadLog.writeFrame(out, new byte[]{OP_END});
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return count[0];
+    }
+
+    private static void writeBatch(DataOutputStream out, List<String> ids,
+                                   List<Embedding> embeddings, List<TextSegment> segments) {
+        try {
+            WriteAheadLog.writeFrame(out, encode(OP_ADD, null, ids, embeddings, segments));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ids.clear();
+        embeddings.clear();
+        segments.clear();
+    }
+
+    /**
+     * 编码写入类记录：操作类型、可选的文档 id、(文本段, 向量) 列表
+     */
+    private static byte[] encode(byte op, String documentId, List<String> ids,
+                                 List<Embedding> embeddings, List<TextSegment> embedded) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(op);
+            if (documentId != null) {
+                SegmentCodec.writeString(out, documentId);
+            }
+            out.writeInt(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                SegmentCodec.write(out, ids.get(i), embedded == null ? null : embedded.get(i));
+                float[] vector = embeddings.get(i).vector();
+                out.writeInt(vector.length);
+                for (float value : vector) {
+                    out.writeFloat(value);
+                }
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 编码删除类记录：操作类型、可选的文档 id、可选的 id 列表
+     */
+    private static byte[] encodeRemove(byte op, String documentId, Collection<String> ids) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(op);
+            if (documentId != null) {
+                SegmentCodec.writeString(out, documentId);
+            }
+            if (ids != null) {
+                out.writeInt(ids.size());
+                for (String id : ids) {
+                    SegmentCodec.writeString(out, id);
+                }
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            log.error("向量存储快照失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 回放期间已写入存储的 id，以及每个文档包含的 id，用于写入去重
+     */
+    private static final class ReplayState {
+
+        private final Set<String> knownIds = new HashSet<>();
+        private final Map<String, String> documentById = new HashMap<>();
+        private final Map<String, Set<String>> idsByDocument = new HashMap<>();
+
+        boolean contains(String id) {
+            return knownIds.contains(id);
+        }
+
+        void add(String id, TextSegment segment) {
+            remove(id);
+            knownIds.add(id);
+            String documentId = ManagedEmbeddingStore.documentIdOf(segment);
+            if (documentId != null) {
+                documentById.put(id, documentId);
+                idsByDocument.computeIfAbsent(documentId, key -> new HashSet<>()).add(id);
+            }
+        }
+
+        void remove(String id) {
+            knownIds.remove(id);
+            String documentId = documentById.remove(id);
+            if (documentId != null) {
+                Set<String> ids = idsByDocument.get(documentId);
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    idsByDocument.remove(documentId);
+                }
+            }
+        }
+
+        void removeDocument(String documentId) {
+            Set<String> ids = idsByDocument.remove(documentId);
+            if (ids != null) {
+                for (String id : ids) {
+                    knownIds.remove(id);
+                    documentById.remove(id);
+                }
+            }
+        }
+
+        void clear() {
+            knownIds.clear();
+            documentById.clear();
+            idsByDocument.clear();
+        }
+    }
+}
@@ -0,0 +1,646 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.filter.Filter;
+import org.example.ragtest.store.ManagedEmbeddingStore;
+import org.example.ragtest.store.support.FilterPlan;
+import org.example.ragtest.store.support.MetadataIndex;
+import org.example.ragtest.store.support.RowBitmap;
+import org.example.ragtest.store.support.TopKCollector;
+import org.example.ragtest.store.support.VectorOps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * 基于 HNSW（Hierarchical Navigable Small World）图的向量存储
+ *
+ * 实现要点：
+ * - 向量写入时归一化，余弦相似度退化为点积
+ * - 每个节点随机分配层级，上层稀疏用于快速定位，第 0 层稠密用于精细搜索
+ * - 邻居选择使用启发式裁剪，保留方向多样的邻居以提高召回率
+ * - 每个节点的邻接表由节点自身加锁维护，不同节点的插入可以并发进行
+ * - 搜索无锁，读取邻接表的不可变快照
+ * - 元数据建有二级索引：过滤条件足够选择性时直接对候选节点精确打分（避免图遍历中大部分节点被过滤导致召回下降），
+ *   否则在图遍历中用位图判断节点是否满足条件
+ * - 删除只给节点打墓碑，墓碑节点仍参与图遍历以保持连通性，但不进入结果集；
+ *   按文档删除和替换通过元数据索引中 document_id 的倒排位图定位节点，不扫描全部节点
+ * - 文档替换先以新版本号插入新节点（对检索不可见），再原子切换文档的当前版本号，最后给旧节点打墓碑
+ * - 第一次写入确定向量维度；维度不一致的批量写入在插入任何节点之前整批拒绝，维度不一致的查询直接拒绝
+ */
+public class HnswEmbeddingStore extends AbstractEmbeddingStore {
+
+    /**
+     * 批量写入时启用并行插入的最小数量
+     */
+    private static final int PARALLEL_INSERT_THRESHOLD = 64;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int[] NO_CONNECTIONS = new int[0];
+
+    private final int m;
+    private final int maxConnectionsLayer0;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double levelMultiplier;
+
+    private final Object growLock = new Object();
+    private volatile Node[] nodes = new Node[INITIAL_CAPACITY];
+    private volatile int size;
+
+    private final Object entryPointLock = new Object();
+    private volatile Node entryPoint;
+
+    /**
+     * 向量维度，第一次写入前为 0；墓碑节点仍留在图中，清空存储后维度不变
+     */
+    private final AtomicInteger dimension = new AtomicInteger();
+
+    private final MetadataIndex metadataIndex;
+
+    /**
+     * 每个文档当前可见的版本号；带文档 id 的节点只有版本号与之一致时才对检索可见
+     */
+    private final ConcurrentHashMap<String, Long> documentVersions = new ConcurrentHashMap<>();
+    private final AtomicLong versionSequence = new AtomicLong();
+    private final Object removeLock = new Object();
+    private final AtomicInteger deletedCount = new AtomicInteger();
+
+    private final ThreadLocal<VisitedMarks> visitedMarks = ThreadLocal.withInitial(VisitedMarks::new);
+
+    /**
+     * @param m 每个节点在上层的最大邻居数（第 0 层为 2M）
+     * @param efConstruction 构建时的候选集大小，越大图质量越高、写入越慢
+     * @param efSearch 查询时的候选集大小，越大召回率越高、查询越慢
+     */
+    public HnswEmbeddingStore(int m, int efConstruction, int efSearch) {
+        this(m, efConstruction, efSearch, MetadataIndex.DEFAULT_PRE_FILTER_SELECTIVITY);
+    }
+
+    /**
+     * @param m 每个节点在上层的最大邻居数（第 0 层为 2M）
+     * @param efConstruction 构建时的候选集大小，越大图质量越高、写入越慢
+     * @param efSearch 查询时的候选集大小，越大召回率越高、查询越慢
+     * @param preFilterSelectivity 过滤候选节点占比不超过该值时跳过图遍历，直接精确打分
+     */
+    public HnswEmbeddingStore(int m, int efConstruction, int efSearch, double preFilterSelectivity) {
+        if (m < 2) {
+            throw new IllegalArgumentException("HNSW 参数 M 不能小于 2: " + m);
+        }
+        if (efConstruction < 1 || efSearch < 1) {
+            throw new IllegalArgumentException(
+                    "HNSW 参数 efConstruction/efSearch 必须为正数: " + efConstruction + "/" + efSearch);
+        }
+        this.m = m;
+        this.maxConnectionsLayer0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.metadataIndex = new MetadataIndex(preFilterSelectivity);
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        validateBatch(ids, embeddings, embedded);
+        checkDimensions(embeddings);
+        IntStream indexes = IntStream.range(0, ids.size());
+        if (ids.size() >= PARALLEL_INSERT_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> insert(ids.get(i), embeddings.get(i), segmentAt(embedded, i), -1));
+    }
+
+    @Override
+    public void upsertDocument(String documentId, List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        validateBatch(ids, embeddings, embedded);
+        checkDimensions(embeddings);
+        synchronized (removeLock) {
+            long version = versionSequence.incrementAndGet();
+            IntStream indexes = IntStream.range(0, ids.size());
+            if (ids.size() >= PARALLEL_INSERT_THRESHOLD) {
+                indexes = indexes.parallel();
+            }
+            indexes.forEach(i -> insert(ids.get(i), embeddings.get(i), segmentAt(embedded, i), version));
+            documentVersions.put(documentId, version);
+            markDocumentDeleted(documentId, node -> node.version != version);
+        }
+    }
+
+    @Override
+    public void removeDocument(String documentId) {
+        synchronized (removeLock) {
+            documentVersions.put(documentId, versionSequence.incrementAndGet());
+            markDocumentDeleted(documentId, node -> true);
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        Set<String> removed = new HashSet<>(ids);
+        markDeleted(node -> removed.contains(node.id));
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("删除过滤条件不能为空");
+        }
+        markDeleted(node -> node.segment != null && filter.test(node.segment.metadata()));
+    }
+
+    @Override
+    public void removeAll() {
+        markDeleted(node -> true);
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        Node start = entryPoint;
+        if (start == null) {
+            return new EmbeddingSearchResult<>(List.of());
+        }
+
+        float[] query = request.queryEmbedding().vector();
+        if (query.length != dimension.get()) {
+            throw new IllegalArgumentException(
+                    "查询向量维度不匹配，期望 " + dimension.get() + "，实际 " + query.length);
+        }
+        query = VectorOps.normalize(query);
+        Filter filter = request.filter();
+        FilterPlan plan = metadataIndex.plan(filter, size);
+        if (plan.isPreFilter()) {
+            return exactSearch(query, plan, filter, request);
+        }
+
+        Node current = start;
+        for (int level = start.level; level > 0; level--) {
+            current = greedyClosest(query, current, level);
+        }
+
+        int ef = Math.max(efSearch, request.maxResults());
+        List<Candidate> found = searchLayer(query, current, ef, 0, plan, filter);
+        found.sort(Candidate.BEST_FIRST);
+
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(request.maxResults());
+        for (Candidate candidate : found) {
+            double score = VectorOps.toRelevanceScore(candidate.similarity);
+            if (matches.size() >= request.maxResults() || score < request.minScore()) {
+                break;
+            }
+            Node node = candidate.node;
+            matches.add(new EmbeddingMatch<>(score, node.id, node.embedding, node.segment));
+        }
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    /**
+     * 预过滤：对索引给出的候选节点逐个精确打分
+     */
+    private EmbeddingSearchResult<TextSegment> exactSearch(float[] query, FilterPlan plan, Filter filter,
+                                                           EmbeddingSearchRequest request) {
+        TopKCollector topK = new TopKCollector(request.maxResults());
+        plan.rows().forEach(index -> {
+            Node node = node(index);
+            if (node == null) {
+                return;
+            }
+            float similarity = VectorOps.dot(query, node.vector);
+            if (similarity > topK.threshold() && accepts(node, plan, filter)) {
+                topK.offer(index, similarity);
+            }
+        });
+        topK.sortDescending();
+
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(topK.size());
+        for (int i = 0; i < topK.size(); i++) {
+            double score = VectorOps.toRelevanceScore(topK.score(i));
+            if (score < request.minScore()) {
+                break;
+            }
+            Node node = node(topK.row(i));
+            matches.add(new EmbeddingMatch<>(score, node.id, node.embedding, node.segment));
+        }
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    @Override
+    public int size() {
+        return size - deletedCount.get();
+    }
+
+    @Override
+    public int deletedCount() {
+        return deletedCount.get();
+    }
+
+    @Override
+    protected int rowCount() {
+        return size;
+    }
+
+    @Override
+    protected List<Entry> readEntries(int from, int to) {
+        Node[] snapshot;
+        synchronized (growLock) {
+            snapshot = nodes;
+        }
+        List<Entry> entries = new ArrayList<>(to - from);
+        for (int index = from; index < to; index++) {
+            Node node = snapshot[index];
+            if (visible(node)) {
+                entries.add(new Entry(node.id, node.embedding, node.segment));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 给满足条件的可见节点打墓碑
+     */
+    private void markDeleted(Predicate<Node> predicate) {
+        synchronized (removeLock) {
+            int count = size;
+            for (int index = 0; index < count; index++) {
+                markDeleted(node(index), predicate);
+            }
+        }
+    }
+
+    /**
+     * 给指定文档中满足条件的节点打墓碑
+     * 候选节点取自元数据索引中 document_id 的倒排位图，索引无法回答时退化为全量扫描
+     */
+    private void markDocumentDeleted(String documentId, Predicate<Node> predicate) {
+        Predicate<Node> inDocument = node -> documentId.equals(node.documentId) && predicate.test(node);
+        RowBitmap rows = metadataIndex.rowsEqualTo(DOCUMENT_ID_KEY, documentId);
+        if (rows == null) {
+            markDeleted(inDocument);
+            return;
+        }
+        synchronized (removeLock) {
+            rows.forEach(index -> markDeleted(node(index), inDocument));
+        }
+    }
+
+    private void markDeleted(Node node, Predicate<Node> predicate) {
+        if (node != null && !node.deleted && predicate.test(node)) {
+            node.deleted = true;
+            deletedCount.incrementAndGet();
+        }
+    }
+
+    // ==================== 图构建 ====================
+
+    /**
+     * 检查整批向量维度一致且与已有数据一致，第一批写入时记录维度；并发的第一批写入只有一批能确定维度，另一批按其重新检查
+     */
+    private void checkDimensions(List<Embedding> embeddings) {
+        validateDimensions(embeddings, dimension.get());
+        if (!embeddings.isEmpty() && !dimension.compareAndSet(0, embeddings.get(0).vector().length)) {
+            validateDimensions(embeddings, dimension.get());
+        }
+    }
+
+    /**
+     * @param version 文档版本号，小于 0 时使用文档当前的版本号
+     */
+    private void insert(String id, Embedding embedding, TextSegment segment, long version) {
+        float[] vector = VectorOps.normalize(embedding.vector());
+        int level = randomLevel();
+        String documentId = ManagedEmbeddingStore.documentIdOf(segment);
+        long nodeVersion = documentId == null ? 0 : version >= 0 ? version : documentVersions.getOrDefault(documentId, 0L);
+        Node node = allocate(index -> new Node(index, id, embedding, segment, vector, level, documentId, nodeVersion));
+        metadataIndex.add(node.index, segment);
+
+        Node start;
+        synchronized (entryPointLock) {
+            start = entryPoint;
+            if (start == null) {
+                entryPoint = node;
+                return;
+            }
+        }
+
+        Node current = start;
+        for (int l = start.level; l > level; l--) {
+            current = greedyClosest(vector, current, l);
+        }
+
+        for (int l = Math.min(level, start.level); l >= 0; l--) {
+            List<Candidate> candidates = searchLayer(vector, current, efConstruction, l, FilterPlan.NONE, null);
+            candidates.removeIf(candidate -> candidate.node == node);
+            if (candidates.isEmpty()) {
+                continue;
+            }
+            int[] neighbours = selectNeighbours(candidates, m);
+            connect(node, l, neighbours);
+            for (int neighbour : neighbours) {
+                connect(node(neighbour), l, new int[]{node.index});
+            }
+            current = candidates.stream().max(Candidate.BY_SIMILARITY).get().node;
+        }
+
+        if (level > start.level) {
+            synchronized (entryPointLock) {
+                if (level > entryPoint.level) {
+                    entryPoint = node;
+                }
+            }
+        }
+    }
+
+    /**
+     * 将新邻居合并到节点的邻接表中，超出上限时使用启发式裁剪
+     */
+    private void connect(Node owner, int level, int[] additions) {
+        synchronized (owner) {
+            int[] existing = owner.connections(level);
+            int[] merged = Arrays.copyOf(existing, existing.length + additions.length);
+            int count = existing.length;
+            for (int addition : additions) {
+                if (addition != owner.index && !contains(merged, count, addition)) {
+                    merged[count++] = addition;
+                }
+            }
+            if (count == existing.length) {
+                return;
+            }
+
+            int maxConnections = level == 0 ? maxConnectionsLayer0 : m;
+            if (count <= maxConnections) {
+                owner.setConnections(level, Arrays.copyOf(merged, count));
+                return;
+            }
+
+            List<Candidate> candidates = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Node other = node(merged[i]);
+                if (other != null) {
+                    candidates.add(new Candidate(other, VectorOps.dot(owner.vector, other.vector)));
+                }
+            }
+            owner.setConnections(level, selectNeighbours(candidates, maxConnections));
+        }
+    }
+
+    /**
+     * 启发式邻居选择（HNSW 论文算法 4）
+     * 候选按相似度从高到低遍历，若候选与某个已选邻居的相似度高于与基准点的相似度则暂时丢弃，
+     * 最后用丢弃的候选补足数量
+     */
+    private int[] selectNeighbours(List<Candidate> candidates, int maxCount) {
+        candidates.sort(Candidate.BEST_FIRST);
+        List<Candidate> selected = new ArrayList<>(maxCount);
+        List<Candidate> discarded = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (selected.size() >= maxCount) {
+                break;
+            }
+            boolean diverse = true;
+            for (Candidate chosen : selected) {
+                if (VectorOps.dot(candidate.node.vector, chosen.node.vector) > candidate.similarity) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                discarded.add(candidate);
+            }
+        }
+        for (int i = 0; i < discarded.size() && selected.size() < maxCount; i++) {
+            selected.add(discarded.get(i));
+        }
+
+        int[] result = new int[selected.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = selected.get(i).node.index;
+        }
+        return result;
+    }
+
+    private int randomLevel() {
+        double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+        return (int) (-Math.log(random) * levelMultiplier);
+    }
+
+    // ==================== 图搜索 ====================
+
+    /**
+     * 在指定层上贪心地移动到距离查询最近的节点
+     */
+    private Node greedyClosest(float[] query, Node start, int level) {
+        Node current = start;
+        float best = VectorOps.dot(query, current.vector);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int index : current.connections(level)) {
+                Node neighbour = node(index);
+                if (neighbour == null) {
+                    continue;
+                }
+                float similarity = VectorOps.dot(query, neighbour.vector);
+                if (similarity > best) {
+                    best = similarity;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在指定层上执行束搜索，返回最多 ef 个满足过滤条件的最近节点（无序）
+     * 未通过过滤器的节点仍参与图遍历，只是不进入结果集
+     */
+    private List<Candidate> searchLayer(float[] query, Node start, int ef, int level, FilterPlan plan, Filter filter) {
+        VisitedMarks visited = visitedMarks.get();
+        visited.reset(size);
+
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(Candidate.BEST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Candidate.BY_SIMILARITY);
+
+        Candidate first = new Candidate(start, VectorOps.dot(query, start.vector));
+        visited.mark(start.index);
+        candidates.add(first);
+        if (accepts(start, plan, filter)) {
+            results.add(first);
+        }
+
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (results.size() >= ef && closest.similarity < results.peek().similarity) {
+                break;
+            }
+            for (int index : closest.node.connections(level)) {
+                if (!visited.mark(index)) {
+                    continue;
+                }
+                Node neighbour = node(index);
+                if (neighbour == null) {
+                    continue;
+                }
+                float similarity = VectorOps.dot(query, neighbour.vector);
+                if (results.size() < ef || similarity > results.peek().similarity) {
+                    Candidate candidate = new Candidate(neighbour, similarity);
+                    candidates.add(candidate);
+                    if (accepts(neighbour, plan, filter)) {
+                        results.add(candidate);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(results);
+    }
+
+    private boolean accepts(Node node, FilterPlan plan, Filter filter) {
+        return visible(node) && plan.accepts(node.index, index -> node.segment == null || filter.test(node.segment.metadata()));
+    }
+
+    /**
+     * 节点未被删除，且不属于任何文档或属于文档的当前版本
+     */
+    private boolean visible(Node node) {
+        return !node.deleted
+                && (node.documentId == null || node.version == documentVersions.getOrDefault(node.documentId, 0L));
+    }
+
+    // ==================== 节点存储 ====================
+
+    private Node allocate(IntFunction<Node> factory) {
+        synchronized (growLock) {
+            int index = size;
+            if (index == nodes.length) {
+                nodes = Arrays.copyOf(nodes, index * 2);
+            }
+            Node node = factory.apply(index);
+            nodes[index] = node;
+            size = index + 1;
+            return node;
+        }
+    }
+
+    /**
+     * 按下标读取节点；并发扩容期间可能短暂读到 null，调用方需跳过
+     */
+    private Node node(int index) {
+        Node[] snapshot = nodes;
+        return index < snapshot.length ? snapshot[index] : null;
+    }
+
+    private static boolean contains(int[] values, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 图节点
+     * 每层邻接表是不可变数组，修改时整体替换，读取方无需加锁
+     */
+    private static final class Node {
+        final int index;
+        final String id;
+        final Embedding embedding;
+        final TextSegment segment;
+        final float[] vector;
+        final int level;
+        final String documentId;
+        final long version;
+        final AtomicReferenceArray<int[]> connections;
+        volatile boolean deleted;
+
+        Node(int index, String id, Embedding embedding, TextSegment segment, float[] vector, int level,
+             String documentId, long version) {
+            this.index = index;
+            this.id = id;
+            this.embedding = embedding;
+            this.segment = segment;
+            this.vector = vector;
+            this.level = level;
+            this.documentId = documentId;
+            this.version = version;
+            this.connections = new AtomicReferenceArray<>(level + 1);
+            for (int l = 0; l <= level; l++) {
+                connections.set(l, NO_CONNECTIONS);
+            }
+        }
+
+        int[] connections(int level) {
+            return level <= this.level ? connections.get(level) : NO_CONNECTIONS;
+        }
+
+        void setConnections(int level, int[] neighbours) {
+            connections.set(level, neighbours);
+        }
+    }
+
+    private record Candidate(Node node, float similarity) {
+        static final Comparator<Candidate> BY_SIMILARITY = Comparator.comparingDouble(Candidate::similarity);
+        static final Comparator<Candidate> BEST_FIRST = BY_SIMILARITY.reversed();
+    }
+
+    /**
+     * 线程私有的访问标记表
+     * 通过递增代号实现 O(1) 重置，避免每次搜索分配新的位图
+     */
+    private static final class VisitedMarks {
+        private int[] marks = new int[0];
+        private int generation;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[Math.max(capacity, marks.length * 2)];
+                generation = 0;
+            }
+            generation++;
+            if (generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        /**
+         * 标记节点为已访问
+         * @return 节点此前未被访问返回 true
+         */
+        boolean mark(int index) {
+            if (index >= marks.length) {
+                marks = Arrays.copyOf(marks, Math.max(index + 1, marks.length * 2));
+            }
+            if (marks[index] == generation) {
+                return false;
+            }
+            marks[index] = generation;
+            return true;
+        }
+    }
+}
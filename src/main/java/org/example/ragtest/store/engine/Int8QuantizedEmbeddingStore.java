@@ -0,0 +1,239 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.support.OffHeapVectorArena;
+import org.example.ragtest.store.support.TopKCollector;
+import org.example.ragtest.store.support.VectorOps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Int8 标量量化向量存储
+ *
+ * 实现要点：
+ * - 归一化向量按维度统计 min/max，每个分量线性映射为 0-255 的 8 位编码，扫描数据量为 float 的 1/4
+ * - 原始归一化向量保存在堆外 {@link OffHeapVectorArena} 中，只用于重打分
+ * - 检索分两阶段：先用量化编码近似打分选出 maxResults × oversample 个候选，再用原始向量精确重打分
+ * - 未达到校准样本数前直接精确扫描；达到后用前 calibrationSize 行作为样本校准一次，
+ *   之后写入的行按同一组 min/max 直接编码，超出样本范围的分量截断到 0 或 255，由精确重打分弥补
+ * - 校准只在写入路径上发生一次，持锁时间以样本数为上限，与存储规模无关
+ */
+@Slf4j
+public class Int8QuantizedEmbeddingStore extends AbstractTableEmbeddingStore {
+
+    private static final int INITIAL_ROWS = 1024;
+    private static final int LEVELS = 255;
+
+    private final int oversample;
+    private final int calibrationSize;
+    private final int rowsPerChunk;
+
+    private OffHeapVectorArena originals;
+    private float[] norms = new float[INITIAL_ROWS];
+    private byte[] codes = new byte[0];
+    private int dimension;
+    private int rows;
+
+    /**
+     * 每个维度的量化下界和步长；为 null 表示尚未校准
+     */
+    private float[] minimums;
+    private float[] steps;
+
+    /**
+     * @param oversample 近似阶段候选数相对 maxResults 的倍数
+     * @param calibrationSize 开始量化所需的最少向量数
+     * @param rowsPerChunk 堆外原始向量分块行数
+     * @param compressText 是否压缩段表中的文本字节块
+     */
+    public Int8QuantizedEmbeddingStore(int oversample, int calibrationSize, int rowsPerChunk, boolean compressText) {
+        super(compressText);
+        this.oversample = Math.max(1, oversample);
+        this.calibrationSize = Math.max(1, calibrationSize);
+        this.rowsPerChunk = rowsPerChunk;
+    }
+
+    @Override
+    protected void appendRows(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        for (int i = 0; i < ids.size(); i++) {
+            float[] vector = embeddings.get(i).vector();
+            if (originals == null) {
+                dimension = vector.length;
+                originals = new OffHeapVectorArena(dimension, rowsPerChunk);
+            }
+            if (rows == norms.length) {
+                norms = Arrays.copyOf(norms, rows * 2);
+            }
+            norms[rows] = VectorOps.norm(vector);
+            originals.append(VectorOps.normalize(vector));
+            segments.add(ids.get(i), segmentAt(embedded, i));
+            if (minimums != null) {
+                ensureCodeCapacity();
+                encode(rows);
+            }
+            rows++;
+            if (minimums == null && rows >= calibrationSize) {
+                calibrate();
+            }
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        float[] query = VectorOps.normalize(request.queryEmbedding().vector());
+        lock.readLock().lock();
+        try {
+            if (rows == 0) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+            if (query.length != dimension) {
+                throw new IllegalArgumentException(
+                        "查询向量维度不匹配，期望 " + dimension + "，实际 " + query.length);
+            }
+            TopKCollector topK = minimums == null
+                    ? exactScan(query, request)
+                    : rescore(query, approximateScan(query, request), request.maxResults());
+            topK.sortDescending();
+
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(topK.size());
+            for (int i = 0; i < topK.size(); i++) {
+                double score = VectorOps.toRelevanceScore(topK.score(i));
+                if (score < request.minScore()) {
+                    break;
+                }
+                int row = topK.row(i);
+                matches.add(new EmbeddingMatch<>(score, segments.id(row), embedding(row), segments.segment(row)));
+            }
+            return new EmbeddingSearchResult<>(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==================== 检索 ====================
+
+    private TopKCollector exactScan(float[] query, EmbeddingSearchRequest request) {
+        TopKCollector topK = new TopKCollector(request.maxResults());
+        IntPredicate filter = segments.filter(request.filter());
+        for (int row = 0; row < rows; row++) {
+            float similarity = originals.dot(row, query);
+            if (similarity > topK.threshold() && filter.test(row)) {
+                topK.offer(row, similarity);
+            }
+        }
+        return topK;
+    }
+
+    /**
+     * 量化近似打分：q·v ≈ Σ q[d]·min[d] + Σ (q[d]·step[d])·code[d]
+     * 第一项与行无关，每次查询只计算一次
+     */
+    private TopKCollector approximateScan(float[] query, EmbeddingSearchRequest request) {
+        float[] scaledQuery = new float[dimension];
+        float offset = 0f;
+        for (int d = 0; d < dimension; d++) {
+            scaledQuery[d] = query[d] * steps[d];
+            offset += query[d] * minimums[d];
+        }
+
+        TopKCollector candidates = new TopKCollector(request.maxResults() * oversample);
+        IntPredicate filter = segments.filter(request.filter());
+        for (int row = 0, base = 0; row < rows; row++, base += dimension) {
+            float sum0 = 0f;
+            float sum1 = 0f;
+            int d = 0;
+            for (; d + 1 < dimension; d += 2) {
+                sum0 += scaledQuery[d] * (codes[base + d] & 0xFF);
+                sum1 += scaledQuery[d + 1] * (codes[base + d + 1] & 0xFF);
+            }
+            if (d < dimension) {
+                sum0 += scaledQuery[d] * (codes[base + d] & 0xFF);
+            }
+            float approximate = offset + sum0 + sum1;
+            if (approximate > candidates.threshold() && filter.test(row)) {
+                candidates.offer(row, approximate);
+            }
+        }
+        return candidates;
+    }
+
+    private TopKCollector rescore(float[] query, TopKCollector candidates, int maxResults) {
+        TopKCollector topK = new TopKCollector(maxResults);
+        for (int i = 0; i < candidates.size(); i++) {
+            int row = candidates.row(i);
+            topK.offer(row, originals.dot(row, query));
+        }
+        return topK;
+    }
+
+    // ==================== 量化 ====================
+
+    /**
+     * 以已写入的样本行计算每个维度的 min/max，并编码这些行；每个存储只执行一次
+     */
+    private void calibrate() {
+        float[] mins = new float[dimension];
+        float[] maxs = new float[dimension];
+        Arrays.fill(mins, Float.POSITIVE_INFINITY);
+        Arrays.fill(maxs, Float.NEGATIVE_INFINITY);
+        for (int row = 0; row < rows; row++) {
+            float[] vector = originals.read(row);
+            for (int d = 0; d < dimension; d++) {
+                mins[d] = Math.min(mins[d], vector[d]);
+                maxs[d] = Math.max(maxs[d], vector[d]);
+            }
+        }
+        float[] stepSizes = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            float range = maxs[d] - mins[d];
+            stepSizes[d] = range > 0f ? range / LEVELS : 1f;
+        }
+        minimums = mins;
+        steps = stepSizes;
+        ensureCodeCapacity();
+        for (int row = 0; row < rows; row++) {
+            encode(row);
+        }
+        log.info("Int8 量化校准完成: 行数={}, 维度={}", rows, dimension);
+    }
+
+    private void encode(int row) {
+        float[] vector = originals.read(row);
+        int base = row * dimension;
+        for (int d = 0; d < dimension; d++) {
+            int level = Math.round((vector[d] - minimums[d]) / steps[d]);
+            codes[base + d] = (byte) Math.max(0, Math.min(LEVELS, level));
+        }
+    }
+
+    private void ensureCodeCapacity() {
+        long required = (long) (rows + 1) * dimension;
+        if (required > codes.length) {
+            long capacity = Math.max(required, Math.max((long) INITIAL_ROWS * dimension, (long) codes.length * 2));
+            codes = Arrays.copyOf(codes, (int) Math.min(capacity, Integer.MAX_VALUE - 8));
+        }
+    }
+
+    @Override
+    protected int dimension() {
+        return dimension;
+    }
+
+    @Override
+    protected Embedding embedding(int row) {
+        float[] vector = originals.read(row);
+        float norm = norms[row];
+        for (int d = 0; d < vector.length; d++) {
+            vector[d] *= norm;
+        }
+        return Embedding.from(vector);
+    }
+}
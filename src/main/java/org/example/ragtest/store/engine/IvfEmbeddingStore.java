@@ -0,0 +1,329 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.support.Centroids;
+import org.example.ragtest.store.support.TopKCollector;
+import org.example.ragtest.store.support.VectorOps;
+import org.example.ragtest.store.support.VectorScorer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntPredicate;
+
+/**
+ * IVF（倒排文件）聚类向量存储
+ *
+ * 实现要点：
+ * - 归一化向量按行连续存放，与 SIMD 精确检索存储相同
+ * - 用球面 k-means（k-means++ 初始化 + Lloyd 迭代）训练 nlist 个聚类中心，每行归入最近中心的倒排列表
+ * - 检索先对全部中心打分，只扫描最近的 nprobe 个倒排列表
+ * - 行数达到训练阈值前直接精确扫描；之后每当行数增长到上次训练时的 retrainGrowth 倍，在后台重新训练
+ * - 重新训练在后台线程中基于矩阵快照完成聚类和分配，期间检索和写入照常进行，
+ *   最后只在写锁内补齐训练期间新写入的行并替换倒排表
+ */
+@Slf4j
+public class IvfEmbeddingStore extends AbstractTableEmbeddingStore implements AutoCloseable {
+
+    private static final int INITIAL_ROWS = 1024;
+
+    /**
+     * 每个聚类中心参与训练的样本数，以及训练所需的最少行数
+     */
+    private static final int SAMPLES_PER_LIST = 64;
+    private static final int MIN_ROWS_PER_LIST = 32;
+    private static final int TRAINING_ITERATIONS = 12;
+
+    private final VectorScorer scorer;
+    private final int nlist;
+    private final int nprobe;
+    private final int trainingSize;
+    private final double retrainGrowth;
+    private final ExecutorService trainer;
+    private final AtomicBoolean trainingScheduled = new AtomicBoolean();
+
+    private int dimension;
+    private float[] matrix = new float[0];
+    private float[] norms = new float[0];
+    private int rows;
+
+    /**
+     * 当前倒排索引；为 null 表示尚未训练
+     */
+    private InvertedLists lists;
+    private int trainedRows;
+
+    /**
+     * @param scorer 点积计算实现
+     * @param nlist 聚类中心（倒排列表）数量
+     * @param nprobe 每次检索扫描的倒排列表数量
+     * @param trainingSize 首次训练所需的最少行数，之前为精确扫描
+     * @param retrainGrowth 行数增长到上次训练时的该倍数后重新训练
+     * @param compressText 是否压缩段表中的文本字节块
+     */
+    public IvfEmbeddingStore(VectorScorer scorer, int nlist, int nprobe, int trainingSize, double retrainGrowth,
+                             boolean compressText) {
+        super(compressText);
+        if (nlist < 1 || nprobe < 1) {
+            throw new IllegalArgumentException("IVF 参数 nlist/nprobe 必须为正数: " + nlist + "/" + nprobe);
+        }
+        if (retrainGrowth <= 1.0) {
+            throw new IllegalArgumentException("IVF 重新训练增长倍数必须大于 1: " + retrainGrowth);
+        }
+        this.scorer = scorer;
+        this.nlist = nlist;
+        this.nprobe = nprobe;
+        this.trainingSize = Math.max(trainingSize, 1);
+        this.retrainGrowth = retrainGrowth;
+        this.trainer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "embedding-store-ivf-train");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    protected void appendRows(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        for (int i = 0; i < ids.size(); i++) {
+            float[] vector = embeddings.get(i).vector();
+            ensureCapacity(vector.length);
+            float norm = VectorOps.norm(vector);
+            float inverse = norm > 0f ? 1f / norm : 0f;
+            int offset = rows * dimension;
+            for (int d = 0; d < dimension; d++) {
+                matrix[offset + d] = vector[d] * inverse;
+            }
+            norms[rows] = norm;
+            segments.add(ids.get(i), segmentAt(embedded, i));
+            if (lists != null) {
+                lists.add(lists.centroids.nearest(row(matrix, rows), scorer), rows);
+            }
+            rows++;
+        }
+        if (rows >= (lists == null ? trainingSize : (long) Math.ceil(trainedRows * retrainGrowth))
+                && trainingScheduled.compareAndSet(false, true)) {
+            trainer.execute(this::trainQuietly);
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        float[] query = VectorOps.normalize(request.queryEmbedding().vector());
+        lock.readLock().lock();
+        try {
+            if (rows == 0) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+            if (query.length != dimension) {
+                throw new IllegalArgumentException(
+                        "查询向量维度不匹配，期望 " + dimension + "，实际 " + query.length);
+            }
+            TopKCollector topK = new TopKCollector(request.maxResults());
+            IntPredicate filter = segments.filter(request.filter());
+            if (lists == null) {
+                for (int row = 0; row < rows; row++) {
+                    score(query, row, filter, topK);
+                }
+            } else {
+                for (int list : lists.centroids.nearest(query, nprobe, scorer)) {
+                    int[] members = lists.members[list];
+                    int size = lists.sizes[list];
+                    for (int i = 0; i < size; i++) {
+                        score(query, members[i], filter, topK);
+                    }
+                }
+            }
+            topK.sortDescending();
+
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(topK.size());
+            for (int i = 0; i < topK.size(); i++) {
+                double score = VectorOps.toRelevanceScore(topK.score(i));
+                if (score < request.minScore()) {
+                    break;
+                }
+                int row = topK.row(i);
+                matches.add(new EmbeddingMatch<>(score, segments.id(row), embedding(row), segments.segment(row)));
+            }
+            return new EmbeddingSearchResult<>(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 立即用当前全部行重新训练聚类中心并重建倒排列表
+     * 聚类和分配基于矩阵快照在锁外完成，只有替换倒排表时短暂持有写锁
+     */
+    public synchronized void train() {
+        float[] snapshot;
+        int count;
+        int vectorDimension;
+        lock.readLock().lock();
+        try {
+            snapshot = matrix;
+            count = rows;
+            vectorDimension = dimension;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (count == 0) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        int k = Math.max(1, Math.min(nlist, count / MIN_ROWS_PER_LIST));
+        Random random = new Random(count);
+        int sampleCount = Math.min(count, k * SAMPLES_PER_LIST);
+        float[] samples = sample(snapshot, count, vectorDimension, sampleCount, random);
+        Centroids centroids = Centroids.train(samples, sampleCount, vectorDimension, k, TRAINING_ITERATIONS,
+                true, scorer, random);
+
+        // 行一旦写入不再修改，矩阵扩容时复制到新数组，快照中的前 count 行可以在锁外安全读取
+        InvertedLists trained = new InvertedLists(centroids);
+        for (int row = 0; row < count; row++) {
+            trained.add(centroids.nearest(row(snapshot, row, vectorDimension), scorer), row);
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (int row = count; row < rows; row++) {
+                trained.add(centroids.nearest(row(matrix, row), scorer), row);
+            }
+            lists = trained;
+            trainedRows = rows;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("IVF 聚类训练完成: 行数={}, 中心数={}, 样本数={}, 耗时={}ms",
+                count, k, sampleCount, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 是否已完成首次训练
+     */
+    public boolean isTrained() {
+        lock.readLock().lock();
+        try {
+            return lists != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        trainer.shutdownNow();
+    }
+
+    @Override
+    protected int dimension() {
+        return dimension;
+    }
+
+    @Override
+    protected Embedding embedding(int row) {
+        float[] vector = Arrays.copyOfRange(matrix, row * dimension, (row + 1) * dimension);
+        float norm = norms[row];
+        for (int d = 0; d < vector.length; d++) {
+            vector[d] *= norm;
+        }
+        return Embedding.from(vector);
+    }
+
+    private void score(float[] query, int row, IntPredicate filter, TopKCollector topK) {
+        float similarity = scorer.dot(query, matrix, row * dimension, dimension);
+        if (similarity > topK.threshold() && filter.test(row)) {
+            topK.offer(row, similarity);
+        }
+    }
+
+    private void trainQuietly() {
+        try {
+            train();
+        } catch (Exception e) {
+            log.error("IVF 聚类训练失败: {}", e.getMessage(), e);
+        } finally {
+            trainingScheduled.set(false);
+        }
+    }
+
+    /**
+     * 不放回随机抽取 sampleCount 行，复制为连续样本矩阵
+     */
+    private static float[] sample(float[] source, int count, int vectorDimension, int sampleCount, Random random) {
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        float[] samples = new float[sampleCount * vectorDimension];
+        for (int i = 0; i < sampleCount; i++) {
+            int j = i + random.nextInt(count - i);
+            int chosen = order[j];
+            order[j] = order[i];
+            System.arraycopy(source, chosen * vectorDimension, samples, i * vectorDimension, vectorDimension);
+        }
+        return samples;
+    }
+
+    private float[] row(float[] source, int row) {
+        return row(source, row, dimension);
+    }
+
+    private static float[] row(float[] source, int row, int vectorDimension) {
+        return Arrays.copyOfRange(source, row * vectorDimension, (row + 1) * vectorDimension);
+    }
+
+    private void ensureCapacity(int vectorDimension) {
+        if (dimension == 0) {
+            dimension = vectorDimension;
+        } else if (vectorDimension != dimension) {
+            throw new IllegalArgumentException(
+                    "向量维度不匹配，期望 " + dimension + "，实际 " + vectorDimension);
+        }
+        if (rows == norms.length) {
+            int capacity = Math.max(INITIAL_ROWS, rows * 2);
+            if ((long) capacity * dimension > Integer.MAX_VALUE - 8) {
+                capacity = (Integer.MAX_VALUE - 8) / dimension;
+                if (capacity <= rows) {
+                    throw new IllegalStateException("向量矩阵已达到单个数组容量上限: " + rows + " 行");
+                }
+            }
+            matrix = Arrays.copyOf(matrix, capacity * dimension);
+            norms = Arrays.copyOf(norms, capacity);
+        }
+    }
+
+    /**
+     * 聚类中心和每个中心的倒排列表（行号数组）
+     */
+    private static final class InvertedLists {
+        final Centroids centroids;
+        final int[][] members;
+        final int[] sizes;
+
+        InvertedLists(Centroids centroids) {
+            this.centroids = centroids;
+            this.members = new int[centroids.count()][];
+            this.sizes = new int[centroids.count()];
+            for (int c = 0; c < members.length; c++) {
+                members[c] = new int[16];
+            }
+        }
+
+        void add(int list, int row) {
+            if (sizes[list] == members[list].length) {
+                members[list] = Arrays.copyOf(members[list], sizes[list] * 2);
+            }
+            members[list][sizes[list]++] = row;
+        }
+    }
+}
@@ -0,0 +1,741 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.filter.Filter;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.ManagedEmbeddingStore;
+import org.example.ragtest.store.support.HotRowCache;
+import org.example.ragtest.store.support.MappedRowFile;
+import org.example.ragtest.store.support.RowBitmap;
+import org.example.ragtest.store.support.SegmentCodec;
+import org.example.ragtest.store.support.TopKCollector;
+import org.example.ragtest.store.support.VectorOps;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 内存映射文件向量存储
+ *
+ * 目录结构：
+ * - vectors.bin  文件头（魔数、版本、维度、已提交行数）+ 定长向量行（归一化分量 + 原始范数）
+ * - segments.idx 每行一个 long，指向 segments.dat 中对应记录的偏移
+ * - segments.dat 只追加的 id / 文本 / 元数据记录，每条以 int 长度开头
+ * - tombstones.log 只追加的已删除行号
+ *
+ * 实现要点：
+ * - 向量和行索引通过 FileChannel.map 分块映射，重启时只读取文件头并建立映射，耗时与数据量无关
+ * - 写入先追加 segments.dat，再写索引和向量行，最后更新文件头中的已提交行数；
+ *   进程异常退出时未提交的行会被忽略并在下次写入时覆盖
+ * - 检索只扫描已提交的行，写入不阻塞检索；写入之间由追加锁串行化
+ * - 文本和元数据按需从 segments.dat 定位读取，只在分数超过 Top-K 门槛时才读取元数据做过滤
+ * - 已提交行数和墓碑位图作为一个快照整体发布，文档替换对检索是原子的；
+ *   替换时先提交新行再记录旧行的墓碑，异常退出最多留下重复而不会丢失文档
+ * - 按 id 或文档删除时才扫描一次全部记录建立 id / 文档到行号的映射，之后随写入维护
+ *
+ * 冷热分层（可选）：
+ * - 冷层即上述文件，文本段记录可用 Deflate 压缩，是否压缩记录在文件头标志位中，打开已有目录时以文件为准
+ * - 热层是堆内按字节预算淘汰的 {@link HotRowCache}，缓存已解码的 id、原始向量和文本段；
+ *   作为检索结果返回的行被提升到热层，之后的过滤判断和结果构建不再读取和解压记录
+ * - 打分仍扫描映射的向量文件，热层只省去记录的读取和解码
+ */
+@Slf4j
+public class MappedFileEmbeddingStore extends AbstractEmbeddingStore implements AutoCloseable {
+
+    private static final String VECTOR_FILE = "vectors.bin";
+    private static final String INDEX_FILE = "segments.idx";
+    private static final String SEGMENT_FILE = "segments.dat";
+    private static final String TOMBSTONE_FILE = "tombstones.log";
+
+    private static final int MAGIC = 0x52414756;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_DIMENSION = 8;
+    private static final int HEADER_ROWS = 12;
+    private static final int HEADER_FLAGS = 16;
+
+    /**
+     * 文件头标志位：segments.dat 中的记录为 Deflate 压缩
+     */
+    private static final int FLAG_COMPRESSED_SEGMENTS = 1;
+
+    private final Path directory;
+    private final int rowsPerChunk;
+    private final boolean deleteOnClose;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final FileChannel segmentChannel;
+    private final MappedRowFile offsets;
+    private final FileChannel tombstoneChannel;
+    private final HotRowCache hotTier;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private volatile boolean compressSegments;
+
+    private volatile MappedRowFile vectors;
+    private volatile int dimension;
+    private volatile View view = new View(0, new RowBitmap());
+    private long segmentPosition;
+
+    /**
+     * id / 文档到行号的映射，首次按 id 或文档删除时建立，由追加锁保护
+     */
+    private Map<String, Integer> rowsById;
+    private Map<String, List<Integer>> rowsByDocument;
+
+    /**
+     * 打开（或创建）指定目录下的存储
+     * @param directory 数据目录
+     * @param rowsPerChunk 每个映射块容纳的向量行数
+     */
+    public MappedFileEmbeddingStore(Path directory, int rowsPerChunk) {
+        this(directory, rowsPerChunk, 0, false);
+    }
+
+    /**
+     * 打开（或创建）指定目录下的分层存储
+     * @param directory 数据目录
+     * @param rowsPerChunk 每个映射块容纳的向量行数
+     * @param hotTierBytes 热层字节预算，0 表示不启用热层
+     * @param compressSegments 新建目录时是否压缩文本段记录；已有目录沿用文件头中的设置
+     */
+    public MappedFileEmbeddingStore(Path directory, int rowsPerChunk, long hotTierBytes, boolean compressSegments) {
+        this(directory, rowsPerChunk, hotTierBytes, compressSegments, false);
+    }
+
+    private MappedFileEmbeddingStore(Path directory, int rowsPerChunk, long hotTierBytes,
+                                     boolean compressSegments, boolean deleteOnClose) {
+        this.directory = directory;
+        this.rowsPerChunk = rowsPerChunk;
+        this.deleteOnClose = deleteOnClose;
+        this.hotTier = hotTierBytes > 0 ? new HotRowCache(hotTierBytes) : null;
+        this.compressSegments = compressSegments;
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+            segmentChannel = FileChannel.open(directory.resolve(SEGMENT_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            offsets = new MappedRowFile(directory.resolve(INDEX_FILE), 0, Long.BYTES, rowsPerChunk);
+            tombstoneChannel = FileChannel.open(directory.resolve(TOMBSTONE_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Path vectorFile = directory.resolve(VECTOR_FILE);
+            if (Files.exists(vectorFile) && Files.size(vectorFile) >= HEADER_BYTES) {
+                openVectors(vectorFile);
+            }
+            segmentPosition = view.rows() == 0 ? 0 : recordEnd(view.rows() - 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("打开内存映射向量存储失败: " + directory, e);
+        }
+        log.info("内存映射向量存储已打开: 目录={}, 行数={}, 已删除={}, 维度={}, 压缩={}, 热层预算={}MB, 耗时={}ms",
+                directory, view.rows(), view.deleted().cardinality(), dimension, this.compressSegments,
+                hotTierBytes >> 20, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 在临时目录中创建一个空存储，关闭时删除目录
+     */
+    public static MappedFileEmbeddingStore temporary(int rowsPerChunk) {
+        return temporary(rowsPerChunk, 0, false);
+    }
+
+    /**
+     * 在临时目录中创建一个空的分层存储，关闭时删除目录
+     */
+    public static MappedFileEmbeddingStore temporary(int rowsPerChunk, long hotTierBytes, boolean compressSegments) {
+        try {
+            return new MappedFileEmbeddingStore(Files.createTempDirectory("mapped-store-"), rowsPerChunk,
+                    hotTierBytes, compressSegments, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建临时目录失败", e);
+        }
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        validateBatch(ids, embeddings, embedded);
+        if (ids.isEmpty()) {
+            return;
+        }
+        appendLock.lock();
+        try {
+            View current = view;
+            view = new View(append(current.rows(), ids, embeddings, embedded), current.deleted());
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入内存映射向量存储失败: " + directory, e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void upsertDocument(String documentId, List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        validateBatch(ids, embeddings, embedded);
+        appendLock.lock();
+        try {
+            View current = view;
+            List<Integer> stale = documentRows(documentId);
+            int newRows = ids.isEmpty() ? current.rows() : append(current.rows(), ids, embeddings, embedded);
+            view = new View(newRows, tombstone(current.deleted(), stale));
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入内存映射向量存储失败: " + directory, e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void removeDocument(String documentId) {
+        appendLock.lock();
+        try {
+            List<Integer> stale = documentRows(documentId);
+            publishTombstones(stale);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        appendLock.lock();
+        try {
+            ensureLookup();
+            List<Integer> removed = new ArrayList<>();
+            for (String id : ids) {
+                Integer row = rowsById.get(id);
+                if (row != null) {
+                    removed.add(row);
+                }
+            }
+            publishTombstones(removed);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("删除过滤条件不能为空");
+        }
+        appendLock.lock();
+        try {
+            View current = view;
+            List<Integer> removed = new ArrayList<>();
+            for (int row = 0; row < current.rows(); row++) {
+                if (!current.deleted().contains(row)) {
+                    TextSegment segment = readEntry(row).segment();
+                    if (segment != null && filter.test(segment.metadata())) {
+                        removed.add(row);
+                    }
+                }
+            }
+            publishTombstones(removed);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        appendLock.lock();
+        try {
+            View current = view;
+            List<Integer> removed = new ArrayList<>();
+            for (int row = 0; row < current.rows(); row++) {
+                if (!current.deleted().contains(row)) {
+                    removed.add(row);
+                }
+            }
+            publishTombstones(removed);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * 追加一批行并提交文件头中的行数，调用方持有追加锁
+     * @return 提交后的行数
+     */
+    private int append(int base, List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) throws IOException {
+        if (vectors == null) {
+            createVectors(embeddings.get(0).vector().length);
+        }
+        int newRows = base + ids.size();
+        vectors.ensureMapped(newRows);
+        offsets.ensureMapped(newRows);
+
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(records);
+        for (int i = 0; i < ids.size(); i++) {
+            float[] vector = embeddings.get(i).vector();
+            if (vector.length != dimension) {
+                throw new IllegalArgumentException(
+                        "向量维度不匹配，期望 " + dimension + "，实际 " + vector.length);
+            }
+            int row = base + i;
+            offsets.chunk(row).putLong(offsets.offset(row), segmentPosition + records.size());
+            writeRecord(out, ids.get(i), segmentAt(embedded, i));
+            writeVector(row, vector);
+        }
+        out.flush();
+        ByteBuffer buffer = ByteBuffer.wrap(records.toByteArray());
+        long position = segmentPosition;
+        while (buffer.hasRemaining()) {
+            position += segmentChannel.write(buffer, position);
+        }
+        segmentPosition = position;
+
+        vectors.header().putInt(HEADER_ROWS, newRows);
+        if (rowsById != null) {
+            for (int i = 0; i < ids.size(); i++) {
+                index(base + i, ids.get(i), segmentAt(embedded, i));
+            }
+        }
+        return newRows;
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        View current = view;
+        int committed = current.rows();
+        if (committed == 0) {
+            return new EmbeddingSearchResult<>(List.of());
+        }
+        float[] query = VectorOps.normalize(request.queryEmbedding().vector());
+        if (query.length != dimension) {
+            throw new IllegalArgumentException(
+                    "查询向量维度不匹配，期望 " + dimension + "，实际 " + query.length);
+        }
+        MappedRowFile file = vectors;
+        Filter filter = request.filter();
+        TopKCollector topK = new TopKCollector(request.maxResults());
+        for (int row = 0; row < committed; row++) {
+            float similarity = dot(file.chunk(row), file.offset(row), query);
+            if (similarity <= topK.threshold() || current.deleted().contains(row)) {
+                continue;
+            }
+            if (filter == null || accepts(segment(row), filter)) {
+                topK.offer(row, similarity);
+            }
+        }
+        topK.sortDescending();
+
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(topK.size());
+        for (int i = 0; i < topK.size(); i++) {
+            double score = VectorOps.toRelevanceScore(topK.score(i));
+            if (score < request.minScore()) {
+                break;
+            }
+            int row = topK.row(i);
+            Entry entry = hotTier == null ? null : hotTier.get(row);
+            if (entry == null) {
+                SegmentCodec.Entry record = readEntry(row);
+                entry = new Entry(record.id(), originalEmbedding(file, row), record.segment());
+            }
+            if (hotTier != null) {
+                hotTier.promote(row, entry);
+            }
+            matches.add(new EmbeddingMatch<>(score, entry.id(), entry.embedding(), entry.segment()));
+        }
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    @Override
+    public int size() {
+        View current = view;
+        return current.rows() - current.deleted().cardinality();
+    }
+
+    @Override
+    public int deletedCount() {
+        return view.deleted().cardinality();
+    }
+
+    @Override
+    protected int rowCount() {
+        return view.rows();
+    }
+
+    @Override
+    protected List<Entry> readEntries(int from, int to) {
+        MappedRowFile file = vectors;
+        RowBitmap deleted = view.deleted();
+        List<Entry> entries = new ArrayList<>(to - from);
+        for (int row = from; row < to; row++) {
+            if (deleted.contains(row)) {
+                continue;
+            }
+            SegmentCodec.Entry entry = readEntry(row);
+            entries.add(new Entry(entry.id(), originalEmbedding(file, row), entry.segment()));
+        }
+        return entries;
+    }
+
+    /**
+     * 热层中的行数，未启用热层时为 0
+     */
+    public int hotRows() {
+        return hotTier == null ? 0 : hotTier.size();
+    }
+
+    /**
+     * 已映射的向量和索引字节数
+     */
+    public long mappedBytes() {
+        MappedRowFile file = vectors;
+        return offsets.mappedBytes() + (file == null ? 0 : file.mappedBytes());
+    }
+
+    @Override
+    public void close() {
+        appendLock.lock();
+        try {
+            if (vectors != null) {
+                vectors.close();
+            }
+            offsets.close();
+            segmentChannel.force(true);
+            segmentChannel.close();
+            tombstoneChannel.force(true);
+            tombstoneChannel.close();
+            deflater.end();
+            log.info("内存映射向量存储已关闭: 目录={}, 行数={}", directory, view.rows());
+            if (deleteOnClose) {
+                deleteDirectory();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("关闭内存映射向量存储失败: " + directory, e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // ==================== 文件布局 ====================
+
+    private void openVectors(Path vectorFile) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(vectorFile, StandardOpenOption.READ)) {
+            channel.read(header, 0);
+        }
+        if (header.getInt(HEADER_MAGIC) != MAGIC) {
+            throw new IOException("不是有效的向量文件: " + vectorFile);
+        }
+        if (header.getInt(HEADER_VERSION) != VERSION) {
+            throw new IOException("不支持的向量文件版本: " + header.getInt(HEADER_VERSION));
+        }
+        dimension = header.getInt(HEADER_DIMENSION);
+        boolean compressed = (header.getInt(HEADER_FLAGS) & FLAG_COMPRESSED_SEGMENTS) != 0;
+        if (compressed != compressSegments) {
+            log.warn("文本段压缩设置与已有数据不一致，沿用文件中的设置: 目录={}, 压缩={}", directory, compressed);
+            compressSegments = compressed;
+        }
+        int committed = header.getInt(HEADER_ROWS);
+        vectors = new MappedRowFile(vectorFile, HEADER_BYTES, rowBytes(dimension), rowsPerChunk);
+        vectors.ensureMapped(committed);
+        offsets.ensureMapped(committed);
+        view = new View(committed, readTombstones(committed));
+    }
+
+    /**
+     * 读取墓碑文件，忽略末尾不完整的记录和超出已提交行数的行号
+     */
+    private RowBitmap readTombstones(int committed) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (tombstoneChannel.size() / Integer.BYTES * Integer.BYTES))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (tombstoneChannel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        RowBitmap deleted = new RowBitmap();
+        buffer.flip();
+        while (buffer.remaining() >= Integer.BYTES) {
+            int row = buffer.getInt();
+            if (row >= 0 && row < committed) {
+                deleted.add(row);
+            }
+        }
+        return deleted;
+    }
+
+    // ==================== 删除 ====================
+
+    /**
+     * 记录一批墓碑并发布新的快照，调用方持有追加锁
+     */
+    private void publishTombstones(List<Integer> removed) {
+        if (removed.isEmpty()) {
+            return;
+        }
+        View current = view;
+        view = new View(current.rows(), tombstone(current.deleted(), removed));
+    }
+
+    /**
+     * 将行号追加到墓碑文件并更新 id / 文档映射
+     * @return 合并后的新墓碑位图，原位图不变
+     */
+    private RowBitmap tombstone(RowBitmap deleted, List<Integer> removed) {
+        if (removed.isEmpty()) {
+            return deleted;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(removed.size() * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        RowBitmap batch = new RowBitmap();
+        for (int row : removed) {
+            buffer.putInt(row);
+            batch.add(row);
+            if (hotTier != null) {
+                hotTier.invalidate(row);
+            }
+        }
+        buffer.flip();
+        try {
+            long position = tombstoneChannel.size();
+            while (buffer.hasRemaining()) {
+                position += tombstoneChannel.write(buffer, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入墓碑文件失败: " + directory, e);
+        }
+        if (rowsById != null) {
+            for (int row : removed) {
+                SegmentCodec.Entry entry = readEntry(row);
+                rowsById.remove(entry.id(), row);
+                String documentId = ManagedEmbeddingStore.documentIdOf(entry.segment());
+                if (documentId != null) {
+                    List<Integer> rows = rowsByDocument.get(documentId);
+                    if (rows != null) {
+                        rows.remove(Integer.valueOf(row));
+                        if (rows.isEmpty()) {
+                            rowsByDocument.remove(documentId);
+                        }
+                    }
+                }
+            }
+        }
+        return deleted.or(batch);
+    }
+
+    /**
+     * 指定文档当前的全部行号（副本）
+     */
+    private List<Integer> documentRows(String documentId) {
+        ensureLookup();
+        return new ArrayList<>(rowsByDocument.getOrDefault(documentId, List.of()));
+    }
+
+    private void ensureLookup() {
+        if (rowsById != null) {
+            return;
+        }
+        long start = System.nanoTime();
+        rowsById = new HashMap<>();
+        rowsByDocument = new HashMap<>();
+        View current = view;
+        for (int row = 0; row < current.rows(); row++) {
+            if (!current.deleted().contains(row)) {
+                SegmentCodec.Entry entry = readEntry(row);
+                index(row, entry.id(), entry.segment());
+            }
+        }
+        log.info("内存映射向量存储 id 映射已建立: 行数={}, 文档数={}, 耗时={}ms",
+                rowsById.size(), rowsByDocument.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void index(int row, String id, TextSegment segment) {
+        rowsById.put(id, row);
+        String documentId = ManagedEmbeddingStore.documentIdOf(segment);
+        if (documentId != null) {
+            rowsByDocument.computeIfAbsent(documentId, key -> new ArrayList<>()).add(row);
+        }
+    }
+
+    private void createVectors(int vectorDimension) throws IOException {
+        MappedRowFile file = new MappedRowFile(
+                directory.resolve(VECTOR_FILE), HEADER_BYTES, rowBytes(vectorDimension), rowsPerChunk);
+        ByteBuffer header = file.header();
+        header.putInt(HEADER_MAGIC, MAGIC);
+        header.putInt(HEADER_VERSION, VERSION);
+        header.putInt(HEADER_DIMENSION, vectorDimension);
+        header.putInt(HEADER_ROWS, 0);
+        header.putInt(HEADER_FLAGS, compressSegments ? FLAG_COMPRESSED_SEGMENTS : 0);
+        dimension = vectorDimension;
+        vectors = file;
+    }
+
+    /**
+     * 每行为 dimension 个归一化分量加 1 个原始范数
+     */
+    private static int rowBytes(int dimension) {
+        return (dimension + 1) * Float.BYTES;
+    }
+
+    private void writeVector(int row, float[] vector) {
+        ByteBuffer chunk = vectors.chunk(row);
+        int offset = vectors.offset(row);
+        float norm = VectorOps.norm(vector);
+        float inverse = norm > 0f ? 1f / norm : 0f;
+        for (int d = 0; d < dimension; d++) {
+            chunk.putFloat(offset + d * Float.BYTES, vector[d] * inverse);
+        }
+        chunk.putFloat(offset + dimension * Float.BYTES, norm);
+    }
+
+    /**
+     * 记录以 int 长度开头；压缩时载荷为原始长度加 Deflate 数据，调用方持有追加锁
+     */
+    private void writeRecord(DataOutputStream out, String id, TextSegment segment) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        SegmentCodec.write(new DataOutputStream(payload), id, segment);
+        if (!compressSegments) {
+            out.writeInt(payload.size());
+            payload.writeTo(out);
+            return;
+        }
+        byte[] raw = payload.toByteArray();
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2 + 16);
+        byte[] buffer = new byte[Math.max(64, raw.length)];
+        while (!deflater.finished()) {
+            compressed.write(buffer, 0, deflater.deflate(buffer));
+        }
+        out.writeInt(Integer.BYTES + compressed.size());
+        out.writeInt(raw.length);
+        compressed.writeTo(out);
+    }
+
+    // ==================== 读取 ====================
+
+    private float dot(ByteBuffer chunk, int offset, float[] query) {
+        float sum0 = 0f;
+        float sum1 = 0f;
+        int d = 0;
+        for (; d + 1 < dimension; d += 2) {
+            sum0 += chunk.getFloat(offset + d * Float.BYTES) * query[d];
+            sum1 += chunk.getFloat(offset + (d + 1) * Float.BYTES) * query[d + 1];
+        }
+        if (d < dimension) {
+            sum0 += chunk.getFloat(offset + d * Float.BYTES) * query[d];
+        }
+        return sum0 + sum1;
+    }
+
+    private Embedding originalEmbedding(MappedRowFile file, int row) {
+        ByteBuffer chunk = file.chunk(row);
+        int offset = file.offset(row);
+        float norm = chunk.getFloat(offset + dimension * Float.BYTES);
+        float[] vector = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            vector[d] = chunk.getFloat(offset + d * Float.BYTES) * norm;
+        }
+        return Embedding.from(vector);
+    }
+
+    /**
+     * 没有文本段的行不参与过滤（与 InMemoryEmbeddingStore 行为一致）
+     */
+    private static boolean accepts(TextSegment segment, Filter filter) {
+        return segment == null || filter.test(segment.metadata());
+    }
+
+    private SegmentCodec.Entry readEntry(int row) {
+        long position = offsets.chunk(row).getLong(offsets.offset(row));
+        try {
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            readFully(length, position);
+            ByteBuffer payload = ByteBuffer.allocate(length.getInt(0));
+            readFully(payload, position + Integer.BYTES);
+            byte[] record = compressSegments ? inflate(payload) : payload.array();
+            return SegmentCodec.read(new DataInputStream(new ByteArrayInputStream(record)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取文本段记录失败: 行号=" + row, e);
+        }
+    }
+
+    private static byte[] inflate(ByteBuffer payload) throws IOException {
+        byte[] raw = new byte[payload.getInt(0)];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(payload.array(), Integer.BYTES, payload.capacity() - Integer.BYTES);
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                read += inflater.inflate(raw, read, raw.length - read);
+                if (inflater.needsInput()) {
+                    break;
+                }
+            }
+            if (read != raw.length) {
+                throw new IOException("文本段记录解压长度不符: 期望 " + raw.length + "，实际 " + read);
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("文本段记录解压失败", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 行的文本段，热层命中时不读取记录
+     */
+    private TextSegment segment(int row) {
+        Entry cached = hotTier == null ? null : hotTier.get(row);
+        return cached != null ? cached.segment() : readEntry(row).segment();
+    }
+
+    private long recordEnd(int row) throws IOException {
+        long position = offsets.chunk(row).getLong(offsets.offset(row));
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        readFully(length, position);
+        return position + Integer.BYTES + length.getInt(0);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = segmentChannel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("文本段文件意外结束: " + directory.resolve(SEGMENT_FILE));
+            }
+        }
+    }
+
+    /**
+     * 已提交行数和墓碑位图的不可变快照
+     */
+    private record View(int rows, RowBitmap deleted) {}
+
+    private void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import org.example.ragtest.store.support.OffHeapVectorArena;
+import org.example.ragtest.store.support.TopKCollector;
+import org.example.ragtest.store.support.VectorOps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * 堆外向量存储
+ *
+ * 实现要点：
+ * - 原始向量按行连续存放在堆外直接内存中，Java 堆上只保留每行一个 float 的范数倒数
+ * - 文本和元数据保存在独立的列式 {@link SegmentTable} 中，不为每个向量创建包装对象
+ * - 精确检索：扫描全部行计算余弦相似度，使用有界最小堆维护 Top-K
+ * - 只为最终返回的结果重新构建 Embedding 和 TextSegment
+ */
+public class OffHeapEmbeddingStore extends AbstractTableEmbeddingStore {
+
+    private final int rowsPerChunk;
+    private OffHeapVectorArena arena;
+    private float[] inverseNorms = new float[1024];
+
+    /**
+     * @param rowsPerChunk 每个直接内存分块容纳的向量行数
+     * @param compressText 是否压缩段表中的文本字节块
+     */
+    public OffHeapEmbeddingStore(int rowsPerChunk, boolean compressText) {
+        super(compressText);
+        this.rowsPerChunk = rowsPerChunk;
+    }
+
+    @Override
+    protected void appendRows(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        for (int i = 0; i < ids.size(); i++) {
+            float[] vector = embeddings.get(i).vector();
+            if (arena == null) {
+                arena = new OffHeapVectorArena(vector.length, rowsPerChunk);
+            }
+            int row = arena.append(vector);
+            segments.add(ids.get(i), segmentAt(embedded, i));
+            if (row == inverseNorms.length) {
+                inverseNorms = Arrays.copyOf(inverseNorms, row * 2);
+            }
+            float norm = VectorOps.norm(vector);
+            inverseNorms[row] = norm > 0f ? 1f / norm : 0f;
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        float[] query = VectorOps.normalize(request.queryEmbedding().vector());
+        lock.readLock().lock();
+        try {
+            if (arena == null) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+            if (query.length != arena.dimension()) {
+                throw new IllegalArgumentException(
+                        "查询向量维度不匹配，期望 " + arena.dimension() + "，实际 " + query.length);
+            }
+            TopKCollector topK = new TopKCollector(request.maxResults());
+            IntPredicate filter = segments.filter(request.filter());
+            int rows = arena.size();
+            for (int row = 0; row < rows; row++) {
+                float similarity = arena.dot(row, query) * inverseNorms[row];
+                if (similarity <= topK.threshold()) {
+                    continue;
+                }
+                if (filter.test(row)) {
+                    topK.offer(row, similarity);
+                }
+            }
+            topK.sortDescending();
+
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(topK.size());
+            for (int i = 0; i < topK.size(); i++) {
+                double score = VectorOps.toRelevanceScore(topK.score(i));
+                if (score < request.minScore()) {
+                    break;
+                }
+                int row = topK.row(i);
+                matches.add(new EmbeddingMatch<>(score, segments.id(row), embedding(row), segments.segment(row)));
+            }
+            return new EmbeddingSearchResult<>(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected int dimension() {
+        return arena == null ? 0 : arena.dimension();
+    }
+
+    @Override
+    protected Embedding embedding(int row) {
+        return Embedding.from(arena.read(row));
+    }
+
+    /**
+     * 堆外已分配的字节数
+     */
+    public long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return arena == null ? 0 : arena.allocatedBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
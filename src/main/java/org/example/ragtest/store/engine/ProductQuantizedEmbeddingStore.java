@@ -0,0 +1,358 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.support.Centroids;
+import org.example.ragtest.store.support.OffHeapVectorArena;
+import org.example.ragtest.store.support.TopKCollector;
+import org.example.ragtest.store.support.VectorOps;
+import org.example.ragtest.store.support.VectorScorer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntPredicate;
+
+/**
+ * 乘积量化（PQ）向量存储
+ *
+ * 实现要点：
+ * - 归一化向量按维度切成 m 个子空间，每个子空间用 k-means 训练 256 个中心（欧氏度量），
+ *   每行编码为 m 个字节，384 维、m=48 时每行 48 字节，是 float 的 1/32
+ * - 原始归一化向量保存在堆外 {@link OffHeapVectorArena} 中，只用于重打分，不占用 Java 堆；
+ *   编码只降低堆内存和扫描的内存带宽，进程总内存仍包含完整精度的原始向量，换取精确分数和较低的召回损失
+ * - 检索时每个查询先计算一次非对称距离表：查询各子向量与该子空间全部中心的点积（m × 256 个 float），
+ *   之后每行的近似分数只需 m 次查表相加
+ * - 近似阶段选出 maxResults × oversample 个候选，再用原始向量精确重打分，返回分数和 minScore 语义与精确检索一致
+ * - 未达到训练样本数前直接精确扫描；码本训练一次后保持不变，之后写入的行直接编码
+ * - 码本训练和已有行的编码在后台线程中基于快照完成，期间检索和写入照常进行（精确扫描），
+ *   最后只在写锁内编码训练期间新写入的行并替换码本
+ */
+@Slf4j
+public class ProductQuantizedEmbeddingStore extends AbstractTableEmbeddingStore implements AutoCloseable {
+
+    private static final int INITIAL_ROWS = 1024;
+
+    /**
+     * 每个子空间的中心数，编码恰好占一个字节
+     */
+    private static final int CODEBOOK_SIZE = 256;
+
+    /**
+     * 每个中心参与训练的样本数和 Lloyd 迭代次数
+     */
+    private static final int SAMPLES_PER_CENTROID = 16;
+    private static final int TRAINING_ITERATIONS = 8;
+
+    private final VectorScorer scorer;
+    private final int subspaces;
+    private final int oversample;
+    private final int trainingSize;
+    private final int rowsPerChunk;
+    private final ExecutorService trainer;
+    private final AtomicBoolean trainingScheduled = new AtomicBoolean();
+
+    private OffHeapVectorArena originals;
+    private float[] norms = new float[INITIAL_ROWS];
+    private byte[] codes = new byte[0];
+    private int dimension;
+    private int rows;
+
+    /**
+     * 每个子空间在原始向量中的起始维度，长度为 m + 1；为 null 表示尚未训练
+     */
+    private int[] boundaries;
+    private Centroids[] codebooks;
+
+    /**
+     * @param scorer 点积计算实现
+     * @param subspaces 子空间数 m，不超过向量维度；维度不能整除时各子空间宽度相差不超过 1
+     * @param oversample 近似阶段候选数相对 maxResults 的倍数
+     * @param trainingSize 训练码本所需的最少向量数
+     * @param rowsPerChunk 堆外原始向量分块行数
+     * @param compressText 是否压缩段表中的文本字节块
+     */
+    public ProductQuantizedEmbeddingStore(VectorScorer scorer, int subspaces, int oversample,
+                                          int trainingSize, int rowsPerChunk, boolean compressText) {
+        super(compressText);
+        if (subspaces < 1) {
+            throw new IllegalArgumentException("PQ 子空间数必须为正数: " + subspaces);
+        }
+        this.scorer = scorer;
+        this.subspaces = subspaces;
+        this.oversample = Math.max(1, oversample);
+        this.trainingSize = Math.max(1, trainingSize);
+        this.rowsPerChunk = rowsPerChunk;
+        this.trainer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "embedding-store-pq-train");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    protected void appendRows(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        for (int i = 0; i < ids.size(); i++) {
+            float[] vector = embeddings.get(i).vector();
+            if (originals == null) {
+                if (vector.length < subspaces) {
+                    throw new IllegalArgumentException(
+                            "PQ 子空间数不能超过向量维度: " + subspaces + " > " + vector.length);
+                }
+                dimension = vector.length;
+                originals = new OffHeapVectorArena(dimension, rowsPerChunk);
+            }
+            if (rows == norms.length) {
+                norms = Arrays.copyOf(norms, rows * 2);
+            }
+            float[] normalized = VectorOps.normalize(vector);
+            norms[rows] = VectorOps.norm(vector);
+            originals.append(normalized);
+            segments.add(ids.get(i), segmentAt(embedded, i));
+            if (codebooks != null) {
+                ensureCodeCapacity();
+                encode(normalized, boundaries, codebooks, codes, rows);
+            }
+            rows++;
+        }
+        if (codebooks == null && rows >= trainingSize && trainingScheduled.compareAndSet(false, true)) {
+            trainer.execute(this::trainQuietly);
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        float[] query = VectorOps.normalize(request.queryEmbedding().vector());
+        lock.readLock().lock();
+        try {
+            if (rows == 0) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+            if (query.length != dimension) {
+                throw new IllegalArgumentException(
+                        "查询向量维度不匹配，期望 " + dimension + "，实际 " + query.length);
+            }
+            TopKCollector topK = codebooks == null
+                    ? exactScan(query, request)
+                    : rescore(query, approximateScan(query, request), request.maxResults());
+            topK.sortDescending();
+
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(topK.size());
+            for (int i = 0; i < topK.size(); i++) {
+                double score = VectorOps.toRelevanceScore(topK.score(i));
+                if (score < request.minScore()) {
+                    break;
+                }
+                int row = topK.row(i);
+                matches.add(new EmbeddingMatch<>(score, segments.id(row), embedding(row), segments.segment(row)));
+            }
+            return new EmbeddingSearchResult<>(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==================== 检索 ====================
+
+    private TopKCollector exactScan(float[] query, EmbeddingSearchRequest request) {
+        TopKCollector topK = new TopKCollector(request.maxResults());
+        IntPredicate filter = segments.filter(request.filter());
+        for (int row = 0; row < rows; row++) {
+            float similarity = originals.dot(row, query);
+            if (similarity > topK.threshold() && filter.test(row)) {
+                topK.offer(row, similarity);
+            }
+        }
+        return topK;
+    }
+
+    /**
+     * 非对称距离近似打分：q·v ≈ Σ_s q_s·c_s[code_s]
+     * 距离表 table[s × 256 + c] = q_s·c_s[c] 每次查询只计算一次
+     */
+    private TopKCollector approximateScan(float[] query, EmbeddingSearchRequest request) {
+        float[] table = distanceTable(query);
+        TopKCollector candidates = new TopKCollector(request.maxResults() * oversample);
+        IntPredicate filter = segments.filter(request.filter());
+        for (int row = 0, base = 0; row < rows; row++, base += subspaces) {
+            float sum0 = 0f;
+            float sum1 = 0f;
+            int s = 0;
+            for (; s + 1 < subspaces; s += 2) {
+                sum0 += table[s * CODEBOOK_SIZE + (codes[base + s] & 0xFF)];
+                sum1 += table[(s + 1) * CODEBOOK_SIZE + (codes[base + s + 1] & 0xFF)];
+            }
+            if (s < subspaces) {
+                sum0 += table[s * CODEBOOK_SIZE + (codes[base + s] & 0xFF)];
+            }
+            float approximate = sum0 + sum1;
+            if (approximate > candidates.threshold() && filter.test(row)) {
+                candidates.offer(row, approximate);
+            }
+        }
+        return candidates;
+    }
+
+    private float[] distanceTable(float[] query) {
+        float[] table = new float[subspaces * CODEBOOK_SIZE];
+        for (int s = 0; s < subspaces; s++) {
+            Centroids codebook = codebooks[s];
+            int start = boundaries[s];
+            int width = boundaries[s + 1] - start;
+            for (int c = 0; c < codebook.count(); c++) {
+                float sum = 0f;
+                for (int d = 0; d < width; d++) {
+                    sum += query[start + d] * codebook.value(c, d);
+                }
+                table[s * CODEBOOK_SIZE + c] = sum;
+            }
+        }
+        return table;
+    }
+
+    private TopKCollector rescore(float[] query, TopKCollector candidates, int maxResults) {
+        TopKCollector topK = new TopKCollector(maxResults);
+        for (int i = 0; i < candidates.size(); i++) {
+            int row = candidates.row(i);
+            topK.offer(row, originals.dot(row, query));
+        }
+        return topK;
+    }
+
+    // ==================== 量化 ====================
+
+    /**
+     * 从堆外原始向量中抽样，逐个子空间训练码本，然后编码全部已有行
+     * 抽样、训练和编码基于行数快照在锁外完成，只有编码训练期间新写入的行和替换码本时持有写锁
+     */
+    public synchronized void train() {
+        OffHeapVectorArena arena;
+        int count;
+        lock.readLock().lock();
+        try {
+            arena = originals;
+            count = rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (count == 0) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        int vectorDimension = arena.dimension();
+        int[] bounds = new int[subspaces + 1];
+        for (int s = 0; s <= subspaces; s++) {
+            bounds[s] = (int) ((long) vectorDimension * s / subspaces);
+        }
+
+        // 已追加的行不再修改，前 count 行可以与写入并发读取
+        Random random = new Random(count);
+        int sampleCount = Math.min(count, CODEBOOK_SIZE * SAMPLES_PER_CENTROID);
+        float[][] samples = new float[sampleCount][];
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        for (int i = 0; i < sampleCount; i++) {
+            int j = i + random.nextInt(count - i);
+            samples[i] = arena.read(order[j]);
+            order[j] = order[i];
+        }
+
+        Centroids[] trained = new Centroids[subspaces];
+        for (int s = 0; s < subspaces; s++) {
+            int width = bounds[s + 1] - bounds[s];
+            float[] subvectors = new float[sampleCount * width];
+            for (int i = 0; i < sampleCount; i++) {
+                System.arraycopy(samples[i], bounds[s], subvectors, i * width, width);
+            }
+            trained[s] = Centroids.train(subvectors, sampleCount, width, CODEBOOK_SIZE, TRAINING_ITERATIONS,
+                    false, scorer, random);
+        }
+        byte[] encoded = new byte[count * subspaces];
+        for (int row = 0; row < count; row++) {
+            encode(arena.read(row), bounds, trained, encoded, row);
+        }
+
+        lock.writeLock().lock();
+        try {
+            codes = Arrays.copyOf(encoded, Math.max(encoded.length, (rows + INITIAL_ROWS) * subspaces));
+            for (int row = count; row < rows; row++) {
+                encode(originals.read(row), bounds, trained, codes, row);
+            }
+            boundaries = bounds;
+            codebooks = trained;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("PQ 码本训练完成: 行数={}, 子空间数={}, 样本数={}, 耗时={}ms",
+                count, subspaces, sampleCount, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 是否已完成码本训练
+     */
+    public boolean isTrained() {
+        lock.readLock().lock();
+        try {
+            return codebooks != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        trainer.shutdownNow();
+    }
+
+    private void trainQuietly() {
+        try {
+            train();
+        } catch (Exception e) {
+            log.error("PQ 码本训练失败: {}", e.getMessage(), e);
+        } finally {
+            trainingScheduled.set(false);
+        }
+    }
+
+    private void encode(float[] normalized, int[] bounds, Centroids[] books, byte[] target, int row) {
+        int base = row * subspaces;
+        for (int s = 0; s < subspaces; s++) {
+            float[] subvector = Arrays.copyOfRange(normalized, bounds[s], bounds[s + 1]);
+            target[base + s] = (byte) books[s].nearest(subvector, scorer);
+        }
+    }
+
+    private void ensureCodeCapacity() {
+        long required = (long) (rows + 1) * subspaces;
+        if (required > codes.length) {
+            long capacity = Math.max(required, Math.max((long) INITIAL_ROWS * subspaces, (long) codes.length * 2));
+            codes = Arrays.copyOf(codes, (int) Math.min(capacity, Integer.MAX_VALUE - 8));
+        }
+    }
+
+    @Override
+    protected int dimension() {
+        return dimension;
+    }
+
+    @Override
+    protected Embedding embedding(int row) {
+        float[] vector = originals.read(row);
+        float norm = norms[row];
+        for (int d = 0; d < vector.length; d++) {
+            vector[d] *= norm;
+        }
+        return Embedding.from(vector);
+    }
+}
@@ -0,0 +1,603 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.filter.Filter;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.ManagedEmbeddingStore;
+import org.example.ragtest.store.support.SegmentCodec;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Redis 共享向量存储
+ *
+ * 实现要点：
+ * - Redis 是多个应用实例共享的数据源：每行以 id 为字段存入一个 Hash，值为二进制记录（原始向量 + 文本段），
+ *   每个文档的行 id 记录在一个 Set 中，每次写入按批流水线（pipeline）提交，一批只有一次网络往返
+ * - 每批写入最后向 Stream 变更日志追加一条记录（新增 / 删除 / 文档替换 / 清空），同一连接上命令按序执行，
+ *   其他实例读到日志时对应数据已经写入
+ * - 打分在客户端完成：每个实例持有一个本地副本存储（默认 SIMD_EXACT），首次访问时全量加载 Hash，
+ *   之后按日志增量回放；检索距上次同步超过同步间隔时先拉取一次日志，本实例的写入完成后立即同步
+ * - 日志按长度近似裁剪，实例落后于裁剪位置时重新全量加载
+ * - 回放时从 Hash 读取行的当前值，已被后续操作删除的行直接跳过，重复回放不会产生重复行
+ *
+ * 不同实例的并发写入不做事务隔离：同一文档被两个实例同时替换时以后提交的为准
+ */
+@Slf4j
+public class RedisEmbeddingStore implements ManagedEmbeddingStore, AutoCloseable {
+
+    private static final String OP_ADD = "add";
+    private static final String OP_REMOVE = "remove";
+    private static final String OP_UPSERT = "upsert";
+    private static final String OP_CLEAR = "clear";
+
+    private static final String FIELD_OP = "op";
+    private static final String FIELD_DOCUMENT = "document";
+    private static final String FIELD_IDS = "ids";
+
+    /**
+     * 每次拉取日志和全量加载时每批读取的条数
+     */
+    private static final int READ_BATCH = 1024;
+
+    private final RedisConnectionFactory connectionFactory;
+    private final ManagedEmbeddingStore replica;
+    private final String keyPrefix;
+    private final byte[] rowsKey;
+    private final byte[] logKey;
+    private final int writeBatch;
+    private final long maxLogLength;
+    private final long syncIntervalNanos;
+
+    /**
+     * 保护本地副本：回放一条日志可能对应副本上的多步操作，检索不应看到中间状态
+     */
+    private final ReadWriteLock replicaLock = new ReentrantReadWriteLock();
+
+    /**
+     * 串行化同步，拉取日志期间检索继续访问副本
+     */
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    private boolean temporary;
+    private volatile RecordId lastApplied;
+    private volatile long lastSyncNanos;
+
+    /**
+     * @param connectionFactory Redis 连接工厂
+     * @param keyPrefix 键前缀，共享同一份数据的实例必须一致
+     * @param replica 空的本地副本存储，用于客户端打分
+     * @param writeBatch 每个流水线提交的行数
+     * @param maxLogLength 变更日志近似保留的条数
+     * @param syncIntervalMillis 检索前拉取日志的最小间隔（毫秒），0 表示每次检索都同步
+     */
+    public RedisEmbeddingStore(RedisConnectionFactory connectionFactory, String keyPrefix, ManagedEmbeddingStore replica,
+                               int writeBatch, long maxLogLength, long syncIntervalMillis) {
+        if (writeBatch < 1 || maxLogLength < 1) {
+            throw new IllegalArgumentException("Redis 写入批大小和日志长度必须为正数: " + writeBatch + "/" + maxLogLength);
+        }
+        this.connectionFactory = connectionFactory;
+        this.replica = replica;
+        this.keyPrefix = keyPrefix;
+        this.rowsKey = bytes(keyPrefix + ":rows");
+        this.logKey = bytes(keyPrefix + ":log");
+        this.writeBatch = writeBatch;
+        this.maxLogLength = maxLogLength;
+        this.syncIntervalNanos = Math.max(0, syncIntervalMillis) * 1_000_000;
+    }
+
+    /**
+     * 创建使用随机键前缀的临时存储，关闭时删除全部键
+     */
+    public static RedisEmbeddingStore temporary(RedisConnectionFactory connectionFactory, String keyPrefix,
+                                                ManagedEmbeddingStore replica, int writeBatch) {
+        RedisEmbeddingStore store = new RedisEmbeddingStore(connectionFactory,
+                keyPrefix + ":tmp:" + UUID.randomUUID(), replica, writeBatch, READ_BATCH, 0);
+        store.temporary = true;
+        return store;
+    }
+
+    // ==================== 写入 ====================
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        AbstractEmbeddingStore.validateBatch(ids, embeddings, embedded);
+        for (int from = 0; from < ids.size(); from += writeBatch) {
+            int to = Math.min(ids.size(), from + writeBatch);
+            List<String> batchIds = ids.subList(from, to);
+            try (RedisConnection connection = connectionFactory.getConnection()) {
+                connection.openPipeline();
+                writeRows(connection, batchIds, embeddings.subList(from, to), embedded == null ? null : embedded.subList(from, to));
+                appendLog(connection, OP_ADD, null, batchIds);
+                connection.closePipeline();
+            }
+        }
+        sync();
+    }
+
+    @Override
+    public void upsertDocument(String documentId, List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        AbstractEmbeddingStore.validateBatch(ids, embeddings, embedded);
+        byte[] documentKey = documentKey(documentId);
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            Set<byte[]> previous = connection.setCommands().sMembers(documentKey);
+            connection.openPipeline();
+            if (previous != null && !previous.isEmpty()) {
+                connection.hashCommands().hDel(rowsKey, previous.toArray(new byte[0][]));
+            }
+            connection.keyCommands().del(documentKey);
+            writeRows(connection, ids, embeddings, embedded);
+            appendLog(connection, OP_UPSERT, documentId, ids);
+            connection.closePipeline();
+        }
+        sync();
+    }
+
+    @Override
+    public void removeDocument(String documentId) {
+        byte[] documentKey = documentKey(documentId);
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            Set<byte[]> previous = connection.setCommands().sMembers(documentKey);
+            if (previous == null || previous.isEmpty()) {
+                return;
+            }
+            List<String> ids = previous.stream().map(RedisEmbeddingStore::string).toList();
+            connection.openPipeline();
+            connection.hashCommands().hDel(rowsKey, previous.toArray(new byte[0][]));
+            connection.keyCommands().del(documentKey);
+            appendLog(connection, OP_REMOVE, null, ids);
+            connection.closePipeline();
+        }
+        sync();
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<String> idList = new ArrayList<>(ids);
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            byte[][] fields = idList.stream().map(RedisEmbeddingStore::bytes).toArray(byte[][]::new);
+            List<byte[]> rows = connection.hashCommands().hMGet(rowsKey, fields);
+            connection.openPipeline();
+            connection.hashCommands().hDel(rowsKey, fields);
+            for (int i = 0; i < fields.length; i++) {
+                String documentId = rows == null || rows.get(i) == null
+                        ? null : ManagedEmbeddingStore.documentIdOf(decode(idList.get(i), rows.get(i)).segment());
+                if (documentId != null) {
+                    connection.setCommands().sRem(documentKey(documentId), fields[i]);
+                }
+            }
+            appendLog(connection, OP_REMOVE, null, idList);
+            connection.closePipeline();
+        }
+        sync();
+    }
+
+    /**
+     * 在本地副本上求出满足过滤条件的 id 后按 id 删除
+     * 其他实例尚未同步到本实例的写入不在删除范围内
+     */
+    @Override
+    public void removeAll(Filter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("删除过滤条件不能为空");
+        }
+        sync();
+        List<String> matched = new ArrayList<>();
+        forEachReplica(entry -> {
+            if (entry.segment() != null && filter.test(entry.segment().metadata())) {
+                matched.add(entry.id());
+            }
+        });
+        removeAll(matched);
+    }
+
+    @Override
+    public void removeAll() {
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            List<byte[]> keys = dataKeys(connection);
+            connection.openPipeline();
+            connection.keyCommands().del(keys.toArray(new byte[0][]));
+            appendLog(connection, OP_CLEAR, null, List.of());
+            connection.closePipeline();
+        }
+        sync();
+    }
+
+    // ==================== 读取 ====================
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        syncIfStale();
+        replicaLock.readLock().lock();
+        try {
+            return replica.search(request);
+        } finally {
+            replicaLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request, int coarseDimension, int oversample) {
+        syncIfStale();
+        replicaLock.readLock().lock();
+        try {
+            return replica.search(request, coarseDimension, oversample);
+        } finally {
+            replicaLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean supportsTruncatedSearch() {
+        return replica.supportsTruncatedSearch();
+    }
+
+    @Override
+    public int size() {
+        syncIfStale();
+        replicaLock.readLock().lock();
+        try {
+            return replica.size();
+        } finally {
+            replicaLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int deletedCount() {
+        return replica.deletedCount();
+    }
+
+    @Override
+    public void forEach(Consumer<Entry> consumer) {
+        syncIfStale();
+        forEachReplica(consumer);
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (temporary) {
+            try (RedisConnection connection = connectionFactory.getConnection()) {
+                List<byte[]> keys = dataKeys(connection);
+                keys.add(logKey);
+                connection.keyCommands().del(keys.toArray(new byte[0][]));
+            }
+        }
+        if (replica instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private void forEachReplica(Consumer<Entry> consumer) {
+        replicaLock.readLock().lock();
+        try {
+            replica.forEach(consumer);
+        } finally {
+            replicaLock.readLock().unlock();
+        }
+    }
+
+    // ==================== 同步 ====================
+
+    /**
+     * 距上次同步超过间隔时同步；其他线程正在同步时直接使用当前副本
+     */
+    private void syncIfStale() {
+        if (lastApplied != null && System.nanoTime() - lastSyncNanos < syncIntervalNanos) {
+            return;
+        }
+        if (syncLock.tryLock()) {
+            try {
+                syncLocked();
+            } finally {
+                syncLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 同步到当前日志末尾，本实例写入后调用以保证读到自己的写入
+     */
+    private void sync() {
+        syncLock.lock();
+        try {
+            syncLocked();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void syncLocked() {
+        long start = System.nanoTime();
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            if (lastApplied == null) {
+                reload(connection);
+            } else {
+                List<ByteRecord> records = readLog(connection, lastApplied);
+                if (!records.isEmpty() && isTrimmed(connection)) {
+                    log.warn("Redis 变更日志已被裁剪到本地同步位置之后，重新全量加载: 位置={}", lastApplied);
+                    reload(connection);
+                } else {
+                    while (!records.isEmpty()) {
+                        for (ByteRecord record : records) {
+                            apply(connection, record);
+                            lastApplied = record.getId();
+                        }
+                        records = records.size() < READ_BATCH ? List.of() : readLog(connection, lastApplied);
+                    }
+                }
+            }
+        }
+        lastSyncNanos = start;
+    }
+
+    /**
+     * 先记下日志末尾位置再扫描 Hash，扫描期间的写入会在之后按日志重新回放
+     */
+    private void reload(RedisConnection connection) {
+        List<ByteRecord> tail = connection.streamCommands().xRevRange(logKey, Range.unbounded(), Limit.limit().count(1));
+        RecordId position = tail == null || tail.isEmpty() ? RecordId.of(0, 0) : tail.get(0).getId();
+
+        List<String> ids = new ArrayList<>();
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        replicaLock.writeLock().lock();
+        try {
+            replica.removeAll();
+            try (Cursor<Map.Entry<byte[], byte[]>> cursor = connection.hashCommands().hScan(
+                    rowsKey, ScanOptions.scanOptions().count(READ_BATCH).build())) {
+                while (cursor.hasNext()) {
+                    Map.Entry<byte[], byte[]> field = cursor.next();
+                    Entry entry = decode(string(field.getKey()), field.getValue());
+                    ids.add(entry.id());
+                    embeddings.add(entry.embedding());
+                    segments.add(entry.segment());
+                    if (ids.size() == READ_BATCH) {
+                        replica.addAll(ids, embeddings, segments);
+                        ids = new ArrayList<>();
+                        embeddings = new ArrayList<>();
+                        segments = new ArrayList<>();
+                    }
+                }
+            }
+            if (!ids.isEmpty()) {
+                replica.addAll(ids, embeddings, segments);
+            }
+        } finally {
+            replicaLock.writeLock().unlock();
+        }
+        lastApplied = position;
+        log.info("从 Redis 全量加载向量存储: 前缀={}, 行数={}", keyPrefix, replica.size());
+    }
+
+    private List<ByteRecord> readLog(RedisConnection connection, RecordId after) {
+        List<ByteRecord> records = connection.streamCommands().xRange(logKey,
+                Range.rightUnbounded(Range.Bound.exclusive(after.getValue())), Limit.limit().count(READ_BATCH));
+        return records == null ? List.of() : records;
+    }
+
+    /**
+     * 日志中最早的一条晚于本地同步位置，说明中间的记录可能已被裁剪
+     */
+    private boolean isTrimmed(RedisConnection connection) {
+        List<ByteRecord> head = connection.streamCommands().xRange(logKey, Range.unbounded(), Limit.limit().count(1));
+        if (head == null || head.isEmpty()) {
+            return false;
+        }
+        RecordId first = head.get(0).getId();
+        return first.getTimestamp() > lastApplied.getTimestamp()
+                || (first.getTimestamp() == lastApplied.getTimestamp() && first.getSequence() > lastApplied.getSequence() + 1);
+    }
+
+    private void apply(RedisConnection connection, ByteRecord record) {
+        Map<String, byte[]> fields = new HashMap<>();
+        record.getValue().forEach((key, value) -> fields.put(string(key), value));
+        String op = string(fields.get(FIELD_OP));
+        List<String> ids = decodeIds(fields.get(FIELD_IDS));
+        if (OP_CLEAR.equals(op)) {
+            replicaLock.writeLock().lock();
+            try {
+                replica.removeAll();
+            } finally {
+                replicaLock.writeLock().unlock();
+            }
+            return;
+        }
+        if (OP_REMOVE.equals(op)) {
+            replicaLock.writeLock().lock();
+            try {
+                replica.removeAll(ids);
+            } finally {
+                replicaLock.writeLock().unlock();
+            }
+            return;
+        }
+
+        // 新增和文档替换读取行的当前值，已被删除的行跳过
+        List<String> presentIds = new ArrayList<>(ids.size());
+        List<Embedding> embeddings = new ArrayList<>(ids.size());
+        List<TextSegment> segments = new ArrayList<>(ids.size());
+        if (!ids.isEmpty()) {
+            List<byte[]> rows = connection.hashCommands().hMGet(rowsKey,
+                    ids.stream().map(RedisEmbeddingStore::bytes).toArray(byte[][]::new));
+            for (int i = 0; i < ids.size(); i++) {
+                byte[] row = rows == null ? null : rows.get(i);
+                if (row != null) {
+                    Entry entry = decode(ids.get(i), row);
+                    presentIds.add(entry.id());
+                    embeddings.add(entry.embedding());
+                    segments.add(entry.segment());
+                }
+            }
+        }
+        replicaLock.writeLock().lock();
+        try {
+            if (OP_UPSERT.equals(op)) {
+                replica.upsertDocument(string(fields.get(FIELD_DOCUMENT)), presentIds, embeddings, segments);
+            } else {
+                replica.removeAll(ids);
+                replica.addAll(presentIds, embeddings, segments);
+            }
+        } finally {
+            replicaLock.writeLock().unlock();
+        }
+    }
+
+    // ==================== 编码 ====================
+
+    private void writeRows(RedisConnection connection, List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Map<byte[], byte[]> rows = new LinkedHashMap<>(ids.size() * 2);
+        Map<String, Set<byte[]>> documents = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            TextSegment segment = embedded == null ? null : embedded.get(i);
+            byte[] field = bytes(ids.get(i));
+            rows.put(field, encode(ids.get(i), embeddings.get(i), segment));
+            String documentId = ManagedEmbeddingStore.documentIdOf(segment);
+            if (documentId != null) {
+                documents.computeIfAbsent(documentId, key -> new LinkedHashSet<>()).add(field);
+            }
+        }
+        connection.hashCommands().hMSet(rowsKey, rows);
+        documents.forEach((documentId, fields) ->
+                connection.setCommands().sAdd(documentKey(documentId), fields.toArray(new byte[0][])));
+    }
+
+    private void appendLog(RedisConnection connection, String op, String documentId, List<String> ids) {
+        Map<byte[], byte[]> fields = new LinkedHashMap<>();
+        fields.put(bytes(FIELD_OP), bytes(op));
+        if (documentId != null) {
+            fields.put(bytes(FIELD_DOCUMENT), bytes(documentId));
+        }
+        fields.put(bytes(FIELD_IDS), encodeIds(ids));
+        connection.streamCommands().xAdd(StreamRecords.rawBytes(fields).withStreamKey(logKey),
+                XAddOptions.maxlen(maxLogLength).approximateTrimming(true));
+    }
+
+    /**
+     * 行记录：维度、原始向量、文本段
+     */
+    private static byte[] encode(String id, Embedding embedding, TextSegment segment) {
+        try {
+            float[] vector = embedding.vector();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(vector.length * Float.BYTES + 256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(vector.length);
+            for (float value : vector) {
+                out.writeFloat(value);
+            }
+            SegmentCodec.write(out, id, segment);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Entry decode(String id, byte[] row) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(row));
+            float[] vector = new float[in.readInt()];
+            for (int d = 0; d < vector.length; d++) {
+                vector[d] = in.readFloat();
+            }
+            return new Entry(id, Embedding.from(vector), SegmentCodec.read(in).segment());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Redis 中的向量记录已损坏: " + id, e);
+        }
+    }
+
+    private static byte[] encodeIds(List<String> ids) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(ids.size());
+            for (String id : ids) {
+                SegmentCodec.writeString(out, id);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<String> decodeIds(byte[] encoded) {
+        if (encoded == null) {
+            return List.of();
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+            int count = in.readInt();
+            List<String> ids = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                ids.add(SegmentCodec.readString(in));
+            }
+            return ids;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 行 Hash 和全部文档 Set 的键，不含变更日志
+     */
+    private List<byte[]> dataKeys(RedisConnection connection) {
+        List<byte[]> keys = new ArrayList<>();
+        keys.add(rowsKey);
+        try (Cursor<byte[]> cursor = connection.keyCommands().scan(
+                ScanOptions.scanOptions().match(keyPrefix + ":doc:*").count(READ_BATCH).build())) {
+            cursor.forEachRemaining(keys::add);
+        }
+        return keys;
+    }
+
+    private byte[] documentKey(String documentId) {
+        return bytes(keyPrefix + ":doc:" + documentId);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,269 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.filter.Filter;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.ManagedEmbeddingStore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 分片向量存储
+ *
+ * 实现要点：
+ * - 按文档 id（没有文档 id 时按向量 id）的哈希值把数据划分到 N 个独立的分片存储中，
+ *   每个分片有自己的锁，不存在全局写锁；同一文档的文本段位于同一分片，文档替换由该分片原子完成
+ * - 批量写入先按分片分组，再在专用线程池上并行写入各分片
+ * - 检索时在专用线程池上并行检索全部分片（调用线程负责其中一个），
+ *   各分片返回按分数降序的 Top-K，再用 K 路归并堆合并出全局 Top-K
+ * - 按 id 或过滤条件删除时并行广播到全部分片
+ */
+@Slf4j
+public class ShardedEmbeddingStore implements ManagedEmbeddingStore, AutoCloseable {
+
+    private final List<ManagedEmbeddingStore> shards;
+    private final ExecutorService executor;
+
+    /**
+     * @param shardCount 分片数量
+     * @param shardFactory 分片存储工厂，每次调用返回一个独立的空存储
+     */
+    public ShardedEmbeddingStore(int shardCount, Supplier<ManagedEmbeddingStore> shardFactory) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("分片数量必须为正数: " + shardCount);
+        }
+        List<ManagedEmbeddingStore> created = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            created.add(shardFactory.get());
+        }
+        this.shards = List.copyOf(created);
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(shardCount, runnable -> {
+            Thread thread = new Thread(runnable, "embedding-store-shard-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        AbstractEmbeddingStore.validateBatch(ids, embeddings, embedded);
+        int shardCount = shards.size();
+        List<List<Integer>> routed = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            routed.add(new ArrayList<>());
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            routed.get(shardOf(routingKey(ids.get(i), AbstractEmbeddingStore.segmentAt(embedded, i)))).add(i);
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(shardCount);
+        Runnable inline = null;
+        for (int shard = 0; shard < shardCount; shard++) {
+            List<Integer> indexes = routed.get(shard);
+            if (indexes.isEmpty()) {
+                continue;
+            }
+            ManagedEmbeddingStore target = shards.get(shard);
+            Runnable write = () -> target.addAll(
+                    pick(ids, indexes), pick(embeddings, indexes), embedded == null ? null : pick(embedded, indexes));
+            if (inline == null) {
+                inline = write;
+            } else {
+                futures.add(CompletableFuture.runAsync(write, executor));
+            }
+        }
+        if (inline != null) {
+            inline.run();
+        }
+        joinAll(futures);
+    }
+
+    @Override
+    public void upsertDocument(String documentId, List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        shards.get(shardOf(documentId)).upsertDocument(documentId, ids, embeddings, embedded);
+    }
+
+    @Override
+    public void removeDocument(String documentId) {
+        shards.get(shardOf(documentId)).removeDocument(documentId);
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        broadcast(shard -> shard.removeAll(ids));
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        broadcast(shard -> shard.removeAll(filter));
+    }
+
+    @Override
+    public void removeAll() {
+        broadcast(ManagedEmbeddingStore::removeAll);
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        return search(request, shard -> shard.search(request));
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request, int coarseDimension, int oversample) {
+        return search(request, shard -> shard.search(request, coarseDimension, oversample));
+    }
+
+    @Override
+    public boolean supportsTruncatedSearch() {
+        return shards.get(0).supportsTruncatedSearch();
+    }
+
+    private EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request,
+                                                      Function<ManagedEmbeddingStore, EmbeddingSearchResult<TextSegment>> shardSearch) {
+        int shardCount = shards.size();
+        List<CompletableFuture<List<EmbeddingMatch<TextSegment>>>> futures = new ArrayList<>(shardCount - 1);
+        for (int shard = 1; shard < shardCount; shard++) {
+            ManagedEmbeddingStore target = shards.get(shard);
+            futures.add(CompletableFuture.supplyAsync(() -> shardSearch.apply(target).matches(), executor));
+        }
+        List<List<EmbeddingMatch<TextSegment>>> perShard = new ArrayList<>(shardCount);
+        perShard.add(shardSearch.apply(shards.get(0)).matches());
+        joinAll(futures);
+        for (CompletableFuture<List<EmbeddingMatch<TextSegment>>> future : futures) {
+            perShard.add(future.join());
+        }
+        return new EmbeddingSearchResult<>(merge(perShard, request.maxResults()));
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (ManagedEmbeddingStore shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    @Override
+    public int deletedCount() {
+        int deleted = 0;
+        for (ManagedEmbeddingStore shard : shards) {
+            deleted += shard.deletedCount();
+        }
+        return deleted;
+    }
+
+    /**
+     * 依次遍历各分片；分片之间不保留全局写入顺序
+     */
+    @Override
+    public void forEach(Consumer<Entry> consumer) {
+        for (ManagedEmbeddingStore shard : shards) {
+            shard.forEach(consumer);
+        }
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        for (ManagedEmbeddingStore shard : shards) {
+            if (shard instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("关闭分片存储失败: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    // ==================== 路由与合并 ====================
+
+    private int shardOf(String key) {
+        int hash = key.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.size());
+    }
+
+    private static String routingKey(String id, TextSegment segment) {
+        String documentId = ManagedEmbeddingStore.documentIdOf(segment);
+        return documentId != null ? documentId : id;
+    }
+
+    /**
+     * 在全部分片上并行执行同一操作，调用线程负责第一个分片
+     */
+    private void broadcast(Consumer<ManagedEmbeddingStore> operation) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(shards.size() - 1);
+        for (int shard = 1; shard < shards.size(); shard++) {
+            ManagedEmbeddingStore target = shards.get(shard);
+            futures.add(CompletableFuture.runAsync(() -> operation.accept(target), executor));
+        }
+        operation.accept(shards.get(0));
+        joinAll(futures);
+    }
+
+    private static <T> List<T> pick(List<T> values, List<Integer> indexes) {
+        List<T> picked = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            picked.add(values.get(index));
+        }
+        return picked;
+    }
+
+    /**
+     * K 路归并：堆中保存每个分片当前位置，每次取出分数最高的一个
+     */
+    private static List<EmbeddingMatch<TextSegment>> merge(List<List<EmbeddingMatch<TextSegment>>> perShard,
+                                                           int maxResults) {
+        PriorityQueue<int[]> heads = new PriorityQueue<>(perShard.size(),
+                (a, b) -> Double.compare(
+                        perShard.get(b[0]).get(b[1]).score(),
+                        perShard.get(a[0]).get(a[1]).score()));
+        for (int shard = 0; shard < perShard.size(); shard++) {
+            if (!perShard.get(shard).isEmpty()) {
+                heads.add(new int[]{shard, 0});
+            }
+        }
+        List<EmbeddingMatch<TextSegment>> merged = new ArrayList<>(maxResults);
+        while (merged.size() < maxResults && !heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<EmbeddingMatch<TextSegment>> matches = perShard.get(head[0]);
+            merged.add(matches.get(head[1]));
+            if (head[1] + 1 < matches.size()) {
+                heads.add(new int[]{head[0], head[1] + 1});
+            }
+        }
+        return merged;
+    }
+
+    private static void joinAll(List<? extends CompletableFuture<?>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
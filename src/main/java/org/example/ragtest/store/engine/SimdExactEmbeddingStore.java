@@ -0,0 +1,246 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import org.example.ragtest.store.support.FilterPlan;
+import org.example.ragtest.store.support.MetadataIndex;
+import org.example.ragtest.store.support.TopKCollector;
+import org.example.ragtest.store.support.VectorOps;
+import org.example.ragtest.store.support.VectorScorer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+
+/**
+ * SIMD 精确检索向量存储
+ *
+ * 实现要点：
+ * - 向量写入时归一化，按行连续存放在一个 float[] 矩阵中，余弦相似度即为点积
+ * - 点积由 {@link VectorScorer} 计算，启用 Vector API 时使用 FMA 向量指令
+ * - 有界最小堆维护 Top-K，低于堆顶分数的行不做过滤判断
+ * - 元数据建有二级索引，过滤条件足够选择性时只对候选行打分（预过滤），否则扫描全部行并用位图判断
+ * - 保存每行的原始范数，返回结果时还原原始向量
+ * - 截断维度检索时，前缀维度的向量重新归一化后存放在独立的紧凑矩阵中，粗排后再按完整维度重打分；
+ *   紧凑矩阵在首次以该维度检索时构建，之后随写入维护
+ */
+public class SimdExactEmbeddingStore extends AbstractTableEmbeddingStore {
+
+    private static final int INITIAL_ROWS = 1024;
+
+    private final VectorScorer scorer;
+    private final MetadataIndex metadataIndex;
+    private int dimension;
+    private float[] matrix = new float[0];
+    private float[] norms = new float[0];
+    private int rows;
+
+    /**
+     * 前缀维度 → 按行连续存放的重新归一化前缀向量
+     */
+    private final Map<Integer, float[]> prefixMatrices = new ConcurrentHashMap<>();
+
+    public SimdExactEmbeddingStore(VectorScorer scorer) {
+        this(scorer, MetadataIndex.DEFAULT_PRE_FILTER_SELECTIVITY, false);
+    }
+
+    /**
+     * @param scorer 点积计算实现
+     * @param preFilterSelectivity 过滤候选行占比不超过该值时使用预过滤
+     * @param compressText 是否压缩段表中的文本字节块
+     */
+    public SimdExactEmbeddingStore(VectorScorer scorer, double preFilterSelectivity, boolean compressText) {
+        super(compressText);
+        this.scorer = scorer;
+        this.metadataIndex = new MetadataIndex(preFilterSelectivity);
+    }
+
+    @Override
+    protected void appendRows(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        for (int i = 0; i < ids.size(); i++) {
+            float[] vector = embeddings.get(i).vector();
+            ensureCapacity(vector.length);
+            float norm = VectorOps.norm(vector);
+            float inverse = norm > 0f ? 1f / norm : 0f;
+            int offset = rows * dimension;
+            for (int d = 0; d < dimension; d++) {
+                matrix[offset + d] = vector[d] * inverse;
+            }
+            norms[rows] = norm;
+            for (Map.Entry<Integer, float[]> prefix : prefixMatrices.entrySet()) {
+                writePrefix(prefix.getValue(), prefix.getKey(), rows);
+            }
+            segments.add(ids.get(i), segmentAt(embedded, i));
+            metadataIndex.add(rows, segmentAt(embedded, i));
+            rows++;
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        float[] query = VectorOps.normalize(request.queryEmbedding().vector());
+        lock.readLock().lock();
+        try {
+            if (rows == 0) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+            if (query.length != dimension) {
+                throw new IllegalArgumentException(
+                        "查询向量维度不匹配，期望 " + dimension + "，实际 " + query.length);
+            }
+            TopKCollector topK = scan(request, query, matrix, dimension, request.maxResults());
+            return matches(topK.sortDescending(), request.minScore());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean supportsTruncatedSearch() {
+        return true;
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request, int coarseDimension, int oversample) {
+        float[] query = VectorOps.normalize(request.queryEmbedding().vector());
+        if (coarseDimension <= 0 || coarseDimension >= query.length) {
+            return search(request);
+        }
+        float[] coarseQuery = VectorOps.normalize(Arrays.copyOf(query, coarseDimension));
+        lock.readLock().lock();
+        try {
+            if (rows == 0) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+            if (query.length != dimension) {
+                throw new IllegalArgumentException(
+                        "查询向量维度不匹配，期望 " + dimension + "，实际 " + query.length);
+            }
+            float[] prefix = prefixMatrices.computeIfAbsent(coarseDimension, this::buildPrefixMatrix);
+            TopKCollector candidates = scan(request, coarseQuery, prefix, coarseDimension,
+                    request.maxResults() * Math.max(1, oversample));
+            TopKCollector topK = new TopKCollector(request.maxResults());
+            for (int i = 0; i < candidates.size(); i++) {
+                int row = candidates.row(i);
+                topK.offer(row, scorer.dot(query, matrix, row * dimension, dimension));
+            }
+            return matches(topK.sortDescending(), request.minScore());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按过滤计划扫描矩阵，返回未排序的 Top-K；调用方已持有读锁
+     * @param vectors 按行连续存放的归一化向量
+     * @param width 每行的维度
+     */
+    private TopKCollector scan(EmbeddingSearchRequest request, float[] query, float[] vectors, int width, int k) {
+        FilterPlan plan = metadataIndex.plan(request.filter(), rows);
+        IntPredicate residual = segments.filter(request.filter());
+        TopKCollector topK = new TopKCollector(k);
+        if (plan.isPreFilter()) {
+            plan.rows().forEach(row -> score(query, vectors, width, row, plan, residual, topK));
+        } else {
+            for (int row = 0; row < rows; row++) {
+                score(query, vectors, width, row, plan, residual, topK);
+            }
+        }
+        return topK;
+    }
+
+    private void score(float[] query, float[] vectors, int width, int row, FilterPlan plan, IntPredicate residual,
+                       TopKCollector topK) {
+        float similarity = scorer.dot(query, vectors, row * width, width);
+        if (similarity > topK.threshold() && segments.isLive(row) && plan.accepts(row, residual)) {
+            topK.offer(row, similarity);
+        }
+    }
+
+    private EmbeddingSearchResult<TextSegment> matches(TopKCollector topK, double minScore) {
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(topK.size());
+        for (int i = 0; i < topK.size(); i++) {
+            double score = VectorOps.toRelevanceScore(topK.score(i));
+            if (score < minScore) {
+                break;
+            }
+            int row = topK.row(i);
+            matches.add(new EmbeddingMatch<>(score, segments.id(row), embedding(row), segments.segment(row)));
+        }
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    /**
+     * 构建前缀维度的紧凑矩阵，调用方已持有读锁
+     */
+    private float[] buildPrefixMatrix(int prefixDimension) {
+        float[] prefix = new float[norms.length * prefixDimension];
+        for (int row = 0; row < rows; row++) {
+            writePrefix(prefix, prefixDimension, row);
+        }
+        return prefix;
+    }
+
+    /**
+     * 取完整矩阵中一行的前缀维度，重新归一化后写入紧凑矩阵
+     */
+    private void writePrefix(float[] prefix, int prefixDimension, int row) {
+        int source = row * dimension;
+        int target = row * prefixDimension;
+        float sum = 0f;
+        for (int d = 0; d < prefixDimension; d++) {
+            float value = matrix[source + d];
+            prefix[target + d] = value;
+            sum += value * value;
+        }
+        if (sum > 0f) {
+            float inverse = (float) (1.0 / Math.sqrt(sum));
+            for (int d = 0; d < prefixDimension; d++) {
+                prefix[target + d] *= inverse;
+            }
+        }
+    }
+
+    @Override
+    protected int dimension() {
+        return dimension;
+    }
+
+    @Override
+    protected Embedding embedding(int row) {
+        float[] vector = Arrays.copyOfRange(matrix, row * dimension, (row + 1) * dimension);
+        float norm = norms[row];
+        for (int d = 0; d < vector.length; d++) {
+            vector[d] *= norm;
+        }
+        return Embedding.from(vector);
+    }
+
+    private void ensureCapacity(int vectorDimension) {
+        if (dimension == 0) {
+            dimension = vectorDimension;
+        } else if (vectorDimension != dimension) {
+            throw new IllegalArgumentException(
+                    "向量维度不匹配，期望 " + dimension + "，实际 " + vectorDimension);
+        }
+        if (rows == norms.length) {
+            int capacity = Math.max(INITIAL_ROWS, rows * 2);
+            if ((long) capacity * dimension > Integer.MAX_VALUE - 8) {
+                capacity = (Integer.MAX_VALUE - 8) / dimension;
+                if (capacity <= rows) {
+                    throw new IllegalStateException("向量矩阵已达到单个数组容量上限: " + rows + " 行");
+                }
+            }
+            matrix = Arrays.copyOf(matrix, capacity * dimension);
+            norms = Arrays.copyOf(norms, capacity);
+            int grownCapacity = capacity;
+            prefixMatrices.replaceAll((prefixDimension, prefix) -> Arrays.copyOf(prefix, grownCapacity * prefixDimension));
+        }
+    }
+}
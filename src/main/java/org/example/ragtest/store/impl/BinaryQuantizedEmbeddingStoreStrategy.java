@@ -0,0 +1,56 @@
+package org.example.ragtest.store.impl;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.EmbeddingStoreStrategy;
+import org.example.ragtest.store.EmbeddingStoreType;
+import org.example.ragtest.store.engine.BinaryQuantizedEmbeddingStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 二值量化存储策略
+ * 以 1 位符号编码的汉明距离作为廉价的第一阶段，只对少量候选做完整余弦计算
+ * 
+ * 特点：
+ * - 384 维向量编码为 6 个 long，预筛阶段只有异或和 bitCount
+ * - 编码前减去各维度均值，避免句向量的公共偏移让大部分位失去区分度
+ * - 候选数 = maxResults × oversample，配合高级检索器的动态 maxResults（10-15）自动扩大
+ * - 返回精确余弦分数，minScore 语义不变
+ * 
+ * 适用场景：
+ * - 需要返回较多结果、对预筛成本敏感的场景
+ */
+@Slf4j
+@Component
+public class BinaryQuantizedEmbeddingStoreStrategy implements EmbeddingStoreStrategy {
+    
+    @Value("${rag.store.binary.oversample:8}")
+    private int oversample;
+    
+    @Value("${rag.store.binary.calibration-size:1000}")
+    private int calibrationSize;
+    
+    @Value("${rag.store.off-heap.rows-per-chunk:16384}")
+    private int rowsPerChunk;
+    
+    @Value("${rag.store.segment-text.compress:true}")
+    private boolean compressText;
+    
+    @Override
+    public EmbeddingStore<TextSegment> createStore() {
+        log.info("创建二值量化存储: 重排倍数={}", oversample);
+        return new BinaryQuantizedEmbeddingStore(oversample, calibrationSize, rowsPerChunk, compressText);
+    }
+    
+    @Override
+    public EmbeddingStoreType getStoreType() {
+        return EmbeddingStoreType.BINARY_QUANTIZED;
+    }
+    
+    @Override
+    public String getDescription() {
+        return String.format("二值量化存储 (汉明距离预筛 + 余弦重排, 重排倍数: %d)", oversample);
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.ragtest.store.impl;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.EmbeddingStoreStrategy;
+import org.example.ragtest.store.EmbeddingStoreType;
+import org.example.ragtest.store.engine.HnswEmbeddingStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * HNSW 向量存储策略
+ * 基于分层可导航小世界图（Hierarchical Navigable Small World）的近似最近邻检索
+ * 
+ * 特点：
+ * - 检索复杂度约为 O(log n)，不随语料线性增长
+ * - 支持并发写入
+ * - M / efConstruction / efSearch 可配置，在召回率和延迟之间权衡
+ * 
+ * 适用场景：
+ * - 文本段数量较大（数万以上）
+ * - 对查询延迟敏感的场景
+ */
+@Slf4j
+@Component
+public class HnswEmbeddingStoreStrategy implements EmbeddingStoreStrategy {
+    
+    @Value("${rag.store.hnsw.m:16}")
+    private int m;
+    
+    @Value("${rag.store.hnsw.ef-construction:200}")
+    private int efConstruction;
+    
+    @Value("${rag.store.hnsw.ef-search:64}")
+    private int efSearch;
+    
+    @Value("${rag.store.filter.pre-filter-selectivity:0.1}")
+    private double preFilterSelectivity;
+    
+    @Override
+    public EmbeddingStore<TextSegment> createStore() {
+        log.info("创建 HNSW 向量存储: M={}, efConstruction={}, efSearch={}", m, efConstruction, efSearch);
+        return new HnswEmbeddingStore(m, efConstruction, efSearch, preFilterSelectivity);
+    }
+    
+    @Override
+    public EmbeddingStoreType getStoreType() {
+        return EmbeddingStoreType.HNSW;
+    }
+    
+    @Override
+    public String getDescription() {
+        return String.format("HNSW 向量存储 (近似最近邻, M: %d, efConstruction: %d, efSearch: %d)", 
+                m, efConstruction, efSearch);
+    }
+}
@@ -0,0 +1,39 @@
+package org.example.ragtest.store.impl;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.example.ragtest.store.EmbeddingStoreStrategy;
+import org.example.ragtest.store.EmbeddingStoreType;
+import org.springframework.stereotype.Component;
+
+/**
+ * 内存向量存储策略
+ * 使用 langchain4j 自带的 InMemoryEmbeddingStore
+ * 
+ * 特点：
+ * - 精确检索：每次搜索对全部向量计算余弦相似度
+ * - 实现简单，结果可作为其他存储的召回率基准
+ * 
+ * 适用场景：
+ * - 开发测试
+ * - 数据量较小（数千个文本段以内）
+ */
+@Component
+public class InMemoryEmbeddingStoreStrategy implements EmbeddingStoreStrategy {
+    
+    @Override
+    public EmbeddingStore<TextSegment> createStore() {
+        return new InMemoryEmbeddingStore<>();
+    }
+    
+    @Override
+    public EmbeddingStoreType getStoreType() {
+        return EmbeddingStoreType.IN_MEMORY;
+    }
+    
+    @Override
+    public String getDescription() {
+        return "内存向量存储 (线性扫描，精确检索)";
+    }
+}
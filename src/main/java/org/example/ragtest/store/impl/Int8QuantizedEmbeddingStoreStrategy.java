@@ -0,0 +1,56 @@
+package org.example.ragtest.store.impl;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.EmbeddingStoreStrategy;
+import org.example.ragtest.store.EmbeddingStoreType;
+import org.example.ragtest.store.engine.Int8QuantizedEmbeddingStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Int8 量化存储策略
+ * 按维度 min/max 将归一化向量量化为 8 位编码，原始向量保存在堆外内存中用于重打分
+ * 
+ * 特点：
+ * - 堆内向量内存降为 float 的 1/4，扫描带宽同比降低
+ * - 两阶段检索：量化编码近似打分 + 原始向量精确重打分
+ * - 返回的分数是精确分数，minScore 语义与 IN_MEMORY 一致
+ * 
+ * 适用场景：
+ * - 堆内存受限、可以接受极小召回损失的场景
+ */
+@Slf4j
+@Component
+public class Int8QuantizedEmbeddingStoreStrategy implements EmbeddingStoreStrategy {
+    
+    @Value("${rag.store.int8.oversample:4}")
+    private int oversample;
+    
+    @Value("${rag.store.int8.calibration-size:1000}")
+    private int calibrationSize;
+    
+    @Value("${rag.store.off-heap.rows-per-chunk:16384}")
+    private int rowsPerChunk;
+    
+    @Value("${rag.store.segment-text.compress:true}")
+    private boolean compressText;
+    
+    @Override
+    public EmbeddingStore<TextSegment> createStore() {
+        log.info("创建 Int8 量化存储: 重打分倍数={}, 校准样本数={}", oversample, calibrationSize);
+        return new Int8QuantizedEmbeddingStore(oversample, calibrationSize, rowsPerChunk, compressText);
+    }
+    
+    @Override
+    public EmbeddingStoreType getStoreType() {
+        return EmbeddingStoreType.INT8_QUANTIZED;
+    }
+    
+    @Override
+    public String getDescription() {
+        return String.format("Int8 量化存储 (8 位编码近似打分 + 精确重打分, 重打分倍数: %d, 校准样本数: %d)", 
+                oversample, calibrationSize);
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.ragtest.store.impl;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.EmbeddingStoreStrategy;
+import org.example.ragtest.store.EmbeddingStoreType;
+import org.example.ragtest.store.engine.IvfEmbeddingStore;
+import org.example.ragtest.store.support.VectorScorer;
+import org.example.ragtest.store.support.VectorScorers;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * IVF 聚类向量存储策略
+ * 用 k-means 把向量划分到 nlist 个倒排列表，检索只扫描离查询最近的 nprobe 个列表
+ * 
+ * 特点：
+ * - 每次检索的打分量约为全量的 nprobe/nlist，加上 nlist 次中心打分
+ * - 数据增长到阈值时在后台自动重新训练，检索和写入不被暂停
+ * - 训练前为精确扫描
+ * 
+ * 适用场景：
+ * - 数据量较大、可以接受少量召回损失换取检索延迟的租户
+ */
+@Slf4j
+@Component
+public class IvfEmbeddingStoreStrategy implements EmbeddingStoreStrategy {
+    
+    @Value("${rag.store.ivf.nlist:256}")
+    private int nlist;
+    
+    @Value("${rag.store.ivf.nprobe:16}")
+    private int nprobe;
+    
+    @Value("${rag.store.ivf.training-size:10000}")
+    private int trainingSize;
+    
+    @Value("${rag.store.ivf.retrain-growth:2.0}")
+    private double retrainGrowth;
+    
+    @Value("${rag.store.segment-text.compress:true}")
+    private boolean compressText;
+    
+    @Override
+    public EmbeddingStore<TextSegment> createStore() {
+        VectorScorer scorer = VectorScorers.best();
+        log.info("创建 IVF 聚类向量存储: nlist={}, nprobe={}, trainingSize={}, 打分实现={}",
+                nlist, nprobe, trainingSize, scorer.name());
+        return new IvfEmbeddingStore(scorer, nlist, nprobe, trainingSize, retrainGrowth, compressText);
+    }
+    
+    @Override
+    public EmbeddingStoreType getStoreType() {
+        return EmbeddingStoreType.IVF;
+    }
+    
+    @Override
+    public String getDescription() {
+        return String.format("IVF 聚类向量存储 (nlist: %d, nprobe: %d)", nlist, nprobe);
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.ragtest.store.impl;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.EmbeddingStoreStrategy;
+import org.example.ragtest.store.EmbeddingStoreType;
+import org.example.ragtest.store.engine.MappedFileEmbeddingStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * 内存映射文件向量存储策略
+ * 向量追加写入内存映射的分块文件，id / 文本 / 元数据写入旁路记录文件
+ * 
+ * 特点：
+ * - 数据持久化，重启后无需重新向量化和导入
+ * - 打开时只建立映射，不解析文件内容，启动耗时与数据量无关
+ * - 精确检索，写入期间仍可检索已提交的数据
+ * - 冷热分层：文本段记录压缩存放在磁盘上，最近命中的行缓存在有字节预算的堆内热层中
+ * 
+ * 适用场景：
+ * - 需要保留用户导入文档、并希望快速重启的单机部署
+ */
+@Slf4j
+@Component
+public class MappedFileEmbeddingStoreStrategy implements EmbeddingStoreStrategy {
+    
+    @Value("${rag.store.mapped-file.directory:data/vector-store}")
+    private String directory;
+    
+    @Value("${rag.store.mapped-file.rows-per-chunk:16384}")
+    private int rowsPerChunk;
+    
+    @Value("${rag.store.mapped-file.hot-tier-mb:64}")
+    private long hotTierMb;
+    
+    @Value("${rag.store.mapped-file.compress-segments:true}")
+    private boolean compressSegments;
+    
+    @Override
+    public EmbeddingStore<TextSegment> createStore() {
+        log.info("创建内存映射文件向量存储: 目录={}, 每块行数={}, 热层预算={}MB, 压缩文本段={}",
+                directory, rowsPerChunk, hotTierMb, compressSegments);
+        return new MappedFileEmbeddingStore(Path.of(directory), rowsPerChunk, hotTierMb << 20, compressSegments);
+    }
+    
+    @Override
+    public EmbeddingStore<TextSegment> createTemporaryStore() {
+        return MappedFileEmbeddingStore.temporary(rowsPerChunk, hotTierMb << 20, compressSegments);
+    }
+    
+    @Override
+    public EmbeddingStoreType getStoreType() {
+        return EmbeddingStoreType.MAPPED_FILE;
+    }
+    
+    @Override
+    public String getDescription() {
+        return String.format("内存映射文件向量存储 (持久化, 精确检索, 热层: %dMB, 目录: %s)", hotTierMb, directory);
+    }
+}
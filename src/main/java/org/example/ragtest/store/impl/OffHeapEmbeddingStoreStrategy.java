@@ -0,0 +1,49 @@
+package org.example.ragtest.store.impl;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.EmbeddingStoreStrategy;
+import org.example.ragtest.store.EmbeddingStoreType;
+import org.example.ragtest.store.engine.OffHeapEmbeddingStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 堆外向量存储策略
+ * 向量连续存放在直接内存分块中，文本和元数据保存在独立的紧凑表中
+ * 
+ * 特点：
+ * - 向量不占用 Java 堆，不参与 GC 扫描和复制
+ * - 每个文本段不再需要独立的 Embedding / EmbeddingMatch 包装对象
+ * - 精确检索，结果与 IN_MEMORY 一致
+ * 
+ * 适用场景：
+ * - 文本段数量达到百万级，堆内存储导致 Full GC 的场景
+ */
+@Slf4j
+@Component
+public class OffHeapEmbeddingStoreStrategy implements EmbeddingStoreStrategy {
+    
+    @Value("${rag.store.off-heap.rows-per-chunk:16384}")
+    private int rowsPerChunk;
+    
+    @Value("${rag.store.segment-text.compress:true}")
+    private boolean compressText;
+    
+    @Override
+    public EmbeddingStore<TextSegment> createStore() {
+        log.info("创建堆外向量存储: 每块行数={}", rowsPerChunk);
+        return new OffHeapEmbeddingStore(rowsPerChunk, compressText);
+    }
+    
+    @Override
+    public EmbeddingStoreType getStoreType() {
+        return EmbeddingStoreType.OFF_HEAP;
+    }
+    
+    @Override
+    public String getDescription() {
+        return String.format("堆外向量存储 (直接内存, 精确检索, 每块行数: %d)", rowsPerChunk);
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.ragtest.store.impl;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.EmbeddingStoreStrategy;
+import org.example.ragtest.store.EmbeddingStoreType;
+import org.example.ragtest.store.engine.ProductQuantizedEmbeddingStore;
+import org.example.ragtest.store.support.VectorScorers;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 乘积量化（PQ）存储策略
+ * 向量切分为多个子空间分别用 256 个中心编码，堆内只保留每行 m 个字节的编码，原始向量放在堆外用于重打分
+ * 
+ * 特点：
+ * - 384 维、48 个子空间时堆内向量内存为 float 的 1/32，是 Int8 量化的 1/8
+ * - 每个查询计算一次 m × 256 的距离表，近似打分只有查表和加法
+ * - 返回的分数是精确分数，minScore 语义与 IN_MEMORY 一致
+ * 
+ * 适用场景：
+ * - 数据量远大于堆内存预算、可以接受少量召回损失的场景
+ */
+@Slf4j
+@Component
+public class ProductQuantizedEmbeddingStoreStrategy implements EmbeddingStoreStrategy {
+    
+    @Value("${rag.store.pq.subspaces:48}")
+    private int subspaces;
+    
+    @Value("${rag.store.pq.oversample:8}")
+    private int oversample;
+    
+    @Value("${rag.store.pq.training-size:10000}")
+    private int trainingSize;
+    
+    @Value("${rag.store.off-heap.rows-per-chunk:16384}")
+    private int rowsPerChunk;
+    
+    @Value("${rag.store.segment-text.compress:true}")
+    private boolean compressText;
+    
+    @Override
+    public EmbeddingStore<TextSegment> createStore() {
+        log.info("创建乘积量化存储: 子空间数={}, 重打分倍数={}, 训练样本数={}", subspaces, oversample, trainingSize);
+        return new ProductQuantizedEmbeddingStore(VectorScorers.best(), subspaces, oversample, trainingSize,
+                rowsPerChunk, compressText);
+    }
+    
+    @Override
+    public EmbeddingStoreType getStoreType() {
+        return EmbeddingStoreType.PRODUCT_QUANTIZED;
+    }
+    
+    @Override
+    public String getDescription() {
+        return String.format("乘积量化存储 (%d × 256 码本 + 精确重打分, 重打分倍数: %d)", subspaces, oversample);
+    }
+}
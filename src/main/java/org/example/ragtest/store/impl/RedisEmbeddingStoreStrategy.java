@@ -0,0 +1,97 @@
+package org.example.ragtest.store.impl;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.EmbeddingStoreFactory;
+import org.example.ragtest.store.EmbeddingStoreStrategy;
+import org.example.ragtest.store.EmbeddingStoreType;
+import org.example.ragtest.store.ManagedEmbeddingStore;
+import org.example.ragtest.store.engine.CompactingEmbeddingStore;
+import org.example.ragtest.store.engine.RedisEmbeddingStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Redis 共享向量存储策略
+ * 向量和文本段保存在 Redis 中，多个应用实例共享同一份数据，只需导入一次
+ *
+ * 特点：
+ * - 写入按批流水线提交，变更通过 Redis Stream 日志通知其他实例
+ * - 每个实例在本地副本上打分，副本类型由 rag.store.redis.replica-type 指定，检索延迟与本地存储相同
+ * - 数据由 Redis 持久化，不需要再启用 WAL；本地副本的墓碑由后台压缩回收
+ *
+ * 适用场景：
+ * - 多实例部署，需要共享一份索引、避免每个实例重复导入的场景
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RedisEmbeddingStoreStrategy implements EmbeddingStoreStrategy {
+
+    /**
+     * 副本存储工厂依赖全部策略（包括本策略），延迟获取以避免循环依赖
+     */
+    private final ObjectProvider<EmbeddingStoreFactory> storeFactory;
+
+    private final ObjectProvider<RedisConnectionFactory> connectionFactory;
+
+    @Value("${rag.store.redis.key-prefix:rag:store}")
+    private String keyPrefix;
+
+    @Value("${rag.store.redis.replica-type:SIMD_EXACT}")
+    private EmbeddingStoreType replicaType;
+
+    @Value("${rag.store.redis.write-batch:512}")
+    private int writeBatch;
+
+    @Value("${rag.store.redis.max-log-length:100000}")
+    private long maxLogLength;
+
+    @Value("${rag.store.redis.sync-interval-ms:1000}")
+    private long syncIntervalMillis;
+
+    @Value("${rag.store.compaction.deleted-ratio:0.2}")
+    private double compactionDeletedRatio;
+
+    @Value("${rag.store.compaction.interval-seconds:60}")
+    private long compactionIntervalSeconds;
+
+    @Override
+    public EmbeddingStore<TextSegment> createStore() {
+        log.info("创建 Redis 共享向量存储: 键前缀={}, 副本类型={}, 同步间隔={}ms", keyPrefix, replicaType, syncIntervalMillis);
+        ManagedEmbeddingStore replica = new CompactingEmbeddingStore(createReplica(), this::createReplica,
+                compactionDeletedRatio, compactionIntervalSeconds);
+        return new RedisEmbeddingStore(connectionFactory.getObject(), keyPrefix, replica,
+                writeBatch, maxLogLength, syncIntervalMillis);
+    }
+
+    @Override
+    public EmbeddingStore<TextSegment> createTemporaryStore() {
+        return RedisEmbeddingStore.temporary(connectionFactory.getObject(), keyPrefix, createReplica(), writeBatch);
+    }
+
+    @Override
+    public EmbeddingStoreType getStoreType() {
+        return EmbeddingStoreType.REDIS;
+    }
+
+    @Override
+    public String getDescription() {
+        return String.format("Redis 共享向量存储 (键前缀: %s, 本地副本: %s)", keyPrefix, replicaType);
+    }
+
+    private ManagedEmbeddingStore createReplica() {
+        if (replicaType == EmbeddingStoreType.REDIS || replicaType == EmbeddingStoreType.MAPPED_FILE) {
+            throw new IllegalArgumentException("不支持的 Redis 副本存储类型: " + replicaType);
+        }
+        EmbeddingStore<TextSegment> store = storeFactory.getObject().getStrategy(replicaType).createStore();
+        if (!(store instanceof ManagedEmbeddingStore managedStore)) {
+            throw new IllegalArgumentException("不支持的 Redis 副本存储类型: " + replicaType);
+        }
+        return managedStore;
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.ragtest.store.impl;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.EmbeddingStoreFactory;
+import org.example.ragtest.store.EmbeddingStoreStrategy;
+import org.example.ragtest.store.EmbeddingStoreType;
+import org.example.ragtest.store.ManagedEmbeddingStore;
+import org.example.ragtest.store.engine.ShardedEmbeddingStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 分片向量存储策略
+ * 按 id 哈希把数据划分到多个独立的分片存储，分片类型由 rag.store.sharded.shard-type 指定
+ * 
+ * 特点：
+ * - 每个分片独立加锁，并发写入不再竞争同一把锁
+ * - 检索在专用线程池上并行扫描全部分片，K 路归并得到全局 Top-K
+ * - 单次检索延迟随 CPU 核数下降
+ * 
+ * 适用场景：
+ * - 多核服务器上的大规模精确检索或高并发写入
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ShardedEmbeddingStoreStrategy implements EmbeddingStoreStrategy {
+    
+    /**
+     * 分片存储工厂依赖全部策略（包括本策略），延迟获取以避免循环依赖
+     */
+    private final ObjectProvider<EmbeddingStoreFactory> storeFactory;
+    
+    @Value("${rag.store.sharded.shards:0}")
+    private int shards;
+    
+    @Value("${rag.store.sharded.shard-type:SIMD_EXACT}")
+    private EmbeddingStoreType shardType;
+    
+    @Override
+    public EmbeddingStore<TextSegment> createStore() {
+        if (shardType == EmbeddingStoreType.SHARDED || shardType == EmbeddingStoreType.MAPPED_FILE
+                || shardType == EmbeddingStoreType.REDIS) {
+            throw new IllegalArgumentException("不支持的分片存储类型: " + shardType);
+        }
+        int shardCount = shardCount();
+        log.info("创建分片向量存储: 分片数={}, 分片类型={}", shardCount, shardType);
+        EmbeddingStoreStrategy shardStrategy = storeFactory.getObject().getStrategy(shardType);
+        return new ShardedEmbeddingStore(shardCount, () -> {
+            EmbeddingStore<TextSegment> shard = shardStrategy.createStore();
+            if (!(shard instanceof ManagedEmbeddingStore managedShard)) {
+                throw new IllegalArgumentException("不支持的分片存储类型: " + shardType);
+            }
+            return managedShard;
+        });
+    }
+    
+    @Override
+    public EmbeddingStoreType getStoreType() {
+        return EmbeddingStoreType.SHARDED;
+    }
+    
+    @Override
+    public String getDescription() {
+        return String.format("分片向量存储 (分片数: %d, 分片类型: %s)", shardCount(), shardType);
+    }
+    
+    private int shardCount() {
+        return shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.ragtest.store.impl;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ragtest.store.EmbeddingStoreStrategy;
+import org.example.ragtest.store.EmbeddingStoreType;
+import org.example.ragtest.store.engine.SimdExactEmbeddingStore;
+import org.example.ragtest.store.support.VectorScorer;
+import org.example.ragtest.store.support.VectorScorers;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * SIMD 精确检索存储策略
+ * 对连续存放的归一化向量矩阵做暴力扫描，点积使用 JDK Vector API 的 FMA 指令
+ * 
+ * 特点：
+ * - 精确检索，召回率 100%
+ * - 归一化后余弦相似度即点积，省去每次搜索的范数计算
+ * - 未启用 jdk.incubator.vector 模块时自动回退到标量实现
+ * 
+ * 适用场景：
+ * - 数据量适中、要求精确结果的租户
+ */
+@Slf4j
+@Component
+public class SimdExactEmbeddingStoreStrategy implements EmbeddingStoreStrategy {
+    
+    @Value("${rag.store.filter.pre-filter-selectivity:0.1}")
+    private double preFilterSelectivity;
+    
+    @Value("${rag.store.segment-text.compress:true}")
+    private boolean compressText;
+    
+    @Override
+    public EmbeddingStore<TextSegment> createStore() {
+        VectorScorer scorer = VectorScorers.best();
+        log.info("创建 SIMD 精确检索存储: 打分实现={}", scorer.name());
+        return new SimdExactEmbeddingStore(scorer, preFilterSelectivity, compressText);
+    }
+    
+    @Override
+    public EmbeddingStoreType getStoreType() {
+        return EmbeddingStoreType.SIMD_EXACT;
+    }
+    
+    @Override
+    public String getDescription() {
+        return String.format("SIMD 精确检索存储 (连续矩阵, 打分实现: %s)", VectorScorers.best().name());
+    }
+}
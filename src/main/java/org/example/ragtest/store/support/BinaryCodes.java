@@ -0,0 +1,52 @@
+package org.example.ragtest.store.support;
+
+/**
+ * 二值向量编码工具
+ * 每个维度按（减去中心后的）符号压缩为 1 位，64 个维度打包为一个 long（384 维为 6 个 long），
+ * 两个编码之间的汉明距离用 {@link Long#bitCount(long)} 计算
+ *
+ * 句向量通常整体偏向某个公共方向，直接取符号会让大量维度恒为同一位；
+ * 减去按维度统计的均值后各位更接近均匀分布，汉明距离的区分度更高
+ */
+public final class BinaryCodes {
+
+    private BinaryCodes() {
+    }
+
+    /**
+     * 编码所需的 long 数量
+     */
+    public static int words(int dimension) {
+        return (dimension + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    /**
+     * 将向量编码写入目标数组的指定位置：分量大于中心值的维度置 1
+     * @param center 每个维度的中心值，为 null 时以 0 为中心
+     */
+    public static void encode(float[] vector, float[] center, long[] target, int offset) {
+        int words = words(vector.length);
+        for (int w = 0; w < words; w++) {
+            long bits = 0L;
+            int base = w * Long.SIZE;
+            int end = Math.min(base + Long.SIZE, vector.length);
+            for (int d = base; d < end; d++) {
+                if (vector[d] > (center == null ? 0f : center[d])) {
+                    bits |= 1L << (d - base);
+                }
+            }
+            target[offset + w] = bits;
+        }
+    }
+
+    /**
+     * 计算查询编码与目标数组中一行编码的汉明距离
+     */
+    public static int hammingDistance(long[] query, long[] codes, int offset) {
+        int distance = 0;
+        for (int w = 0; w < query.length; w++) {
+            distance += Long.bitCount(query[w] ^ codes[offset + w]);
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,219 @@
+package org.example.ragtest.store.support;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * k-means 聚类中心
+ * 训练使用 k-means++ 初始化加 Lloyd 迭代，中心按行连续存放在一个 float[] 中
+ *
+ * 支持两种度量：
+ * - 球面（spherical）：样本为归一化向量，按点积最大分配，每轮迭代后中心重新归一化
+ * - 欧氏：按平方欧氏距离最小分配，||x - c||² 的比较化简为 ||c||²/2 - x·c，只需一次点积
+ *
+ * 训练完成后不可变，可被多个线程并发读取
+ */
+public final class Centroids {
+
+    private final float[] values;
+    private final int count;
+    private final int dimension;
+    private final boolean spherical;
+    private final float[] halfSquaredNorms;
+
+    private Centroids(float[] values, int count, int dimension, boolean spherical) {
+        this.values = values;
+        this.count = count;
+        this.dimension = dimension;
+        this.spherical = spherical;
+        this.halfSquaredNorms = new float[count];
+        if (!spherical) {
+            for (int c = 0; c < count; c++) {
+                float sum = 0f;
+                for (int d = 0; d < dimension; d++) {
+                    float value = values[c * dimension + d];
+                    sum += value * value;
+                }
+                halfSquaredNorms[c] = sum / 2f;
+            }
+        }
+    }
+
+    /**
+     * 训练聚类中心
+     * @param samples 按行连续存放的样本
+     * @param sampleCount 样本数
+     * @param dimension 维度
+     * @param k 中心数，超过样本数时取样本数
+     * @param iterations Lloyd 迭代次数上限，分配不再变化时提前结束
+     * @param spherical 是否按球面 k-means 训练（样本须已归一化）
+     * @param scorer 点积实现
+     * @param random 随机源
+     */
+    public static Centroids train(float[] samples, int sampleCount, int dimension, int k, int iterations,
+                                  boolean spherical, VectorScorer scorer, Random random) {
+        if (sampleCount == 0) {
+            throw new IllegalArgumentException("k-means 训练样本不能为空");
+        }
+        int clusters = Math.min(k, sampleCount);
+        Centroids centroids = new Centroids(seed(samples, sampleCount, dimension, clusters, random),
+                clusters, dimension, spherical);
+
+        int[] assignment = new int[sampleCount];
+        Arrays.fill(assignment, -1);
+        float[] query = new float[dimension];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            int changed = 0;
+            for (int i = 0; i < sampleCount; i++) {
+                System.arraycopy(samples, i * dimension, query, 0, dimension);
+                int nearest = centroids.nearest(query, scorer);
+                if (nearest != assignment[i]) {
+                    assignment[i] = nearest;
+                    changed++;
+                }
+            }
+            if (changed == 0) {
+                break;
+            }
+            centroids = new Centroids(update(samples, sampleCount, dimension, clusters, assignment, spherical, random),
+                    clusters, dimension, spherical);
+        }
+        return centroids;
+    }
+
+    /**
+     * 距离最近（球面时为点积最大）的中心下标
+     */
+    public int nearest(float[] vector, VectorScorer scorer) {
+        int best = 0;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (int c = 0; c < count; c++) {
+            float score = score(vector, c, scorer);
+            if (score > bestScore) {
+                bestScore = score;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 距离最近的 n 个中心，按距离从近到远排列
+     */
+    public int[] nearest(float[] vector, int n, VectorScorer scorer) {
+        TopKCollector topK = new TopKCollector(Math.min(n, count));
+        for (int c = 0; c < count; c++) {
+            float score = score(vector, c, scorer);
+            if (score > topK.threshold()) {
+                topK.offer(c, score);
+            }
+        }
+        topK.sortDescending();
+        int[] result = new int[topK.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = topK.row(i);
+        }
+        return result;
+    }
+
+    /**
+     * 向量与中心的相似度，越大越近：球面时为点积，欧氏时为 x·c - ||c||²/2
+     */
+    public float score(float[] vector, int centroid, VectorScorer scorer) {
+        return scorer.dot(vector, values, centroid * dimension, dimension) - halfSquaredNorms[centroid];
+    }
+
+    /**
+     * 指定中心的第 d 个分量
+     */
+    public float value(int centroid, int d) {
+        return values[centroid * dimension + d];
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    // ==================== 训练 ====================
+
+    /**
+     * k-means++ 初始化：第一个中心随机选取，之后按到已选中心最近距离的平方加权抽样
+     */
+    private static float[] seed(float[] samples, int sampleCount, int dimension, int k, Random random) {
+        float[] seeds = new float[k * dimension];
+        int first = random.nextInt(sampleCount);
+        System.arraycopy(samples, first * dimension, seeds, 0, dimension);
+        double[] distances = new double[sampleCount];
+        Arrays.fill(distances, Double.MAX_VALUE);
+        for (int c = 1; c < k; c++) {
+            double total = 0;
+            int previous = (c - 1) * dimension;
+            for (int i = 0; i < sampleCount; i++) {
+                distances[i] = Math.min(distances[i], squaredDistance(samples, i * dimension, seeds, previous, dimension));
+                total += distances[i];
+            }
+            int chosen = random.nextInt(sampleCount);
+            if (total > 0) {
+                double target = random.nextDouble() * total;
+                for (int i = 0; i < sampleCount; i++) {
+                    target -= distances[i];
+                    if (target <= 0) {
+                        chosen = i;
+                        break;
+                    }
+                }
+            }
+            System.arraycopy(samples, chosen * dimension, seeds, c * dimension, dimension);
+        }
+        return seeds;
+    }
+
+    /**
+     * 以各簇样本均值作为新中心；空簇用随机样本重新播种
+     */
+    private static float[] update(float[] samples, int sampleCount, int dimension, int k, int[] assignment,
+                                  boolean spherical, Random random) {
+        float[] sums = new float[k * dimension];
+        int[] sizes = new int[k];
+        for (int i = 0; i < sampleCount; i++) {
+            int base = assignment[i] * dimension;
+            int offset = i * dimension;
+            for (int d = 0; d < dimension; d++) {
+                sums[base + d] += samples[offset + d];
+            }
+            sizes[assignment[i]]++;
+        }
+        for (int c = 0; c < k; c++) {
+            int base = c * dimension;
+            if (sizes[c] == 0) {
+                System.arraycopy(samples, random.nextInt(sampleCount) * dimension, sums, base, dimension);
+                continue;
+            }
+            float scale = 1f / sizes[c];
+            if (spherical) {
+                float norm = 0f;
+                for (int d = 0; d < dimension; d++) {
+                    norm += sums[base + d] * sums[base + d];
+                }
+                scale = norm > 0f ? (float) (1 / Math.sqrt(norm)) : 0f;
+            }
+            for (int d = 0; d < dimension; d++) {
+                sums[base + d] *= scale;
+            }
+        }
+        return sums;
+    }
+
+    private static double squaredDistance(float[] a, int aOffset, float[] b, int bOffset, int dimension) {
+        double sum = 0;
+        for (int d = 0; d < dimension; d++) {
+            double diff = a[aOffset + d] - b[bOffset + d];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+}
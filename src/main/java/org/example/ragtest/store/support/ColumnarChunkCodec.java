@@ -0,0 +1,180 @@
+package org.example.ragtest.store.support;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import org.example.ragtest.store.ManagedEmbeddingStore.Entry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 向量存储导出文件的分块列式编解码
+ *
+ * 文件格式（大端序）：
+ * - 文件头：魔数 "RAGX"、版本号
+ * - 若干数据块：行数、向量维度、块体字节数，块体按列依次存放
+ *   全部向量（行数 × 维度个 float）、全部 id、全部文本（存在标记 + 文本）、全部元数据（{@link SegmentCodec} 格式）
+ * - 结束块：行数为 0
+ *
+ * 每块独立解码，导入时逐块读取、逐块写入存储，内存占用与块大小而不是文件大小成正比；
+ * 块体字节数来自不可信的输入，超过调用方给定上限的数据块直接拒绝，不按该长度分配内存
+ */
+public final class ColumnarChunkCodec {
+
+    private static final int MAGIC = 0x52414758;
+    private static final int VERSION = 1;
+    private static final int CHUNK_HEADER_BYTES = 3 * Integer.BYTES;
+
+    private ColumnarChunkCodec() {
+    }
+
+    public static void writeHeader(WritableByteChannel channel) throws IOException {
+        writeFully(channel, ByteBuffer.allocate(2 * Integer.BYTES).putInt(MAGIC).putInt(VERSION).flip());
+    }
+
+    /**
+     * 校验文件头
+     * @throws IllegalArgumentException 不是导出文件或版本不支持
+     */
+    public static void readHeader(ReadableByteChannel channel) throws IOException {
+        ByteBuffer header = readFully(channel, 2 * Integer.BYTES);
+        int magic = header.getInt();
+        int version = header.getInt();
+        if (magic != MAGIC) {
+            throw new IllegalArgumentException("不是向量存储导出文件");
+        }
+        if (version != VERSION) {
+            throw new IllegalArgumentException("不支持的导出文件版本: " + version);
+        }
+    }
+
+    /**
+     * 写出一个数据块，块头、向量列和其余列以聚集写入提交
+     * @param entries 同一维度的数据，不能为空
+     */
+    public static void writeChunk(WritableByteChannel channel, List<Entry> entries) throws IOException {
+        int dimension = entries.get(0).embedding().dimension();
+        ByteBuffer vectors = ByteBuffer.allocate(entries.size() * dimension * Float.BYTES);
+        FloatBuffer floats = vectors.asFloatBuffer();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(entries.size() * 256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Entry entry : entries) {
+            float[] vector = entry.embedding().vector();
+            if (vector.length != dimension) {
+                throw new IllegalArgumentException("同一数据块内向量维度不一致: " + dimension + "/" + vector.length);
+            }
+            floats.put(vector);
+            SegmentCodec.writeString(out, entry.id());
+        }
+        for (Entry entry : entries) {
+            out.writeBoolean(entry.segment() != null);
+            if (entry.segment() != null) {
+                SegmentCodec.writeString(out, entry.segment().text());
+            }
+        }
+        for (Entry entry : entries) {
+            if (entry.segment() != null) {
+                SegmentCodec.writeMetadata(out, entry.segment().metadata());
+            }
+        }
+        out.flush();
+        ByteBuffer columns = ByteBuffer.wrap(bytes.toByteArray());
+        ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_BYTES)
+                .putInt(entries.size())
+                .putInt(dimension)
+                .putInt(vectors.capacity() + columns.capacity())
+                .flip();
+        writeFully(channel, header, vectors, columns);
+    }
+
+    public static void writeEnd(WritableByteChannel channel) throws IOException {
+        writeFully(channel, ByteBuffer.allocate(CHUNK_HEADER_BYTES).putInt(0).putInt(0).putInt(0).flip());
+    }
+
+    /**
+     * 读取下一个数据块
+     * @param maxChunkBytes 允许的最大块体字节数
+     * @return 结束块返回 null
+     * @throws IllegalArgumentException 块头损坏或块体超过上限
+     */
+    public static List<Entry> readChunk(ReadableByteChannel channel, int maxChunkBytes) throws IOException {
+        ByteBuffer header = readFully(channel, CHUNK_HEADER_BYTES);
+        int rows = header.getInt();
+        int dimension = header.getInt();
+        int bodyBytes = header.getInt();
+        if (rows == 0) {
+            return null;
+        }
+        if (rows < 0 || dimension <= 0 || bodyBytes < (long) rows * dimension * Float.BYTES) {
+            throw new IllegalArgumentException("导出文件数据块头损坏: 行数=" + rows + ", 维度=" + dimension);
+        }
+        if (bodyBytes > maxChunkBytes) {
+            throw new IllegalArgumentException("导出文件数据块超过上限: " + bodyBytes + " > " + maxChunkBytes + " 字节");
+        }
+        ByteBuffer body = readFully(channel, bodyBytes);
+        float[][] vectors = new float[rows][dimension];
+        FloatBuffer floats = body.asFloatBuffer();
+        for (float[] vector : vectors) {
+            floats.get(vector);
+        }
+        int columnsOffset = rows * dimension * Float.BYTES;
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(body.array(), columnsOffset, bodyBytes - columnsOffset));
+        String[] ids = new String[rows];
+        for (int row = 0; row < rows; row++) {
+            ids[row] = SegmentCodec.readString(in);
+        }
+        String[] texts = new String[rows];
+        for (int row = 0; row < rows; row++) {
+            texts[row] = in.readBoolean() ? SegmentCodec.readString(in) : null;
+        }
+        List<Entry> entries = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            TextSegment segment = texts[row] == null ? null : TextSegment.from(texts[row], SegmentCodec.readMetadata(in));
+            entries.add(new Entry(ids[row], Embedding.from(vectors[row]), segment));
+        }
+        return entries;
+    }
+
+    /**
+     * 目标支持聚集写入（如 FileChannel）时一次系统调用提交全部缓冲区，否则逐个写出
+     */
+    private static void writeFully(WritableByteChannel channel, ByteBuffer... buffers) throws IOException {
+        if (channel instanceof GatheringByteChannel gathering) {
+            long remaining = 0;
+            for (ByteBuffer buffer : buffers) {
+                remaining += buffer.remaining();
+            }
+            while (remaining > 0) {
+                remaining -= gathering.write(buffers);
+            }
+            return;
+        }
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static ByteBuffer readFully(ReadableByteChannel channel, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("导出文件不完整");
+            }
+        }
+        return buffer.flip();
+    }
+}
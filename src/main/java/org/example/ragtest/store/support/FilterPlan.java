@@ -0,0 +1,78 @@
+package org.example.ragtest.store.support;
+
+import java.util.function.IntPredicate;
+
+/**
+ * 过滤执行计划，由 {@link MetadataIndex#plan} 生成
+ *
+ * - 无过滤条件：全部行通过
+ * - 预过滤：候选集足够小，只对位图中的行做向量打分
+ * - 位图后过滤：照常扫描，用位图判断替代逐行解析元数据
+ * - 逐行后过滤：过滤条件无法使用索引，退化为逐行执行 Filter
+ * 位图不精确时（例如 And 中只有一侧可走索引）位图是结果的超集，命中后仍需逐行复核
+ */
+public final class FilterPlan {
+
+    public static final FilterPlan NONE = new FilterPlan(null, false, false, false);
+
+    private final RowBitmap rows;
+    private final boolean exact;
+    private final boolean preFilter;
+    private final boolean filtered;
+
+    private FilterPlan(RowBitmap rows, boolean exact, boolean preFilter, boolean filtered) {
+        this.rows = rows;
+        this.exact = exact;
+        this.preFilter = preFilter;
+        this.filtered = filtered;
+    }
+
+    static FilterPlan indexed(RowBitmap rows, boolean exact, boolean preFilter) {
+        return new FilterPlan(rows, exact, preFilter, true);
+    }
+
+    static FilterPlan rowByRow() {
+        return new FilterPlan(null, false, false, true);
+    }
+
+    /**
+     * 是否只需要对 {@link #rows()} 中的行打分
+     */
+    public boolean isPreFilter() {
+        return preFilter;
+    }
+
+    /**
+     * 候选行位图；逐行后过滤或无过滤条件时为 null
+     */
+    public RowBitmap rows() {
+        return rows;
+    }
+
+    /**
+     * 判断指定行是否满足过滤条件
+     * @param residual 逐行执行原始 Filter 的判断，只在位图无法给出确定结果时调用
+     */
+    public boolean accepts(int row, IntPredicate residual) {
+        if (!filtered) {
+            return true;
+        }
+        if (rows != null && !rows.contains(row)) {
+            return false;
+        }
+        return (rows != null && exact) || residual.test(row);
+    }
+
+    /**
+     * 计划说明，用于日志
+     */
+    public String describe() {
+        if (!filtered) {
+            return "无过滤";
+        }
+        if (rows == null) {
+            return "逐行后过滤";
+        }
+        return (preFilter ? "预过滤" : "位图后过滤") + "(候选=" + rows.cardinality() + (exact ? "" : ", 需复核") + ")";
+    }
+}
@@ -0,0 +1,105 @@
+package org.example.ragtest.store.support;
+
+import org.example.ragtest.store.ManagedEmbeddingStore.Entry;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按字节预算淘汰的热数据层
+ * 缓存已解码的行（id、原始向量、文本段），按最近一次提升的先后排列，超出预算时淘汰最久未提升的行
+ *
+ * 只有 {@link #promote(int, Entry)} 会刷新行的新近程度，{@link #get(int)} 不会，
+ * 因此过滤判断等只读访问不会把行留在热层中
+ *
+ * 线程安全，所有方法在实例锁内完成
+ */
+public final class HotRowCache {
+
+    /**
+     * 每行的固定开销估算：对象头、引用、Map 节点和装箱的行号
+     */
+    private static final int ENTRY_OVERHEAD = 160;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Integer, Cached> rows = new LinkedHashMap<>();
+    private long bytes;
+
+    /**
+     * @param maxBytes 热层字节预算（估算值）
+     */
+    public HotRowCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("热数据层预算必须为正数: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 读取热层中的行，不改变其新近程度
+     * @return 不在热层中时返回 null
+     */
+    public synchronized Entry get(int row) {
+        Cached cached = rows.get(row);
+        return cached == null ? null : cached.entry();
+    }
+
+    /**
+     * 将行放入热层或刷新为最新，然后按预算淘汰最久未提升的行
+     */
+    public synchronized void promote(int row, Entry entry) {
+        Cached previous = rows.remove(row);
+        if (previous != null) {
+            bytes -= previous.bytes();
+        }
+        long size = estimate(entry);
+        if (size > maxBytes) {
+            return;
+        }
+        rows.put(row, new Cached(entry, size));
+        bytes += size;
+        Iterator<Map.Entry<Integer, Cached>> eldest = rows.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().getValue().bytes();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * 移除已删除的行
+     */
+    public synchronized void invalidate(int row) {
+        Cached previous = rows.remove(row);
+        if (previous != null) {
+            bytes -= previous.bytes();
+        }
+    }
+
+    public synchronized int size() {
+        return rows.size();
+    }
+
+    /**
+     * 当前占用的估算字节数
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    private static long estimate(Entry entry) {
+        long size = ENTRY_OVERHEAD + 2L * entry.id().length();
+        if (entry.embedding() != null) {
+            size += (long) entry.embedding().dimension() * Float.BYTES;
+        }
+        if (entry.segment() != null) {
+            size += 2L * entry.segment().text().length();
+            for (Map.Entry<String, Object> value : entry.segment().metadata().toMap().entrySet()) {
+                size += ENTRY_OVERHEAD / 2 + 2L * (value.getKey().length() + String.valueOf(value.getValue()).length());
+            }
+        }
+        return size;
+    }
+
+    private record Cached(Entry entry, long bytes) {}
+}
@@ -0,0 +1,112 @@
+package org.example.ragtest.store.support;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 定长行内存映射文件
+ * 文件由固定大小的文件头和若干定长行组成，按 rowsPerChunk 行一块分别映射（单个映射不能超过 2GB）
+ * 打开已有文件时只建立映射，不读取和解析内容；字节序固定为小端，文件可在不同平台间复制
+ *
+ * 映射块的扩展需要由调用方串行化；已映射块的读取可以与扩展并发进行
+ */
+public final class MappedRowFile implements Closeable {
+
+    private final FileChannel channel;
+    private final int headerBytes;
+    private final int rowBytes;
+    private final int rowsPerChunk;
+    private final MappedByteBuffer header;
+    private final List<MappedByteBuffer> chunks = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param path 文件路径，不存在时创建
+     * @param headerBytes 文件头字节数，可以为 0
+     * @param rowBytes 每行字节数
+     * @param rowsPerChunk 每个映射块容纳的行数
+     */
+    public MappedRowFile(Path path, int headerBytes, int rowBytes, int rowsPerChunk) throws IOException {
+        if (rowBytes <= 0 || rowsPerChunk <= 0) {
+            throw new IllegalArgumentException("行字节数和分块行数必须为正数: " + rowBytes + "/" + rowsPerChunk);
+        }
+        if ((long) rowBytes * rowsPerChunk > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("单个映射块超过 2GB 上限，请减小分块行数: " + rowsPerChunk);
+        }
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.headerBytes = headerBytes;
+        this.rowBytes = rowBytes;
+        this.rowsPerChunk = rowsPerChunk;
+        this.header = headerBytes > 0 ? map(0, headerBytes) : null;
+    }
+
+    /**
+     * 文件头映射，调用方自行约定其布局
+     */
+    public ByteBuffer header() {
+        return header;
+    }
+
+    /**
+     * 确保前 rows 行都已映射；文件长度不足时由映射自动扩展
+     */
+    public void ensureMapped(int rows) throws IOException {
+        while ((long) chunks.size() * rowsPerChunk < rows) {
+            long position = headerBytes + (long) chunks.size() * rowsPerChunk * rowBytes;
+            chunks.add(map(position, (long) rowsPerChunk * rowBytes));
+        }
+    }
+
+    /**
+     * 指定行所在的映射块
+     */
+    public ByteBuffer chunk(int row) {
+        return chunks.get(row / rowsPerChunk);
+    }
+
+    /**
+     * 指定行在所在映射块内的字节偏移
+     */
+    public int offset(int row) {
+        return (row % rowsPerChunk) * rowBytes;
+    }
+
+    /**
+     * 已映射的字节数
+     */
+    public long mappedBytes() {
+        return headerBytes + (long) chunks.size() * rowsPerChunk * rowBytes;
+    }
+
+    /**
+     * 将已修改的映射页刷写到磁盘
+     */
+    public void force() {
+        if (header != null) {
+            header.force();
+        }
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private MappedByteBuffer map(long position, long size) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.ragtest.store.support;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 最大边际相关性（MMR）重选
+ * 从按相关性检索出的候选中贪心选出 k 个结果，每一步选择
+ * λ · sim(查询, 候选) − (1 − λ) · max sim(候选, 已选结果) 最大的候选，
+ * 避免返回多个几乎相同的重叠片段（分割器的重叠窗口会产生这种结果）
+ *
+ * 候选向量直接取检索结果中存储返回的向量，不重新向量化；
+ * 每个候选维护与已选集合的最大相似度，每轮只与新选中的结果计算一次点积，任意两个候选的相似度最多计算一次
+ */
+public final class MaximalMarginalRelevance {
+
+    private MaximalMarginalRelevance() {
+    }
+
+    /**
+     * @param candidates 按相关性降序排列的候选，分数为 langchain4j 相关性分数
+     * @param k 选出的结果数
+     * @param lambda 相关性权重 (0.0-1.0)，1.0 时等同于按相关性取前 k 个
+     * @return 按选中顺序排列的结果，保留原始相关性分数
+     */
+    public static List<EmbeddingMatch<TextSegment>> select(List<EmbeddingMatch<TextSegment>> candidates, int k, double lambda) {
+        if (lambda < 0.0 || lambda > 1.0) {
+            throw new IllegalArgumentException("MMR 相关性权重必须在 0 到 1 之间: " + lambda);
+        }
+        int n = candidates.size();
+        if (n <= k || lambda == 1.0) {
+            return candidates.subList(0, Math.min(k, n));
+        }
+        float[][] vectors = new float[n][];
+        double[] relevance = new double[n];
+        for (int i = 0; i < n; i++) {
+            EmbeddingMatch<TextSegment> candidate = candidates.get(i);
+            Embedding embedding = candidate.embedding();
+            vectors[i] = embedding == null ? null : VectorOps.normalize(embedding.vector());
+            // 相关性分数由余弦相似度线性映射而来，还原后与候选间的余弦相似度处于同一量纲
+            relevance[i] = 2.0 * candidate.score() - 1.0;
+        }
+
+        double[] maxSimilarity = new double[n];
+        Arrays.fill(maxSimilarity, Double.NEGATIVE_INFINITY);
+        boolean[] selected = new boolean[n];
+        List<EmbeddingMatch<TextSegment>> result = new ArrayList<>(k);
+        // 第一个结果总是相关性最高的候选
+        int last = 0;
+        selected[0] = true;
+        result.add(candidates.get(0));
+        while (result.size() < k) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                if (selected[i]) {
+                    continue;
+                }
+                maxSimilarity[i] = Math.max(maxSimilarity[i], similarity(vectors[i], vectors[last]));
+                double score = lambda * relevance[i] - (1.0 - lambda) * maxSimilarity[i];
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            selected[best] = true;
+            result.add(candidates.get(best));
+            last = best;
+        }
+        return result;
+    }
+
+    private static double similarity(float[] a, float[] b) {
+        return a == null || b == null || a.length != b.length ? 0.0 : VectorOps.dot(a, b);
+    }
+}
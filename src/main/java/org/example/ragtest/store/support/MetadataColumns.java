@@ -0,0 +1,346 @@
+package org.example.ragtest.store.support;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Not;
+import dev.langchain4j.store.embedding.filter.logical.Or;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * 列式元数据存储
+ *
+ * 实现要点：
+ * - 每个元数据键一列，与文本段表按行号对齐，不再为每行保存一个 Map
+ * - 字符串列做字典编码：每个不同取值只保存一次，行中只保存 int 编码（-1 表示该行没有这个键）
+ * - Integer 列（如 word_count、segment_char_count）保存为 int 数组加存在位图，不装箱
+ * - 其他类型（Long、Double、UUID 等）以及同一个键出现多种类型时使用对象列，取值原样保存
+ * - Metadata 对象只在返回检索结果或需要逐行执行 Filter 时重新构建
+ * - 等值 / IN 条件及其 And、Or、Not 组合直接比较列编码，不构建 Metadata；
+ *   其他条件或类型不匹配时退化为构建 Metadata 后执行 Filter.test，行为（包括类型不兼容时抛出的异常）保持一致
+ *
+ * 删除的行只清空各列取值，字典项不回收，由存储压缩时重建回收
+ *
+ * 非线程安全，写入和读取由所属存储的锁保护
+ */
+public final class MetadataColumns {
+
+    private final Map<String, Column> columns = new LinkedHashMap<>();
+    private int rowLimit;
+
+    /**
+     * 写入一行的元数据，覆盖该行已有的取值
+     */
+    public void set(int row, Map<String, Object> values) {
+        clear(row);
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            Column column = columns.get(entry.getKey());
+            if (column == null) {
+                column = Column.of(entry.getValue());
+                columns.put(entry.getKey(), column);
+            } else if (!column.holds(entry.getValue())) {
+                column = ObjectColumn.copyOf(column, rowLimit);
+                columns.put(entry.getKey(), column);
+            }
+            column.set(row, entry.getValue());
+        }
+        rowLimit = Math.max(rowLimit, row + 1);
+    }
+
+    /**
+     * 清空一行的全部取值
+     */
+    public void clear(int row) {
+        if (row < rowLimit) {
+            for (Column column : columns.values()) {
+                column.clear(row);
+            }
+        }
+    }
+
+    /**
+     * 读取一行的全部取值
+     */
+    public Map<String, Object> values(int row) {
+        Map<String, Object> values = new HashMap<>();
+        if (row < rowLimit) {
+            for (Map.Entry<String, Column> entry : columns.entrySet()) {
+                Object value = entry.getValue().get(row);
+                if (value != null) {
+                    values.put(entry.getKey(), value);
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 重新构建一行的元数据
+     */
+    public Metadata metadata(int row) {
+        return new Metadata(values(row));
+    }
+
+    /**
+     * 指定键等于给定值的行号，字符串列只比较字典编码
+     */
+    public int[] rowsEqualTo(String key, Object value) {
+        Column column = columns.get(key);
+        if (column == null) {
+            return new int[0];
+        }
+        if (column instanceof StringColumn strings) {
+            if (!(value instanceof String string)) {
+                return new int[0];
+            }
+            int code = strings.code(string);
+            return code < 0 ? new int[0] : IntStream.range(0, rowLimit).filter(row -> strings.code(row) == code).toArray();
+        }
+        return IntStream.range(0, rowLimit).filter(row -> value.equals(column.get(row))).toArray();
+    }
+
+    /**
+     * 将过滤条件编译为按行号判断的谓词
+     * 编译结果不缓存，由调用方在一次检索内复用；字符串取值在编译时转换为字典编码，
+     * 谓词只在编译后没有新写入期间有效
+     */
+    public IntPredicate predicate(Filter filter) {
+        return compile(filter);
+    }
+
+    private IntPredicate compile(Filter filter) {
+        if (filter instanceof And and) {
+            IntPredicate left = compile(and.left());
+            IntPredicate right = compile(and.right());
+            return row -> left.test(row) && right.test(row);
+        }
+        if (filter instanceof Or or) {
+            IntPredicate left = compile(or.left());
+            IntPredicate right = compile(or.right());
+            return row -> left.test(row) || right.test(row);
+        }
+        if (filter instanceof Not not) {
+            return compile(not.expression()).negate();
+        }
+        IntPredicate predicate = null;
+        if (filter instanceof IsEqualTo isEqualTo) {
+            predicate = equalTo(isEqualTo.key(), List.of(isEqualTo.comparisonValue()), false);
+        } else if (filter instanceof IsNotEqualTo isNotEqualTo) {
+            predicate = equalTo(isNotEqualTo.key(), List.of(isNotEqualTo.comparisonValue()), true);
+        } else if (filter instanceof IsIn isIn) {
+            predicate = equalTo(isIn.key(), isIn.comparisonValues(), false);
+        } else if (filter instanceof IsNotIn isNotIn) {
+            predicate = equalTo(isNotIn.key(), isNotIn.comparisonValues(), true);
+        }
+        return predicate != null ? predicate : row -> filter.test(metadata(row));
+    }
+
+    /**
+     * 按列编码判断取值是否在给定集合中
+     * @param negate 为 true 时判断不在集合中，没有该键的行也满足
+     * @return 列类型与比较值不匹配时返回 null，由调用方退化为逐行执行 Filter
+     */
+    private IntPredicate equalTo(String key, Collection<?> comparisonValues, boolean negate) {
+        Column column = columns.get(key);
+        if (column instanceof StringColumn strings
+                && comparisonValues.stream().allMatch(value -> value instanceof String)) {
+            BitSet codes = new BitSet();
+            for (Object value : comparisonValues) {
+                int code = strings.code((String) value);
+                if (code >= 0) {
+                    codes.set(code);
+                }
+            }
+            return row -> {
+                int code = strings.code(row);
+                return code < 0 ? negate : codes.get(code) != negate;
+            };
+        }
+        if (column instanceof IntColumn ints
+                && comparisonValues.stream().allMatch(value -> value instanceof Integer || value instanceof Long)) {
+            Set<Long> numbers = new HashSet<>();
+            comparisonValues.forEach(value -> numbers.add(((Number) value).longValue()));
+            return row -> !ints.has(row) ? negate : numbers.contains((long) ints.value(row)) != negate;
+        }
+        return null;
+    }
+
+    /**
+     * 一个元数据键的取值列，数组按需增长，超出长度的行视为没有该键
+     */
+    private abstract static class Column {
+
+        static Column of(Object value) {
+            if (value instanceof String) {
+                return new StringColumn();
+            }
+            if (value instanceof Integer) {
+                return new IntColumn();
+            }
+            return new ObjectColumn();
+        }
+
+        /**
+         * 该列能否保存给定类型的取值
+         */
+        abstract boolean holds(Object value);
+
+        abstract void set(int row, Object value);
+
+        abstract void clear(int row);
+
+        /**
+         * @return 该行没有这个键时返回 null
+         */
+        abstract Object get(int row);
+
+        static int grow(int length, int row) {
+            return Math.max(row + 1, Math.max(16, length * 2));
+        }
+    }
+
+    private static final class StringColumn extends Column {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private int[] rows = new int[0];
+
+        @Override
+        boolean holds(Object value) {
+            return value instanceof String;
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (row >= rows.length) {
+                int length = rows.length;
+                rows = Arrays.copyOf(rows, grow(length, row));
+                Arrays.fill(rows, length, rows.length, -1);
+            }
+            rows[row] = codes.computeIfAbsent((String) value, key -> {
+                dictionary.add(key);
+                return dictionary.size() - 1;
+            });
+        }
+
+        @Override
+        void clear(int row) {
+            if (row < rows.length) {
+                rows[row] = -1;
+            }
+        }
+
+        @Override
+        Object get(int row) {
+            int code = code(row);
+            return code < 0 ? null : dictionary.get(code);
+        }
+
+        int code(int row) {
+            return row < rows.length ? rows[row] : -1;
+        }
+
+        /**
+         * @return 字典中没有该取值时返回 -1
+         */
+        int code(String value) {
+            Integer code = codes.get(value);
+            return code == null ? -1 : code;
+        }
+    }
+
+    private static final class IntColumn extends Column {
+
+        private int[] values = new int[0];
+        private final BitSet present = new BitSet();
+
+        @Override
+        boolean holds(Object value) {
+            return value instanceof Integer;
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+            values[row] = (Integer) value;
+            present.set(row);
+        }
+
+        @Override
+        void clear(int row) {
+            present.clear(row);
+        }
+
+        @Override
+        Object get(int row) {
+            return has(row) ? values[row] : null;
+        }
+
+        boolean has(int row) {
+            return present.get(row);
+        }
+
+        int value(int row) {
+            return values[row];
+        }
+    }
+
+    private static final class ObjectColumn extends Column {
+
+        private Object[] values = new Object[0];
+
+        static ObjectColumn copyOf(Column column, int rowLimit) {
+            ObjectColumn copy = new ObjectColumn();
+            for (int row = 0; row < rowLimit; row++) {
+                Object value = column.get(row);
+                if (value != null) {
+                    copy.set(row, value);
+                }
+            }
+            return copy;
+        }
+
+        @Override
+        boolean holds(Object value) {
+            return true;
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+            values[row] = value;
+        }
+
+        @Override
+        void clear(int row) {
+            if (row < values.length) {
+                values[row] = null;
+            }
+        }
+
+        @Override
+        Object get(int row) {
+            return row < values.length ? values[row] : null;
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package org.example.ragtest.store.support;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Not;
+import dev.langchain4j.store.embedding.filter.logical.Or;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 元数据二级索引
+ *
+ * 实现要点：
+ * - 字符串 / UUID 类型的键为每个取值维护一个 {@link RowBitmap} 倒排表
+ * - 数值类型的键（如 word_count、char_count）维护按值排序的 (值, 行号) 数组，范围查询二分定位；
+ *   新写入的行先进入未排序尾部，尾部超过有序部分的 1/8 时归并
+ * - 同一个键出现多种类型的取值时不再为该键建索引，相关条件退化为逐行过滤，与 Filter.test 的类型检查保持一致
+ * - 规划时按 Filter 树自底向上计算候选位图，再按候选占比选择预过滤或后过滤
+ *
+ * 读写由内部读写锁保护，可以与检索并发写入；规划结果总是新建的位图，不与索引共享
+ */
+public final class MetadataIndex {
+
+    /**
+     * 默认的预过滤阈值：候选行占比不超过该值时只对候选行打分
+     */
+    public static final double DEFAULT_PRE_FILTER_SELECTIVITY = 0.1;
+
+    /**
+     * double 能精确表示的最大整数，超过时数值索引无法保证与 BigDecimal 比较一致
+     */
+    private static final double MAX_EXACT_INTEGER = 1L << 53;
+
+    private final double preFilterSelectivity;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, KeyIndex> keys = new HashMap<>();
+
+    /**
+     * 没有文本段的行，不参与过滤，所有计划都包含这些行
+     */
+    private final RowBitmap unfiltered = new RowBitmap();
+
+    /**
+     * @param preFilterSelectivity 候选行占比不超过该值时使用预过滤
+     */
+    public MetadataIndex(double preFilterSelectivity) {
+        this.preFilterSelectivity = preFilterSelectivity;
+    }
+
+    /**
+     * 为一行建立索引
+     * @param segment 文本段，为 null 时该行不参与过滤
+     */
+    public void add(int row, TextSegment segment) {
+        lock.writeLock().lock();
+        try {
+            if (segment == null) {
+                unfiltered.add(row);
+                return;
+            }
+            for (Map.Entry<String, Object> entry : segment.metadata().toMap().entrySet()) {
+                keys.computeIfAbsent(entry.getKey(), key -> new KeyIndex()).add(row, entry.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 为过滤条件生成执行计划
+     * @param filter 过滤条件，可以为 null
+     * @param rowCount 当前行数，取反类条件以 [0, rowCount) 为全集
+     */
+    public FilterPlan plan(Filter filter, int rowCount) {
+        if (filter == null) {
+            return FilterPlan.NONE;
+        }
+        lock.readLock().lock();
+        try {
+            Candidates candidates = evaluate(filter, rowCount);
+            if (candidates == null) {
+                return FilterPlan.rowByRow();
+            }
+            RowBitmap rows = candidates.rows.or(unfiltered);
+            boolean preFilter = rows.cardinality() <= preFilterSelectivity * rowCount;
+            return FilterPlan.indexed(rows, candidates.exact, preFilter);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 指定键等于给定值的行，用于按文档 id 定位行而不扫描全部行
+     * @return 行号位图的副本，与之后的写入互不影响；该键无法使用索引（如取值类型混合）时返回 null
+     */
+    public RowBitmap rowsEqualTo(String key, Object value) {
+        lock.readLock().lock();
+        try {
+            RowBitmap rows = equalTo(key, value);
+            return rows == null ? null : rows.or(new RowBitmap());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==================== 规划 ====================
+
+    /**
+     * 候选行集合
+     * @param exact 为 true 表示与过滤结果完全一致，否则为超集
+     */
+    private record Candidates(RowBitmap rows, boolean exact) {}
+
+    /**
+     * @return 候选集合；无法使用索引时返回 null
+     */
+    private Candidates evaluate(Filter filter, int rowCount) {
+        if (filter instanceof And and) {
+            Candidates left = evaluate(and.left(), rowCount);
+            Candidates right = evaluate(and.right(), rowCount);
+            if (left == null || right == null) {
+                Candidates indexed = left == null ? right : left;
+                return indexed == null ? null : new Candidates(indexed.rows, false);
+            }
+            return new Candidates(left.rows.and(right.rows), left.exact && right.exact);
+        }
+        if (filter instanceof Or or) {
+            Candidates left = evaluate(or.left(), rowCount);
+            Candidates right = evaluate(or.right(), rowCount);
+            if (left == null || right == null) {
+                return null;
+            }
+            return new Candidates(left.rows.or(right.rows), left.exact && right.exact);
+        }
+        if (filter instanceof Not not) {
+            Candidates inner = evaluate(not.expression(), rowCount);
+            if (inner == null || !inner.exact) {
+                return null;
+            }
+            return exact(universe(rowCount).andNot(inner.rows));
+        }
+        RowBitmap rows = evaluateComparison(filter, rowCount);
+        return rows == null ? null : exact(rows);
+    }
+
+    private RowBitmap evaluateComparison(Filter filter, int rowCount) {
+        if (filter instanceof IsEqualTo isEqualTo) {
+            return equalTo(isEqualTo.key(), isEqualTo.comparisonValue());
+        }
+        if (filter instanceof IsNotEqualTo isNotEqualTo) {
+            // 缺少该键的行满足不等于条件
+            RowBitmap equal = equalTo(isNotEqualTo.key(), isNotEqualTo.comparisonValue());
+            return equal == null ? null : universe(rowCount).andNot(equal);
+        }
+        if (filter instanceof IsIn isIn) {
+            return in(isIn.key(), isIn.comparisonValues());
+        }
+        if (filter instanceof IsNotIn isNotIn) {
+            RowBitmap in = in(isNotIn.key(), isNotIn.comparisonValues());
+            return in == null ? null : universe(rowCount).andNot(in);
+        }
+        if (filter instanceof IsGreaterThan greaterThan) {
+            return range(greaterThan.key(), greaterThan.comparisonValue(), false, true);
+        }
+        if (filter instanceof IsGreaterThanOrEqualTo greaterThanOrEqualTo) {
+            return range(greaterThanOrEqualTo.key(), greaterThanOrEqualTo.comparisonValue(), true, true);
+        }
+        if (filter instanceof IsLessThan lessThan) {
+            return range(lessThan.key(), lessThan.comparisonValue(), false, false);
+        }
+        if (filter instanceof IsLessThanOrEqualTo lessThanOrEqualTo) {
+            return range(lessThanOrEqualTo.key(), lessThanOrEqualTo.comparisonValue(), true, false);
+        }
+        return null;
+    }
+
+    private RowBitmap equalTo(String key, Object value) {
+        KeyIndex index = keys.get(key);
+        if (index == null) {
+            return new RowBitmap();
+        }
+        if (index.mixed) {
+            return null;
+        }
+        if (isText(value) && !index.numeric) {
+            RowBitmap posting = index.postings.get(value.toString());
+            return posting == null ? new RowBitmap() : posting;
+        }
+        if (value instanceof Number number && index.numeric && exactNumber(number)) {
+            double target = toDouble(number);
+            return index.numbers.range(target, true, target, true);
+        }
+        return null;
+    }
+
+    private RowBitmap in(String key, Collection<?> values) {
+        RowBitmap result = new RowBitmap();
+        for (Object value : values) {
+            RowBitmap equal = equalTo(key, value);
+            if (equal == null) {
+                return null;
+            }
+            result = result.or(equal);
+        }
+        return result;
+    }
+
+    private RowBitmap range(String key, Object bound, boolean inclusive, boolean lowerBound) {
+        KeyIndex index = keys.get(key);
+        if (index == null) {
+            return new RowBitmap();
+        }
+        if (index.mixed || !index.numeric || !(bound instanceof Number number) || !exactNumber(number)) {
+            return null;
+        }
+        double value = toDouble(number);
+        return lowerBound
+                ? index.numbers.range(value, inclusive, Double.POSITIVE_INFINITY, true)
+                : index.numbers.range(Double.NEGATIVE_INFINITY, true, value, inclusive);
+    }
+
+    private static Candidates exact(RowBitmap rows) {
+        return new Candidates(rows, true);
+    }
+
+    private static RowBitmap universe(int rowCount) {
+        return RowBitmap.range(0, rowCount);
+    }
+
+    private static boolean isText(Object value) {
+        return value instanceof String || value instanceof UUID;
+    }
+
+    /**
+     * 数值按十进制字符串转换，与 Filter 中 BigDecimal 比较的结果一致
+     */
+    private static double toDouble(Number number) {
+        return Double.parseDouble(number.toString());
+    }
+
+    private static boolean exactNumber(Number number) {
+        double value = toDouble(number);
+        return !Double.isNaN(value)
+                && (!(number instanceof Long) || Math.abs(value) <= MAX_EXACT_INTEGER);
+    }
+
+    // ==================== 单个键的索引 ====================
+
+    private static final class KeyIndex {
+
+        private final Map<String, RowBitmap> postings = new HashMap<>();
+        private final NumericColumn numbers = new NumericColumn();
+        private boolean text;
+        private boolean numeric;
+        private boolean mixed;
+
+        void add(int row, Object value) {
+            if (mixed) {
+                return;
+            }
+            if (isText(value)) {
+                text = true;
+                postings.computeIfAbsent(value.toString(), ignored -> new RowBitmap()).add(row);
+            } else if (value instanceof Number number && exactNumber(number)) {
+                numeric = true;
+                numbers.add(toDouble(number), row);
+            } else {
+                mixed = true;
+            }
+            if (text && numeric) {
+                mixed = true;
+            }
+            if (mixed) {
+                postings.clear();
+                numbers.clear();
+            }
+        }
+    }
+
+    /**
+     * 数值列：有序部分 + 未排序尾部
+     */
+    private static final class NumericColumn {
+
+        private static final int MIN_TAIL = 1024;
+
+        private double[] sortedValues = new double[0];
+        private int[] sortedRows = new int[0];
+        private double[] tailValues = new double[64];
+        private int[] tailRows = new int[64];
+        private int tailSize;
+
+        void add(double value, int row) {
+            if (tailSize == tailValues.length) {
+                tailValues = Arrays.copyOf(tailValues, tailSize * 2);
+                tailRows = Arrays.copyOf(tailRows, tailSize * 2);
+            }
+            tailValues[tailSize] = value;
+            tailRows[tailSize] = row;
+            tailSize++;
+            if (tailSize > Math.max(MIN_TAIL, sortedValues.length / 8)) {
+                mergeTail();
+            }
+        }
+
+        void clear() {
+            sortedValues = new double[0];
+            sortedRows = new int[0];
+            tailSize = 0;
+        }
+
+        RowBitmap range(double low, boolean lowInclusive, double high, boolean highInclusive) {
+            List<Integer> unsortedHits = new ArrayList<>();
+            for (int i = 0; i < tailSize; i++) {
+                if (within(tailValues[i], low, lowInclusive, high, highInclusive)) {
+                    unsortedHits.add(tailRows[i]);
+                }
+            }
+            RowBitmap result = new RowBitmap();
+            int from = lowInclusive ? lowerBound(low) : upperBound(low);
+            int to = highInclusive ? upperBound(high) : lowerBound(high);
+            for (int i = from; i < to; i++) {
+                result.add(sortedRows[i]);
+            }
+            for (int row : unsortedHits) {
+                result.add(row);
+            }
+            return result;
+        }
+
+        private static boolean within(double value, double low, boolean lowInclusive, double high, boolean highInclusive) {
+            boolean aboveLow = lowInclusive ? value >= low : value > low;
+            boolean belowHigh = highInclusive ? value <= high : value < high;
+            return aboveLow && belowHigh;
+        }
+
+        /**
+         * 第一个不小于 value 的位置
+         */
+        private int lowerBound(double value) {
+            int low = 0;
+            int high = sortedValues.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sortedValues[mid] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * 第一个大于 value 的位置
+         */
+        private int upperBound(double value) {
+            int low = 0;
+            int high = sortedValues.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sortedValues[mid] <= value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private void mergeTail() {
+            Integer[] order = new Integer[tailSize];
+            for (int i = 0; i < tailSize; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(tailValues[a], tailValues[b]));
+
+            int total = sortedValues.length + tailSize;
+            double[] values = new double[total];
+            int[] rows = new int[total];
+            int i = 0;
+            int j = 0;
+            for (int k = 0; k < total; k++) {
+                if (j >= tailSize || (i < sortedValues.length && sortedValues[i] <= tailValues[order[j]])) {
+                    values[k] = sortedValues[i];
+                    rows[k] = sortedRows[i];
+                    i++;
+                } else {
+                    values[k] = tailValues[order[j]];
+                    rows[k] = tailRows[order[j]];
+                    j++;
+                }
+            }
+            sortedValues = values;
+            sortedRows = rows;
+            tailSize = 0;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.ragtest.store.support;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 堆外向量区
+ * 向量以 float 行的形式连续存放在直接内存（DirectByteBuffer）分块中，不占用 Java 堆，
+ * 也不会被 GC 扫描和复制
+ *
+ * 写入需要由调用方串行化；已追加的行可以与写入并发读取（分块列表写时复制，行数以 volatile 发布）
+ */
+public final class OffHeapVectorArena {
+
+    private static final int FLOAT_BYTES = Float.BYTES;
+
+    private final int dimension;
+    private final int rowsPerChunk;
+    private final int rowBytes;
+    private final List<ByteBuffer> chunks = new CopyOnWriteArrayList<>();
+    private volatile int size;
+
+    /**
+     * @param dimension 向量维度
+     * @param rowsPerChunk 每个直接内存分块容纳的行数
+     */
+    public OffHeapVectorArena(int dimension, int rowsPerChunk) {
+        if (dimension <= 0 || rowsPerChunk <= 0) {
+            throw new IllegalArgumentException("向量维度和分块行数必须为正数: " + dimension + "/" + rowsPerChunk);
+        }
+        if ((long) dimension * FLOAT_BYTES * rowsPerChunk > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("单个分块超过 2GB 上限，请减小分块行数: " + rowsPerChunk);
+        }
+        this.dimension = dimension;
+        this.rowsPerChunk = rowsPerChunk;
+        this.rowBytes = dimension * FLOAT_BYTES;
+    }
+
+    /**
+     * 追加一行向量
+     * @return 行号
+     */
+    public int append(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException(
+                    "向量维度不匹配，期望 " + dimension + "，实际 " + vector.length);
+        }
+        int row = size;
+        int chunkIndex = row / rowsPerChunk;
+        if (chunkIndex == chunks.size()) {
+            chunks.add(ByteBuffer.allocateDirect(rowsPerChunk * rowBytes).order(ByteOrder.nativeOrder()));
+        }
+        ByteBuffer chunk = chunks.get(chunkIndex);
+        int offset = (row % rowsPerChunk) * rowBytes;
+        for (int i = 0; i < dimension; i++) {
+            chunk.putFloat(offset + i * FLOAT_BYTES, vector[i]);
+        }
+        size = row + 1;
+        return row;
+    }
+
+    /**
+     * 计算指定行与查询向量的点积
+     */
+    public float dot(int row, float[] query) {
+        ByteBuffer chunk = chunks.get(row / rowsPerChunk);
+        int offset = (row % rowsPerChunk) * rowBytes;
+        float sum0 = 0f;
+        float sum1 = 0f;
+        int i = 0;
+        int bound = dimension - (dimension % 2);
+        for (; i < bound; i += 2) {
+            sum0 += chunk.getFloat(offset + i * FLOAT_BYTES) * query[i];
+            sum1 += chunk.getFloat(offset + (i + 1) * FLOAT_BYTES) * query[i + 1];
+        }
+        if (i < dimension) {
+            sum0 += chunk.getFloat(offset + i * FLOAT_BYTES) * query[i];
+        }
+        return sum0 + sum1;
+    }
+
+    /**
+     * 将指定行复制到新的 float 数组
+     */
+    public float[] read(int row) {
+        ByteBuffer chunk = chunks.get(row / rowsPerChunk);
+        int offset = (row % rowsPerChunk) * rowBytes;
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = chunk.getFloat(offset + i * FLOAT_BYTES);
+        }
+        return vector;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * 已分配的直接内存字节数
+     */
+    public long allocatedBytes() {
+        return (long) chunks.size() * rowsPerChunk * rowBytes;
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.ragtest.store.support;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 基于 JDK Vector API（jdk.incubator.vector）的 SIMD 向量打分器
+ * 使用平台首选宽度的 FloatVector 和 FMA 指令，两路累加器隐藏 FMA 延迟
+ *
+ * 只在 Maven 的 vector-api profile 下编译，并需要以 --add-modules jdk.incubator.vector 启动 JVM，
+ * 否则由 {@link VectorScorers} 回退到标量实现
+ */
+final class PanamaVectorScorer implements VectorScorer {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public float dot(float[] query, float[] matrix, int offset, int length) {
+        int lanes = SPECIES.length();
+        FloatVector acc0 = FloatVector.zero(SPECIES);
+        FloatVector acc1 = FloatVector.zero(SPECIES);
+        int i = 0;
+        int unrolledBound = length - (length % (2 * lanes));
+        for (; i < unrolledBound; i += 2 * lanes) {
+            acc0 = FloatVector.fromArray(SPECIES, query, i)
+                    .fma(FloatVector.fromArray(SPECIES, matrix, offset + i), acc0);
+            acc1 = FloatVector.fromArray(SPECIES, query, i + lanes)
+                    .fma(FloatVector.fromArray(SPECIES, matrix, offset + i + lanes), acc1);
+        }
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += lanes) {
+            acc0 = FloatVector.fromArray(SPECIES, query, i)
+                    .fma(FloatVector.fromArray(SPECIES, matrix, offset + i), acc0);
+        }
+        float sum = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += query[i] * matrix[offset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public String name() {
+        return "simd-" + SPECIES.vectorBitSize() + "bit";
+    }
+}
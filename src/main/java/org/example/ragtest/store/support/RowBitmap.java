@@ -0,0 +1,318 @@
+package org.example.ragtest.store.support;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * 行号位图（Roaring Bitmap 风格）
+ * 行号按高 16 位分桶，每个桶是一个容器：
+ * - 元素不超过 4096 个时使用有序 char[] 数组容器
+ * - 超过后转换为 1024 个 long 的位图容器（固定 8KB）
+ * 稀疏集合占用与元素数成正比，稠密集合每行只占 1 位
+ *
+ * 非线程安全；集合运算总是返回新的位图，不修改参与运算的位图
+ */
+public final class RowBitmap {
+
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024;
+    private static final int CONTAINER_SIZE = 1 << 16;
+
+    private char[] keys = new char[0];
+    private Object[] containers = new Object[0];
+    private int[] cardinalities = new int[0];
+    private int count;
+
+    /**
+     * 创建包含 [from, to) 全部行号的位图
+     */
+    public static RowBitmap range(int from, int to) {
+        RowBitmap bitmap = new RowBitmap();
+        int start = from;
+        while (start < to) {
+            int high = start >>> 16;
+            int end = Math.min(to, (high + 1) * CONTAINER_SIZE);
+            int lowStart = start & 0xFFFF;
+            int lowEnd = end - (high << 16);
+            Object container;
+            if (lowEnd - lowStart <= ARRAY_LIMIT) {
+                char[] values = new char[lowEnd - lowStart];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = (char) (lowStart + i);
+                }
+                container = values;
+            } else {
+                long[] bits = new long[BITMAP_WORDS];
+                for (int low = lowStart; low < lowEnd; low++) {
+                    bits[low >>> 6] |= 1L << low;
+                }
+                container = bits;
+            }
+            bitmap.append((char) high, container, lowEnd - lowStart);
+            start = end;
+        }
+        return bitmap;
+    }
+
+    /**
+     * 添加一个行号
+     */
+    public void add(int row) {
+        char high = (char) (row >>> 16);
+        char low = (char) row;
+        int index = Arrays.binarySearch(keys, 0, count, high);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, high, new char[4], 0);
+        }
+        Object container = containers[index];
+        if (container instanceof long[] bits) {
+            long mask = 1L << low;
+            if ((bits[low >>> 6] & mask) == 0) {
+                bits[low >>> 6] |= mask;
+                cardinalities[index]++;
+            }
+            return;
+        }
+        char[] values = (char[]) container;
+        int cardinality = cardinalities[index];
+        int position = Arrays.binarySearch(values, 0, cardinality, low);
+        if (position >= 0) {
+            return;
+        }
+        position = -position - 1;
+        if (cardinality == ARRAY_LIMIT) {
+            long[] bits = toBits(values, cardinality);
+            bits[low >>> 6] |= 1L << low;
+            containers[index] = bits;
+        } else {
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, Math.max(4, cardinality * 2)));
+                containers[index] = values;
+            }
+            System.arraycopy(values, position, values, position + 1, cardinality - position);
+            values[position] = low;
+        }
+        cardinalities[index] = cardinality + 1;
+    }
+
+    public boolean contains(int row) {
+        int index = Arrays.binarySearch(keys, 0, count, (char) (row >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) row;
+        Object container = containers[index];
+        if (container instanceof long[] bits) {
+            return (bits[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, cardinalities[index], low) >= 0;
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            total += cardinalities[i];
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * 按行号升序遍历
+     */
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < count; i++) {
+            int base = keys[i] << 16;
+            Object container = containers[i];
+            if (container instanceof long[] bits) {
+                for (int word = 0; word < BITMAP_WORDS; word++) {
+                    long value = bits[word];
+                    while (value != 0) {
+                        consumer.accept(base + (word << 6) + Long.numberOfTrailingZeros(value));
+                        value &= value - 1;
+                    }
+                }
+            } else {
+                char[] values = (char[]) container;
+                for (int j = 0; j < cardinalities[i]; j++) {
+                    consumer.accept(base + values[j]);
+                }
+            }
+        }
+    }
+
+    // ==================== 集合运算 ====================
+
+    public RowBitmap and(RowBitmap other) {
+        RowBitmap result = new RowBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < count && j < other.count) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Object left = containers[i];
+                Object right = other.containers[j];
+                if (left instanceof char[] a && right instanceof char[] b) {
+                    result.appendArray(keys[i], intersect(a, cardinalities[i], b, other.cardinalities[j]));
+                } else {
+                    long[] bits = bits(i);
+                    long[] otherBits = other.bits(j);
+                    for (int w = 0; w < BITMAP_WORDS; w++) {
+                        bits[w] &= otherBits[w];
+                    }
+                    result.appendBits(keys[i], bits);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public RowBitmap or(RowBitmap other) {
+        RowBitmap result = new RowBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < count || j < other.count) {
+            if (j >= other.count || (i < count && keys[i] < other.keys[j])) {
+                result.append(keys[i], copy(containers[i]), cardinalities[i]);
+                i++;
+            } else if (i >= count || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], copy(other.containers[j]), other.cardinalities[j]);
+                j++;
+            } else {
+                long[] bits = bits(i);
+                long[] otherBits = other.bits(j);
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    bits[w] |= otherBits[w];
+                }
+                result.appendBits(keys[i], bits);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public RowBitmap andNot(RowBitmap other) {
+        RowBitmap result = new RowBitmap();
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            while (j < other.count && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.count && other.keys[j] == keys[i]) {
+                long[] bits = bits(i);
+                long[] otherBits = other.bits(j);
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    bits[w] &= ~otherBits[w];
+                }
+                result.appendBits(keys[i], bits);
+            } else {
+                result.append(keys[i], copy(containers[i]), cardinalities[i]);
+            }
+        }
+        return result;
+    }
+
+    // ==================== 容器 ====================
+
+    /**
+     * 以位图形式复制第 i 个容器
+     */
+    private long[] bits(int i) {
+        Object container = containers[i];
+        return container instanceof long[] bits ? bits.clone() : toBits((char[]) container, cardinalities[i]);
+    }
+
+    private static long[] toBits(char[] values, int cardinality) {
+        long[] bits = new long[BITMAP_WORDS];
+        for (int i = 0; i < cardinality; i++) {
+            bits[values[i] >>> 6] |= 1L << values[i];
+        }
+        return bits;
+    }
+
+    private static char[] intersect(char[] a, int aSize, char[] b, int bSize) {
+        char[] result = new char[Math.min(aSize, bSize)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < aSize && j < bSize) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static Object copy(Object container) {
+        return container instanceof long[] bits ? bits.clone() : ((char[]) container).clone();
+    }
+
+    private void appendArray(char key, char[] values) {
+        if (values.length > 0) {
+            append(key, values, values.length);
+        }
+    }
+
+    /**
+     * 追加位图容器，元素较少时压缩为数组容器，为空时丢弃
+     */
+    private void appendBits(char key, long[] bits) {
+        int cardinality = 0;
+        for (long word : bits) {
+            cardinality += Long.bitCount(word);
+        }
+        if (cardinality == 0) {
+            return;
+        }
+        if (cardinality > ARRAY_LIMIT) {
+            append(key, bits, cardinality);
+            return;
+        }
+        char[] values = new char[cardinality];
+        int size = 0;
+        for (int word = 0; word < BITMAP_WORDS; word++) {
+            long value = bits[word];
+            while (value != 0) {
+                values[size++] = (char) ((word << 6) + Long.numberOfTrailingZeros(value));
+                value &= value - 1;
+            }
+        }
+        append(key, values, cardinality);
+    }
+
+    private void append(char key, Object container, int cardinality) {
+        insertContainer(count, key, container, cardinality);
+    }
+
+    private void insertContainer(int index, char key, Object container, int cardinality) {
+        if (count == keys.length) {
+            int capacity = Math.max(4, count * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+            cardinalities = Arrays.copyOf(cardinalities, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, count - index);
+        System.arraycopy(containers, index, containers, index + 1, count - index);
+        System.arraycopy(cardinalities, index, cardinalities, index + 1, count - index);
+        keys[index] = key;
+        containers[index] = container;
+        cardinalities[index] = cardinality;
+        count++;
+    }
+}
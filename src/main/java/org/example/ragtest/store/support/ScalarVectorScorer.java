@@ -0,0 +1,33 @@
+package org.example.ragtest.store.support;
+
+/**
+ * 标量向量打分器
+ * 使用四路展开的普通循环，在未启用 Vector API 时作为后备实现
+ */
+final class ScalarVectorScorer implements VectorScorer {
+
+    @Override
+    public float dot(float[] query, float[] matrix, int offset, int length) {
+        float sum0 = 0f;
+        float sum1 = 0f;
+        float sum2 = 0f;
+        float sum3 = 0f;
+        int i = 0;
+        int bound = length - (length % 4);
+        for (; i < bound; i += 4) {
+            sum0 += query[i] * matrix[offset + i];
+            sum1 += query[i + 1] * matrix[offset + i + 1];
+            sum2 += query[i + 2] * matrix[offset + i + 2];
+            sum3 += query[i + 3] * matrix[offset + i + 3];
+        }
+        for (; i < length; i++) {
+            sum0 += query[i] * matrix[offset + i];
+        }
+        return sum0 + sum1 + sum2 + sum3;
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,118 @@
+package org.example.ragtest.store.support;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 文本段二进制编解码
+ * 按 id、文本、元数据的顺序写出一条记录，元数据保留值的原始类型
+ * （String / UUID / Integer / Long / Float / Double），读回后过滤条件的类型比较与写入前一致
+ */
+public final class SegmentCodec {
+
+    private static final byte TYPE_STRING = 0;
+    private static final byte TYPE_UUID = 1;
+    private static final byte TYPE_INTEGER = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_FLOAT = 4;
+    private static final byte TYPE_DOUBLE = 5;
+
+    private SegmentCodec() {
+    }
+
+    /**
+     * 一条解码后的记录
+     * @param segment 文本段，写入时为 null 则读回 null
+     */
+    public record Entry(String id, TextSegment segment) {}
+
+    public static void write(DataOutput out, String id, TextSegment segment) throws IOException {
+        writeString(out, id);
+        out.writeBoolean(segment != null);
+        if (segment != null) {
+            writeString(out, segment.text());
+            writeMetadata(out, segment.metadata());
+        }
+    }
+
+    public static Entry read(DataInput in) throws IOException {
+        String id = readString(in);
+        if (!in.readBoolean()) {
+            return new Entry(id, null);
+        }
+        String text = readString(in);
+        return new Entry(id, TextSegment.from(text, readMetadata(in)));
+    }
+
+    public static void writeMetadata(DataOutput out, Metadata metadata) throws IOException {
+        Map<String, Object> values = metadata.toMap();
+        out.writeInt(values.size());
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            writeString(out, entry.getKey());
+            Object value = entry.getValue();
+            if (value instanceof UUID uuid) {
+                out.writeByte(TYPE_UUID);
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+            } else if (value instanceof Integer number) {
+                out.writeByte(TYPE_INTEGER);
+                out.writeInt(number);
+            } else if (value instanceof Long number) {
+                out.writeByte(TYPE_LONG);
+                out.writeLong(number);
+            } else if (value instanceof Float number) {
+                out.writeByte(TYPE_FLOAT);
+                out.writeFloat(number);
+            } else if (value instanceof Double number) {
+                out.writeByte(TYPE_DOUBLE);
+                out.writeDouble(number);
+            } else {
+                out.writeByte(TYPE_STRING);
+                writeString(out, String.valueOf(value));
+            }
+        }
+    }
+
+    public static Metadata readMetadata(DataInput in) throws IOException {
+        int count = in.readInt();
+        Map<String, Object> values = new LinkedHashMap<>(Math.max(4, count * 2));
+        for (int i = 0; i < count; i++) {
+            String key = readString(in);
+            byte type = in.readByte();
+            Object value = switch (type) {
+                case TYPE_STRING -> readString(in);
+                case TYPE_UUID -> new UUID(in.readLong(), in.readLong());
+                case TYPE_INTEGER -> in.readInt();
+                case TYPE_LONG -> in.readLong();
+                case TYPE_FLOAT -> in.readFloat();
+                case TYPE_DOUBLE -> in.readDouble();
+                default -> throw new IOException("未知的元数据类型: " + type);
+            };
+            values.put(key, value);
+        }
+        return new Metadata(values);
+    }
+
+    /**
+     * 以 UTF-8 字节长度前缀写出字符串（不受 writeUTF 64KB 的限制）
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,179 @@
+package org.example.ragtest.store.support;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.filter.Filter;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * 文本段表
+ * 以列式数组保存每一行的 id、文本和元数据，与向量按行号对齐
+ * 文本编码后保存在共享的 {@link TextArena} 字节池中（可选压缩），每行只保留一个句柄；
+ * 元数据按键列式保存在 {@link MetadataColumns} 中，字符串取值字典编码
+ * TextSegment 对象只在返回检索结果时才重新构建
+ * 删除只打墓碑标记并释放元数据，行号保持不变；文本字节和向量槽位由压缩时重建存储回收
+ *
+ * 非线程安全，写入和读取由所属存储的锁保护
+ */
+public final class SegmentTable {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private long[] texts = newTextHandles(INITIAL_CAPACITY);
+    private final MetadataColumns metadata = new MetadataColumns();
+    private final TextArena arena;
+    private final Map<String, Integer> rowsById = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private int size;
+    private int deletedCount;
+
+    public SegmentTable() {
+        this(false);
+    }
+
+    /**
+     * @param compressText 是否压缩文本字节块
+     */
+    public SegmentTable(boolean compressText) {
+        this.arena = new TextArena(compressText);
+    }
+
+    /**
+     * 追加一行
+     * @param id 向量 id
+     * @param segment 文本段，可以为 null
+     * @return 行号
+     */
+    public int add(String id, TextSegment segment) {
+        int row = size;
+        if (row == ids.length) {
+            int capacity = row * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            long[] grown = newTextHandles(capacity);
+            System.arraycopy(texts, 0, grown, 0, row);
+            texts = grown;
+        }
+        ids[row] = id;
+        if (segment != null) {
+            texts[row] = arena.add(segment.text());
+            metadata.set(row, segment.metadata().toMap());
+        }
+        rowsById.put(id, row);
+        size = row + 1;
+        return row;
+    }
+
+    public String id(int row) {
+        return ids[row];
+    }
+
+    /**
+     * 根据 id 查找行号
+     * @return 行号，不存在时返回 -1
+     */
+    public int row(String id) {
+        Integer row = rowsById.get(id);
+        return row == null ? -1 : row;
+    }
+
+    /**
+     * 重新构建指定行的文本段
+     * @return 文本段，写入时未提供文本段则返回 null
+     */
+    public TextSegment segment(int row) {
+        long text = texts[row];
+        return text == TextArena.NONE ? null : TextSegment.from(arena.get(text), metadata(row));
+    }
+
+    /**
+     * 构建指定行的元数据
+     */
+    public Metadata metadata(int row) {
+        return metadata.metadata(row);
+    }
+
+    /**
+     * 将过滤条件编译为按行号判断的谓词，每次检索编译一次，扫描时逐行调用
+     * 已删除的行始终不满足；没有文本段的行不参与过滤（与 InMemoryEmbeddingStore 行为一致）
+     * @param filter 过滤条件，为 null 时只排除已删除的行
+     */
+    public IntPredicate filter(Filter filter) {
+        if (filter == null) {
+            return row -> !deleted.get(row);
+        }
+        IntPredicate predicate = metadata.predicate(filter);
+        return row -> !deleted.get(row) && (texts[row] == TextArena.NONE || predicate.test(row));
+    }
+
+    /**
+     * 将指定行标记为已删除
+     * @return 该行此前未被删除时返回 true
+     */
+    public boolean delete(int row) {
+        if (deleted.get(row)) {
+            return false;
+        }
+        deleted.set(row);
+        deletedCount++;
+        rowsById.remove(ids[row], row);
+        texts[row] = TextArena.NONE;
+        metadata.clear(row);
+        return true;
+    }
+
+    public boolean isLive(int row) {
+        return !deleted.get(row);
+    }
+
+    /**
+     * 未删除且有文本段、并满足过滤条件的行号
+     */
+    public int[] rowsMatching(Filter filter) {
+        IntPredicate predicate = metadata.predicate(filter);
+        return IntStream.range(0, size)
+                .filter(row -> !deleted.get(row) && texts[row] != TextArena.NONE && predicate.test(row))
+                .toArray();
+    }
+
+    /**
+     * 未删除且指定元数据键等于给定值的行号，直接比较列值而不构建 Metadata
+     */
+    public int[] rowsWithMetadata(String key, Object value) {
+        return metadata.rowsEqualTo(key, value);
+    }
+
+    /**
+     * 行数，包含已删除的行
+     */
+    public int size() {
+        return size;
+    }
+
+    public int liveCount() {
+        return size - deletedCount;
+    }
+
+    public int deletedCount() {
+        return deletedCount;
+    }
+
+    /**
+     * 文本字节池占用的字节数，包含已删除但尚未回收的文本
+     */
+    public long textBytes() {
+        return arena.bytes();
+    }
+
+    private static long[] newTextHandles(int capacity) {
+        long[] handles = new long[capacity];
+        Arrays.fill(handles, TextArena.NONE);
+        return handles;
+    }
+}
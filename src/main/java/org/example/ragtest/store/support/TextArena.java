@@ -0,0 +1,215 @@
+package org.example.ragtest.store.support;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 文本字节池
+ * 将文本编码后顺序追加到共享的字节块中，以 long 句柄（块号 << 32 | 块内偏移）寻址，
+ * 避免每行一个 String 对象及其数组头的开销
+ *
+ * 编码：每条文本在 UTF-8 和 UTF-16LE 中取较短者，中文为主的文本使用 UTF-16（每字 2 字节而不是 3 字节），
+ * 条目前以变长整数记录 (字节数 << 1 | 编码标记)
+ *
+ * 字节块写满后封存；启用压缩时封存的块用 Deflate 压缩，压缩后没有变小的块按原样保存。
+ * 读取压缩块需要先解压整个块，最近解压的若干块按 LRU 缓存，一次检索返回的文本段分布在多个块中时，
+ * 各块也只解压一次
+ *
+ * 删除的文本不回收空间，由存储压缩时重建回收
+ *
+ * 写入非线程安全；读取可以并发，但不能与写入并发，由所属存储的读写锁保护
+ */
+public final class TextArena {
+
+    /**
+     * 表示没有文本的句柄
+     */
+    public static final long NONE = -1L;
+
+    private static final int DEFAULT_BLOCK_BYTES = 32 * 1024;
+    private static final int UTF16_FLAG = 1;
+    private static final int INFLATED_CACHE_BLOCKS = 8;
+
+    private final boolean compress;
+    private final int blockBytes;
+    private final List<Block> sealed = new ArrayList<>();
+    private byte[] open = new byte[4096];
+    private int openLength;
+    private long sealedBytes;
+    private final Map<Integer, byte[]> inflated = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+            return size() > INFLATED_CACHE_BLOCKS;
+        }
+    };
+
+    public TextArena(boolean compress) {
+        this(compress, DEFAULT_BLOCK_BYTES);
+    }
+
+    /**
+     * @param compress 是否压缩封存的字节块
+     * @param blockBytes 字节块封存阈值；单条超过该大小的文本独占一个块
+     */
+    public TextArena(boolean compress, int blockBytes) {
+        if (blockBytes < 64) {
+            throw new IllegalArgumentException("文本字节块过小: " + blockBytes);
+        }
+        this.compress = compress;
+        this.blockBytes = blockBytes;
+    }
+
+    /**
+     * 追加一条文本
+     * @return 文本句柄
+     */
+    public long add(String text) {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        byte[] encoded = utf8;
+        int flag = 0;
+        if (utf8.length > text.length() * 2) {
+            encoded = text.getBytes(StandardCharsets.UTF_16LE);
+            flag = UTF16_FLAG;
+        }
+        ensureOpenCapacity(5 + encoded.length);
+        long handle = ((long) sealed.size() << 32) | openLength;
+        openLength = writeVarInt(open, openLength, (encoded.length << 1) | flag);
+        System.arraycopy(encoded, 0, open, openLength, encoded.length);
+        openLength += encoded.length;
+        if (openLength >= blockBytes) {
+            seal();
+        }
+        return handle;
+    }
+
+    /**
+     * 读取文本
+     * @param handle {@link #add(String)} 返回的句柄
+     */
+    public String get(long handle) {
+        int blockIndex = (int) (handle >>> 32);
+        int offset = (int) handle;
+        byte[] block = blockIndex == sealed.size() ? open : bytes(blockIndex);
+        int header = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = block[offset++];
+            header |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        int length = header >>> 1;
+        return new String(block, offset, length,
+                (header & UTF16_FLAG) != 0 ? StandardCharsets.UTF_16LE : StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 当前占用的字节数（封存块按压缩后的大小计，加上打开块的容量）
+     */
+    public long bytes() {
+        return sealedBytes + open.length;
+    }
+
+    private byte[] bytes(int blockIndex) {
+        Block block = sealed.get(blockIndex);
+        if (block.rawLength() < 0) {
+            return block.data();
+        }
+        byte[] data;
+        synchronized (inflated) {
+            data = inflated.get(blockIndex);
+        }
+        if (data != null) {
+            return data;
+        }
+        // 解压在锁外进行，并发读取同一块时可能重复解压，结果相同
+        data = inflate(block);
+        synchronized (inflated) {
+            inflated.put(blockIndex, data);
+        }
+        return data;
+    }
+
+    private void seal() {
+        byte[] raw = Arrays.copyOf(open, openLength);
+        Block block = new Block(raw, -1);
+        if (compress) {
+            byte[] deflated = deflate(raw);
+            if (deflated.length < raw.length) {
+                block = new Block(deflated, raw.length);
+            }
+        }
+        sealed.add(block);
+        sealedBytes += block.data().length;
+        open = new byte[Math.min(open.length, blockBytes + blockBytes / 4)];
+        openLength = 0;
+    }
+
+    private void ensureOpenCapacity(int extra) {
+        if (openLength + extra > open.length) {
+            open = Arrays.copyOf(open, Math.max(open.length * 2, openLength + extra));
+        }
+    }
+
+    private static int writeVarInt(byte[] target, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            target[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] buffer = new byte[raw.length + 64];
+            int length = 0;
+            while (!deflater.finished() && length < buffer.length) {
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            return deflater.finished() ? Arrays.copyOf(buffer, length) : raw;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(Block block) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(block.data());
+            byte[] raw = new byte[block.rawLength()];
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, raw.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != raw.length) {
+                throw new IllegalStateException("文本字节块解压长度不一致: " + length + "/" + raw.length);
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("文本字节块解压失败", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 封存的字节块
+     * @param rawLength 压缩前的长度；未压缩时为 -1
+     */
+    private record Block(byte[] data, int rawLength) {}
+}
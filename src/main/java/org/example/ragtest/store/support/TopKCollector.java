@@ -0,0 +1,110 @@
+package org.example.ragtest.store.support;
+
+/**
+ * 有界最小堆 Top-K 收集器
+ * 使用原始类型数组保存行号和分数，扫描过程中不产生装箱对象
+ * 堆顶始终是当前第 K 名的分数，新分数低于堆顶时可直接跳过
+ */
+public final class TopKCollector {
+
+    private final int capacity;
+    private final int[] rows;
+    private final float[] scores;
+    private int size;
+
+    public TopKCollector(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.rows = new int[this.capacity];
+        this.scores = new float[this.capacity];
+    }
+
+    /**
+     * 提交一个候选
+     * @return 候选是否进入 Top-K
+     */
+    public boolean offer(int row, float score) {
+        if (size < capacity) {
+            rows[size] = row;
+            scores[size] = score;
+            siftUp(size++);
+            return true;
+        }
+        if (score <= scores[0]) {
+            return false;
+        }
+        rows[0] = row;
+        scores[0] = score;
+        siftDown(0, size);
+        return true;
+    }
+
+    /**
+     * 进入 Top-K 所需超过的分数；未装满时为负无穷
+     */
+    public float threshold() {
+        return size < capacity ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 原地堆排序，之后 {@link #row(int)} / {@link #score(int)} 按分数从高到低访问
+     * 排序后不应再调用 {@link #offer(int, float)}
+     */
+    public TopKCollector sortDescending() {
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        return this;
+    }
+
+    public int row(int index) {
+        return rows[index];
+    }
+
+    public float score(int index) {
+        return scores[index];
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] <= scores[index]) {
+                return;
+            }
+            swap(parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index, int length) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= length) {
+                return;
+            }
+            int smallest = left;
+            int right = left + 1;
+            if (right < length && scores[right] < scores[left]) {
+                smallest = right;
+            }
+            if (scores[index] <= scores[smallest]) {
+                return;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int row = rows[a];
+        rows[a] = rows[b];
+        rows[b] = row;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
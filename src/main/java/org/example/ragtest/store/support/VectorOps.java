@@ -0,0 +1,68 @@
+package org.example.ragtest.store.support;
+
+import dev.langchain4j.store.embedding.RelevanceScore;
+
+/**
+ * 向量运算工具类
+ * 提供存储实现共用的归一化、点积等基础运算
+ */
+public final class VectorOps {
+
+    private VectorOps() {
+    }
+
+    /**
+     * 返回归一化后的向量副本（L2 范数为 1）
+     * 归一化后余弦相似度即为点积
+     * @param vector 原始向量
+     * @return 归一化后的新数组
+     */
+    public static float[] normalize(float[] vector) {
+        float[] result = vector.clone();
+        float norm = norm(vector);
+        if (norm > 0f) {
+            float inverse = 1f / norm;
+            for (int i = 0; i < result.length; i++) {
+                result[i] *= inverse;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 计算向量的 L2 范数
+     */
+    public static float norm(float[] vector) {
+        return (float) Math.sqrt(dot(vector, vector));
+    }
+
+    /**
+     * 计算两个等长向量的点积
+     */
+    public static float dot(float[] a, float[] b) {
+        float sum0 = 0f;
+        float sum1 = 0f;
+        float sum2 = 0f;
+        float sum3 = 0f;
+        int i = 0;
+        int bound = a.length - (a.length % 4);
+        for (; i < bound; i += 4) {
+            sum0 += a[i] * b[i];
+            sum1 += a[i + 1] * b[i + 1];
+            sum2 += a[i + 2] * b[i + 2];
+            sum3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            sum0 += a[i] * b[i];
+        }
+        return sum0 + sum1 + sum2 + sum3;
+    }
+
+    /**
+     * 将余弦相似度转换为 langchain4j 的相关性分数 (0.0-1.0)
+     * 与 InMemoryEmbeddingStore 的 minScore 语义保持一致
+     */
+    public static double toRelevanceScore(double cosineSimilarity) {
+        return RelevanceScore.fromCosineSimilarity(cosineSimilarity);
+    }
+}
@@ -0,0 +1,23 @@
+package org.example.ragtest.store.support;
+
+/**
+ * 向量打分器
+ * 计算查询向量与连续矩阵中某一行的点积，不同实现可以使用标量或 SIMD 指令
+ */
+public interface VectorScorer {
+
+    /**
+     * 计算查询向量与矩阵中一行的点积
+     * @param query 查询向量
+     * @param matrix 按行连续存放的向量矩阵
+     * @param offset 行在矩阵中的起始下标
+     * @param length 向量维度
+     * @return 点积
+     */
+    float dot(float[] query, float[] matrix, int offset, int length);
+
+    /**
+     * 获取实现名称，用于日志和描述
+     */
+    String name();
+}
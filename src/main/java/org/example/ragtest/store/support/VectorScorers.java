@@ -0,0 +1,55 @@
+package org.example.ragtest.store.support;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 向量打分器选择器
+ * 运行时检测 jdk.incubator.vector 模块是否已加载，可用时使用 SIMD 实现，否则使用标量实现
+ * SIMD 实现只在 Maven 的 vector-api profile 下编译，默认构建中不存在该类，同样回退到标量实现
+ */
+@Slf4j
+public final class VectorScorers {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private static final VectorScorer SCALAR = new ScalarVectorScorer();
+
+    private static final VectorScorer BEST = loadBest();
+
+    private VectorScorers() {
+    }
+
+    /**
+     * 当前 JVM 上可用的最快实现
+     */
+    public static VectorScorer best() {
+        return BEST;
+    }
+
+    /**
+     * 标量实现
+     */
+    public static VectorScorer scalar() {
+        return SCALAR;
+    }
+
+    private static VectorScorer loadBest() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            log.info("未加载 {} 模块（需以 -Pvector-api 构建并以 --add-modules {} 启动），向量打分使用标量实现",
+                    VECTOR_MODULE, VECTOR_MODULE);
+            return SCALAR;
+        }
+        try {
+            VectorScorer scorer = (VectorScorer) Class.forName(VectorScorers.class.getPackageName() + ".PanamaVectorScorer")
+                    .getDeclaredConstructor()
+                    .newInstance();
+            // 试算一次，确保 Vector API 相关类能正常链接
+            scorer.dot(new float[]{1f}, new float[]{1f}, 0, 1);
+            log.info("向量打分使用 Vector API 实现: {}", scorer.name());
+            return scorer;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("Vector API 初始化失败，向量打分使用标量实现: {}", e.toString());
+            return SCALAR;
+        }
+    }
+}
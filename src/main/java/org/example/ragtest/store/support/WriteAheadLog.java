@@ -0,0 +1,220 @@
+package org.example.ragtest.store.support;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 预写日志（WAL）
+ * 日志由按序号命名的段文件组成，每条记录为 [int 长度][int CRC32][负载]
+ *
+ * - 打开时总是新建一个段，之前的段只用于回放，回放遇到不完整、长度越界或校验失败的记录时截断该段，空段直接删除
+ * - rotate() 切换到新段并返回新段序号，快照以该序号为界，之前的段可以删除
+ * - 写入方法加锁串行化
+ */
+@Slf4j
+public final class WriteAheadLog implements Closeable {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("wal-(\\d{20})\\.log");
+    private static final int FRAME_HEADER_BYTES = 2 * Integer.BYTES;
+
+    private final Path directory;
+    private final boolean fsync;
+    private FileChannel current;
+    private long currentSequence;
+
+    /**
+     * 记录处理器
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        void handle(byte[] payload) throws IOException;
+    }
+
+    /**
+     * @param directory 日志目录
+     * @param fsync 每次写入后是否强制刷盘
+     */
+    public WriteAheadLog(Path directory, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+        List<Long> sequences = sequences();
+        openSegment(sequences.isEmpty() ? 0 : sequences.get(sequences.size() - 1) + 1);
+    }
+
+    /**
+     * 追加一条记录
+     */
+    public synchronized void append(byte[] payload) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_BYTES + payload.length);
+        frame.putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+        while (frame.hasRemaining()) {
+            current.write(frame);
+        }
+        if (fsync) {
+            current.force(false);
+        }
+    }
+
+    /**
+     * 切换到新的段文件
+     * @return 新段的序号，此后写入的记录都位于该序号及之后的段
+     */
+    public synchronized long rotate() throws IOException {
+        current.force(false);
+        current.close();
+        openSegment(currentSequence + 1);
+        return currentSequence;
+    }
+
+    /**
+     * 按顺序回放序号不小于 fromSequence 的历史段（不包括当前写入段）
+     * @return 回放的记录数
+     */
+    public long replay(long fromSequence, RecordHandler handler) throws IOException {
+        long records = 0;
+        for (long sequence : sequences()) {
+            if (sequence < fromSequence || sequence >= currentSequence) {
+                continue;
+            }
+            records += replaySegment(segmentPath(sequence), handler);
+        }
+        return records;
+    }
+
+    /**
+     * 删除序号小于 sequence 的段文件
+     */
+    public void deleteBefore(long sequence) throws IOException {
+        for (long existing : sequences()) {
+            if (existing < sequence) {
+                Files.deleteIfExists(segmentPath(existing));
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        current.force(false);
+        current.close();
+    }
+
+    // ==================== 记录格式 ====================
+
+    /**
+     * 以 WAL 相同的帧格式写出一条记录（快照文件复用该格式）
+     */
+    public static void writeFrame(DataOutput out, byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.writeInt(checksum(payload));
+        out.write(payload);
+    }
+
+    /**
+     * 读取一条帧记录
+     * 长度字段来自磁盘，可能因掉电写了一半或损坏而是任意值，超过剩余字节数的记录按不完整处理，不按该长度分配内存
+     * @param remaining 输入中从当前位置起剩余的字节数（含帧头）
+     * @return 负载；到达文件末尾、记录不完整或校验失败时返回 null
+     */
+    public static byte[] readFrame(DataInputStream in, long remaining) throws IOException {
+        if (remaining < FRAME_HEADER_BYTES) {
+            return null;
+        }
+        try {
+            int length = in.readInt();
+            int expected = in.readInt();
+            if (length < 0 || length > remaining - FRAME_HEADER_BYTES) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            return checksum(payload) == expected ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 一条帧记录在文件中占用的字节数
+     */
+    public static int frameSize(byte[] payload) {
+        return FRAME_HEADER_BYTES + payload.length;
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    // ==================== 段文件 ====================
+
+    private long replaySegment(Path path, RecordHandler handler) throws IOException {
+        long records = 0;
+        long validBytes = 0;
+        long fileSize = Files.size(path);
+        if (fileSize == 0) {
+            Files.delete(path);
+            return 0;
+        }
+        try (InputStream input = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(input, 1 << 16))) {
+            byte[] payload;
+            while ((payload = readFrame(in, fileSize - validBytes)) != null) {
+                handler.handle(payload);
+                validBytes += frameSize(payload);
+                records++;
+            }
+        }
+        if (validBytes < fileSize) {
+            log.warn("WAL 段存在不完整或校验失败的记录，截断: 文件={}, 有效字节={}, 文件大小={}",
+                    path.getFileName(), validBytes, fileSize);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(validBytes);
+            }
+        }
+        return records;
+    }
+
+    private void openSegment(long sequence) throws IOException {
+        current = FileChannel.open(segmentPath(sequence),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        currentSequence = sequence;
+    }
+
+    private Path segmentPath(long sequence) {
+        return directory.resolve(String.format("wal-%020d.log", sequence));
+    }
+
+    private List<Long> sequences() throws IOException {
+        List<Long> sequences = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    sequences.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        }
+        sequences.sort(null);
+        return sequences;
+    }
+}
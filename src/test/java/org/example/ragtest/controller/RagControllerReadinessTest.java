@@ -0,0 +1,92 @@
+package org.example.ragtest.controller;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.example.ragtest.embedding.EmbeddingInferencePool;
+import org.example.ragtest.embedding.EmbeddingWarmup;
+import org.example.ragtest.embedding.QueryEmbeddingBatcher;
+import org.example.ragtest.store.engine.SimdExactEmbeddingStore;
+import org.example.ragtest.store.support.VectorScorers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RagControllerReadinessTest {
+
+    private static final EmbeddingModel MODEL = segments -> Response.from(segments.stream()
+            .map(segment -> Embedding.from(new float[]{segment.text().length(), 1f, 0.5f}))
+            .toList());
+
+    private static final EmbeddingModel FAILING_MODEL = segments -> {
+        throw new IllegalStateException("模型加载失败");
+    };
+
+    private final List<Object> events = new ArrayList<>();
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    void close() throws Exception {
+        for (AutoCloseable resource : resources) {
+            resource.close();
+        }
+    }
+
+    @Test
+    void readyReturns503UntilWarmupAndInitialDataComplete() {
+        EmbeddingWarmup warmup = warmup(MODEL);
+        RagController controller = new RagController(null, null, warmup);
+
+        warmup.warmUp();
+        assertThat(controller.ready().getStatusCode().value()).isEqualTo(503);
+
+        // Boot 在 ApplicationReadyEvent 之后发布接受流量，初始数据还没有加载完成时被改回拒绝流量
+        warmup.onReadinessChange(new AvailabilityChangeEvent<>(this, ReadinessState.ACCEPTING_TRAFFIC));
+        assertThat(lastReadinessState()).isEqualTo(ReadinessState.REFUSING_TRAFFIC);
+        assertThat(controller.ready().getStatusCode().value()).isEqualTo(503);
+
+        warmup.initialDataLoaded();
+        assertThat(controller.ready().getStatusCode().value()).isEqualTo(200);
+        assertThat(controller.ready().getBody().initialDataLoaded()).isTrue();
+        assertThat(lastReadinessState()).isEqualTo(ReadinessState.ACCEPTING_TRAFFIC);
+    }
+
+    @Test
+    void failedWarmupKeepsRefusingTraffic() {
+        EmbeddingWarmup warmup = warmup(FAILING_MODEL);
+        RagController controller = new RagController(null, null, warmup);
+
+        warmup.warmUp();
+        warmup.initialDataLoaded();
+        warmup.onReadinessChange(new AvailabilityChangeEvent<>(this, ReadinessState.ACCEPTING_TRAFFIC));
+
+        assertThat(controller.ready().getStatusCode().value()).isEqualTo(503);
+        assertThat(controller.ready().getBody().error()).contains("模型加载失败");
+        assertThat(lastReadinessState()).isEqualTo(ReadinessState.REFUSING_TRAFFIC);
+    }
+
+    private EmbeddingWarmup warmup(EmbeddingModel model) {
+        EmbeddingInferencePool pool = new EmbeddingInferencePool(model, 2, 1, 16);
+        QueryEmbeddingBatcher batcher = new QueryEmbeddingBatcher(pool, false, 2, 8);
+        resources.add(pool);
+        resources.add(batcher::close);
+        return new EmbeddingWarmup(pool, batcher, new SimdExactEmbeddingStore(VectorScorers.scalar()),
+                events::add, true, 1);
+    }
+
+    private ReadinessState lastReadinessState() {
+        for (int i = events.size() - 1; i >= 0; i--) {
+            if (events.get(i) instanceof AvailabilityChangeEvent<?> event
+                    && event.getState() instanceof ReadinessState state) {
+                return state;
+            }
+        }
+        return null;
+    }
+}
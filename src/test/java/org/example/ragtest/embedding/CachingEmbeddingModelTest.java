@@ -0,0 +1,82 @@
+package org.example.ragtest.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingEmbeddingModelTest {
+
+    private final List<List<String>> calls = new ArrayList<>();
+
+    /**
+     * 以文本长度和首字母序号构造向量，并记录每次批量推理的输入
+     */
+    private final EmbeddingModel model = segments -> {
+        calls.add(segments.stream().map(TextSegment::text).toList());
+        return Response.from(segments.stream()
+                .map(segment -> Embedding.from(new float[]{segment.text().length(), segment.text().charAt(0) - 'a'}))
+                .toList());
+    };
+
+    @Test
+    void missesAreDeduplicatedAndHitsSkipInference() {
+        CachingEmbeddingModel cache = new CachingEmbeddingModel(model, 100, null);
+
+        List<Embedding> first = cache.embedAll(segments("alpha", "beta", " alpha ", "alpha")).content();
+        assertThat(calls).containsExactly(List.of("alpha", "beta"));
+        assertThat(first).hasSize(4);
+        assertThat(first.get(2).vector()).containsExactly(5f, 0f);
+        assertThat(first.get(3).vector()).containsExactly(5f, 0f);
+
+        List<Embedding> second = cache.embedAll(segments("beta", "gamma", "alpha")).content();
+        assertThat(calls).containsExactly(List.of("alpha", "beta"), List.of("gamma"));
+        assertThat(second.get(0).vector()).containsExactly(4f, 1f);
+        assertThat(second.get(1).vector()).containsExactly(5f, 6f);
+
+        CachingEmbeddingModel.CallerStats stats = cache.stats().callers().get(EmbeddingCaller.QUERY);
+        assertThat(stats.misses()).isEqualTo(5);
+        assertThat(stats.memoryHits()).isEqualTo(2);
+        assertThat(cache.stats().memoryEntries()).isEqualTo(3);
+    }
+
+    @Test
+    void returnedVectorsAreCopies() {
+        CachingEmbeddingModel cache = new CachingEmbeddingModel(model, 100, null);
+        cache.embedAll(segments("alpha")).content().get(0).vector()[0] = -1f;
+
+        assertThat(cache.embedAll(segments("alpha")).content().get(0).vector()).containsExactly(5f, 0f);
+        assertThat(calls).hasSize(1);
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        CachingEmbeddingModel cache = new CachingEmbeddingModel(model, 2, null);
+        cache.embedAll(segments("alpha"));
+        cache.embedAll(segments("beta"));
+        // 访问 alpha 后 beta 成为最久未使用的条目
+        cache.embedAll(segments("alpha"));
+        cache.embedAll(segments("gamma"));
+        calls.clear();
+
+        cache.embedAll(segments("alpha", "gamma"));
+        assertThat(calls).isEmpty();
+        cache.embedAll(segments("beta"));
+        assertThat(calls).containsExactly(List.of("beta"));
+        assertThat(cache.stats().memoryEntries()).isEqualTo(2);
+    }
+
+    private static List<TextSegment> segments(String... texts) {
+        List<TextSegment> segments = new ArrayList<>(texts.length);
+        for (String text : texts) {
+            segments.add(TextSegment.from(text));
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,29 @@
+package org.example.ragtest.embedding;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentHashTest {
+
+    @Test
+    void whitespaceIsStrippedAndCollapsed() {
+        assertThat(ContentHash.normalize("  什么是\tRAG？\n\n  检索增强  生成 ")).isEqualTo("什么是 RAG？ 检索增强 生成");
+        assertThat(ContentHash.of("Spring  Boot\n自动配置")).isEqualTo(ContentHash.of(" Spring Boot 自动配置\t"));
+    }
+
+    @Test
+    void composedAndDecomposedFormsHashTheSame() {
+        String composed = "caf\u00e9";
+        String decomposed = "cafe\u0301";
+        assertThat(composed).isNotEqualTo(decomposed);
+        assertThat(ContentHash.normalize(decomposed)).isEqualTo(composed);
+        assertThat(ContentHash.of(decomposed)).isEqualTo(ContentHash.of(composed));
+    }
+
+    @Test
+    void differentTextHashesDifferently() {
+        assertThat(ContentHash.of("Java")).isNotEqualTo(ContentHash.of("java"));
+        assertThat(ContentHash.of("RAG 检索")).isNotEqualTo(ContentHash.of("RAG检索"));
+    }
+}
@@ -0,0 +1,140 @@
+package org.example.ragtest.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmbeddingInferencePoolTest {
+
+    private final List<String> started = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private final List<EmbeddingInferencePool> pools = new ArrayList<>();
+
+    /**
+     * 记录开始推理的文本；以 block 开头的文本阻塞到测试放行
+     */
+    private final EmbeddingModel model = segments -> {
+        String text = segments.get(0).text();
+        started.add(text);
+        if (text.startsWith("block")) {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return Response.from(segments.stream()
+                .map(segment -> Embedding.from(new float[]{segment.text().length(), 1f}))
+                .toList());
+    };
+
+    @AfterEach
+    void close() {
+        release.countDown();
+        callers.shutdownNow();
+        pools.forEach(EmbeddingInferencePool::close);
+    }
+
+    @Test
+    void ingestionCannotTakeReservedQueryWorkers() throws Exception {
+        EmbeddingInferencePool pool = pool(2, 1, 16);
+        List<Future<Response<List<Embedding>>>> ingestion = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ingestion.add(submit(pool, EmbeddingCaller.INGESTION, "block-" + i));
+        }
+        awaitCondition(() -> pool.stats().lanes().get(EmbeddingCaller.INGESTION).queued() == 2 && started.size() == 1);
+
+        // 两个推理线程中只有一个执行摄取，另一个留给查询
+        assertThat(pool.stats().runningIngestion()).isEqualTo(1);
+        assertThat(submit(pool, EmbeddingCaller.QUERY, "query").get(10, TimeUnit.SECONDS).content().get(0).vector())
+                .containsExactly(5f, 1f);
+        assertThat(started).hasSize(2);
+        assertThat(started.get(1)).isEqualTo("query");
+
+        release.countDown();
+        for (Future<Response<List<Embedding>>> future : ingestion) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertThat(pool.stats().lanes().get(EmbeddingCaller.INGESTION).completed()).isEqualTo(3);
+    }
+
+    @Test
+    void queuedQueriesRunBeforeQueuedIngestion() throws Exception {
+        EmbeddingInferencePool pool = pool(1, 0, 16);
+        Future<Response<List<Embedding>>> blocking = submit(pool, EmbeddingCaller.INGESTION, "block");
+        awaitCondition(() -> started.contains("block"));
+        Future<Response<List<Embedding>>> ingestion = submit(pool, EmbeddingCaller.INGESTION, "ingestion");
+        awaitCondition(() -> pool.stats().lanes().get(EmbeddingCaller.INGESTION).queued() == 1);
+        Future<Response<List<Embedding>>> query = submit(pool, EmbeddingCaller.QUERY, "query");
+        awaitCondition(() -> pool.stats().lanes().get(EmbeddingCaller.QUERY).queued() == 1);
+
+        release.countDown();
+        blocking.get(10, TimeUnit.SECONDS);
+        ingestion.get(10, TimeUnit.SECONDS);
+        query.get(10, TimeUnit.SECONDS);
+        assertThat(started).containsExactly("block", "query", "ingestion");
+    }
+
+    @Test
+    void fullQueryLaneFailsFastWhileIngestionWaits() throws Exception {
+        EmbeddingInferencePool pool = pool(1, 0, 1);
+        Future<Response<List<Embedding>>> blocking = submit(pool, EmbeddingCaller.QUERY, "block");
+        awaitCondition(() -> started.contains("block"));
+        Future<Response<List<Embedding>>> queuedQuery = submit(pool, EmbeddingCaller.QUERY, "queued");
+        awaitCondition(() -> pool.stats().lanes().get(EmbeddingCaller.QUERY).queued() == 1);
+
+        assertThatThrownBy(() -> pool.embedAll(List.of(TextSegment.from("rejected"))))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("队列已满");
+
+        // 摄取通道满时调用方阻塞等待，而不是失败
+        Future<Response<List<Embedding>>> queuedIngestion = submit(pool, EmbeddingCaller.INGESTION, "ingestion-0");
+        awaitCondition(() -> pool.stats().lanes().get(EmbeddingCaller.INGESTION).queued() == 1);
+        Future<Response<List<Embedding>>> waitingIngestion = submit(pool, EmbeddingCaller.INGESTION, "ingestion-1");
+        Thread.sleep(100);
+        assertThat(waitingIngestion.isDone()).isFalse();
+
+        release.countDown();
+        for (Future<Response<List<Embedding>>> future : List.of(blocking, queuedQuery, queuedIngestion, waitingIngestion)) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertThat(started).doesNotContain("rejected");
+    }
+
+    private EmbeddingInferencePool pool(int workers, int reservedQueryWorkers, int queueCapacity) {
+        EmbeddingInferencePool pool = new EmbeddingInferencePool(model, workers, reservedQueryWorkers, queueCapacity);
+        pools.add(pool);
+        return pool;
+    }
+
+    private Future<Response<List<Embedding>>> submit(EmbeddingInferencePool pool, EmbeddingCaller caller, String text) {
+        return callers.submit(() -> caller.call(() -> pool.embedAll(List.of(TextSegment.from(text)))));
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("等待条件超时");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.ragtest.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IngestionEmbedderTest {
+
+    private final List<EmbeddingCaller> callers = Collections.synchronizedList(new ArrayList<>());
+    private IngestionEmbedder embedder;
+
+    /**
+     * 以文本段序号构造向量；序号越小的批次推理越慢，让后面的批次先完成
+     */
+    private final EmbeddingModel model = segments -> {
+        callers.add(EmbeddingCaller.current());
+        int first = index(segments.get(0));
+        if (first == 4) {
+            throw new IllegalStateException("推理失败: " + segments.get(0).text());
+        }
+        try {
+            Thread.sleep(Math.max(0, 60 - first * 2L));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return Response.from(segments.stream()
+                .map(segment -> Embedding.from(new float[]{index(segment), 1f}))
+                .toList());
+    };
+
+    @AfterEach
+    void close() {
+        if (embedder != null) {
+            embedder.close();
+        }
+    }
+
+    @Test
+    void embeddingsKeepInputOrderAcrossParallelBatches() {
+        embedder = new IngestionEmbedder(model, 3, 4);
+
+        List<Embedding> embeddings = embedder.embedAll(segments(10, 20));
+        assertThat(embeddings).hasSize(20);
+        for (int i = 0; i < embeddings.size(); i++) {
+            assertThat(embeddings.get(i).vector()).containsExactly(10f + i, 1f);
+        }
+        assertThat(callers).hasSize(7);
+        assertThat(callers).allMatch(caller -> caller == EmbeddingCaller.INGESTION);
+        assertThat(embedder.lastRun().segments()).isEqualTo(20);
+        assertThat(embedder.lastRun().batches()).isEqualTo(7);
+    }
+
+    @Test
+    void failedBatchFailsTheWholeCall() {
+        embedder = new IngestionEmbedder(model, 2, 4);
+
+        // 第 3 个批次从序号 4 开始，推理失败
+        assertThatThrownBy(() -> embedder.embedAll(segments(0, 10)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("推理失败: segment-4");
+        assertThat(embedder.lastRun()).isNull();
+    }
+
+    @Test
+    void emptyInputSkipsInference() {
+        embedder = new IngestionEmbedder(model, 2, 4);
+
+        assertThat(embedder.embedAll(List.of())).isEmpty();
+        assertThat(callers).isEmpty();
+    }
+
+    private static List<TextSegment> segments(int from, int count) {
+        List<TextSegment> segments = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            segments.add(TextSegment.from("segment-" + i));
+        }
+        return segments;
+    }
+
+    private static int index(TextSegment segment) {
+        return Integer.parseInt(segment.text().substring("segment-".length()));
+    }
+}
@@ -0,0 +1,124 @@
+package org.example.ragtest.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QueryEmbeddingBatcherTest {
+
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private QueryEmbeddingBatcher batcher;
+
+    /**
+     * 以文本长度构造向量，并记录每次批量推理的批大小
+     */
+    private final EmbeddingModel model = segments -> {
+        batchSizes.add(segments.size());
+        return Response.from(segments.stream()
+                .map(segment -> Embedding.from(new float[]{segment.text().length(), 1f}))
+                .toList());
+    };
+
+    @AfterEach
+    void close() {
+        callers.shutdownNow();
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
+
+    @Test
+    void fullBatchIsFlushedWithoutWaiting() throws Exception {
+        // 等待窗口远大于测试超时，只有凑满批大小才会执行
+        batcher = new QueryEmbeddingBatcher(model, true, 60_000, 4);
+        List<Future<Embedding>> futures = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            String text = "q".repeat(i);
+            futures.add(callers.submit(() -> batcher.embed(text)));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            assertThat(futures.get(i).get(10, TimeUnit.SECONDS).vector()).containsExactly(i + 1f, 1f);
+        }
+        assertThat(batchSizes).containsExactly(4);
+        assertThat(batcher.stats().averageBatchSize()).isEqualTo(4.0);
+    }
+
+    @Test
+    void partialBatchIsFlushedAfterMaxWait() throws Exception {
+        batcher = new QueryEmbeddingBatcher(model, true, 50, 32);
+        long start = System.nanoTime();
+        Future<Embedding> future = callers.submit(() -> batcher.embed("query"));
+
+        assertThat(future.get(10, TimeUnit.SECONDS).vector()).containsExactly(5f, 1f);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(40L);
+        assertThat(batchSizes).containsExactly(1);
+    }
+
+    @Test
+    void failedInferenceFailsEveryRequestInTheBatch() throws Exception {
+        EmbeddingModel failing = segments -> {
+            batchSizes.add(segments.size());
+            throw new IllegalStateException("推理失败");
+        };
+        batcher = new QueryEmbeddingBatcher(failing, true, 60_000, 2);
+        Future<Embedding> first = callers.submit(() -> batcher.embed("a"));
+        Future<Embedding> second = callers.submit(() -> batcher.embed("b"));
+
+        for (Future<Embedding> future : List.of(first, second)) {
+            assertThatThrownBy(() -> future.get(10, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasMessageContaining("推理失败");
+        }
+        assertThat(batchSizes).containsExactly(2);
+    }
+
+    @Test
+    void requestsRacingWithCloseDoNotHang() throws Exception {
+        for (int round = 0; round < 300; round++) {
+            QueryEmbeddingBatcher racing = new QueryEmbeddingBatcher(model, true, 0, 1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(callers.submit(() -> {
+                    // 不断发起请求直到微批关闭；关闭后入队的请求也必须以异常结束而不是一直等待
+                    while (true) {
+                        try {
+                            racing.embed("q");
+                        } catch (IllegalStateException e) {
+                            return;
+                        }
+                    }
+                }));
+            }
+            Thread.sleep(5);
+            racing.close();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @Test
+    void disabledBatcherEmbedsEachQueryDirectly() {
+        batcher = new QueryEmbeddingBatcher(model, false, 60_000, 32);
+
+        assertThat(batcher.embed("abc").vector()).containsExactly(3f, 1f);
+        assertThat(batchSizes).containsExactly(1);
+        assertThat(batcher.stats().batches()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,177 @@
+package org.example.ragtest.service;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.example.ragtest.store.EmbeddingStoreFactory;
+import org.example.ragtest.store.EmbeddingStoreNamespaces;
+import org.example.ragtest.store.ManagedEmbeddingStore;
+import org.example.ragtest.store.engine.SimdExactEmbeddingStore;
+import org.example.ragtest.store.support.VectorScorers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+class EmbeddingStoreTransferServiceTest {
+
+    private static final int DIMENSION = 8;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void exportedFileImportsIntoAnotherStore() {
+        SimdExactEmbeddingStore source = populatedStore();
+        SimdExactEmbeddingStore target = new SimdExactEmbeddingStore(VectorScorers.scalar());
+        EmbeddingStoreNamespaces sourceNamespaces = namespaces(source);
+        EmbeddingStoreNamespaces targetNamespaces = namespaces(target);
+        try {
+            // 每块 3 行，10 行数据跨 4 个数据块
+            EmbeddingStoreTransferService.TransferReport exported =
+                    service(sourceNamespaces).exportToFile(null, "backup.ragx");
+            assertThat(exported.rows()).isEqualTo(10);
+            assertThat(exported.chunks()).isEqualTo(4);
+
+            EmbeddingStoreTransferService.TransferReport imported =
+                    service(targetNamespaces).importFromFile(null, "backup.ragx");
+            assertThat(imported.rows()).isEqualTo(10);
+            assertSameEntries(target, source);
+
+            // 重复导入同一份文件结果不变
+            service(targetNamespaces).importFromFile(null, "backup.ragx");
+            assertThat(target.size()).isEqualTo(10);
+        } finally {
+            sourceNamespaces.close();
+            targetNamespaces.close();
+        }
+    }
+
+    @Test
+    void streamedExportImportsAndLeavesNoTemporaryFile() throws IOException {
+        SimdExactEmbeddingStore source = populatedStore();
+        SimdExactEmbeddingStore target = new SimdExactEmbeddingStore(VectorScorers.scalar());
+        EmbeddingStoreNamespaces sourceNamespaces = namespaces(source);
+        EmbeddingStoreNamespaces targetNamespaces = namespaces(target);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            service(sourceNamespaces).exportTo(null, out);
+            try (Stream<Path> files = Files.list(directory)) {
+                assertThat(files.toList()).isEmpty();
+            }
+
+            service(targetNamespaces).importFrom(null,
+                    Channels.newChannel(new ByteArrayInputStream(out.toByteArray())));
+            assertSameEntries(target, source);
+        } finally {
+            sourceNamespaces.close();
+            targetNamespaces.close();
+        }
+    }
+
+    @Test
+    void chunkLargerThanLimitIsRejected() {
+        SimdExactEmbeddingStore target = new SimdExactEmbeddingStore(VectorScorers.scalar());
+        EmbeddingStoreNamespaces targetNamespaces = namespaces(target);
+        try {
+            byte[] forged = ByteBuffer.allocate(20)
+                    .putInt(0x52414758).putInt(1)
+                    .putInt(1).putInt(DIMENSION).putInt(Integer.MAX_VALUE)
+                    .array();
+            assertThatThrownBy(() -> service(targetNamespaces).importFrom(null,
+                    Channels.newChannel(new ByteArrayInputStream(forged))))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("超过上限");
+            assertThat(target.size()).isEqualTo(0);
+        } finally {
+            targetNamespaces.close();
+        }
+    }
+
+    @Test
+    void storeWithoutTraversalIsRejectedBeforeExport() {
+        EmbeddingStoreNamespaces inMemoryNamespaces = namespaces(new InMemoryEmbeddingStore<>());
+        try {
+            EmbeddingStoreTransferService service = service(inMemoryNamespaces);
+            assertThatThrownBy(() -> service.checkExportable(null))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("IN_MEMORY 不支持");
+            assertThatThrownBy(() -> service.exportToFile(null, "default.ragx"))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("IN_MEMORY 不支持");
+            assertThat(Files.exists(directory.resolve("default.ragx"))).isFalse();
+            assertThat(Files.exists(directory.resolve("default.ragx.tmp"))).isFalse();
+        } finally {
+            inMemoryNamespaces.close();
+        }
+    }
+
+    private EmbeddingStoreTransferService service(EmbeddingStoreNamespaces namespaces) {
+        return new EmbeddingStoreTransferService(namespaces, 3, 1, directory.toString());
+    }
+
+    private static EmbeddingStoreNamespaces namespaces(EmbeddingStore<TextSegment> store) {
+        return new EmbeddingStoreNamespaces(new EmbeddingStoreFactory(List.of()), store);
+    }
+
+    private static SimdExactEmbeddingStore populatedStore() {
+        Random random = new Random(23);
+        SimdExactEmbeddingStore store = new SimdExactEmbeddingStore(VectorScorers.scalar());
+        List<String> ids = new ArrayList<>();
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            float[] vector = new float[DIMENSION];
+            for (int d = 0; d < DIMENSION; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            ids.add("id-" + i);
+            embeddings.add(Embedding.from(vector));
+            Metadata metadata = new Metadata().put("document_id", "doc-" + i % 3).put("page", i);
+            segments.add(TextSegment.from("段落 " + i, metadata));
+        }
+        store.addAll(ids, embeddings, segments);
+        return store;
+    }
+
+    /**
+     * 文本和元数据逐项相同；存储内部按归一化向量和范数保存，还原的向量只比较到浮点误差范围内
+     */
+    private static void assertSameEntries(ManagedEmbeddingStore actual, ManagedEmbeddingStore expected) {
+        Map<String, ManagedEmbeddingStore.Entry> expectedEntries = entries(expected);
+        Map<String, ManagedEmbeddingStore.Entry> actualEntries = entries(actual);
+        assertThat(actualEntries.keySet()).isEqualTo(expectedEntries.keySet());
+        expectedEntries.forEach((id, entry) -> {
+            ManagedEmbeddingStore.Entry imported = actualEntries.get(id);
+            assertThat(imported.segment()).isEqualTo(entry.segment());
+            float[] vector = entry.embedding().vector();
+            for (int d = 0; d < vector.length; d++) {
+                assertThat(imported.embedding().vector()[d]).isCloseTo(vector[d], offset(1e-5f));
+            }
+        });
+    }
+
+    private static Map<String, ManagedEmbeddingStore.Entry> entries(ManagedEmbeddingStore store) {
+        Map<String, ManagedEmbeddingStore.Entry> entries = new HashMap<>();
+        store.forEach(entry -> entries.put(entry.id(), entry));
+        return entries;
+    }
+}
@@ -0,0 +1,69 @@
+package org.example.ragtest.store;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.example.ragtest.store.engine.SimdExactEmbeddingStore;
+import org.example.ragtest.store.support.VectorScorers;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiversifiedSearchEmbeddingStoreTest {
+
+    private static final EmbeddingSearchRequest REQUEST = EmbeddingSearchRequest.builder()
+            .queryEmbedding(Embedding.from(new float[]{1f, 0f, 0f, 0f}))
+            .maxResults(2)
+            .build();
+
+    @Test
+    void defaultLambdaLeavesStoreUnwrapped() {
+        SimdExactEmbeddingStore store = new SimdExactEmbeddingStore(VectorScorers.scalar());
+        assertThat(DiversifiedSearchEmbeddingStore.wrap(store, 1.0, 4)).isSameAs(store);
+        assertThat(DiversifiedSearchEmbeddingStore.wrap(store, 0.7, 1)).isSameAs(store);
+    }
+
+    @Test
+    void overlappingChunksAreReplacedByDistinctOnes() {
+        SimdExactEmbeddingStore store = new SimdExactEmbeddingStore(VectorScorers.scalar());
+        addOverlappingChunks(store);
+
+        assertThat(store.search(REQUEST).matches())
+                .extracting(EmbeddingMatch::embeddingId)
+                .containsExactly("chunk-1", "chunk-1-overlap");
+
+        EmbeddingStore<TextSegment> diversified = DiversifiedSearchEmbeddingStore.wrap(store, 0.5, 4);
+        assertThat(diversified).isInstanceOf(ManagedEmbeddingStore.class);
+        assertThat(diversified.search(REQUEST).matches())
+                .extracting(EmbeddingMatch::embeddingId)
+                .containsExactly("chunk-1", "chunk-2");
+    }
+
+    @Test
+    void storeOutsideThisProjectIsDiversifiedToo() {
+        InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+        addOverlappingChunks(store);
+
+        EmbeddingStore<TextSegment> diversified = DiversifiedSearchEmbeddingStore.wrap(store, 0.5, 4);
+        assertThat(diversified).isInstanceOf(DiversifiedSearchEmbeddingStore.class);
+        assertThat(diversified instanceof ManagedEmbeddingStore).isFalse();
+        assertThat(diversified.search(REQUEST).matches())
+                .extracting(EmbeddingMatch::embeddingId)
+                .containsExactly("chunk-1", "chunk-2");
+    }
+
+    private static void addOverlappingChunks(EmbeddingStore<TextSegment> store) {
+        store.addAll(
+                List.of("chunk-1", "chunk-1-overlap", "chunk-2", "chunk-3"),
+                List.of(Embedding.from(new float[]{1f, 0.2f, 0f, 0f}),
+                        Embedding.from(new float[]{1f, 0.21f, 0f, 0f}),
+                        Embedding.from(new float[]{0.8f, -0.3f, 0.52f, 0f}),
+                        Embedding.from(new float[]{0.5f, 0f, 0f, 0.86f})),
+                List.of(TextSegment.from("1"), TextSegment.from("1'"), TextSegment.from("2"), TextSegment.from("3")));
+    }
+}
@@ -0,0 +1,188 @@
+package org.example.ragtest.store;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import org.example.ragtest.store.engine.SimdExactEmbeddingStore;
+import org.example.ragtest.store.support.VectorScorers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmbeddingStoreNamespacesTest {
+
+    private static final int DIMENSION = 4;
+
+    /**
+     * 1MB 配额、4 维向量时每行估算 1040 字节，上限 1008 行
+     */
+    private static final int MAX_ROWS = (1 << 20) / (DIMENSION * Float.BYTES + 1024);
+
+    @TempDir
+    Path directory;
+
+    private EmbeddingStoreNamespaces namespaces;
+
+    @AfterEach
+    void close() {
+        if (namespaces != null) {
+            namespaces.close();
+        }
+    }
+
+    @Test
+    void namespacesAreIsolatedAndReloadAfterUnload() {
+        namespaces = namespaces(directory);
+        EmbeddingStore<TextSegment> tenantA = namespaces.store("tenant-a");
+        EmbeddingStore<TextSegment> tenantB = namespaces.store("tenant-b");
+        tenantA.addAll(embeddings(3, 1f), segments("a", 3));
+        tenantB.addAll(embeddings(1, 2f), segments("b", 1));
+
+        assertThat(((ManagedEmbeddingStore) tenantA).size()).isEqualTo(3);
+        assertThat(((ManagedEmbeddingStore) tenantB).size()).isEqualTo(1);
+        assertThat(((ManagedEmbeddingStore) namespaces.store(null)).size()).isEqualTo(0);
+
+        // 空闲阈值为 0，卸载后再次访问从磁盘恢复
+        namespaces.unloadIdle();
+        assertThat(namespaces.loadedNamespaces()).isEmpty();
+        List<String> texts = tenantA.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(Embedding.from(new float[]{1f, 0f, 0f, 0f}))
+                        .maxResults(10)
+                        .build()).matches().stream()
+                .map(match -> match.embedded().text())
+                .toList();
+        assertThat(texts).containsExactlyInAnyOrder("a-0", "a-1", "a-2");
+
+        assertThatThrownBy(() -> namespaces.store("../escape"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void concurrentWritersCannotOvershootQuota() throws Exception {
+        namespaces = namespaces(directory);
+        EmbeddingStore<TextSegment> tenant = namespaces.store("tenant");
+        int writers = 8;
+        int batch = 50;
+        int batchesPerWriter = 4;
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int b = 0; b < batchesPerWriter; b++) {
+                        try {
+                            tenant.addAll(embeddings(batch, writer + 1f), segments("w" + writer + "-" + b, batch));
+                        } catch (IllegalStateException e) {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int size = ((ManagedEmbeddingStore) tenant).size();
+        assertThat(size).isLessThanOrEqualTo(MAX_ROWS);
+        assertThat(size).isEqualTo((writers * batchesPerWriter - rejected.get()) * batch);
+        assertThat(rejected.get()).isGreaterThan(0);
+    }
+
+    @Test
+    void failedOpenReleasesCompactionThread() throws Exception {
+        // 数据目录是普通文件，持久化层无法创建命名空间目录
+        Path file = Files.createFile(directory.resolve("not-a-directory"));
+        namespaces = namespaces(file);
+        int before = compactionThreads();
+
+        for (int attempt = 0; attempt < 3; attempt++) {
+            assertThatThrownBy(() -> namespaces.store("tenant").addAll(embeddings(1, 1f), segments("x", 1)))
+                    .isInstanceOf(UncheckedIOException.class);
+        }
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (compactionThreads() > before && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(compactionThreads()).isLessThanOrEqualTo(before);
+        assertThat(namespaces.loadedNamespaces()).isEmpty();
+    }
+
+    private static EmbeddingStoreNamespaces namespaces(Path directory) {
+        EmbeddingStoreFactory factory = new EmbeddingStoreFactory(List.of(new EmbeddingStoreStrategy() {
+            @Override
+            public EmbeddingStore<TextSegment> createStore() {
+                return new SimdExactEmbeddingStore(VectorScorers.scalar());
+            }
+
+            @Override
+            public EmbeddingStoreType getStoreType() {
+                return EmbeddingStoreType.SIMD_EXACT;
+            }
+
+            @Override
+            public String getDescription() {
+                return "SIMD exact";
+            }
+        }));
+        EmbeddingStoreNamespaces namespaces = new EmbeddingStoreNamespaces(factory,
+                new SimdExactEmbeddingStore(VectorScorers.scalar()));
+        ReflectionTestUtils.setField(namespaces, "storeType", EmbeddingStoreType.SIMD_EXACT);
+        ReflectionTestUtils.setField(namespaces, "directory", directory.toString());
+        ReflectionTestUtils.setField(namespaces, "quotaMb", 1L);
+        ReflectionTestUtils.setField(namespaces, "idleUnloadSeconds", 0L);
+        ReflectionTestUtils.setField(namespaces, "fsync", false);
+        ReflectionTestUtils.setField(namespaces, "snapshotIntervalSeconds", 3600L);
+        ReflectionTestUtils.setField(namespaces, "compactionDeletedRatio", 0.2);
+        ReflectionTestUtils.setField(namespaces, "compactionIntervalSeconds", 3600L);
+        return namespaces;
+    }
+
+    private static int compactionThreads() {
+        return (int) Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("embedding-store-compaction") && thread.isAlive())
+                .count();
+    }
+
+    private static List<Embedding> embeddings(int count, float seed) {
+        List<Embedding> embeddings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            embeddings.add(Embedding.from(new float[]{seed, i, 1f, 0.5f}));
+        }
+        return embeddings;
+    }
+
+    private static List<TextSegment> segments(String prefix, int count) {
+        List<TextSegment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            segments.add(TextSegment.from(prefix + "-" + i));
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.ragtest.store;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import org.example.ragtest.store.engine.CompactingEmbeddingStore;
+import org.example.ragtest.store.engine.HnswEmbeddingStore;
+import org.example.ragtest.store.engine.SimdExactEmbeddingStore;
+import org.example.ragtest.store.support.VectorScorers;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TruncatedSearchEmbeddingStoreTest {
+
+    private static final int DIMENSION = 64;
+
+    @Test
+    void wrapsStoresThatTruncateThroughForwardingLayers() {
+        CompactingEmbeddingStore store = new CompactingEmbeddingStore(
+                new SimdExactEmbeddingStore(VectorScorers.scalar()),
+                () -> new SimdExactEmbeddingStore(VectorScorers.scalar()), 0.2, 3600);
+        try {
+            List<Embedding> embeddings = randomEmbeddings(new Random(43), 200);
+            store.addAll(embeddings, segments(embeddings.size()));
+
+            EmbeddingStore<TextSegment> wrapped = TruncatedSearchEmbeddingStore.wrap(store, 16, 8);
+            assertThat(wrapped).isInstanceOf(TruncatedSearchEmbeddingStore.class);
+            List<EmbeddingMatch<TextSegment>> matches = wrapped.search(EmbeddingSearchRequest.builder()
+                    .queryEmbedding(embeddings.get(77))
+                    .maxResults(1)
+                    .build()).matches();
+            assertThat(matches).extracting(match -> match.embedded().text()).containsExactly("segment-77");
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void storesWithoutTruncatedSearchAreNotWrapped() {
+        HnswEmbeddingStore hnsw = new HnswEmbeddingStore(16, 100, 50);
+        assertThat(hnsw.supportsTruncatedSearch()).isFalse();
+        assertThat(TruncatedSearchEmbeddingStore.wrap(hnsw, 128, 8)).isSameAs(hnsw);
+
+        SimdExactEmbeddingStore exact = new SimdExactEmbeddingStore(VectorScorers.scalar());
+        assertThat(TruncatedSearchEmbeddingStore.wrap(exact, 0, 8)).isSameAs(exact);
+    }
+
+    private static List<Embedding> randomEmbeddings(Random random, int count) {
+        List<Embedding> embeddings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[DIMENSION];
+            for (int d = 0; d < DIMENSION; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            embeddings.add(Embedding.from(vector));
+        }
+        return embeddings;
+    }
+
+    private static List<TextSegment> segments(int count) {
+        List<TextSegment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            segments.add(TextSegment.from("segment-" + i));
+        }
+        return segments;
+    }
+}
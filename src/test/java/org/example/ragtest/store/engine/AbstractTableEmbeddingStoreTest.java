@@ -0,0 +1,75 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import org.example.ragtest.store.support.VectorScorers;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.example.ragtest.store.engine.StoreTestFixtures.documentSegment;
+
+class AbstractTableEmbeddingStoreTest {
+
+    private static final int DIMENSION = 8;
+
+    @Test
+    void batchWithMismatchedDimensionIsRejectedWhole() {
+        for (AbstractTableEmbeddingStore store : stores()) {
+            store.addAll(List.of("a", "b"), List.of(vector(DIMENSION, 1f), vector(DIMENSION, 2f)),
+                    List.of(documentSegment("doc-1", "a"), documentSegment("doc-1", "b")));
+
+            // 第一行维度正确，第二行错误：整批拒绝，第一行也不写入
+            assertThatThrownBy(() -> store.addAll(List.of("c", "d"),
+                    List.of(vector(DIMENSION, 3f), vector(DIMENSION + 1, 4f)),
+                    List.of(documentSegment("doc-2", "c"), documentSegment("doc-2", "d"))))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("维度不匹配");
+            assertThat(store.size()).isEqualTo(2);
+
+            // 文档替换被拒绝时旧版本保留
+            assertThatThrownBy(() -> store.upsertDocument("doc-1", List.of("e"),
+                    List.of(vector(DIMENSION - 1, 5f)), List.of(documentSegment("doc-1", "e"))))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThat(store.size()).isEqualTo(2);
+            assertThat(store.deletedCount()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    void queryWithMismatchedDimensionIsRejected() {
+        for (AbstractTableEmbeddingStore store : stores()) {
+            store.addAll(List.of("a"), List.of(vector(DIMENSION, 1f)), List.of(documentSegment("doc-1", "a")));
+
+            for (int dimension : new int[]{DIMENSION - 1, DIMENSION + 1}) {
+                EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                        .queryEmbedding(vector(dimension, 1f))
+                        .maxResults(1)
+                        .build();
+                assertThatThrownBy(() -> store.search(request))
+                        .isInstanceOf(IllegalArgumentException.class)
+                        .hasMessageContaining("查询向量维度不匹配");
+            }
+        }
+    }
+
+    private static List<AbstractTableEmbeddingStore> stores() {
+        return List.of(
+                new SimdExactEmbeddingStore(VectorScorers.scalar()),
+                new OffHeapEmbeddingStore(16, false),
+                new Int8QuantizedEmbeddingStore(4, 1, 16, false),
+                new BinaryQuantizedEmbeddingStore(4, 1, 16, false),
+                new IvfEmbeddingStore(VectorScorers.scalar(), 2, 1, 1000, 2.0, false),
+                new ProductQuantizedEmbeddingStore(VectorScorers.scalar(), 4, 4, 1000, 16, false));
+    }
+
+    private static Embedding vector(int dimension, float value) {
+        float[] vector = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            vector[d] = value + d;
+        }
+        return Embedding.from(vector);
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.example.ragtest.store.engine.StoreTestFixtures.randomEmbeddings;
+import static org.example.ragtest.store.engine.StoreTestFixtures.recall;
+import static org.example.ragtest.store.engine.StoreTestFixtures.segments;
+
+class BinaryQuantizedEmbeddingStoreTest {
+
+    private static final int DIMENSION = 32;
+
+    @Test
+    void rerankReturnsExactScores() {
+        Random random = new Random(37);
+        BinaryQuantizedEmbeddingStore store = new BinaryQuantizedEmbeddingStore(8, 100, 256, false);
+        List<Embedding> embeddings = randomEmbeddings(random, DIMENSION, 300);
+        store.addAll(embeddings, segments(0, embeddings.size()));
+
+        List<EmbeddingMatch<TextSegment>> matches = store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(embeddings.get(250))
+                .maxResults(3)
+                .build()).matches();
+        assertThat(matches.get(0).embedded().text()).isEqualTo("segment-250");
+        assertThat(matches.get(0).score()).isCloseTo(1.0, offset(1e-6));
+        assertThat(matches.get(0).embedding().vector()[0]).isCloseTo(embeddings.get(250).vector()[0], offset(1e-5f));
+    }
+
+    @Test
+    void prefilterWithLargeOversampleKeepsRecallAfterGrowth() {
+        Random random = new Random(41);
+        BinaryQuantizedEmbeddingStore store = new BinaryQuantizedEmbeddingStore(16, 100, 256, false);
+        InMemoryEmbeddingStore<TextSegment> exact = new InMemoryEmbeddingStore<>();
+
+        // 编码中心只在前 100 行时计算一次，之后的行按同一中心编码
+        int count = 0;
+        for (int batch = 0; batch < 20; batch++) {
+            List<Embedding> embeddings = randomEmbeddings(random, DIMENSION, 100);
+            List<TextSegment> segments = segments(count, embeddings.size());
+            store.addAll(embeddings, segments);
+            exact.addAll(embeddings, segments);
+            count += embeddings.size();
+        }
+        assertThat(store.size()).isEqualTo(count);
+        assertThat(recall(store, exact, randomEmbeddings(random, DIMENSION, 50))).isGreaterThan(0.7);
+    }
+}
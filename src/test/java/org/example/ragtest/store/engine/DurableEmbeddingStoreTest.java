@@ -0,0 +1,161 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import org.example.ragtest.store.support.VectorScorers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.example.ragtest.store.engine.StoreTestFixtures.documentSegment;
+import static org.example.ragtest.store.engine.StoreTestFixtures.randomEmbedding;
+import static org.example.ragtest.store.engine.StoreTestFixtures.topId;
+
+class DurableEmbeddingStoreTest {
+
+    private static final int DIMENSION = 16;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoveryTruncatesFrameWithCorruptLength() throws IOException {
+        Random random = new Random(17);
+        List<Embedding> embeddings = List.of(randomEmbedding(random, DIMENSION), randomEmbedding(random, DIMENSION));
+        writeWithoutClosing(embeddings);
+
+        // 长度字段远大于文件剩余字节，不能按该长度分配内存
+        Path segment = lastSegment();
+        long validSize = Files.size(segment);
+        appendRaw(segment, ByteBuffer.allocate(12).putInt(Integer.MAX_VALUE - 8).putInt(0).putInt(42).array());
+
+        DurableEmbeddingStore recovered = open();
+        assertThat(recovered.size()).isEqualTo(2);
+        assertThat(Files.size(segment)).isEqualTo(validSize);
+        assertThat(topId(recovered, embeddings.get(1))).isEqualTo("id-1");
+        recovered.close();
+    }
+
+    @Test
+    void recoveryTruncatesTornLastFrame() throws IOException {
+        Random random = new Random(19);
+        List<Embedding> embeddings = List.of(randomEmbedding(random, DIMENSION), randomEmbedding(random, DIMENSION));
+        writeWithoutClosing(embeddings);
+
+        // 最后一条记录只写入了帧头和一半负载
+        Path segment = lastSegment();
+        long validSize = Files.size(segment);
+        appendRaw(segment, ByteBuffer.allocate(8 + 50).putInt(100).putInt(7).array());
+
+        DurableEmbeddingStore recovered = open();
+        assertThat(recovered.size()).isEqualTo(2);
+        assertThat(Files.size(segment)).isEqualTo(validSize);
+
+        // 截断后的段可以继续恢复，新写入也不受影响
+        recovered.addAll(List.of("id-2"), List.of(randomEmbedding(random, DIMENSION)), List.of(TextSegment.from("text 2")));
+        recovered.close();
+        DurableEmbeddingStore reopened = open();
+        assertThat(reopened.size()).isEqualTo(3);
+        reopened.close();
+    }
+
+    @Test
+    void rejectedBatchIsNotLoggedAndStoreReopens() {
+        Random random = new Random(23);
+        DurableEmbeddingStore store = open();
+        store.addAll(List.of("id-0"), List.of(randomEmbedding(random, DIMENSION)), List.of(TextSegment.from("text 0")));
+        assertThatThrownBy(() -> store.addAll(List.of("other-model"), List.of(Embedding.from(new float[8])),
+                List.of(TextSegment.from("other model"))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("维度不匹配");
+
+        DurableEmbeddingStore recovered = open();
+        assertThat(recovered.size()).isEqualTo(1);
+        recovered.close();
+    }
+
+    @Test
+    void recordRejectedDuringReplayIsSkipped() {
+        // WAL 中已有 8 维的写入，而被装饰的存储已经装载了 16 维的数据，回放该记录会被存储拒绝
+        DurableEmbeddingStore store = open();
+        store.addAll(List.of("other-model"), List.of(Embedding.from(new float[]{1, 0, 0, 0, 0, 0, 0, 0})),
+                List.of(TextSegment.from("other model")));
+
+        Random random = new Random(29);
+        SimdExactEmbeddingStore populated = new SimdExactEmbeddingStore(VectorScorers.scalar());
+        Embedding embedding = randomEmbedding(random, DIMENSION);
+        populated.addAll(List.of("id-0"), List.of(embedding), List.of(TextSegment.from("text 0")));
+        DurableEmbeddingStore recovered = new DurableEmbeddingStore(populated, directory, true, 3600);
+        assertThat(recovered.size()).isEqualTo(1);
+        assertThat(topId(recovered, embedding)).isEqualTo("id-0");
+        recovered.close();
+    }
+
+    @Test
+    void idsOfRemovedOrReplacedDocumentsCanBeReused() {
+        Random random = new Random(31);
+        Embedding reused = randomEmbedding(random, DIMENSION);
+        Embedding replaced = randomEmbedding(random, DIMENSION);
+        DurableEmbeddingStore store = open();
+        store.addAll(List.of("id-1"), List.of(randomEmbedding(random, DIMENSION)), List.of(segment("doc-a")));
+        store.removeDocument("doc-a");
+        store.addAll(List.of("id-1"), List.of(reused), List.of(segment("doc-b")));
+
+        store.upsertDocument("doc-c", List.of("id-2"), List.of(randomEmbedding(random, DIMENSION)), List.of(segment("doc-c")));
+        store.upsertDocument("doc-c", List.of("id-3"), List.of(randomEmbedding(random, DIMENSION)), List.of(segment("doc-c")));
+        store.addAll(List.of("id-2"), List.of(replaced), List.of(segment("doc-d")));
+
+        DurableEmbeddingStore recovered = open();
+        assertThat(recovered.size()).isEqualTo(3);
+        assertThat(topId(recovered, reused)).isEqualTo("id-1");
+        assertThat(topId(recovered, replaced)).isEqualTo("id-2");
+        recovered.close();
+    }
+
+    /**
+     * 写入后不关闭存储，模拟进程崩溃：数据只存在于 WAL 中，没有快照
+     */
+    private void writeWithoutClosing(List<Embedding> embeddings) {
+        DurableEmbeddingStore store = open();
+        for (int i = 0; i < embeddings.size(); i++) {
+            store.addAll(List.of("id-" + i), List.of(embeddings.get(i)), List.of(TextSegment.from("text " + i)));
+        }
+    }
+
+    private DurableEmbeddingStore open() {
+        return new DurableEmbeddingStore(new SimdExactEmbeddingStore(VectorScorers.scalar()), directory, true, 3600);
+    }
+
+    private Path lastSegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory.resolve("wal"))) {
+            return files.filter(file -> {
+                        try {
+                            return Files.size(file) > 0;
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    })
+                    .sorted()
+                    .reduce((first, second) -> second)
+                    .orElseThrow();
+        }
+    }
+
+    private static TextSegment segment(String documentId) {
+        return documentSegment(documentId, "text of " + documentId);
+    }
+
+    private static void appendRaw(Path file, byte[] bytes) throws IOException {
+        Files.write(file, bytes, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,202 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.example.ragtest.store.ManagedEmbeddingStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+import static org.example.ragtest.store.engine.StoreTestFixtures.documentSegment;
+import static org.example.ragtest.store.engine.StoreTestFixtures.randomEmbedding;
+import static org.example.ragtest.store.engine.StoreTestFixtures.texts;
+
+class HnswEmbeddingStoreTest {
+
+    private static final int DIMENSION = 64;
+
+    @Test
+    void recallIsCloseToBruteForce() {
+        Random random = new Random(7);
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            embeddings.add(randomEmbedding(random, DIMENSION));
+            segments.add(TextSegment.from("segment-" + i));
+        }
+
+        HnswEmbeddingStore hnsw = new HnswEmbeddingStore(16, 200, 64);
+        InMemoryEmbeddingStore<TextSegment> exact = new InMemoryEmbeddingStore<>();
+        hnsw.addAll(embeddings, segments);
+        exact.addAll(embeddings, segments);
+        assertThat(hnsw.size()).isEqualTo(3000);
+
+        int hits = 0;
+        int total = 0;
+        for (int q = 0; q < 50; q++) {
+            EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                    .queryEmbedding(randomEmbedding(random, DIMENSION))
+                    .maxResults(10)
+                    .build();
+            Set<String> expected = texts(exact.search(request).matches());
+            Set<String> actual = texts(hnsw.search(request).matches());
+            total += expected.size();
+            expected.retainAll(actual);
+            hits += expected.size();
+        }
+        assertThat((double) hits / total).isGreaterThan(0.9);
+    }
+
+    @Test
+    void searchOnEmptyStoreReturnsNoMatches() {
+        HnswEmbeddingStore hnsw = new HnswEmbeddingStore(16, 200, 64);
+        EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                .queryEmbedding(randomEmbedding(new Random(1), DIMENSION))
+                .build();
+        assertThat(hnsw.search(request).matches()).isEmpty();
+    }
+
+    @Test
+    void storedVectorIsItsOwnNearestNeighbour() {
+        Random random = new Random(11);
+        HnswEmbeddingStore hnsw = new HnswEmbeddingStore(16, 200, 64);
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            embeddings.add(randomEmbedding(random, DIMENSION));
+            segments.add(TextSegment.from("segment-" + i));
+        }
+        hnsw.addAll(embeddings, segments);
+
+        for (int i = 0; i < 500; i += 50) {
+            List<EmbeddingMatch<TextSegment>> matches = hnsw.search(EmbeddingSearchRequest.builder()
+                    .queryEmbedding(embeddings.get(i))
+                    .maxResults(3)
+                    .build()).matches();
+            assertThat(matches.get(0).embedded().text()).isEqualTo("segment-" + i);
+            assertThat(matches.get(0).score()).isCloseTo(1.0, offset(1e-6));
+            assertThat(matches.get(0).embedding().vector()[0]).isCloseTo(embeddings.get(i).vector()[0], offset(1e-5f));
+        }
+    }
+
+    @Test
+    void filterMinScoreAndRemovedIdsAreRespected() {
+        Random random = new Random(13);
+        HnswEmbeddingStore hnsw = new HnswEmbeddingStore(16, 200, 64);
+        List<String> ids = new ArrayList<>();
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add("id-" + i);
+            embeddings.add(randomEmbedding(random, DIMENSION));
+            segments.add(TextSegment.from("segment-" + i, Metadata.from("lang", i % 2 == 0 ? "zh" : "en")));
+        }
+        hnsw.addAll(ids, embeddings, segments);
+
+        List<EmbeddingMatch<TextSegment>> filtered = hnsw.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(randomEmbedding(random, DIMENSION))
+                .maxResults(10)
+                .filter(metadataKey("lang").isEqualTo("zh"))
+                .build()).matches();
+        assertThat(filtered).hasSize(10);
+        assertThat(filtered).allMatch(match -> "zh".equals(match.embedded().metadata().getString("lang")));
+
+        EmbeddingSearchRequest nearDuplicate = EmbeddingSearchRequest.builder()
+                .queryEmbedding(embeddings.get(42))
+                .maxResults(10)
+                .minScore(0.99)
+                .build();
+        assertThat(texts(hnsw.search(nearDuplicate).matches())).containsExactly("segment-42");
+
+        hnsw.removeAll(List.of("id-42"));
+        assertThat(hnsw.size()).isEqualTo(199);
+        assertThat(hnsw.search(nearDuplicate).matches()).isEmpty();
+    }
+
+    @Test
+    void upsertDocumentReplacesPreviousSegments() {
+        Random random = new Random(3);
+        HnswEmbeddingStore hnsw = new HnswEmbeddingStore(16, 200, 64);
+        hnsw.addAll(List.of("a1", "a2", "b1"),
+                List.of(randomEmbedding(random, DIMENSION), randomEmbedding(random, DIMENSION), randomEmbedding(random, DIMENSION)),
+                List.of(documentSegment("a", "old-1"), documentSegment("a", "old-2"), documentSegment("b", "other")));
+
+        hnsw.upsertDocument("a", List.of("a3"), List.of(randomEmbedding(random, DIMENSION)), List.of(documentSegment("a", "new")));
+        assertThat(hnsw.size()).isEqualTo(2);
+        assertThat(hnsw.deletedCount()).isEqualTo(2);
+
+        EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                .queryEmbedding(randomEmbedding(random, DIMENSION))
+                .maxResults(10)
+                .build();
+        assertThat(texts(hnsw.search(request).matches())).containsExactlyInAnyOrder("new", "other");
+
+        hnsw.removeDocument("b");
+        assertThat(texts(hnsw.search(request).matches())).containsExactly("new");
+    }
+
+    @Test
+    void removeDocumentWithMixedDocumentIdTypesFallsBackToScan() {
+        Random random = new Random(5);
+        HnswEmbeddingStore hnsw = new HnswEmbeddingStore(16, 200, 64);
+        // 数值和字符串混合的 document_id 无法走倒排索引
+        hnsw.addAll(List.of("n1", "s1", "s2"),
+                List.of(randomEmbedding(random, DIMENSION), randomEmbedding(random, DIMENSION), randomEmbedding(random, DIMENSION)),
+                List.of(TextSegment.from("numeric", new Metadata().put(ManagedEmbeddingStore.DOCUMENT_ID_KEY, 7)),
+                        documentSegment("7", "text"), documentSegment("b", "other")));
+
+        hnsw.removeDocument("7");
+        assertThat(hnsw.size()).isEqualTo(1);
+        EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                .queryEmbedding(randomEmbedding(random, DIMENSION))
+                .maxResults(10)
+                .build();
+        assertThat(texts(hnsw.search(request).matches())).containsExactly("other");
+    }
+
+    @Test
+    void mismatchedDimensionsAreRejectedBeforeInsert() {
+        Random random = new Random(9);
+        HnswEmbeddingStore hnsw = new HnswEmbeddingStore(16, 200, 64);
+        hnsw.addAll(List.of("a", "b"), List.of(randomEmbedding(random, DIMENSION), randomEmbedding(random, DIMENSION)),
+                List.of(TextSegment.from("a"), TextSegment.from("b")));
+
+        Embedding longer = Embedding.from(new float[DIMENSION + 1]);
+        assertThatThrownBy(() -> hnsw.addAll(List.of("c", "d"), List.of(randomEmbedding(random, DIMENSION), longer),
+                List.of(TextSegment.from("c"), TextSegment.from("d"))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("向量维度不匹配");
+        Embedding shorter = Embedding.from(new float[]{1f, 0f, 0f});
+        assertThatThrownBy(() -> hnsw.upsertDocument("a", List.of("e"), List.of(shorter),
+                List.of(documentSegment("a", "e"))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("向量维度不匹配");
+        assertThat(hnsw.size()).isEqualTo(2);
+        assertThat(hnsw.deletedCount()).isEqualTo(0);
+
+        EmbeddingSearchRequest shortQuery = EmbeddingSearchRequest.builder()
+                .queryEmbedding(shorter)
+                .maxResults(10)
+                .build();
+        assertThatThrownBy(() -> hnsw.search(shortQuery))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("查询向量维度不匹配");
+
+        EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                .queryEmbedding(randomEmbedding(random, DIMENSION))
+                .maxResults(10)
+                .build();
+        assertThat(texts(hnsw.search(request).matches())).containsExactlyInAnyOrder("a", "b");
+    }
+}
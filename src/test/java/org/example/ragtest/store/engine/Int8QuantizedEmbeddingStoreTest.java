@@ -0,0 +1,67 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.example.ragtest.store.engine.StoreTestFixtures.randomEmbeddings;
+import static org.example.ragtest.store.engine.StoreTestFixtures.recall;
+import static org.example.ragtest.store.engine.StoreTestFixtures.segments;
+
+class Int8QuantizedEmbeddingStoreTest {
+
+    private static final int DIMENSION = 32;
+
+    @Test
+    void searchBeforeCalibrationIsExact() {
+        Random random = new Random(29);
+        Int8QuantizedEmbeddingStore store = new Int8QuantizedEmbeddingStore(4, 1000, 256, false);
+        List<Embedding> embeddings = randomEmbeddings(random, DIMENSION, 200);
+        store.addAll(embeddings, segments(0, embeddings.size()));
+
+        List<EmbeddingMatch<TextSegment>> matches = store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(embeddings.get(17))
+                .maxResults(1)
+                .build()).matches();
+        assertThat(matches).extracting(match -> match.embedded().text()).containsExactly("segment-17");
+        assertThat(matches.get(0).score()).isCloseTo(1.0, offset(1e-6));
+    }
+
+    @Test
+    void rowsWrittenAfterCalibrationKeepRecallCloseToExact() {
+        Random random = new Random(31);
+        Int8QuantizedEmbeddingStore store = new Int8QuantizedEmbeddingStore(4, 100, 256, false);
+        InMemoryEmbeddingStore<TextSegment> exact = new InMemoryEmbeddingStore<>();
+
+        // 只用前 100 行校准，后续写入量远超样本数，按同一组 min/max 编码
+        int count = 0;
+        for (int batch = 0; batch < 20; batch++) {
+            List<Embedding> embeddings = randomEmbeddings(random, DIMENSION, 100);
+            List<TextSegment> segments = segments(count, embeddings.size());
+            store.addAll(embeddings, segments);
+            exact.addAll(embeddings, segments);
+            count += embeddings.size();
+        }
+        assertThat(store.size()).isEqualTo(count);
+
+        double recall = recall(store, exact, randomEmbeddings(random, DIMENSION, 50));
+        assertThat(recall).isGreaterThan(0.9);
+
+        Embedding late = randomEmbeddings(random, DIMENSION, 1).get(0);
+        store.addAll(List.of(late), List.of(TextSegment.from("late")));
+        List<EmbeddingMatch<TextSegment>> matches = store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(late)
+                .maxResults(1)
+                .build()).matches();
+        assertThat(matches).extracting(match -> match.embedded().text()).containsExactly("late");
+        assertThat(matches.get(0).score()).isCloseTo(1.0, offset(1e-6));
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.example.ragtest.store.support.VectorScorers;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.example.ragtest.store.engine.StoreTestFixtures.clustered;
+import static org.example.ragtest.store.engine.StoreTestFixtures.recall;
+import static org.example.ragtest.store.engine.StoreTestFixtures.segments;
+import static org.example.ragtest.store.engine.StoreTestFixtures.texts;
+
+class IvfEmbeddingStoreTest {
+
+    private static final int DIMENSION = 32;
+
+    @Test
+    void searchBeforeTrainingIsExact() {
+        Random random = new Random(7);
+        IvfEmbeddingStore store = new IvfEmbeddingStore(VectorScorers.scalar(), 16, 1, 100_000, 2.0, false);
+        InMemoryEmbeddingStore<TextSegment> exact = new InMemoryEmbeddingStore<>();
+        List<Embedding> embeddings = clustered(random, DIMENSION, 1000);
+        List<TextSegment> segments = segments(0, embeddings.size());
+        store.addAll(embeddings, segments);
+        exact.addAll(embeddings, segments);
+
+        assertThat(store.isTrained()).isFalse();
+        for (int q = 0; q < 20; q++) {
+            EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                    .queryEmbedding(clustered(random, DIMENSION, 1).get(0))
+                    .maxResults(10)
+                    .build();
+            assertThat(texts(store.search(request).matches())).isEqualTo(texts(exact.search(request).matches()));
+        }
+        store.close();
+    }
+
+    @Test
+    void recallAfterTrainingIsCloseToExact() {
+        Random random = new Random(17);
+        IvfEmbeddingStore store = new IvfEmbeddingStore(VectorScorers.scalar(), 32, 8, 100_000, 2.0, false);
+        InMemoryEmbeddingStore<TextSegment> exact = new InMemoryEmbeddingStore<>();
+        List<Embedding> embeddings = clustered(random, DIMENSION, 3000);
+        List<TextSegment> segments = segments(0, embeddings.size());
+        store.addAll(embeddings, segments);
+        exact.addAll(embeddings, segments);
+
+        store.train();
+        assertThat(store.isTrained()).isTrue();
+
+        // 训练后写入的行直接归入最近中心的倒排列表，同样可以检索到
+        Embedding late = clustered(random, DIMENSION, 1).get(0);
+        store.addAll(List.of(late), List.of(TextSegment.from("late")));
+        exact.addAll(List.of(late), List.of(TextSegment.from("late")));
+        assertThat(topText(store, late)).isEqualTo("late");
+
+        assertThat(recall(store, exact, clustered(random, DIMENSION, 50))).isGreaterThan(0.9);
+        store.close();
+    }
+
+    @Test
+    void searchStaysAvailableAcrossBackgroundTraining() throws InterruptedException {
+        Random random = new Random(19);
+        IvfEmbeddingStore store = new IvfEmbeddingStore(VectorScorers.scalar(), 16, 4, 1000, 2.0, false);
+        InMemoryEmbeddingStore<TextSegment> exact = new InMemoryEmbeddingStore<>();
+        List<Embedding> embeddings = clustered(random, DIMENSION, 2400);
+        List<TextSegment> segments = segments(0, embeddings.size());
+        exact.addAll(embeddings, segments);
+
+        // 分批写入：第 1000 行触发首次训练，第 2000 行触发重新训练，训练期间检索照常进行
+        for (int from = 0; from < embeddings.size(); from += 200) {
+            store.addAll(embeddings.subList(from, from + 200), segments.subList(from, from + 200));
+            int probe = random.nextInt(from + 200);
+            assertThat(topText(store, embeddings.get(probe))).isEqualTo("segment-" + probe);
+        }
+
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!store.isTrained() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(store.isTrained()).isTrue();
+        assertThat(recall(store, exact, clustered(random, DIMENSION, 50))).isGreaterThan(0.8);
+        store.close();
+    }
+
+    private static String topText(IvfEmbeddingStore store, Embedding query) {
+        List<EmbeddingMatch<TextSegment>> matches = store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(query)
+                .maxResults(1)
+                .build()).matches();
+        return matches.get(0).embedded().text();
+    }
+}
@@ -0,0 +1,121 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import org.example.ragtest.store.ManagedEmbeddingStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.example.ragtest.store.engine.StoreTestFixtures.randomEmbedding;
+import static org.example.ragtest.store.engine.StoreTestFixtures.topId;
+
+class MappedFileEmbeddingStoreTest {
+
+    private static final int DIMENSION = 32;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void rowsAndDeletesAcrossChunksSurviveReopen() {
+        Random random = new Random(29);
+        List<String> ids = new ArrayList<>();
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ids.add("id-" + i);
+            embeddings.add(randomEmbedding(random, DIMENSION));
+            segments.add(TextSegment.from("text " + i,
+                    Metadata.from(ManagedEmbeddingStore.DOCUMENT_ID_KEY, "doc-" + (i % 5))));
+        }
+        Embedding replacement = randomEmbedding(random, DIMENSION);
+        // 每块 16 行，100 行跨 7 个映射块
+        try (MappedFileEmbeddingStore store = new MappedFileEmbeddingStore(directory, 16)) {
+            store.addAll(ids, embeddings, segments);
+            store.removeAll(List.of("id-1"));
+            store.upsertDocument("doc-0", List.of("id-new"), List.of(replacement),
+                    List.of(TextSegment.from("replacement",
+                            Metadata.from(ManagedEmbeddingStore.DOCUMENT_ID_KEY, "doc-0"))));
+        }
+
+        try (MappedFileEmbeddingStore store = new MappedFileEmbeddingStore(directory, 16)) {
+            // doc-0 的 20 行被替换为 1 行，另删除 id-1
+            assertThat(store.size()).isEqualTo(100 - 20 - 1 + 1);
+            assertThat(store.deletedCount()).isEqualTo(21);
+            assertThat(topId(store, embeddings.get(57))).isEqualTo("id-57");
+            assertThat(topId(store, replacement)).isEqualTo("id-new");
+            assertThat(topId(store, embeddings.get(1))).isNotEqualTo("id-1");
+            assertThat(topId(store, embeddings.get(10))).isNotEqualTo("id-10");
+
+            // 重新打开后继续追加，新行不会覆盖已提交的行
+            store.addAll(List.of("id-late"), List.of(replacement), List.of(TextSegment.from("late")));
+            assertThat(store.size()).isEqualTo(81);
+            assertThat(topId(store, embeddings.get(99))).isEqualTo("id-99");
+        }
+    }
+
+    @Test
+    void compressedSegmentsSurviveReopen() {
+        Random random = new Random(9);
+        List<String> ids = new ArrayList<>();
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add("id-" + i);
+            embeddings.add(randomEmbedding(random, DIMENSION));
+            segments.add(TextSegment.from("第 " + i + " 段文本 segment text " + i,
+                    Metadata.from(ManagedEmbeddingStore.DOCUMENT_ID_KEY, "doc-" + (i % 10))));
+        }
+        try (MappedFileEmbeddingStore store = new MappedFileEmbeddingStore(directory, 64, 1 << 20, true)) {
+            store.addAll(ids, embeddings, segments);
+        }
+
+        // 以不压缩的配置重新打开，应沿用文件中的压缩设置
+        try (MappedFileEmbeddingStore store = new MappedFileEmbeddingStore(directory, 64, 1 << 20, false)) {
+            List<EmbeddingMatch<TextSegment>> matches = store.search(EmbeddingSearchRequest.builder()
+                    .queryEmbedding(embeddings.get(42))
+                    .maxResults(1)
+                    .filter(metadataKey(ManagedEmbeddingStore.DOCUMENT_ID_KEY).isEqualTo("doc-2"))
+                    .build()).matches();
+            assertThat(matches).hasSize(1);
+            assertThat(matches.get(0).embeddingId()).isEqualTo("id-42");
+            assertThat(matches.get(0).embedded().text()).isEqualTo(segments.get(42).text());
+        }
+    }
+
+    @Test
+    void searchHitsArePromotedAndDeletesInvalidateHotTier() {
+        Random random = new Random(4);
+        try (MappedFileEmbeddingStore store = new MappedFileEmbeddingStore(directory, 64, 1 << 20, true)) {
+            List<Embedding> embeddings = List.of(randomEmbedding(random, DIMENSION), randomEmbedding(random, DIMENSION), randomEmbedding(random, DIMENSION));
+            store.addAll(List.of("a", "b", "c"), embeddings,
+                    List.of(TextSegment.from("a"), TextSegment.from("b"), TextSegment.from("c")));
+            assertThat(store.hotRows()).isZero();
+
+            EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                    .queryEmbedding(embeddings.get(0))
+                    .maxResults(2)
+                    .build();
+            List<EmbeddingMatch<TextSegment>> first = store.search(request).matches();
+            assertThat(store.hotRows()).isEqualTo(2);
+            List<EmbeddingMatch<TextSegment>> second = store.search(request).matches();
+            assertThat(second).extracting(EmbeddingMatch::embeddingId)
+                    .containsExactlyElementsOf(first.stream().map(EmbeddingMatch::embeddingId).toList());
+            assertThat(second.get(0).embedding().vector()).containsExactly(first.get(0).embedding().vector());
+
+            store.removeAll(List.of("a"));
+            assertThat(store.hotRows()).isEqualTo(1);
+            assertThat(store.search(request).matches()).extracting(EmbeddingMatch::embeddingId).doesNotContain("a");
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.example.ragtest.store.ManagedEmbeddingStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.example.ragtest.store.engine.StoreTestFixtures.randomEmbedding;
+import static org.example.ragtest.store.engine.StoreTestFixtures.topId;
+
+class OffHeapEmbeddingStoreTest {
+
+    private static final int DIMENSION = 24;
+    private static final int ROWS_PER_CHUNK = 64;
+
+    @Test
+    void searchAcrossChunksMatchesBruteForce() {
+        Random random = new Random(37);
+        OffHeapEmbeddingStore store = new OffHeapEmbeddingStore(ROWS_PER_CHUNK, false);
+        InMemoryEmbeddingStore<TextSegment> exact = new InMemoryEmbeddingStore<>();
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            embeddings.add(randomEmbedding(random, DIMENSION));
+            segments.add(TextSegment.from("segment-" + i));
+        }
+        store.addAll(embeddings, segments);
+        exact.addAll(embeddings, segments);
+
+        // 500 行占用 8 个分块
+        assertThat(store.offHeapBytes()).isEqualTo(8L * ROWS_PER_CHUNK * DIMENSION * Float.BYTES);
+        for (int q = 0; q < 20; q++) {
+            EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                    .queryEmbedding(randomEmbedding(random, DIMENSION))
+                    .maxResults(10)
+                    .build();
+            List<EmbeddingMatch<TextSegment>> expected = exact.search(request).matches();
+            List<EmbeddingMatch<TextSegment>> actual = store.search(request).matches();
+            assertThat(actual).extracting(match -> match.embedded().text())
+                    .containsExactlyElementsOf(expected.stream().map(match -> match.embedded().text()).toList());
+            for (int i = 0; i < expected.size(); i++) {
+                assertThat(actual.get(i).score()).isCloseTo(expected.get(i).score(), offset(1e-5));
+            }
+        }
+    }
+
+    @Test
+    void storedRowsRoundTripAndRespectRemovalAndFilters() {
+        Random random = new Random(41);
+        OffHeapEmbeddingStore store = new OffHeapEmbeddingStore(ROWS_PER_CHUNK, true);
+        List<String> ids = new ArrayList<>();
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ids.add("id-" + i);
+            embeddings.add(randomEmbedding(random, DIMENSION));
+            segments.add(TextSegment.from("段落 " + i, new Metadata().put("group", "g" + i % 2)));
+        }
+        store.addAll(ids, embeddings, segments);
+
+        // 读回的是写入时的原始向量，而不是归一化后的向量
+        Map<String, ManagedEmbeddingStore.Entry> entries = new HashMap<>();
+        store.forEach(entry -> entries.put(entry.id(), entry));
+        assertThat(entries).hasSize(100);
+        assertThat(entries.get("id-7").embedding().vector()).containsExactly(embeddings.get(7).vector());
+        assertThat(entries.get("id-7").segment()).isEqualTo(segments.get(7));
+
+        store.removeAll(List.of("id-3"));
+        assertThat(store.size()).isEqualTo(99);
+        assertThat(topId(store, embeddings.get(3))).isNotEqualTo("id-3");
+
+        EmbeddingSearchRequest filtered = EmbeddingSearchRequest.builder()
+                .queryEmbedding(embeddings.get(4))
+                .filter(metadataKey("group").isEqualTo("g1"))
+                .maxResults(20)
+                .build();
+        assertThat(store.search(filtered).matches()).hasSize(20);
+        assertThat(store.search(filtered).matches())
+                .allMatch(match -> "g1".equals(match.embedded().metadata().getString("group")));
+        assertThat(topId(store, embeddings.get(5))).isEqualTo("id-5");
+    }
+}
@@ -0,0 +1,105 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.example.ragtest.store.support.VectorScorers;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.example.ragtest.store.engine.StoreTestFixtures.clustered;
+import static org.example.ragtest.store.engine.StoreTestFixtures.segments;
+import static org.example.ragtest.store.engine.StoreTestFixtures.texts;
+
+class ProductQuantizedEmbeddingStoreTest {
+
+    private static final int DIMENSION = 64;
+
+    @Test
+    void searchBeforeTrainingIsExact() {
+        Random random = new Random(5);
+        ProductQuantizedEmbeddingStore store = new ProductQuantizedEmbeddingStore(
+                VectorScorers.scalar(), 16, 4, 100_000, 256, false);
+        List<Embedding> embeddings = clustered(random, DIMENSION, 500);
+        store.addAll(embeddings, segments(0, embeddings.size()));
+
+        assertThat(store.isTrained()).isFalse();
+        List<EmbeddingMatch<TextSegment>> matches = store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(embeddings.get(42))
+                .maxResults(1)
+                .build()).matches();
+        assertThat(matches).extracting(match -> match.embedded().text()).containsExactly("segment-42");
+        assertThat(matches.get(0).score()).isCloseTo(1.0, offset(1e-6));
+        store.close();
+    }
+
+    @Test
+    void recallAfterTrainingIsCloseToExact() {
+        Random random = new Random(11);
+        ProductQuantizedEmbeddingStore store = new ProductQuantizedEmbeddingStore(
+                VectorScorers.scalar(), 16, 8, 100_000, 256, false);
+        InMemoryEmbeddingStore<TextSegment> exact = new InMemoryEmbeddingStore<>();
+        List<Embedding> embeddings = clustered(random, DIMENSION, 3000);
+        List<TextSegment> segments = segments(0, embeddings.size());
+        store.addAll(embeddings, segments);
+        exact.addAll(embeddings, segments);
+
+        store.train();
+        assertThat(store.isTrained()).isTrue();
+
+        // 训练后写入的行直接编码，同样可以检索到
+        Embedding late = clustered(random, DIMENSION, 1).get(0);
+        store.addAll(List.of(late), List.of(TextSegment.from("late")));
+        exact.addAll(List.of(late), List.of(TextSegment.from("late")));
+        List<EmbeddingMatch<TextSegment>> lateMatches = store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(late)
+                .maxResults(1)
+                .build()).matches();
+        assertThat(lateMatches).extracting(match -> match.embedded().text()).containsExactly("late");
+        assertThat(lateMatches.get(0).score()).isCloseTo(1.0, offset(1e-6));
+
+        int hits = 0;
+        int total = 0;
+        for (int q = 0; q < 50; q++) {
+            EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                    .queryEmbedding(clustered(random, DIMENSION, 1).get(0))
+                    .maxResults(10)
+                    .build();
+            Set<String> expected = texts(exact.search(request).matches());
+            Set<String> actual = texts(store.search(request).matches());
+            total += expected.size();
+            expected.retainAll(actual);
+            hits += expected.size();
+        }
+        assertThat((double) hits / total).isGreaterThan(0.8);
+        store.close();
+    }
+
+    @Test
+    void trainsInBackgroundOnceTrainingSizeIsReached() throws InterruptedException {
+        Random random = new Random(13);
+        ProductQuantizedEmbeddingStore store = new ProductQuantizedEmbeddingStore(
+                VectorScorers.scalar(), 8, 8, 1000, 256, false);
+        List<Embedding> embeddings = clustered(random, DIMENSION, 1200);
+        store.addAll(embeddings, segments(0, embeddings.size()));
+
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!store.isTrained() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(store.isTrained()).isTrue();
+        List<EmbeddingMatch<TextSegment>> matches = store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(embeddings.get(7))
+                .maxResults(1)
+                .build()).matches();
+        assertThat(matches).extracting(match -> match.embedded().text()).containsExactly("segment-7");
+        store.close();
+    }
+}
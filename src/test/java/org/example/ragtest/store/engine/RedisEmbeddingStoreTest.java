@@ -0,0 +1,109 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import org.example.ragtest.store.support.VectorScorers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.example.ragtest.store.engine.StoreTestFixtures.documentSegment;
+import static org.example.ragtest.store.engine.StoreTestFixtures.randomEmbedding;
+import static org.example.ragtest.store.engine.StoreTestFixtures.texts;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 需要本地 Redis（localhost:6379，可用 docker run -p 6379:6379 redis 启动），不可达时跳过
+ */
+class RedisEmbeddingStoreTest {
+
+    private static final int DIMENSION = 32;
+
+    private LettuceConnectionFactory connectionFactory;
+    private String keyPrefix;
+
+    @BeforeEach
+    void connect() {
+        assumeTrue(redisReachable(), "本地 Redis 不可用");
+        connectionFactory = new LettuceConnectionFactory("localhost", 6379);
+        connectionFactory.afterPropertiesSet();
+        keyPrefix = "rag:test:" + UUID.randomUUID();
+    }
+
+    @AfterEach
+    void disconnect() {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+    }
+
+    @Test
+    void writesAreVisibleToOtherInstances() throws Exception {
+        Random random = new Random(11);
+        try (RedisEmbeddingStore first = newStore(); RedisEmbeddingStore second = newStore()) {
+            first.addAll(List.of("a1", "a2", "b1"),
+                    List.of(randomEmbedding(random, DIMENSION), randomEmbedding(random, DIMENSION), randomEmbedding(random, DIMENSION)),
+                    List.of(documentSegment("a", "old-1"), documentSegment("a", "old-2"), documentSegment("b", "other")));
+            assertThat(second.size()).isEqualTo(3);
+
+            second.upsertDocument("a", List.of("a3"), List.of(randomEmbedding(random, DIMENSION)), List.of(documentSegment("a", "new")));
+            EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                    .queryEmbedding(randomEmbedding(random, DIMENSION))
+                    .maxResults(10)
+                    .build();
+            assertThat(texts(first.search(request).matches())).containsExactlyInAnyOrder("new", "other");
+
+            first.removeDocument("b");
+            assertThat(texts(second.search(request).matches())).containsExactly("new");
+
+            second.removeAll();
+        }
+    }
+
+    @Test
+    void newInstanceLoadsExistingData() throws Exception {
+        Random random = new Random(5);
+        try (RedisEmbeddingStore writer = newStore()) {
+            Embedding target = randomEmbedding(random, DIMENSION);
+            writer.addAll(List.of("x", "y"), List.of(target, randomEmbedding(random, DIMENSION)),
+                    List.of(documentSegment("d", "target"), documentSegment("d", "noise")));
+
+            try (RedisEmbeddingStore reader = newStore()) {
+                List<EmbeddingMatch<TextSegment>> matches = reader.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(target)
+                        .maxResults(1)
+                        .build()).matches();
+                assertThat(matches).hasSize(1);
+                assertThat(matches.get(0).embeddingId()).isEqualTo("x");
+                assertThat(matches.get(0).score()).isCloseTo(1.0, offset(1e-6));
+            }
+            writer.removeAll();
+        }
+    }
+
+    private RedisEmbeddingStore newStore() {
+        return new RedisEmbeddingStore(connectionFactory, keyPrefix,
+                new SimdExactEmbeddingStore(VectorScorers.scalar()), 2, 1000, 0);
+    }
+
+    private static boolean redisReachable() {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", 6379), 200);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
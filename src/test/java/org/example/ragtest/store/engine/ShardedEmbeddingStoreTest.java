@@ -0,0 +1,112 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import org.example.ragtest.store.ManagedEmbeddingStore;
+import org.example.ragtest.store.support.VectorScorers;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.example.ragtest.store.engine.StoreTestFixtures.documentSegment;
+import static org.example.ragtest.store.engine.StoreTestFixtures.randomEmbedding;
+import static org.example.ragtest.store.engine.StoreTestFixtures.topId;
+
+class ShardedEmbeddingStoreTest {
+
+    private static final int DIMENSION = 16;
+
+    @Test
+    void mergedSearchMatchesSingleStore() {
+        Random random = new Random(43);
+        SimdExactEmbeddingStore single = new SimdExactEmbeddingStore(VectorScorers.scalar());
+        try (ShardedEmbeddingStore sharded = new ShardedEmbeddingStore(4,
+                () -> new SimdExactEmbeddingStore(VectorScorers.scalar()))) {
+            List<String> ids = new ArrayList<>();
+            List<Embedding> embeddings = new ArrayList<>();
+            List<TextSegment> segments = new ArrayList<>();
+            for (int i = 0; i < 800; i++) {
+                ids.add("id-" + i);
+                embeddings.add(randomEmbedding(random, DIMENSION));
+                segments.add(segment(i, "doc-" + i % 40));
+            }
+            sharded.addAll(ids, embeddings, segments);
+            single.addAll(ids, embeddings, segments);
+            assertThat(sharded.size()).isEqualTo(800);
+
+            for (int q = 0; q < 20; q++) {
+                EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                        .queryEmbedding(randomEmbedding(random, DIMENSION))
+                        .maxResults(10)
+                        .build();
+                List<EmbeddingMatch<TextSegment>> expected = single.search(request).matches();
+                List<EmbeddingMatch<TextSegment>> actual = sharded.search(request).matches();
+                assertThat(actual).extracting(EmbeddingMatch::embeddingId)
+                        .containsExactlyElementsOf(expected.stream().map(EmbeddingMatch::embeddingId).toList());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertThat(actual.get(i).score()).isCloseTo(expected.get(i).score(), offset(1e-6));
+                }
+            }
+        }
+    }
+
+    @Test
+    void documentsStayOnOneShardAndAreReplacedThere() {
+        Random random = new Random(47);
+        List<ManagedEmbeddingStore> shards = new ArrayList<>();
+        try (ShardedEmbeddingStore sharded = new ShardedEmbeddingStore(4, () -> {
+            SimdExactEmbeddingStore shard = new SimdExactEmbeddingStore(VectorScorers.scalar());
+            shards.add(shard);
+            return shard;
+        })) {
+            List<String> ids = new ArrayList<>();
+            List<Embedding> embeddings = new ArrayList<>();
+            List<TextSegment> segments = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                ids.add("id-" + i);
+                embeddings.add(randomEmbedding(random, DIMENSION));
+                segments.add(segment(i, "doc-" + i % 20));
+            }
+            sharded.addAll(ids, embeddings, segments);
+
+            // 同一文档的全部文本段位于同一分片
+            Map<String, Integer> shardByDocument = new HashMap<>();
+            for (int shard = 0; shard < shards.size(); shard++) {
+                int index = shard;
+                shards.get(shard).forEach(entry -> {
+                    Integer previous = shardByDocument.put(ManagedEmbeddingStore.documentIdOf(entry.segment()), index);
+                    assertThat(previous == null || previous == index).isTrue();
+                });
+            }
+            assertThat(shardByDocument).hasSize(20);
+            assertThat(shards).allMatch(shard -> shard.size() > 0);
+
+            Embedding replacement = randomEmbedding(random, DIMENSION);
+            sharded.upsertDocument("doc-3", List.of("id-new"), List.of(replacement), List.of(segment(-1, "doc-3")));
+            assertThat(sharded.size()).isEqualTo(200 - 10 + 1);
+            assertThat(shards.get(shardByDocument.get("doc-3")).size())
+                    .isEqualTo(countOnShard(shardByDocument, shardByDocument.get("doc-3")) * 10 - 10 + 1);
+            assertThat(topId(sharded, replacement)).isEqualTo("id-new");
+
+            sharded.removeAll(List.of("id-0", "id-1", "id-2"));
+            assertThat(sharded.size()).isEqualTo(188);
+            assertThat(topId(sharded, embeddings.get(1))).isNotEqualTo("id-1");
+        }
+    }
+
+    private static int countOnShard(Map<String, Integer> shardByDocument, int shard) {
+        return (int) shardByDocument.values().stream().filter(value -> value == shard).count();
+    }
+
+    private static TextSegment segment(int index, String documentId) {
+        return documentSegment(documentId, "text " + index);
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.example.ragtest.store.support.VectorScorer;
+import org.example.ragtest.store.support.VectorScorers;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.example.ragtest.store.engine.StoreTestFixtures.randomEmbedding;
+
+class SimdExactEmbeddingStoreTest {
+
+    private static final int DIMENSION = 64;
+
+    @Test
+    void searchMatchesBruteForce() {
+        Random random = new Random(47);
+        // 维度不是 SIMD 通道宽度的整数倍，覆盖尾部的标量循环
+        int dimension = 67;
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            embeddings.add(randomEmbedding(random, dimension));
+            segments.add(TextSegment.from("segment-" + i));
+        }
+        InMemoryEmbeddingStore<TextSegment> bruteForce = new InMemoryEmbeddingStore<>();
+        bruteForce.addAll(embeddings, segments);
+
+        for (VectorScorer scorer : List.of(VectorScorers.scalar(), VectorScorers.best())) {
+            SimdExactEmbeddingStore store = new SimdExactEmbeddingStore(scorer);
+            store.addAll(embeddings, segments);
+            for (int q = 0; q < 20; q++) {
+                EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                        .queryEmbedding(randomEmbedding(random, dimension))
+                        .maxResults(10)
+                        .build();
+                List<EmbeddingMatch<TextSegment>> expected = bruteForce.search(request).matches();
+                List<EmbeddingMatch<TextSegment>> actual = store.search(request).matches();
+                assertThat(actual).extracting(match -> match.embedded().text())
+                        .containsExactlyElementsOf(expected.stream().map(match -> match.embedded().text()).toList());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertThat(actual.get(i).score()).isCloseTo(expected.get(i).score(), offset(1e-5));
+                }
+            }
+        }
+    }
+
+    @Test
+    void bestScorerAgreesWithScalar() {
+        Random random = new Random(53);
+        VectorScorer best = VectorScorers.best();
+        for (int length : new int[]{1, 7, 16, 33, 384}) {
+            float[] query = randomEmbedding(random, length).vector();
+            float[] matrix = randomEmbedding(random, length * 3).vector();
+            for (int row = 0; row < 3; row++) {
+                assertThat(best.dot(query, matrix, row * length, length))
+                        .isCloseTo(VectorScorers.scalar().dot(query, matrix, row * length, length), offset(1e-4f));
+            }
+        }
+    }
+
+    @Test
+    void truncatedSearchRescoresCandidatesAtFullDimension() {
+        Random random = new Random(3);
+        SimdExactEmbeddingStore store = new SimdExactEmbeddingStore(VectorScorers.scalar());
+        List<String> ids = new ArrayList<>();
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            ids.add("id-" + i);
+            embeddings.add(randomEmbedding(random, DIMENSION));
+            segments.add(TextSegment.from("text " + i));
+        }
+        store.addAll(ids, embeddings, segments);
+
+        EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                .queryEmbedding(embeddings.get(123))
+                .maxResults(3)
+                .build();
+        List<EmbeddingMatch<TextSegment>> matches = store.search(request, 16, 8).matches();
+        assertThat(matches).hasSize(3);
+        assertThat(matches.get(0).embeddingId()).isEqualTo("id-123");
+        assertThat(matches.get(0).score()).isCloseTo(1.0, offset(1e-6));
+
+        // 截断矩阵建立后继续写入，新行同样参与粗排
+        Embedding late = randomEmbedding(random, DIMENSION);
+        store.addAll(List.of("late"), List.of(late), List.of(TextSegment.from("late")));
+        List<EmbeddingMatch<TextSegment>> lateMatches = store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(late)
+                .maxResults(1)
+                .build(), 16, 8).matches();
+        assertThat(lateMatches).extracting(EmbeddingMatch::embeddingId).containsExactly("late");
+    }
+}
@@ -0,0 +1,117 @@
+package org.example.ragtest.store.engine;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import org.example.ragtest.store.ManagedEmbeddingStore;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 存储引擎测试共用的向量、文本段和检索辅助方法
+ */
+final class StoreTestFixtures {
+
+    private StoreTestFixtures() {
+    }
+
+    /**
+     * 各分量服从标准正态分布的随机向量
+     */
+    static Embedding randomEmbedding(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return Embedding.from(vector);
+    }
+
+    static List<Embedding> randomEmbeddings(Random random, int dimension, int count) {
+        List<Embedding> embeddings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            embeddings.add(randomEmbedding(random, dimension));
+        }
+        return embeddings;
+    }
+
+    /**
+     * 围绕 32 个固定簇中心分布的向量，簇中心只取决于维度，同一维度下多次调用生成的向量属于同一组簇
+     */
+    static List<Embedding> clustered(Random random, int dimension, int count) {
+        Random centers = new Random(0);
+        float[][] centroids = new float[32][dimension];
+        for (float[] centroid : centroids) {
+            for (int d = 0; d < dimension; d++) {
+                centroid[d] = (float) centers.nextGaussian();
+            }
+        }
+        List<Embedding> embeddings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] centroid = centroids[random.nextInt(centroids.length)];
+            float[] vector = new float[dimension];
+            for (int d = 0; d < dimension; d++) {
+                vector[d] = centroid[d] + 0.5f * (float) random.nextGaussian();
+            }
+            embeddings.add(Embedding.from(vector));
+        }
+        return embeddings;
+    }
+
+    /**
+     * 文本为 segment-{序号} 的文本段，序号从 from 开始
+     */
+    static List<TextSegment> segments(int from, int count) {
+        List<TextSegment> segments = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            segments.add(TextSegment.from("segment-" + i));
+        }
+        return segments;
+    }
+
+    static TextSegment documentSegment(String documentId, String text) {
+        return TextSegment.from(text, Metadata.from(ManagedEmbeddingStore.DOCUMENT_ID_KEY, documentId));
+    }
+
+    /**
+     * 检索结果的文本集合，返回的集合可修改
+     */
+    static Set<String> texts(List<EmbeddingMatch<TextSegment>> matches) {
+        Set<String> texts = new HashSet<>();
+        matches.forEach(match -> texts.add(match.embedded().text()));
+        return texts;
+    }
+
+    static String topId(EmbeddingStore<TextSegment> store, Embedding query) {
+        return store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(query)
+                .maxResults(1)
+                .build()).matches().get(0).embeddingId();
+    }
+
+    /**
+     * 以精确检索的前 10 个结果为基准，统计 store 在全部查询上的召回率
+     */
+    static double recall(EmbeddingStore<TextSegment> store, EmbeddingStore<TextSegment> exact, List<Embedding> queries) {
+        int hits = 0;
+        int total = 0;
+        for (Embedding query : queries) {
+            EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                    .queryEmbedding(query)
+                    .maxResults(10)
+                    .build();
+            Set<String> expected = texts(exact.search(request).matches());
+            Set<String> actual = texts(store.search(request).matches());
+            total += expected.size();
+            expected.retainAll(actual);
+            hits += expected.size();
+        }
+        return (double) hits / total;
+    }
+}
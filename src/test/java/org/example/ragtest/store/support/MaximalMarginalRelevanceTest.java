@@ -0,0 +1,64 @@
+package org.example.ragtest.store.support;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MaximalMarginalRelevanceTest {
+
+    @Test
+    void lambdaOneKeepsRelevanceOrder() {
+        List<EmbeddingMatch<TextSegment>> candidates = List.of(
+                match("a", 0.95, 1f, 0f, 0f),
+                match("a-copy", 0.94, 1f, 0.01f, 0f),
+                match("b", 0.80, 0f, 1f, 0f));
+
+        assertThat(MaximalMarginalRelevance.select(candidates, 2, 1.0))
+                .extracting(EmbeddingMatch::embeddingId)
+                .containsExactly("a", "a-copy");
+    }
+
+    @Test
+    void nearDuplicateIsSkippedForDiverseCandidate() {
+        List<EmbeddingMatch<TextSegment>> candidates = List.of(
+                match("a", 0.95, 1f, 0f, 0f),
+                match("a-copy", 0.94, 1f, 0.01f, 0f),
+                match("b", 0.85, 0f, 1f, 0f),
+                match("c", 0.80, 0f, 0f, 1f));
+
+        List<EmbeddingMatch<TextSegment>> selected = MaximalMarginalRelevance.select(candidates, 3, 0.7);
+        assertThat(selected).extracting(EmbeddingMatch::embeddingId).containsExactly("a", "b", "c");
+        // 重选只改变顺序和取舍，保留存储返回的相关性分数
+        assertThat(selected.get(1).score()).isEqualTo(0.85);
+    }
+
+    @Test
+    void relevanceScoreIsMappedBackToCosineBeforeWeighting() {
+        // 相关性分数 s = (cos + 1) / 2；还原为 cos = 2s - 1 后，b 比 c 高 0.2 的相关性足以抵消多出的 0.15 相似度。
+        // 若直接用 s 参与加权，相关性差距只有 0.1，会错误地选中 c
+        List<EmbeddingMatch<TextSegment>> candidates = List.of(
+                match("a", 0.99, 1f, 0f, 0f),
+                match("b", 0.90, 0.5f, (float) Math.sqrt(0.75), 0f),
+                match("c", 0.80, 0.35f, 0f, (float) Math.sqrt(1 - 0.35 * 0.35)));
+
+        assertThat(MaximalMarginalRelevance.select(candidates, 2, 0.5))
+                .extracting(EmbeddingMatch::embeddingId)
+                .containsExactly("a", "b");
+    }
+
+    @Test
+    void lambdaOutsideUnitIntervalIsRejected() {
+        assertThatThrownBy(() -> MaximalMarginalRelevance.select(List.of(), 1, 1.5))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static EmbeddingMatch<TextSegment> match(String id, double score, float... vector) {
+        return new EmbeddingMatch<>(score, id, Embedding.from(vector), TextSegment.from(id));
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.ragtest.store.support;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.filter.Filter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetadataIndexTest {
+
+    private static final int ROWS = 1000;
+
+    /**
+     * 索引无法识别的自定义条件
+     */
+    private static final Filter MULTIPLE_OF_SEVEN = object -> ((Metadata) object).getInteger("word_count") % 7 == 0;
+
+    private final List<TextSegment> segments = new ArrayList<>();
+    private final MetadataIndex index = new MetadataIndex(MetadataIndex.DEFAULT_PRE_FILTER_SELECTIVITY);
+
+    MetadataIndexTest() {
+        for (int i = 0; i < ROWS; i++) {
+            Metadata metadata = new Metadata()
+                    .put("category", "c" + i % 50)
+                    .put("word_count", i);
+            TextSegment segment = TextSegment.from("text " + i, metadata);
+            segments.add(segment);
+            index.add(i, segment);
+        }
+    }
+
+    @Test
+    void selectiveFiltersArePreFiltered() {
+        FilterPlan equal = assertMatchesFilter(metadataKey("category").isEqualTo("c3"));
+        assertThat(equal.isPreFilter()).isTrue();
+        assertThat(equal.rows().cardinality()).isEqualTo(20);
+
+        FilterPlan range = assertMatchesFilter(metadataKey("word_count").isGreaterThanOrEqualTo(950));
+        assertThat(range.isPreFilter()).isTrue();
+        assertThat(range.rows().cardinality()).isEqualTo(50);
+
+        FilterPlan combined = assertMatchesFilter(
+                metadataKey("category").isEqualTo("c3").and(metadataKey("word_count").isLessThan(500)));
+        assertThat(combined.isPreFilter()).isTrue();
+        assertThat(combined.rows().cardinality()).isEqualTo(10);
+    }
+
+    @Test
+    void broadFiltersUseBitmapPostFilter() {
+        FilterPlan in = assertMatchesFilter(metadataKey("category").isIn("c0", "c1", "c2", "c3", "c4", "c5"));
+        assertThat(in.isPreFilter()).isFalse();
+        assertThat(in.rows().cardinality()).isEqualTo(120);
+
+        FilterPlan not = assertMatchesFilter(Filter.not(metadataKey("category").isEqualTo("c3")));
+        assertThat(not.isPreFilter()).isFalse();
+        assertThat(not.rows().cardinality()).isEqualTo(980);
+    }
+
+    @Test
+    void unindexableFiltersFallBackToRowByRow() {
+        FilterPlan custom = assertMatchesFilter(MULTIPLE_OF_SEVEN);
+        assertThat(custom.isPreFilter()).isFalse();
+        assertThat(custom.rows()).isNull();
+
+        // And 中只有一侧可走索引：位图是超集，仍可预过滤，命中的行逐行复核
+        FilterPlan partial = assertMatchesFilter(
+                metadataKey("category").isEqualTo("c3").and(MULTIPLE_OF_SEVEN));
+        assertThat(partial.isPreFilter()).isTrue();
+        assertThat(partial.rows().cardinality()).isEqualTo(20);
+    }
+
+    @Test
+    void noFilterAcceptsEveryRow() {
+        FilterPlan plan = index.plan(null, ROWS);
+        assertThat(plan).isSameAs(FilterPlan.NONE);
+        assertThat(plan.accepts(0, row -> false)).isTrue();
+    }
+
+    /**
+     * 计划接受的行与逐行执行 Filter 的结果完全一致
+     */
+    private FilterPlan assertMatchesFilter(Filter filter) {
+        FilterPlan plan = index.plan(filter, ROWS);
+        for (int row = 0; row < ROWS; row++) {
+            boolean expected = filter.test(segments.get(row).metadata());
+            assertThat(plan.accepts(row, candidate -> filter.test(segments.get(candidate).metadata())))
+                    .isEqualTo(expected);
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.ragtest.store.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextArenaTest {
+
+    @Test
+    void chineseTextIsStoredAsUtf16() {
+        // 40 个汉字按 UTF-16 编码为 80 字节（UTF-8 需要 120 字节），与 80 个 ASCII 字符的 UTF-8 编码一样长
+        TextArena chinese = new TextArena(false, 64);
+        TextArena ascii = new TextArena(false, 64);
+        String chineseText = "检索增强生成".repeat(7).substring(0, 40);
+        String asciiText = "a".repeat(80);
+        long chineseHandle = chinese.add(chineseText);
+        long asciiHandle = ascii.add(asciiText);
+
+        assertThat(chinese.bytes()).isEqualTo(ascii.bytes());
+        assertThat(chinese.get(chineseHandle)).isEqualTo(chineseText);
+        assertThat(ascii.get(asciiHandle)).isEqualTo(asciiText);
+    }
+
+    @Test
+    void compressedBlocksRoundTrip() {
+        Random random = new Random(31);
+        TextArena compressed = new TextArena(true, 256);
+        TextArena plain = new TextArena(false, 256);
+        List<String> texts = new ArrayList<>();
+        List<Long> handles = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String text = text(random, i);
+            texts.add(text);
+            handles.add(compressed.add(text));
+            assertThat(plain.add(text)).isEqualTo(handles.get(i));
+        }
+
+        // 随机顺序读取，跨越的块数超过解压缓存容量
+        for (int n = 0; n < 2000; n++) {
+            int i = random.nextInt(texts.size());
+            assertThat(compressed.get(handles.get(i))).isEqualTo(texts.get(i));
+        }
+        for (int i = 0; i < texts.size(); i++) {
+            assertThat(compressed.get(handles.get(i))).isEqualTo(texts.get(i));
+        }
+        assertThat(compressed.bytes()).isLessThan(plain.bytes());
+    }
+
+    private static String text(Random random, int i) {
+        return switch (i % 4) {
+            case 0 -> "";
+            case 1 -> "Spring Boot segment " + i + " " + "lorem ipsum ".repeat(random.nextInt(20));
+            case 2 -> "第 " + i + " 段：检索增强生成结合向量检索和大语言模型。".repeat(1 + random.nextInt(5));
+            default -> "混合 mixed 文本 " + i + " 😀 café";
+        };
+    }
+}